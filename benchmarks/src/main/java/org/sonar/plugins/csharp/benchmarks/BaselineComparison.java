@@ -0,0 +1,175 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp.benchmarks;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares the JSON results of a JMH run with the ones of a baseline run, and fails when a benchmark regressed.
+ * Only the benchmarks present in both runs are compared. A benchmark regresses when its score, or its normalized
+ * allocation rate when the run was done with the gc profiler, is worse than the baseline by more than the tolerance.
+ */
+public class BaselineComparison {
+
+  static final String ALLOCATION_METRIC = "\u00b7gc.alloc.rate.norm";
+  private static final double DEFAULT_TOLERANCE = 0.10;
+
+  private BaselineComparison() {
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2) {
+      System.err.println("Usage: BaselineComparison <baseline.json> <current.json> [tolerance, default " + DEFAULT_TOLERANCE + "]");
+      System.exit(2);
+    }
+    double tolerance = args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_TOLERANCE;
+
+    List<Comparison> comparisons;
+    try (Reader baseline = Files.newBufferedReader(Paths.get(args[0]), StandardCharsets.UTF_8);
+      Reader current = Files.newBufferedReader(Paths.get(args[1]), StandardCharsets.UTF_8)) {
+      comparisons = compare(baseline, current, tolerance);
+    }
+
+    boolean regression = false;
+    for (Comparison comparison : comparisons) {
+      System.out.println(comparison);
+      regression |= comparison.isRegression();
+    }
+    if (regression) {
+      System.out.println("Performance regression of more than " + Math.round(tolerance * 100) + "% compared to the baseline");
+      System.exit(1);
+    }
+  }
+
+  static List<Comparison> compare(Reader baseline, Reader current, double tolerance) {
+    Map<String, JsonObject> baselineResults = results(baseline);
+    List<Comparison> comparisons = new ArrayList<>();
+    for (Map.Entry<String, JsonObject> entry : results(current).entrySet()) {
+      JsonObject baselineResult = baselineResults.get(entry.getKey());
+      if (baselineResult == null) {
+        continue;
+      }
+      JsonObject currentResult = entry.getValue();
+      boolean higherIsBetter = "thrpt".equals(currentResult.get("mode").getAsString());
+      comparisons.add(new Comparison(entry.getKey(), currentResult.getAsJsonObject("primaryMetric").get("scoreUnit").getAsString(),
+        score(baselineResult.getAsJsonObject("primaryMetric")), score(currentResult.getAsJsonObject("primaryMetric")), higherIsBetter, tolerance));
+
+      JsonObject baselineAllocation = allocation(baselineResult);
+      JsonObject currentAllocation = allocation(currentResult);
+      if (baselineAllocation != null && currentAllocation != null) {
+        comparisons.add(new Comparison(entry.getKey(), currentAllocation.get("scoreUnit").getAsString(), score(baselineAllocation), score(currentAllocation), false, tolerance));
+      }
+    }
+    return comparisons;
+  }
+
+  private static Map<String, JsonObject> results(Reader reader) {
+    Map<String, JsonObject> result = new LinkedHashMap<>();
+    JsonArray array = new JsonParser().parse(reader).getAsJsonArray();
+    for (JsonElement element : array) {
+      JsonObject benchmark = element.getAsJsonObject();
+      result.put(key(benchmark), benchmark);
+    }
+    return result;
+  }
+
+  private static String key(JsonObject benchmark) {
+    StringBuilder sb = new StringBuilder(benchmark.get("benchmark").getAsString());
+    if (benchmark.has("params")) {
+      Map<String, String> params = new TreeMap<>();
+      for (Map.Entry<String, JsonElement> param : benchmark.getAsJsonObject("params").entrySet()) {
+        params.put(param.getKey(), param.getValue().getAsString());
+      }
+      sb.append(params);
+    }
+    return sb.toString();
+  }
+
+  private static double score(JsonObject metric) {
+    return metric.get("score").getAsDouble();
+  }
+
+  private static JsonObject allocation(JsonObject benchmark) {
+    JsonObject secondaryMetrics = benchmark.getAsJsonObject("secondaryMetrics");
+    return secondaryMetrics == null ? null : secondaryMetrics.getAsJsonObject(ALLOCATION_METRIC);
+  }
+
+  static class Comparison {
+
+    private final String benchmark;
+    private final String unit;
+    private final double baseline;
+    private final double current;
+    private final boolean higherIsBetter;
+    private final double tolerance;
+
+    Comparison(String benchmark, String unit, double baseline, double current, boolean higherIsBetter, double tolerance) {
+      this.benchmark = benchmark;
+      this.unit = unit;
+      this.baseline = baseline;
+      this.current = current;
+      this.higherIsBetter = higherIsBetter;
+      this.tolerance = tolerance;
+    }
+
+    String benchmark() {
+      return benchmark;
+    }
+
+    String unit() {
+      return unit;
+    }
+
+    /**
+     * Relative change of the score, positive when the score improved.
+     */
+    double improvement() {
+      if (baseline == 0) {
+        return 0;
+      }
+      double change = (current - baseline) / baseline;
+      return higherIsBetter ? change : -change;
+    }
+
+    boolean isRegression() {
+      return improvement() < -tolerance;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%s %-8s %s: %.3f -> %.3f (%+.1f%%)", isRegression() ? "REGRESSION" : "ok        ", unit, benchmark, baseline, current, improvement() * 100 + 0.0);
+    }
+
+  }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+import org.sonar.api.config.Settings;
+import org.sonar.plugins.csharp.CSharpCodeCoverageProvider.CSharpParallelCoverageReportImportSensor;
+import org.sonar.plugins.csharp.CSharpPlugin;
+import org.sonar.plugins.csharp.InputFileIndex;
+
+/**
+ * Import of a dotCover HTML report made of one HTML report per source file, by the parallel coverage import sensor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(1)
+public class DotCoverImportBenchmark {
+
+  private static final int SOURCE_FILES = 5000;
+
+  @Param({"2", "8"})
+  public int threads;
+
+  private Path baseDir;
+  private List<String> relativePaths;
+  private String content;
+  private CSharpParallelCoverageReportImportSensor sensor;
+  private SensorContextTester context;
+
+  @Setup
+  public void setup() throws IOException {
+    baseDir = Fixtures.createTempDirectory("csharp-benchmark-dotcover");
+    content = Fixtures.fileContent();
+    relativePaths = new ArrayList<>();
+    List<String> files = new ArrayList<>();
+    for (int i = 0; i < SOURCE_FILES; i++) {
+      String relativePath = "Project" + (i % 10) + "/File" + i + ".cs";
+      Path path = baseDir.resolve(relativePath);
+      Files.createDirectories(path.getParent());
+      Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+      files.add(path.toAbsolutePath().toString());
+      relativePaths.add(relativePath);
+    }
+    Fixtures.writeDotCoverReport(baseDir.resolve("dotcover.html"), files);
+
+    Settings settings = new Settings();
+    settings.setProperty("sonar.cs.dotcover.reportsPaths", "dotcover.html");
+    settings.setProperty("sonar.cs.coverage.threads", threads);
+    sensor = new CSharpParallelCoverageReportImportSensor(settings, new InputFileIndex());
+  }
+
+  @Setup(Level.Invocation)
+  public void newContext() {
+    context = SensorContextTester.create(baseDir);
+    for (String relativePath : relativePaths) {
+      context.fileSystem().add(new DefaultInputFile(context.module().key(), relativePath)
+        .setLanguage(CSharpPlugin.LANGUAGE_KEY)
+        .initMetadata(content));
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    Fixtures.delete(baseDir);
+  }
+
+  @Benchmark
+  public SensorContextTester importCoverage() {
+    sensor.execute(context);
+    return context;
+  }
+
+}
@@ -0,0 +1,321 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp.benchmarks;
+
+import com.google.protobuf.AbstractMessageLite;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.sonar.api.config.PropertyDefinition;
+import org.sonar.api.profiles.RulesProfile;
+import org.sonar.api.profiles.XMLProfileParser;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.rule.Severity;
+import org.sonar.api.rules.Rule;
+import org.sonar.api.rules.RuleFinder;
+import org.sonar.api.rules.RuleQuery;
+import org.sonar.api.server.rule.RulesDefinition;
+import org.sonar.api.utils.ValidationMessages;
+import org.sonar.plugins.csharp.CSharpSonarWayProfile;
+import org.sonarsource.dotnet.protobuf.SonarAnalyzer.CopyPasteTokenInfo;
+import org.sonarsource.dotnet.protobuf.SonarAnalyzer.FileIssues;
+import org.sonarsource.dotnet.protobuf.SonarAnalyzer.MetricsInfo;
+import org.sonarsource.dotnet.protobuf.SonarAnalyzer.SymbolReferenceInfo;
+import org.sonarsource.dotnet.protobuf.SonarAnalyzer.TextRange;
+import org.sonarsource.dotnet.protobuf.SonarAnalyzer.TokenType;
+import org.sonarsource.dotnet.protobuf.SonarAnalyzer.TokenTypeInfo;
+
+/**
+ * Synthetic inputs of realistic size for the benchmarks.
+ */
+final class Fixtures {
+
+  static final String CUSTOM_ROSLYN_REPOSITORY_KEY = "roslyn.custom";
+  static final int LINES_PER_FILE = 200;
+
+  private static final String CUSTOM_ROSLYN_PARTIAL_REPO_KEY = "custom";
+  private static final String LINE = "    public int Method(int value) { return value + 1; }";
+
+  private Fixtures() {
+  }
+
+  static RulesDefinition customRoslynRules(int count) {
+    return context -> {
+      RulesDefinition.NewRepository repository = context.createRepository(CUSTOM_ROSLYN_REPOSITORY_KEY, "cs").setName("Custom Roslyn analyzer");
+      for (int i = 0; i < count; i++) {
+        String key = String.format("CR%05d", i);
+        repository.createRule(key).setName("Custom rule " + key).setMarkdownDescription("Description of the custom rule " + key).setSeverity(Severity.MAJOR);
+      }
+      repository.done();
+    };
+  }
+
+  static List<PropertyDefinition> customRoslynProperties() {
+    List<PropertyDefinition> result = new ArrayList<>();
+    result.add(hidden(CUSTOM_ROSLYN_PARTIAL_REPO_KEY + ".pluginKey", "customroslyn"));
+    result.add(hidden(CUSTOM_ROSLYN_PARTIAL_REPO_KEY + ".pluginVersion", "1.0.0"));
+    result.add(hidden(CUSTOM_ROSLYN_PARTIAL_REPO_KEY + ".staticResourceName", "Custom.zip"));
+    result.add(hidden(CUSTOM_ROSLYN_PARTIAL_REPO_KEY + ".analyzerId", "Custom.Analyzer"));
+    result.add(hidden(CUSTOM_ROSLYN_PARTIAL_REPO_KEY + ".ruleNamespace", "Custom.Analyzer"));
+    result.add(hidden(CUSTOM_ROSLYN_PARTIAL_REPO_KEY + ".nuget.packageId", "Custom.Analyzer"));
+    result.add(hidden(CUSTOM_ROSLYN_PARTIAL_REPO_KEY + ".nuget.packageVersion", "1.0.0"));
+    return result;
+  }
+
+  private static PropertyDefinition hidden(String key, String defaultValue) {
+    return PropertyDefinition.builder(key).defaultValue(defaultValue).hidden().build();
+  }
+
+  /**
+   * The Sonar way profile shipped with the plugin, in which every other active rule of the given definitions is activated as well.
+   */
+  static RulesProfile sonarWayProfile(RulesDefinition... rulesDefinitions) {
+    RulesDefinition.Context context = new RulesDefinition.Context();
+    for (RulesDefinition rulesDefinition : rulesDefinitions) {
+      rulesDefinition.define(context);
+    }
+    Map<RuleKey, Rule> rules = new HashMap<>();
+    for (RulesDefinition.Repository repository : context.repositories()) {
+      for (RulesDefinition.Rule definition : repository.rules()) {
+        Rule rule = Rule.create(repository.key(), definition.key(), definition.name());
+        for (RulesDefinition.Param param : definition.params()) {
+          rule.createParameter(param.key()).setDefaultValue(param.defaultValue());
+        }
+        rules.put(RuleKey.of(repository.key(), definition.key()), rule);
+      }
+    }
+
+    RulesProfile profile = new CSharpSonarWayProfile(new XMLProfileParser(new MapRuleFinder(rules))).createProfile(ValidationMessages.create());
+    int i = 0;
+    for (Rule rule : rules.values()) {
+      if (CUSTOM_ROSLYN_REPOSITORY_KEY.equals(rule.getRepositoryKey()) && i++ % 2 == 0) {
+        profile.activateRule(rule, null);
+      }
+    }
+    return profile;
+  }
+
+  static String fileContent() {
+    StringBuilder sb = new StringBuilder();
+    sb.append("public class Foo {\n");
+    for (int line = 1; line < LINES_PER_FILE; line++) {
+      sb.append(LINE).append("\n");
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Writes the protobuf reports of the analyzer for the given absolute file paths, as SonarAnalyzer.Scanner would.
+   */
+  static void writeProtobufReports(Path reportDir, List<String> files) throws IOException {
+    Files.createDirectories(reportDir);
+    List<MetricsInfo> metrics = new ArrayList<>();
+    List<FileIssues> issues = new ArrayList<>();
+    List<TokenTypeInfo> highlights = new ArrayList<>();
+    List<SymbolReferenceInfo> symbols = new ArrayList<>();
+    List<CopyPasteTokenInfo> cpdTokens = new ArrayList<>();
+
+    for (int i = 0; i < files.size(); i++) {
+      String file = files.get(i);
+      MetricsInfo.Builder fileMetrics = MetricsInfo.newBuilder()
+        .setFilePath(file)
+        .setClassCount(1)
+        .setStatementCount(LINES_PER_FILE)
+        .setFunctionCount(LINES_PER_FILE - 1)
+        .setComplexity(LINES_PER_FILE);
+      FileIssues.Builder fileIssues = FileIssues.newBuilder().setFilePath(file);
+      TokenTypeInfo.Builder fileHighlights = TokenTypeInfo.newBuilder().setFilePath(file);
+      SymbolReferenceInfo.Builder fileSymbols = SymbolReferenceInfo.newBuilder().setFilePath(file);
+      CopyPasteTokenInfo.Builder fileCpdTokens = CopyPasteTokenInfo.newBuilder().setFilePath(file);
+      for (int line = 2; line <= LINES_PER_FILE; line++) {
+        fileMetrics.addCodeLine(line);
+        if (line % 10 == 0) {
+          fileIssues.addIssue(FileIssues.Issue.newBuilder().setId("S" + (100 + line % 50)).setMessage("Issue on line " + line).setLocation(range(line, 15, 21)));
+        }
+        fileHighlights.addTokenInfo(TokenTypeInfo.TokenInfo.newBuilder().setTokenType(TokenType.KEYWORD).setTextRange(range(line, 4, 10)));
+        fileHighlights.addTokenInfo(TokenTypeInfo.TokenInfo.newBuilder().setTokenType(TokenType.KEYWORD).setTextRange(range(line, 11, 14)));
+        fileSymbols.addReference(SymbolReferenceInfo.SymbolReference.newBuilder().setDeclaration(range(line, 26, 31)).addReference(range(line, 42, 47)));
+        fileCpdTokens.addTokenInfo(CopyPasteTokenInfo.TokenInfo.newBuilder().setTokenValue("public").setTextRange(range(line, 4, 10)));
+        fileCpdTokens.addTokenInfo(CopyPasteTokenInfo.TokenInfo.newBuilder().setTokenValue("int").setTextRange(range(line, 11, 14)));
+        fileCpdTokens.addTokenInfo(CopyPasteTokenInfo.TokenInfo.newBuilder().setTokenValue("$id").setTextRange(range(line, 15, 21)));
+      }
+      metrics.add(fileMetrics.build());
+      issues.add(fileIssues.build());
+      highlights.add(fileHighlights.build());
+      symbols.add(fileSymbols.build());
+      cpdTokens.add(fileCpdTokens.build());
+    }
+
+    write(reportDir.resolve("metrics.pb"), metrics);
+    write(reportDir.resolve("issues.pb"), issues);
+    write(reportDir.resolve("token-type.pb"), highlights);
+    write(reportDir.resolve("symbol-reference.pb"), symbols);
+    write(reportDir.resolve("token-cpd.pb"), cpdTokens);
+  }
+
+  private static TextRange.Builder range(int line, int startOffset, int endOffset) {
+    return TextRange.newBuilder().setStartLine(line).setEndLine(line).setStartOffset(startOffset).setEndOffset(endOffset);
+  }
+
+  private static void write(Path path, List<? extends AbstractMessageLite> messages) throws IOException {
+    try (OutputStream output = Files.newOutputStream(path)) {
+      for (AbstractMessageLite message : messages) {
+        message.writeDelimitedTo(output);
+      }
+    }
+  }
+
+  /**
+   * Writes a SARIF 1.0 report with the given number of results, spread over the given absolute file paths.
+   */
+  static void writeSarifReport(Path path, int results, List<String> files) throws IOException {
+    try (Writer writer = new BufferedWriter(Files.newBufferedWriter(path, StandardCharsets.UTF_8))) {
+      writer.write("{\n  \"version\": \"1.0\",\n  \"runs\": [\n    {\n      \"tool\": {\"name\": \"Synthetic\"},\n      \"results\": [\n");
+      for (int i = 0; i < results; i++) {
+        if (i > 0) {
+          writer.write(",\n");
+        }
+        int line = 2 + i % (LINES_PER_FILE - 1);
+        writer.write("        {\"ruleId\": \"S" + (100 + i % 50) + "\", \"level\": \"warning\", \"message\": \"Synthetic issue number " + i + "\", " +
+          "\"locations\": [{\"resultFile\": {\"uri\": \"" + escapeJson(files.get(i % files.size())) + "\", " +
+          "\"region\": {\"startLine\": " + line + ", \"startColumn\": 16, \"endLine\": " + line + ", \"endColumn\": 22}}}]}");
+      }
+      writer.write("\n      ]\n    }\n  ]\n}\n");
+    }
+  }
+
+  /**
+   * Writes a dotCover HTML report, made of its index and of one HTML report per given absolute file path, with alternating covered and uncovered ranges.
+   */
+  static void writeDotCoverReport(Path index, List<String> files) throws IOException {
+    Files.write(index, "<html><head><title>dotCover report</title></head></html>".getBytes(StandardCharsets.UTF_8));
+    String indexName = index.getFileName().toString();
+    Path sources = Files.createDirectories(index.resolveSibling(indexName.substring(0, indexName.lastIndexOf('.'))).resolve("src"));
+    for (int i = 0; i < files.size(); i++) {
+      try (Writer writer = new BufferedWriter(Files.newBufferedWriter(sources.resolve(i + ".html"), StandardCharsets.UTF_8))) {
+        writer.write("<!DOCTYPE html>\n<html>\n<head>\n<title>" + files.get(i) + "</title>\n</head>\n<body>\n<pre>\n");
+        for (int line = 1; line <= LINES_PER_FILE; line++) {
+          writer.write("<span id=\"" + line + "\">" + LINE + "</span>\n");
+        }
+        writer.write("</pre>\n<script type=\"text/javascript\">\n$(document).ready(function () { highlightRanges([");
+        for (int line = 2; line <= LINES_PER_FILE; line++) {
+          writer.write((line > 2 ? "," : "") + "[" + line + ",5," + line + ",55," + (line % 3 == 0 ? 0 : 1) + "]");
+        }
+        writer.write("]); });\n</script>\n</body>\n</html>\n");
+      }
+    }
+  }
+
+  /**
+   * Writes an OpenCover report with one sequence point per line of each given absolute file path, every third line being uncovered.
+   */
+  static void writeOpenCoverReport(Path path, List<String> files, int linesPerFile) throws IOException {
+    try (Writer writer = new BufferedWriter(Files.newBufferedWriter(path, StandardCharsets.UTF_8))) {
+      writer.write("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<CoverageSession>\n  <Modules>\n    <Module>\n      <Files>\n");
+      for (int i = 0; i < files.size(); i++) {
+        writer.write("        <File uid=\"" + (i + 1) + "\" fullPath=\"" + files.get(i) + "\" />\n");
+      }
+      writer.write("      </Files>\n      <Classes>\n        <Class>\n          <Methods>\n");
+      for (int i = 0; i < files.size(); i++) {
+        writer.write("            <Method>\n              <FileRef uid=\"" + (i + 1) + "\" />\n              <SequencePoints>\n");
+        for (int line = 1; line <= linesPerFile; line++) {
+          writer.write("                <SequencePoint vc=\"" + (line % 3 == 0 ? 0 : 1) + "\" sl=\"" + line + "\" />\n");
+        }
+        writer.write("              </SequencePoints>\n            </Method>\n");
+      }
+      writer.write("          </Methods>\n        </Class>\n      </Classes>\n    </Module>\n  </Modules>\n</CoverageSession>\n");
+    }
+  }
+
+  private static String escapeJson(String value) {
+    return value.replace("\\", "\\\\").replace("\"", "\\\"");
+  }
+
+  static Path createTempDirectory(String prefix) {
+    try {
+      return Files.createTempDirectory(prefix);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  static void delete(Path directory) {
+    try {
+      Files.walk(directory)
+        .sorted(Comparator.reverseOrder())
+        .forEach(path -> path.toFile().delete());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static class MapRuleFinder implements RuleFinder {
+
+    private final Map<RuleKey, Rule> rules;
+
+    MapRuleFinder(Map<RuleKey, Rule> rules) {
+      this.rules = rules;
+    }
+
+    @Override
+    public Rule findById(int ruleId) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Rule findByKey(String repositoryKey, String key) {
+      return findByKey(RuleKey.of(repositoryKey, key));
+    }
+
+    @Override
+    public Rule findByKey(RuleKey key) {
+      return rules.get(key);
+    }
+
+    @Override
+    public Rule find(RuleQuery query) {
+      Collection<Rule> result = findAll(query);
+      return result.isEmpty() ? null : result.iterator().next();
+    }
+
+    @Override
+    public Collection<Rule> findAll(RuleQuery query) {
+      return rules.values().stream()
+        .filter(rule -> query.getRepositoryKey() == null || query.getRepositoryKey().equals(rule.getRepositoryKey()))
+        .filter(rule -> query.getKey() == null || query.getKey().equals(rule.getKey()))
+        .filter(rule -> query.getConfigKey() == null || query.getConfigKey().equals(rule.getConfigKey()))
+        .collect(Collectors.toList());
+    }
+
+  }
+
+}
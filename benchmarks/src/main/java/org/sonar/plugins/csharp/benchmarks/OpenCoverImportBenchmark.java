@@ -0,0 +1,106 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+import org.sonar.api.config.Settings;
+import org.sonar.plugins.csharp.CSharpCodeCoverageProvider.CSharpParallelCoverageReportImportSensor;
+import org.sonar.plugins.csharp.InputFileIndex;
+
+/**
+ * Aggregation of a large OpenCover report by the parallel coverage import sensor. The files of the report are not indexed,
+ * so that the coverage is only parsed and aggregated, not saved.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(1)
+public class OpenCoverImportBenchmark {
+
+  private static final String SMALL_HEAP = "32m";
+  private static final int LINES_PER_FILE = 2000;
+
+  @Param({"500"})
+  public int files;
+
+  @Param({"2"})
+  public int threads;
+
+  private Path baseDir;
+  private CSharpParallelCoverageReportImportSensor sensor;
+  private SensorContextTester context;
+
+  @Setup
+  public void setup() throws IOException {
+    baseDir = Fixtures.createTempDirectory("csharp-benchmark-opencover");
+    List<String> paths = new ArrayList<>();
+    for (int i = 0; i < files; i++) {
+      paths.add(baseDir.resolve("File" + i + ".cs").toAbsolutePath().toString());
+    }
+    Fixtures.writeOpenCoverReport(baseDir.resolve("opencover.xml"), paths, LINES_PER_FILE);
+
+    Settings settings = new Settings();
+    settings.setProperty("sonar.cs.opencover.reportsPaths", "opencover.xml");
+    settings.setProperty("sonar.cs.coverage.threads", threads);
+    sensor = new CSharpParallelCoverageReportImportSensor(settings, new InputFileIndex());
+    context = SensorContextTester.create(baseDir);
+  }
+
+  @TearDown
+  public void tearDown() {
+    Fixtures.delete(baseDir);
+  }
+
+  @Benchmark
+  public SensorContextTester aggregate() {
+    sensor.execute(context);
+    return context;
+  }
+
+  /**
+   * Same as {@link #aggregate()} in a heap much smaller than the boxed line hits of the report, around 35 MB for the default parameters,
+   * which only succeeds when the hits are kept in primitive arrays.
+   */
+  @Benchmark
+  @Fork(value = 1, jvmArgsAppend = "-Xmx" + SMALL_HEAP)
+  public SensorContextTester aggregateInSmallHeap() {
+    return aggregate();
+  }
+
+}
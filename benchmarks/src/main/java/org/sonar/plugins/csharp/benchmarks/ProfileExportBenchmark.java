@@ -0,0 +1,104 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp.benchmarks;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.api.config.PropertyDefinition;
+import org.sonar.api.config.PropertyDefinitions;
+import org.sonar.api.config.Settings;
+import org.sonar.api.profiles.RulesProfile;
+import org.sonar.api.server.rule.RulesDefinition;
+import org.sonar.plugins.csharp.CSharpSonarRulesDefinition;
+import org.sonar.plugins.csharp.RoslynProfileExporter;
+import org.sonar.plugins.csharp.SonarLintProfileExporter;
+
+/**
+ * Export of the Sonar way profile, in which half of the custom Roslyn rules are activated as well.
+ * The cold export uses a new exporter on each invocation, as happens on the first download after a server start,
+ * while the warm export reuses the same exporter, as happens on all the following downloads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ProfileExportBenchmark {
+
+  @Param({"0", "5000"})
+  public int customRoslynRules;
+
+  private RulesDefinition[] rulesDefinitions;
+  private Settings settings;
+  private RulesProfile profile;
+  private RoslynProfileExporter warmRoslynExporter;
+  private SonarLintProfileExporter sonarLintExporter;
+
+  @Setup
+  public void setup() {
+    CSharpSonarRulesDefinition csharpRulesDefinition = new CSharpSonarRulesDefinition();
+    csharpRulesDefinition.define(new RulesDefinition.Context());
+    rulesDefinitions = new RulesDefinition[] {csharpRulesDefinition, Fixtures.customRoslynRules(customRoslynRules)};
+
+    List<PropertyDefinition> properties = new ArrayList<>(RoslynProfileExporter.sonarLintRepositoryProperties());
+    properties.addAll(Fixtures.customRoslynProperties());
+    settings = new Settings(new PropertyDefinitions(properties));
+
+    profile = Fixtures.sonarWayProfile(rulesDefinitions);
+    warmRoslynExporter = new RoslynProfileExporter(settings, rulesDefinitions);
+    sonarLintExporter = new SonarLintProfileExporter(csharpRulesDefinition);
+  }
+
+  @Benchmark
+  public String roslynExportCold() {
+    StringWriter writer = new StringWriter();
+    new RoslynProfileExporter(settings, rulesDefinitions).exportProfile(profile, writer);
+    return writer.toString();
+  }
+
+  @Benchmark
+  public String roslynExportWarm() {
+    StringWriter writer = new StringWriter();
+    warmRoslynExporter.exportProfile(profile, writer);
+    return writer.toString();
+  }
+
+  @Benchmark
+  public String sonarLintExport() {
+    StringWriter writer = new StringWriter();
+    sonarLintExporter.exportProfile(profile, writer);
+    return writer.toString();
+  }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.plugins.csharp.StreamingSarifParser;
+import org.sonarsource.dotnet.shared.sarif.SarifParserCallback;
+import org.sonarsource.dotnet.shared.sarif.SarifParserFactory;
+
+/**
+ * Parsing of a Roslyn SARIF report, by the streaming parser of the plugin and by the parser of the shared library which loads the whole report.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(1)
+public class SarifImportBenchmark {
+
+  private static final String SMALL_HEAP = "32m";
+
+  @Param({"100000"})
+  public int results;
+
+  private Path directory;
+  private Path report;
+
+  @Setup
+  public void setup() throws IOException {
+    directory = Fixtures.createTempDirectory("csharp-benchmark-sarif");
+    List<String> files = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      files.add(directory.resolve("File" + i + ".cs").toAbsolutePath().toString());
+    }
+    report = directory.resolve("roslyn-report.json");
+    Fixtures.writeSarifReport(report, results, files);
+  }
+
+  @TearDown
+  public void tearDown() {
+    Fixtures.delete(directory);
+  }
+
+  @Benchmark
+  public long streaming() {
+    CountingCallback callback = new CountingCallback();
+    new StreamingSarifParser(report.toFile()).parse(callback);
+    return callback.issues;
+  }
+
+  /**
+   * Same as {@link #streaming()} in a heap much smaller than the report, which only succeeds when the parser does not retain the results.
+   */
+  @Benchmark
+  @Fork(value = 1, jvmArgsAppend = "-Xmx" + SMALL_HEAP)
+  public long streamingInSmallHeap() {
+    return streaming();
+  }
+
+  @Benchmark
+  public long sharedLibrary() {
+    CountingCallback callback = new CountingCallback();
+    SarifParserFactory.create(report.toFile()).parse(callback);
+    return callback.issues;
+  }
+
+  private static class CountingCallback implements SarifParserCallback {
+
+    private long issues = 0;
+
+    @Override
+    public void onProjectIssue(String ruleId, String message) {
+      issues++;
+    }
+
+    @Override
+    public void onFileIssue(String ruleId, String absolutePath, String message) {
+      issues++;
+    }
+
+    @Override
+    public void onIssue(String ruleId, String absolutePath, String message, int line, int column, int endLine, int endColumn) {
+      issues++;
+    }
+
+  }
+
+}
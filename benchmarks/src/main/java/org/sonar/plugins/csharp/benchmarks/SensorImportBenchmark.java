@@ -0,0 +1,182 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.api.CoreProperties;
+import org.sonar.api.SonarQubeVersion;
+import org.sonar.api.batch.bootstrap.ProjectDefinition;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+import org.sonar.api.config.Settings;
+import org.sonar.api.issue.NoSonarFilter;
+import org.sonar.api.measures.FileLinesContext;
+import org.sonar.api.measures.FileLinesContextFactory;
+import org.sonar.api.resources.Resource;
+import org.sonar.plugins.csharp.ActiveRoslynRulesIndex;
+import org.sonar.plugins.csharp.AnalyzerDaemon;
+import org.sonar.plugins.csharp.CSharpConfiguration;
+import org.sonar.plugins.csharp.CSharpPlugin;
+import org.sonar.plugins.csharp.CSharpSensor;
+import org.sonar.plugins.csharp.InputFileIndex;
+import org.sonarsource.dotnet.shared.plugins.EncodingPerFile;
+
+/**
+ * Import of the protobuf reports produced by MSBuild for a solution, with one report directory per project.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(1)
+public class SensorImportBenchmark {
+
+  private static final int PROJECTS = 10;
+
+  @Param({"1000"})
+  public int files;
+
+  @Param({"1", "4"})
+  public int threads;
+
+  private Path baseDir;
+  private Path analyzerWorkDir;
+  private Path reportsDir;
+  private List<String> relativePaths;
+  private String content;
+  private CSharpSensor sensor;
+  private SensorContextTester context;
+
+  @Setup
+  public void setup() throws IOException {
+    baseDir = Fixtures.createTempDirectory("csharp-benchmark-sources");
+    analyzerWorkDir = Fixtures.createTempDirectory("csharp-benchmark-reports");
+    reportsDir = analyzerWorkDir.resolve("output-cs");
+    content = Fixtures.fileContent();
+    relativePaths = new ArrayList<>();
+
+    int filesPerProject = files / PROJECTS;
+    for (int project = 0; project < PROJECTS; project++) {
+      List<String> projectFiles = new ArrayList<>();
+      for (int file = 0; file < filesPerProject; file++) {
+        String relativePath = "Project" + project + "/File" + file + ".cs";
+        Path path = baseDir.resolve(relativePath);
+        Files.createDirectories(path.getParent());
+        Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+        projectFiles.add(path.toAbsolutePath().toString());
+        relativePaths.add(relativePath);
+      }
+      // As with MSBuild, the first project reports directly in the output directory, the other ones in a sub-directory each
+      Fixtures.writeProtobufReports(project == 0 ? reportsDir : reportsDir.resolve("Project" + project), projectFiles);
+    }
+
+    Settings settings = new Settings();
+    settings.setProperty("sonar.cs.analyzer.projectOutPath", analyzerWorkDir.toAbsolutePath().toString());
+    settings.setProperty("sonar.cs.import.threads", threads);
+    sensor = new CSharpSensor(settings, null, new NoOpFileLinesContextFactory(), new NoSonarFilter(), new CSharpConfiguration(settings),
+      new EncodingPerFile(ProjectDefinition.create().setProperty(CoreProperties.ENCODING_PROPERTY, "UTF-8"), new SonarQubeVersion(SonarQubeVersion.V5_6)),
+      new ActiveRoslynRulesIndex(), new InputFileIndex(), new AnalyzerDaemon());
+  }
+
+  @Setup(Level.Invocation)
+  public void newContext() {
+    context = SensorContextTester.create(baseDir);
+    for (String relativePath : relativePaths) {
+      context.fileSystem().add(new DefaultInputFile(context.module().key(), relativePath)
+        .setLanguage(CSharpPlugin.LANGUAGE_KEY)
+        .initMetadata(content));
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    Fixtures.delete(baseDir);
+    Fixtures.delete(analyzerWorkDir);
+  }
+
+  @Benchmark
+  public SensorContextTester importResults() {
+    sensor.importResults(context, reportsDir, true);
+    return context;
+  }
+
+  private static class NoOpFileLinesContextFactory implements FileLinesContextFactory {
+
+    private static final FileLinesContext NO_OP = new FileLinesContext() {
+      @Override
+      public void setIntValue(String metricKey, int line, int value) {
+        // Measures are not stored
+      }
+
+      @Override
+      public Integer getIntValue(String metricKey, int line) {
+        return null;
+      }
+
+      @Override
+      public void setStringValue(String metricKey, int line, String value) {
+        // Measures are not stored
+      }
+
+      @Override
+      public String getStringValue(String metricKey, int line) {
+        return null;
+      }
+
+      @Override
+      public void save() {
+        // Measures are not stored
+      }
+    };
+
+    @Override
+    public FileLinesContext createFor(Resource resource) {
+      return NO_OP;
+    }
+
+    @Override
+    public FileLinesContext createFor(InputFile inputFile) {
+      return NO_OP;
+    }
+
+  }
+
+}
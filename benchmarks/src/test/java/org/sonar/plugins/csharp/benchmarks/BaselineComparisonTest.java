@@ -0,0 +1,108 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp.benchmarks;
+
+import java.io.StringReader;
+import java.util.List;
+import org.junit.Test;
+import org.sonar.plugins.csharp.benchmarks.BaselineComparison.Comparison;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+
+public class BaselineComparisonTest {
+
+  @Test
+  public void throughput_regression() {
+    List<Comparison> comparisons = compare(
+      result("a.B.export", "thrpt", "ops/s", 100, null),
+      result("a.B.export", "thrpt", "ops/s", 85, null));
+
+    assertThat(comparisons).hasSize(1);
+    assertThat(comparisons.get(0).isRegression()).isTrue();
+    assertThat(comparisons.get(0).improvement()).isCloseTo(-0.15, offset(0.0001));
+  }
+
+  @Test
+  public void throughput_within_tolerance() {
+    assertThat(compare(
+      result("a.B.export", "thrpt", "ops/s", 100, null),
+      result("a.B.export", "thrpt", "ops/s", 95, null)).get(0).isRegression()).isFalse();
+  }
+
+  @Test
+  public void time_regression() {
+    assertThat(compare(
+      result("a.B.import", "ss", "ms/op", 100, null),
+      result("a.B.import", "ss", "ms/op", 120, null)).get(0).isRegression()).isTrue();
+    assertThat(compare(
+      result("a.B.import", "ss", "ms/op", 100, null),
+      result("a.B.import", "ss", "ms/op", 50, null)).get(0).isRegression()).isFalse();
+  }
+
+  @Test
+  public void allocation_regression() {
+    List<Comparison> comparisons = compare(
+      result("a.B.export", "thrpt", "ops/s", 100, 1000.0),
+      result("a.B.export", "thrpt", "ops/s", 110, 1500.0));
+
+    assertThat(comparisons).hasSize(2);
+    assertThat(comparisons.get(0).isRegression()).isFalse();
+    assertThat(comparisons.get(1).unit()).isEqualTo("B/op");
+    assertThat(comparisons.get(1).isRegression()).isTrue();
+  }
+
+  @Test
+  public void only_common_benchmarks_with_same_params_are_compared() {
+    List<Comparison> comparisons = compare(
+      "[" + result("a.B.export", "thrpt", "ops/s", 100, null, "\"rules\": \"0\"") + "]",
+      "[" + result("a.B.export", "thrpt", "ops/s", 10, null, "\"rules\": \"5000\"") + ","
+        + result("a.B.export", "thrpt", "ops/s", 100, null, "\"rules\": \"0\"") + ","
+        + result("a.B.other", "thrpt", "ops/s", 1, null) + "]");
+
+    assertThat(comparisons).hasSize(1);
+    assertThat(comparisons.get(0).benchmark()).isEqualTo("a.B.export{rules=0}");
+    assertThat(comparisons.get(0).isRegression()).isFalse();
+  }
+
+  private static List<Comparison> compare(String baseline, String current) {
+    if (!baseline.startsWith("[")) {
+      baseline = "[" + baseline + "]";
+      current = "[" + current + "]";
+    }
+    return BaselineComparison.compare(new StringReader(baseline), new StringReader(current), 0.10);
+  }
+
+  private static String result(String benchmark, String mode, String unit, double score, Double allocation, String... params) {
+    StringBuilder sb = new StringBuilder();
+    sb.append("{\"benchmark\": \"").append(benchmark).append("\", \"mode\": \"").append(mode).append("\", ");
+    if (params.length > 0) {
+      sb.append("\"params\": {").append(String.join(", ", params)).append("}, ");
+    }
+    sb.append("\"primaryMetric\": {\"score\": ").append(score).append(", \"scoreUnit\": \"").append(unit).append("\"}");
+    if (allocation != null) {
+      sb.append(", \"secondaryMetrics\": {\"").append(BaselineComparison.ALLOCATION_METRIC).append("\": {\"score\": ").append(allocation)
+        .append(", \"scoreUnit\": \"B/op\"}}");
+    }
+    sb.append("}");
+    return sb.toString();
+  }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableMultimap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.sonar.api.rule.RuleKey;
+
+/**
+ * Immutable view of the active Roslyn rules, grouped by partial repository key, with the repository key of each Roslyn rule id.
+ */
+public final class ActiveRoslynRules {
+
+  private final ImmutableMultimap<String, RuleKey> byPartialRepoKey;
+  private final ImmutableMap<String, String> repositoryKeyByRuleId;
+  private final String duplicateRuleIdError;
+
+  private ActiveRoslynRules(Iterable<RuleKey> activeRules) {
+    byPartialRepoKey = RoslynProfileExporter.activeRoslynRulesByPartialRepoKey(activeRules);
+
+    Map<String, RuleKey> ruleKeys = new LinkedHashMap<>();
+    String error = null;
+    for (RuleKey activeRoslynRuleKey : byPartialRepoKey.values()) {
+      RuleKey previous = ruleKeys.putIfAbsent(activeRoslynRuleKey.rule(), activeRoslynRuleKey);
+      if (previous != null && error == null) {
+        error = "Rule keys must be unique, but \"" + activeRoslynRuleKey.rule() +
+          "\" is defined in both the \"" + previous.repository() + "\" and \"" + activeRoslynRuleKey.repository() +
+          "\" rule repositories.";
+      }
+    }
+
+    ImmutableMap.Builder<String, String> repositoryKeys = ImmutableMap.builder();
+    for (RuleKey ruleKey : ruleKeys.values()) {
+      repositoryKeys.put(ruleKey.rule(), ruleKey.repository());
+    }
+    repositoryKeyByRuleId = repositoryKeys.build();
+    duplicateRuleIdError = error;
+  }
+
+  public static ActiveRoslynRules of(Iterable<RuleKey> activeRules) {
+    return new ActiveRoslynRules(activeRules);
+  }
+
+  public ImmutableMultimap<String, RuleKey> byPartialRepoKey() {
+    return byPartialRepoKey;
+  }
+
+  /**
+   * @throws IllegalArgumentException when the same rule id is active in several Roslyn repositories
+   */
+  public Map<String, String> repositoryKeyByRoslynRuleKey() {
+    checkUniqueRuleIds();
+    return repositoryKeyByRuleId;
+  }
+
+  private void checkUniqueRuleIds() {
+    if (duplicateRuleIdError != null) {
+      throw new IllegalArgumentException(duplicateRuleIdError);
+    }
+  }
+
+}
@@ -0,0 +1,60 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import org.sonar.api.batch.BatchSide;
+import org.sonar.api.batch.InstantiationStrategy;
+import org.sonar.api.batch.rule.ActiveRule;
+import org.sonar.api.batch.rule.ActiveRules;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Builds the {@link ActiveRoslynRules} once per analysis, and shares them between all the modules analyzed with the same active rules.
+ */
+@BatchSide
+@InstantiationStrategy(InstantiationStrategy.PER_BATCH)
+public class ActiveRoslynRulesIndex {
+
+  private volatile Entry entry;
+
+  public ActiveRoslynRules get(ActiveRules activeRules) {
+    Entry current = entry;
+    if (current == null || current.activeRules != activeRules) {
+      current = new Entry(activeRules, ActiveRoslynRules.of(activeRules.findAll()
+        .stream()
+        .map(ActiveRule::ruleKey)
+        .collect(toList())));
+      entry = current;
+    }
+    return current.rules;
+  }
+
+  private static class Entry {
+    private final ActiveRules activeRules;
+    private final ActiveRoslynRules rules;
+
+    private Entry(ActiveRules activeRules, ActiveRoslynRules rules) {
+      this.activeRules = activeRules;
+      this.rules = rules;
+    }
+  }
+
+}
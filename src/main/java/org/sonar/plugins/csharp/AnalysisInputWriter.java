@@ -0,0 +1,170 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.CheckForNull;
+import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.rule.ActiveRule;
+import org.sonar.api.batch.sensor.SensorContext;
+
+/**
+ * Writes the same analysis input as {@link org.sonarsource.dotnet.shared.plugins.AnalysisInputXml#generate}, byte for byte,
+ * but directly to the file as the rules and the files are iterated, rather than building the whole document in memory first.
+ */
+final class AnalysisInputWriter {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final String NEW_LINE = "\r\n";
+
+  private AnalysisInputWriter() {
+  }
+
+  static void write(Path analysisInput, boolean includeSettings, boolean ignoreHeaderComments, boolean includeRules, SensorContext context,
+    String repositoryKey, String languageKey, String encoding) throws IOException {
+    // Same replacement of the unmappable characters as String.getBytes
+    CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+      .onMalformedInput(CodingErrorAction.REPLACE)
+      .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    try (FileChannel channel = FileChannel.open(analysisInput, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+      Writer writer = new BufferedWriter(Channels.newWriter(channel, encoder, BUFFER_SIZE), BUFFER_SIZE)) {
+      write(writer, includeSettings, ignoreHeaderComments, includeRules, context, repositoryKey, languageKey, encoding);
+    }
+  }
+
+  static void write(Writer writer, boolean includeSettings, boolean ignoreHeaderComments, boolean includeRules, SensorContext context,
+    String repositoryKey, String languageKey, String encoding) throws IOException {
+    writeLine(writer, "<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+    writeLine(writer, "<AnalysisInput>");
+    if (includeSettings) {
+      writeLine(writer, "  <Settings>");
+      writeLine(writer, "    <Setting>");
+      writer.write("      <Key>sonar.");
+      writer.write(languageKey);
+      writeLine(writer, ".ignoreHeaderComments</Key>");
+      writer.write("      <Value>");
+      writer.write(ignoreHeaderComments ? "true" : "false");
+      writeLine(writer, "</Value>");
+      writeLine(writer, "    </Setting>");
+      writeLine(writer, "    <Setting>");
+      writeLine(writer, "      <Key>sonar.sourceEncoding</Key>");
+      writer.write("      <Value>");
+      writer.write(encoding);
+      writeLine(writer, "</Value>");
+      writeLine(writer, "    </Setting>");
+      writeLine(writer, "  </Settings>");
+    }
+
+    writeLine(writer, "  <Rules>");
+    if (includeRules) {
+      for (ActiveRule activeRule : context.activeRules().findByRepository(repositoryKey)) {
+        writeRule(writer, activeRule);
+      }
+    }
+    writeLine(writer, "  </Rules>");
+
+    writeLine(writer, "  <Files>");
+    FileSystem fs = context.fileSystem();
+    for (File file : fs.files(fs.predicates().and(fs.predicates().hasType(InputFile.Type.MAIN), fs.predicates().hasLanguage(languageKey)))) {
+      writer.write("    <File>");
+      writeEscaped(writer, file.getAbsolutePath());
+      writeLine(writer, "</File>");
+    }
+    writeLine(writer, "  </Files>");
+    writeLine(writer, "</AnalysisInput>");
+  }
+
+  private static void writeRule(Writer writer, ActiveRule activeRule) throws IOException {
+    writeLine(writer, "    <Rule>");
+    writer.write("      <Key>");
+    writeEscaped(writer, activeRule.ruleKey().rule());
+    writeLine(writer, "</Key>");
+    // Copied to a new map to keep the order of the parameters of the generated document
+    Map<String, String> parameters = new HashMap<>();
+    for (Map.Entry<String, String> parameter : activeRule.params().entrySet()) {
+      parameters.put(parameter.getKey(), parameter.getValue());
+    }
+    if (!parameters.isEmpty()) {
+      writeLine(writer, "      <Parameters>");
+      for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+        writeLine(writer, "        <Parameter>");
+        writer.write("          <Key>");
+        writeEscaped(writer, parameter.getKey());
+        writeLine(writer, "</Key>");
+        writer.write("          <Value>");
+        writeEscaped(writer, parameter.getValue());
+        writeLine(writer, "</Value>");
+        writeLine(writer, "        </Parameter>");
+      }
+      writeLine(writer, "      </Parameters>");
+    }
+    writeLine(writer, "    </Rule>");
+  }
+
+  private static void writeLine(Writer writer, String line) throws IOException {
+    writer.write(line);
+    writer.write(NEW_LINE);
+  }
+
+  private static void writeEscaped(Writer writer, String text) throws IOException {
+    int start = 0;
+    for (int i = 0; i < text.length(); i++) {
+      String escaped = escaped(text.charAt(i));
+      if (escaped != null) {
+        writer.write(text, start, i - start);
+        writer.write(escaped);
+        start = i + 1;
+      }
+    }
+    writer.write(text, start, text.length() - start);
+  }
+
+  @CheckForNull
+  private static String escaped(char c) {
+    switch (c) {
+      case '&':
+        return "&amp;";
+      case '"':
+        return "&quot;";
+      case '\'':
+        return "&apos;";
+      case '<':
+        return "&lt;";
+      case '>':
+        return "&gt;";
+      default:
+        return null;
+    }
+  }
+
+}
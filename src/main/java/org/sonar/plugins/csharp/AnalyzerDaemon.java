@@ -0,0 +1,386 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.api.Startable;
+import org.sonar.api.batch.BatchSide;
+import org.sonar.api.batch.InstantiationStrategy;
+import org.sonar.api.utils.command.Command;
+import org.sonar.api.utils.command.StreamConsumer;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+/**
+ * Keeps SonarAnalyzer.Scanner processes running as daemons for the whole analysis, so that only the first module pays
+ * the startup of .NET and the initialization of the rules. Each process runs one job at a time: concurrent jobs use
+ * as many processes, which are then reused by the next modules, and all of them are stopped at the end of the analysis.
+ * <p>
+ * The daemon is started with the {@value #DAEMON_ARGUMENT} argument, and exchanges UTF-8 lines through its standard streams:
+ * <ul>
+ *   <li>once started, it is sent {@code hello<TAB>protocol version} and must answer {@code ready<TAB>protocol version}
+ *   with the same version, {@value #PROTOCOL_VERSION}, within the handshake timeout</li>
+ *   <li>each job is requested on its standard input as {@code analyze<TAB>analysis input<TAB>analysis output<TAB>language}</li>
+ *   <li>the log of the job is written on its standard output, ended by {@code done<TAB>exit code}</li>
+ *   <li>{@code exit} asks it to stop, its standard input being closed right after</li>
+ * </ul>
+ * A process which stopped, or did not end its job with a {@code done} line, is stopped and replaced by a new one on the next job:
+ * its standard output may still hold lines of the job, which must not be read by the next one.
+ * When the handshake fails, as with a SonarAnalyzer.Scanner which does not support this protocol, the process is stopped and the jobs
+ * are run by the {@link CommandAnalyzerLauncher} instead, one process per job, for the rest of the analysis.
+ */
+@BatchSide
+@InstantiationStrategy(InstantiationStrategy.PER_BATCH)
+public class AnalyzerDaemon implements Startable {
+
+  static final String DAEMON_ARGUMENT = "--daemon";
+  static final String PROTOCOL_VERSION = "1";
+  static final long SHUTDOWN_TIMEOUT_MS = 10_000;
+  static final long DEFAULT_HANDSHAKE_TIMEOUT_MS = 30_000;
+
+  private static final Logger LOG = Loggers.get(AnalyzerDaemon.class);
+
+  private final long handshakeTimeoutMs;
+  private final Deque<DaemonProcess> idle = new ArrayDeque<>();
+  private final List<DaemonProcess> started = new ArrayList<>();
+  private final Set<List<String>> unsupported = new HashSet<>();
+  private boolean stopped = false;
+
+  public AnalyzerDaemon() {
+    this(DEFAULT_HANDSHAKE_TIMEOUT_MS);
+  }
+
+  AnalyzerDaemon(long handshakeTimeoutMs) {
+    this.handshakeTimeoutMs = handshakeTimeoutMs;
+  }
+
+  @Override
+  public void start() {
+    // processes are started by the first job
+  }
+
+  @Override
+  public void stop() {
+    List<DaemonProcess> processes;
+    synchronized (this) {
+      stopped = true;
+      processes = new ArrayList<>(started);
+      started.clear();
+      idle.clear();
+    }
+    processes.forEach(DaemonProcess::shutdown);
+  }
+
+  /**
+   * Launcher submitting the jobs to the daemons, started with the same command as the given launcher,
+   * or to the given launcher itself when the daemons do not support the protocol.
+   */
+  AnalyzerLauncher launcher(CommandAnalyzerLauncher commandLauncher) {
+    return new AnalyzerLauncher() {
+      @Override
+      public boolean isAvailable() {
+        return commandLauncher.isAvailable();
+      }
+
+      @Override
+      public void launch(File executableFile, Path analysisInput, Path analysisOutput, int timeoutMs, StreamConsumer stdOut, StreamConsumer stdErr) {
+        Command command = commandLauncher.command(executableFile).addArgument(DAEMON_ARGUMENT);
+        List<String> commandLine = new ArrayList<>();
+        commandLine.add(command.getExecutable());
+        commandLine.addAll(command.getArguments());
+        DaemonProcess process = acquire(commandLine);
+        if (process == null) {
+          commandLauncher.launch(executableFile, analysisInput, analysisOutput, timeoutMs, stdOut, stdErr);
+          return;
+        }
+        try {
+          process.analyze(analysisInput, analysisOutput, timeoutMs, stdOut, stdErr);
+        } finally {
+          release(process);
+        }
+      }
+    };
+  }
+
+  /**
+   * An idle daemon started with the command line, or a new one, or null when the daemons started with this command line do not support the protocol.
+   */
+  @CheckForNull
+  private DaemonProcess acquire(List<String> commandLine) {
+    synchronized (this) {
+      if (stopped) {
+        throw new IllegalStateException("The .NET analyzer daemons are already stopped");
+      }
+      if (unsupported.contains(commandLine)) {
+        return null;
+      }
+      Iterator<DaemonProcess> it = idle.iterator();
+      while (it.hasNext()) {
+        DaemonProcess process = it.next();
+        if (process.commandLine.equals(commandLine)) {
+          it.remove();
+          if (process.isReusable()) {
+            return process;
+          }
+          LOG.warn("The .NET analyzer daemon stopped with exit code " + process.exitCode() + ", starting a new one");
+          started.remove(process);
+        }
+      }
+    }
+    DaemonProcess process = DaemonProcess.start(commandLine);
+    if (!process.handshake(handshakeTimeoutMs)) {
+      process.kill();
+      synchronized (this) {
+        if (unsupported.add(commandLine)) {
+          LOG.warn("The .NET analyzer does not support the daemon protocol version " + PROTOCOL_VERSION + ", each module will be analyzed by its own process");
+        }
+      }
+      return null;
+    }
+    synchronized (this) {
+      started.add(process);
+    }
+    return process;
+  }
+
+  private void release(DaemonProcess process) {
+    boolean reusable;
+    synchronized (this) {
+      reusable = !stopped && process.isReusable();
+      if (reusable) {
+        idle.push(process);
+      } else {
+        started.remove(process);
+      }
+    }
+    if (reusable) {
+      return;
+    }
+    if (process.isBroken()) {
+      process.kill();
+    } else {
+      process.shutdown();
+    }
+  }
+
+  private static final class DaemonProcess {
+
+    private static final String DONE = "done\t";
+    private static final String HELLO = "hello\t";
+    private static final String READY = "ready\t";
+
+    private final List<String> commandLine;
+    private final Process process;
+    private final Writer stdIn;
+    // an empty value marks the end of the standard output
+    private final BlockingQueue<Optional<String>> stdOut = new LinkedBlockingQueue<>();
+    private volatile StreamConsumer stdErr;
+    // set when a job did not end with a done line, whether the process is still running or not
+    private volatile boolean broken = false;
+
+    private DaemonProcess(List<String> commandLine, Process process) {
+      this.commandLine = commandLine;
+      this.process = process;
+      this.stdIn = new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8);
+      pump(process.getInputStream(), "out", line -> stdOut.add(Optional.of(line)), () -> stdOut.add(Optional.empty()));
+      pump(process.getErrorStream(), "err", line -> {
+        StreamConsumer consumer = stdErr;
+        if (consumer == null) {
+          LOG.error(line);
+        } else {
+          consumer.consumeLine(line);
+        }
+      }, () -> {
+      });
+    }
+
+    static DaemonProcess start(List<String> commandLine) {
+      LOG.info("Starting the .NET analyzer daemon: " + String.join(" ", commandLine));
+      try {
+        return new DaemonProcess(commandLine, new ProcessBuilder(commandLine).start());
+      } catch (IOException e) {
+        throw new IllegalStateException("Unable to start the .NET analyzer daemon: " + String.join(" ", commandLine), e);
+      }
+    }
+
+    /**
+     * Whether the process answered the hello request with the same protocol version in time.
+     */
+    boolean handshake(long timeoutMs) {
+      stdErr = LOG::debug;
+      try {
+        writeLine(HELLO + PROTOCOL_VERSION);
+        Optional<String> line = stdOut.poll(timeoutMs, TimeUnit.MILLISECONDS);
+        if (line == null) {
+          LOG.debug("The .NET analyzer daemon did not answer the handshake within " + timeoutMs + " ms");
+          return false;
+        }
+        if (!line.isPresent()) {
+          LOG.debug("The .NET analyzer daemon stopped with exit code " + exitCode() + " before answering the handshake");
+          return false;
+        }
+        if (!line.get().equals(READY + PROTOCOL_VERSION)) {
+          LOG.debug("The .NET analyzer daemon answered the handshake with: " + line.get());
+          return false;
+        }
+        return true;
+      } catch (IOException e) {
+        LOG.debug("Unable to send the handshake to the .NET analyzer daemon", e);
+        return false;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        kill();
+        throw new IllegalStateException("Interrupted while waiting for the .NET analyzer daemon", e);
+      } finally {
+        stdErr = null;
+      }
+    }
+
+    void analyze(Path analysisInput, Path analysisOutput, int timeoutMs, StreamConsumer consumer, StreamConsumer errorConsumer) {
+      stdErr = errorConsumer;
+      boolean done = false;
+      try {
+        writeLine("analyze\t" + analysisInput.toAbsolutePath() + "\t" + analysisOutput.toAbsolutePath() + "\t" + CSharpPlugin.LANGUAGE_KEY);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        while (true) {
+          Optional<String> line = stdOut.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+          if (line == null) {
+            kill();
+            throw new IllegalStateException("The .NET analyzer did not complete within " + timeoutMs + " ms and was stopped");
+          }
+          if (!line.isPresent()) {
+            throw new IllegalStateException("The .NET analyzer daemon stopped with exit code " + exitCode() + " before completing the analysis");
+          }
+          if (line.get().startsWith(DONE)) {
+            done = true;
+            checkExitCode(line.get().substring(DONE.length()).trim());
+            return;
+          }
+          consumer.consumeLine(line.get());
+        }
+      } catch (IOException e) {
+        throw new IllegalStateException("Unable to submit the analysis to the .NET analyzer daemon", e);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        kill();
+        throw new IllegalStateException("Interrupted while waiting for the .NET analyzer daemon", e);
+      } finally {
+        stdErr = null;
+        if (!done) {
+          broken = true;
+        }
+      }
+    }
+
+    private static void checkExitCode(String exitCode) {
+      if (!"0".equals(exitCode)) {
+        throw new IllegalStateException("The .NET analyzer failed with exit code: " + exitCode + " - Verify that the .NET Framework version 4.5.2 at least is installed.");
+      }
+    }
+
+    boolean isReusable() {
+      return !broken && process.isAlive();
+    }
+
+    boolean isBroken() {
+      return broken;
+    }
+
+    void kill() {
+      broken = true;
+      process.destroyForcibly();
+    }
+
+    @Nullable
+    Integer exitCode() {
+      try {
+        return process.waitFor(1, TimeUnit.SECONDS) ? process.exitValue() : null;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return null;
+      }
+    }
+
+    void shutdown() {
+      try {
+        writeLine("exit");
+        stdIn.close();
+      } catch (IOException e) {
+        LOG.debug("The .NET analyzer daemon already stopped", e);
+      }
+      try {
+        if (!process.waitFor(SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+          LOG.warn("The .NET analyzer daemon did not stop within " + SHUTDOWN_TIMEOUT_MS + " ms and was killed");
+          process.destroyForcibly();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        process.destroyForcibly();
+      }
+    }
+
+    private void writeLine(String line) throws IOException {
+      stdIn.write(line);
+      stdIn.write('\n');
+      stdIn.flush();
+    }
+
+    private static void pump(InputStream input, String name, Consumer<String> lineConsumer, Runnable end) {
+      Thread thread = new Thread(() -> {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+          String line;
+          while ((line = reader.readLine()) != null) {
+            lineConsumer.accept(line);
+          }
+        } catch (IOException e) {
+          LOG.debug("Unable to read the std" + name + " of the .NET analyzer daemon", e);
+        } finally {
+          end.run();
+        }
+      }, "csharp-analyzer-daemon-" + name);
+      thread.setDaemon(true);
+      thread.start();
+    }
+
+  }
+
+}
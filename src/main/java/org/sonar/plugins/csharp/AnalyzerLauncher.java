@@ -0,0 +1,38 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import java.io.File;
+import java.nio.file.Path;
+import org.sonar.api.utils.command.StreamConsumer;
+
+/**
+ * Launches SonarAnalyzer.Scanner on an analysis input, the protobuf reports being written to the analysis output directory.
+ */
+interface AnalyzerLauncher {
+
+  /**
+   * Whether SonarAnalyzer.Scanner can be launched on this machine.
+   */
+  boolean isAvailable();
+
+  void launch(File executableFile, Path analysisInput, Path analysisOutput, int timeoutMs, StreamConsumer stdOut, StreamConsumer stdErr);
+
+}
@@ -0,0 +1,233 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.sonar.api.utils.command.StreamConsumer;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+/**
+ * Consumes the output of a SonarAnalyzer.Scanner process without slowing it down: the lines are queued by the threads reading
+ * the process, and written to a log file by a background thread. Only a summary is logged, at most once per interval,
+ * with the progress and the estimated remaining time computed from the distinct .cs files mentioned by the lines.
+ * The last lines are kept in memory, and logged when the process does not succeed.
+ */
+class AnalyzerLog implements Closeable {
+
+  static final String LOG_FILE_NAME = "SonarAnalyzer.Scanner.log";
+  static final int TAIL_LINES = 100;
+  static final long SUMMARY_INTERVAL_MS = 10_000;
+
+  private static final Logger LOG = Loggers.get(AnalyzerLog.class);
+  private static final int QUEUE_CAPACITY = 10_000;
+  private static final String ERROR_PREFIX = "[stderr] ";
+  private static final Pattern CSHARP_FILE = Pattern.compile("[^\\s\"'<>|]+\\.cs\\b", Pattern.CASE_INSENSITIVE);
+
+  private final Path logFile;
+  private final String prefix;
+  private final int totalFiles;
+  private final long summaryIntervalNanos;
+  private final LongSupplier nanoClock;
+  // an empty value marks the end of the output
+  private final BlockingQueue<Optional<String>> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+  private final Thread writerThread;
+
+  // Only accessed by the writer thread until it is joined
+  private final String[] tail;
+  private final Set<String> analyzedFiles = new HashSet<>();
+  private long lines = 0;
+  private long errorLines = 0;
+  private IOException writeFailure;
+
+  private volatile boolean succeeded = false;
+  private boolean closed = false;
+
+  AnalyzerLog(Path logFile, String prefix, int totalFiles) {
+    this(logFile, prefix, totalFiles, TAIL_LINES, SUMMARY_INTERVAL_MS, System::nanoTime);
+  }
+
+  AnalyzerLog(Path logFile, String prefix, int totalFiles, int tailLines, long summaryIntervalMs, LongSupplier nanoClock) {
+    this.logFile = logFile;
+    this.prefix = prefix;
+    this.totalFiles = totalFiles;
+    this.summaryIntervalNanos = TimeUnit.MILLISECONDS.toNanos(summaryIntervalMs);
+    this.nanoClock = nanoClock;
+    this.tail = new String[tailLines];
+    this.writerThread = new Thread(this::writeLines, "csharp-analyzer-log");
+    writerThread.setDaemon(true);
+    writerThread.start();
+  }
+
+  StreamConsumer stdOut() {
+    return line -> enqueue(Optional.of(line));
+  }
+
+  StreamConsumer stdErr() {
+    return line -> enqueue(Optional.of(ERROR_PREFIX + line));
+  }
+
+  /**
+   * Marks the process as successful, so that its last lines are not logged when closing.
+   */
+  void succeeded() {
+    succeeded = true;
+  }
+
+  private void enqueue(Optional<String> line) {
+    try {
+      queue.put(line);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void writeLines() {
+    long start = nanoClock.getAsLong();
+    long lastSummary = start;
+    try (BufferedWriter writer = Files.newBufferedWriter(logFile, StandardCharsets.UTF_8)) {
+      while (true) {
+        Optional<String> line = queue.poll(Math.max(1, summaryIntervalNanos), TimeUnit.NANOSECONDS);
+        if (line != null) {
+          if (!line.isPresent()) {
+            break;
+          }
+          writer.write(line.get());
+          writer.newLine();
+          consume(line.get());
+        }
+        long now = nanoClock.getAsLong();
+        if (now - lastSummary >= summaryIntervalNanos) {
+          LOG.info(prefix + summary(now - start, true));
+          lastSummary = now;
+        }
+      }
+    } catch (IOException e) {
+      writeFailure = e;
+      drainUntilEnd();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void consume(String line) {
+    if (tail.length > 0) {
+      tail[(int) (lines % tail.length)] = line;
+    }
+    lines++;
+    if (line.startsWith(ERROR_PREFIX)) {
+      errorLines++;
+    }
+    if (analyzedFiles.size() < totalFiles) {
+      Matcher matcher = CSHARP_FILE.matcher(line);
+      while (matcher.find()) {
+        analyzedFiles.add(matcher.group());
+      }
+    }
+  }
+
+  /**
+   * Keeps consuming the lines after a write failure, so that the process is never blocked by a full queue.
+   */
+  private void drainUntilEnd() {
+    try {
+      Optional<String> line;
+      while ((line = queue.take()).isPresent()) {
+        consume(line.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private String summary(long elapsedNanos, boolean running) {
+    StringBuilder sb = new StringBuilder("SonarAnalyzer.Scanner: ");
+    int analyzed = Math.min(analyzedFiles.size(), totalFiles);
+    if (analyzed > 0) {
+      sb.append(analyzed).append('/').append(totalFiles).append(" files analyzed");
+      if (running && analyzed < totalFiles) {
+        long remainingSeconds = TimeUnit.NANOSECONDS.toSeconds(elapsedNanos * (totalFiles - analyzed) / analyzed);
+        sb.append(", about ").append(remainingSeconds).append(" s remaining");
+      }
+      sb.append(", ");
+    }
+    sb.append(lines).append(" lines of output");
+    if (errorLines > 0) {
+      sb.append(" including ").append(errorLines).append(" errors");
+    }
+    return sb.append(" in ").append(logFile).toString();
+  }
+
+  /**
+   * Last lines of the output, oldest first.
+   */
+  List<String> tail() {
+    List<String> result = new ArrayList<>();
+    long first = Math.max(0, lines - tail.length);
+    for (long i = first; i < lines; i++) {
+      result.add(tail[(int) (i % tail.length)]);
+    }
+    return result;
+  }
+
+  /**
+   * Waits for all the lines to be written, then logs the summary, and the last lines unless the process succeeded.
+   */
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    enqueue(Optional.empty());
+    try {
+      writerThread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return;
+    }
+    LOG.info(prefix + summary(0, false));
+    if (writeFailure != null) {
+      LOG.warn(prefix + "Unable to write the output of SonarAnalyzer.Scanner to " + logFile, writeFailure);
+    }
+    if (!succeeded) {
+      List<String> lastLines = tail();
+      LOG.error(prefix + "SonarAnalyzer.Scanner did not succeed, last " + lastLines.size() + " lines of its output:");
+      lastLines.forEach(line -> LOG.error(prefix + line));
+    }
+  }
+
+}
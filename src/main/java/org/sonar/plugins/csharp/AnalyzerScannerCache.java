@@ -0,0 +1,226 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.apache.commons.lang.StringUtils;
+import org.sonar.api.config.Settings;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+/**
+ * User level cache of the extracted SonarAnalyzer.Scanner, shared by all the analyses run on the machine, with one entry per content hash of the archive.
+ * Entries are extracted to a temporary directory which is then renamed, while holding a lock on the cache shared with the other processes,
+ * so that an entry is either complete or missing.
+ * When the total size of the cache exceeds its maximum size, the least recently used entries are evicted, except the ones used
+ * during the grace period, as analyses may still be running them. An entry is first renamed to a temporary directory and then deleted,
+ * so that an entry which cannot be deleted, such as one whose executable is running on Windows, is either skipped or deleted later.
+ */
+class AnalyzerScannerCache {
+
+  static final String LOCK_FILE_NAME = "cache.lock";
+  static final String LAST_USED_FILE_NAME = ".last-used";
+  static final long DEFAULT_GRACE_PERIOD_MS = TimeUnit.HOURS.toMillis(1);
+
+  private static final Logger LOG = Loggers.get(AnalyzerScannerCache.class);
+  private static final String TEMP_DIRECTORY_PREFIX = "tmp-";
+  private static final String SONAR_USER_HOME_PROPERTY_KEY = "sonar.userHome";
+  // File locks are held by the whole process, so threads must also be serialized
+  private static final Object PROCESS_LOCK = new Object();
+
+  private final Path directory;
+  private final long maxSize;
+  private final long gracePeriodMs;
+
+  AnalyzerScannerCache(Path directory, long maxSize, long gracePeriodMs) {
+    this.directory = directory;
+    this.maxSize = maxSize;
+    this.gracePeriodMs = gracePeriodMs;
+  }
+
+  /**
+   * Maximum size in bytes of the cache, 0 when it is disabled. Read from the settings of the analysis, as the cache is used
+   * by the batch level extractor of SonarAnalyzer.Scanner, which cannot depend on the module level configuration.
+   */
+  static long maxSize(Settings settings) {
+    return Math.max(0, settings.getInt(CSharpConfiguration.SCANNER_CACHE_SIZE_PROPERTY_KEY)) * 1024L * 1024L;
+  }
+
+  static Path directory(Settings settings) {
+    String directory = settings.getString(CSharpConfiguration.SCANNER_CACHE_DIRECTORY_PROPERTY_KEY);
+    if (StringUtils.isNotBlank(directory)) {
+      return Paths.get(directory);
+    }
+    String sonarUserHome = settings.getString(SONAR_USER_HOME_PROPERTY_KEY);
+    Path home = StringUtils.isNotBlank(sonarUserHome) ? Paths.get(sonarUserHome) : Paths.get(System.getProperty("user.home"), ".sonar");
+    return home.resolve(CSharpConfiguration.SCANNER_CACHE_DIRECTORY_NAME);
+  }
+
+  @FunctionalInterface
+  interface Extractor {
+    void extractTo(Path directory) throws IOException;
+  }
+
+  /**
+   * The directory of the entry, extracted first when it is not in the cache yet.
+   */
+  Path get(String contentHash, Extractor extractor) {
+    Path entry = directory.resolve(contentHash);
+    synchronized (PROCESS_LOCK) {
+      try {
+        Files.createDirectories(directory);
+        try (FileChannel channel = FileChannel.open(directory.resolve(LOCK_FILE_NAME), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+          FileLock lock = channel.lock()) {
+          deleteTemporaryDirectories();
+          if (Files.isDirectory(entry)) {
+            LOG.debug("Using SonarAnalyzer.Scanner from the cache " + entry);
+          } else {
+            LOG.info("Extracting SonarAnalyzer.Scanner to the cache " + entry);
+            Path temp = Files.createTempDirectory(directory, TEMP_DIRECTORY_PREFIX);
+            try {
+              extractor.extractTo(temp);
+              Files.move(temp, entry, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+              deleteRecursively(temp);
+            }
+          }
+          touch(entry);
+          evict(entry);
+        }
+      } catch (IOException e) {
+        throw new IllegalStateException("Unable to extract SonarAnalyzer.Scanner to the cache " + directory, e);
+      }
+    }
+    return entry;
+  }
+
+  /**
+   * Marks the entry as used now, so that it is not evicted during the grace period. To be called each time the entry is used.
+   */
+  void touch(Path entry) {
+    Path lastUsed = entry.resolve(LAST_USED_FILE_NAME);
+    try {
+      if (!Files.exists(lastUsed)) {
+        Files.write(lastUsed, new byte[0]);
+      }
+      Files.setLastModifiedTime(lastUsed, FileTime.fromMillis(System.currentTimeMillis()));
+    } catch (IOException e) {
+      LOG.warn("Unable to mark the SonarAnalyzer.Scanner cache entry " + entry + " as used", e);
+    }
+  }
+
+  /**
+   * Evicts the least recently used entries until the cache fits in its maximum size, keeping the one in use and the ones used during the grace period.
+   */
+  private void evict(Path inUse) {
+    List<Path> entries;
+    try (Stream<Path> files = Files.list(directory)) {
+      entries = files
+        .filter(p -> Files.isDirectory(p) && !p.getFileName().toString().startsWith(TEMP_DIRECTORY_PREFIX))
+        .sorted(Comparator.comparingLong(AnalyzerScannerCache::lastUsed))
+        .collect(Collectors.toList());
+    } catch (IOException e) {
+      LOG.warn("Unable to list the entries of the SonarAnalyzer.Scanner cache " + directory + ", none is evicted", e);
+      return;
+    }
+    long[] sizes = new long[entries.size()];
+    long totalSize = 0;
+    for (int i = 0; i < entries.size(); i++) {
+      sizes[i] = size(entries.get(i));
+      totalSize += sizes[i];
+    }
+    long now = System.currentTimeMillis();
+    for (int i = 0; i < entries.size() && totalSize > maxSize; i++) {
+      Path entry = entries.get(i);
+      if (!entry.equals(inUse) && now - lastUsed(entry) >= gracePeriodMs) {
+        LOG.info("Evicting SonarAnalyzer.Scanner from the cache " + entry);
+        Path temp = directory.resolve(TEMP_DIRECTORY_PREFIX + entry.getFileName());
+        try {
+          Files.move(entry, temp, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+          LOG.warn("Unable to evict SonarAnalyzer.Scanner from the cache " + entry + ", it is skipped", e);
+          continue;
+        }
+        totalSize -= sizes[i];
+        try {
+          deleteRecursively(temp);
+        } catch (IOException e) {
+          LOG.warn("Unable to delete the evicted SonarAnalyzer.Scanner " + temp + ", it will be deleted by a next analysis", e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Left behind by the processes which stopped while extracting, as no extraction is running while the lock is held.
+   */
+  private void deleteTemporaryDirectories() throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      for (Path temp : files.filter(p -> p.getFileName().toString().startsWith(TEMP_DIRECTORY_PREFIX)).collect(Collectors.toList())) {
+        try {
+          deleteRecursively(temp);
+        } catch (IOException e) {
+          LOG.warn("Unable to delete the temporary directory " + temp + " of the SonarAnalyzer.Scanner cache", e);
+        }
+      }
+    }
+  }
+
+  private static long lastUsed(Path entry) {
+    return entry.resolve(LAST_USED_FILE_NAME).toFile().lastModified();
+  }
+
+  private static long size(Path entry) {
+    try (Stream<Path> files = Files.walk(entry)) {
+      return files.filter(Files::isRegularFile).mapToLong(p -> p.toFile().length()).sum();
+    } catch (IOException | UncheckedIOException e) {
+      LOG.warn("Unable to compute the size of the SonarAnalyzer.Scanner cache entry " + entry, e);
+      return 0;
+    }
+  }
+
+  private static void deleteRecursively(Path path) throws IOException {
+    if (!Files.exists(path)) {
+      return;
+    }
+    List<Path> paths;
+    try (Stream<Path> files = Files.walk(path)) {
+      paths = files.sorted(Comparator.reverseOrder()).collect(Collectors.toList());
+    }
+    for (Path p : paths) {
+      Files.deleteIfExists(p);
+    }
+  }
+
+}
@@ -0,0 +1,135 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import com.google.common.collect.ImmutableList;
+import java.util.List;
+import org.sonar.api.PropertyType;
+import org.sonar.api.config.PropertyDefinition;
+import org.sonar.api.resources.Qualifiers;
+
+public class CSharpAnalysisProvider {
+
+  private static final String CATEGORY = "C#";
+  private static final String SUBCATEGORY = "Analysis";
+
+  private CSharpAnalysisProvider() {
+  }
+
+  public static List extensions() {
+    return ImmutableList.of(
+      PropertyDefinition.builder(CSharpConfiguration.IMPORT_THREADS_PROPERTY_KEY)
+        .name("Analysis results import threads")
+        .description("Number of threads used to import the protobuf analysis results. With more than 1 thread and results produced by MSBuild, "
+          + "the results of the sub-directories of the output directory are imported too, one per analyzed project. Use 1 to import them sequentially.")
+        .defaultValue("1")
+        .category(CATEGORY)
+        .subCategory(SUBCATEGORY)
+        .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .type(PropertyType.INTEGER)
+        .build(),
+      PropertyDefinition.builder(CSharpConfiguration.PIPELINED_IMPORT_PROPERTY_KEY)
+        .name("Pipelined import")
+        .description("Import the analysis results while SonarAnalyzer.Scanner is still running, as soon as the results of each file are written. "
+          + "Has no effect when the analysis results are produced by MSBuild, or with the incremental analysis.")
+        .defaultValue("false")
+        .category(CATEGORY)
+        .subCategory(SUBCATEGORY)
+        .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .type(PropertyType.BOOLEAN)
+        .build(),
+      PropertyDefinition.builder(CSharpConfiguration.INCREMENTAL_PROPERTY_KEY)
+        .name("Incremental analysis")
+        .description("Only run SonarAnalyzer.Scanner on the files which changed since the previous analysis, and reuse the cached results of the others. "
+          + "Has no effect when the analysis results are produced by MSBuild. Takes precedence over the pipelined import.")
+        .defaultValue("false")
+        .category(CATEGORY)
+        .subCategory(SUBCATEGORY)
+        .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .type(PropertyType.BOOLEAN)
+        .build(),
+      PropertyDefinition.builder(CSharpConfiguration.ANALYZER_PARALLELISM_PROPERTY_KEY)
+        .name("SonarAnalyzer.Scanner processes")
+        .description("Number of SonarAnalyzer.Scanner processes run concurrently, each one on a batch of the files. "
+          + "Has no effect when the analysis results are produced by MSBuild.")
+        .defaultValue("1")
+        .category(CATEGORY)
+        .subCategory(SUBCATEGORY)
+        .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .type(PropertyType.INTEGER)
+        .build(),
+      PropertyDefinition.builder(CSharpConfiguration.ANALYZER_TIMEOUT_PROPERTY_KEY)
+        .name("SonarAnalyzer.Scanner timeout")
+        .description("Maximum duration in seconds of each SonarAnalyzer.Scanner process, after which it is stopped and the analysis fails. Use 0 for no timeout.")
+        .defaultValue("0")
+        .category(CATEGORY)
+        .subCategory(SUBCATEGORY)
+        .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .type(PropertyType.INTEGER)
+        .build(),
+      PropertyDefinition.builder(CSharpConfiguration.SCANNER_CACHE_SIZE_PROPERTY_KEY)
+        .name("SonarAnalyzer.Scanner cache size")
+        .description("Maximum size in MB of the cache of SonarAnalyzer.Scanner shared by all the analyses run by the user, "
+          + "so that it is only extracted once per version rather than in the working directory of each analysis. Use 0 to disable the cache.")
+        .defaultValue("0")
+        .category(CATEGORY)
+        .subCategory(SUBCATEGORY)
+        .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .type(PropertyType.INTEGER)
+        .build(),
+      PropertyDefinition.builder(CSharpConfiguration.SCANNER_CACHE_DIRECTORY_PROPERTY_KEY)
+        .name("SonarAnalyzer.Scanner cache directory")
+        .description("Directory of the cache of SonarAnalyzer.Scanner. Defaults to " + CSharpConfiguration.SCANNER_CACHE_DIRECTORY_NAME
+          + " in the SonarQube user home.")
+        .category(CATEGORY)
+        .subCategory(SUBCATEGORY)
+        .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .build(),
+      PropertyDefinition.builder(CSharpConfiguration.ANALYZER_LAUNCHER_PROPERTY_KEY)
+        .name("SonarAnalyzer.Scanner launcher")
+        .description("Command through which SonarAnalyzer.Scanner is launched, followed by its arguments, for example \"mono\". "
+          + "Leave empty to launch it directly, which is only possible on Windows. Not needed when the analysis results are produced by MSBuild.")
+        .category(CATEGORY)
+        .subCategory(SUBCATEGORY)
+        .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .build(),
+      PropertyDefinition.builder(CSharpConfiguration.ANALYZER_DAEMON_PROPERTY_KEY)
+        .name("SonarAnalyzer.Scanner daemon")
+        .description("Keep SonarAnalyzer.Scanner running for the whole analysis and submit the analysis of each module to it, "
+          + "rather than starting a new process per module. Requires a SonarAnalyzer.Scanner supporting the daemon mode.")
+        .defaultValue("false")
+        .category(CATEGORY)
+        .subCategory(SUBCATEGORY)
+        .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .type(PropertyType.BOOLEAN)
+        .build(),
+      PropertyDefinition.builder(CSharpConfiguration.CONCURRENT_SENSORS_PROPERTY_KEY)
+        .name("Concurrent sensors")
+        .description("Run the C# analysis, the coverage import and the unit test results import concurrently, only serializing the saving of their results. "
+          + "The coverage and unit test results are then imported by the plugin's own parallel importers.")
+        .defaultValue("false")
+        .category(CATEGORY)
+        .subCategory(SUBCATEGORY)
+        .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .type(PropertyType.BOOLEAN)
+        .build());
+  }
+
+}
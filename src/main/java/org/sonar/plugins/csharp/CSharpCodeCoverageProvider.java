@@ -21,8 +21,10 @@ package org.sonar.plugins.csharp;
 
 import com.google.common.collect.ImmutableList;
 import java.util.List;
+import org.sonar.api.PropertyType;
 import org.sonar.api.config.PropertyDefinition;
 import org.sonar.api.config.Settings;
+import org.sonar.api.resources.Project;
 import org.sonar.api.resources.Qualifiers;
 import org.sonar.plugins.dotnet.tests.CoverageAggregator;
 import org.sonar.plugins.dotnet.tests.CoverageConfiguration;
@@ -43,6 +45,10 @@ public class CSharpCodeCoverageProvider {
   private static final String IT_DOTCOVER_PROPERTY_KEY = "sonar.cs.dotcover.it.reportsPaths";
   private static final String IT_VISUAL_STUDIO_COVERAGE_XML_PROPERTY_KEY = "sonar.cs.vscoveragexml.it.reportsPaths";
 
+  static final String THREADS_PROPERTY_KEY = "sonar.cs.coverage.threads";
+  static final String CACHE_SIZE_PROPERTY_KEY = "sonar.cs.coverage.cacheSize";
+  static final String OVERALL_PROPERTY_KEY = "sonar.cs.coverage.overall";
+
   private static final CoverageConfiguration COVERAGE_CONF = new CoverageConfiguration(
     CSharpPlugin.LANGUAGE_KEY,
     NCOVER3_PROPERTY_KEY,
@@ -64,6 +70,7 @@ public class CSharpCodeCoverageProvider {
     return ImmutableList.of(
       CSharpCoverageAggregator.class, CSharpIntegrationCoverageAggregator.class,
       CSharpCoverageReportImportSensor.class, CSharpIntegrationCoverageReportImportSensor.class,
+      CSharpParallelCoverageReportImportSensor.class,
 
       PropertyDefinition.builder(NCOVER3_PROPERTY_KEY)
         .name("NCover3 Unit Tests Reports Paths")
@@ -120,9 +127,46 @@ public class CSharpCodeCoverageProvider {
         .category(CATEGORY)
         .subCategory(SUBCATEGORY)
         .onlyOnQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .build(),
+      PropertyDefinition.builder(THREADS_PROPERTY_KEY)
+        .name("Coverage reports import threads")
+        .description("Number of threads used to parse the coverage reports. Use 1 to parse them sequentially.")
+        .defaultValue("1")
+        .category(CATEGORY)
+        .subCategory(SUBCATEGORY)
+        .onlyOnQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .type(PropertyType.INTEGER)
+        .build(),
+      PropertyDefinition.builder(CACHE_SIZE_PROPERTY_KEY)
+        .name("Coverage reports cache size")
+        .description("Maximum size in MB of the cache, in the working directory, of the parsed coverage reports: "
+          + "a report which did not change since a previous analysis is then not parsed again. Use 0 to disable the cache.")
+        .defaultValue("0")
+        .category(CATEGORY)
+        .subCategory(SUBCATEGORY)
+        .onlyOnQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .type(PropertyType.INTEGER)
+        .build(),
+      PropertyDefinition.builder(OVERALL_PROPERTY_KEY)
+        .name("Overall coverage")
+        .description("Parse only once the reports listed both as unit and as integration tests reports, "
+          + "and save the overall coverage of the unit and integration tests along with their own coverages.")
+        .defaultValue("false")
+        .category(CATEGORY)
+        .subCategory(SUBCATEGORY)
+        .onlyOnQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .type(PropertyType.BOOLEAN)
         .build());
   }
 
+  /**
+   * Whether the coverage reports are imported by {@link ParallelCoverageReportImportSensor} rather than by the sensors of the .NET tests library.
+   */
+  static boolean isImportedByPlugin(Settings settings) {
+    return settings.getInt(THREADS_PROPERTY_KEY) > 1 || settings.getInt(CACHE_SIZE_PROPERTY_KEY) > 0 || settings.getBoolean(OVERALL_PROPERTY_KEY)
+      || settings.getBoolean(CSharpConfiguration.CONCURRENT_SENSORS_PROPERTY_KEY);
+  }
+
   public static class CSharpCoverageAggregator extends CoverageAggregator {
 
     public CSharpCoverageAggregator(Settings settings) {
@@ -133,8 +177,16 @@ public class CSharpCodeCoverageProvider {
 
   public static class CSharpCoverageReportImportSensor extends CoverageReportImportSensor {
 
-    public CSharpCoverageReportImportSensor(CSharpCoverageAggregator coverageAggregator) {
+    private final Settings settings;
+
+    public CSharpCoverageReportImportSensor(CSharpCoverageAggregator coverageAggregator, Settings settings) {
       super(COVERAGE_CONF, coverageAggregator, false);
+      this.settings = settings;
+    }
+
+    @Override
+    public boolean shouldExecuteOnProject(Project project) {
+      return !isImportedByPlugin(settings) && super.shouldExecuteOnProject(project);
     }
 
   }
@@ -149,8 +201,24 @@ public class CSharpCodeCoverageProvider {
 
   public static class CSharpIntegrationCoverageReportImportSensor extends CoverageReportImportSensor {
 
-    public CSharpIntegrationCoverageReportImportSensor(CSharpIntegrationCoverageAggregator coverageAggregator) {
+    private final Settings settings;
+
+    public CSharpIntegrationCoverageReportImportSensor(CSharpIntegrationCoverageAggregator coverageAggregator, Settings settings) {
       super(IT_COVERAGE_CONF, coverageAggregator, true);
+      this.settings = settings;
+    }
+
+    @Override
+    public boolean shouldExecuteOnProject(Project project) {
+      return !isImportedByPlugin(settings) && super.shouldExecuteOnProject(project);
+    }
+
+  }
+
+  public static class CSharpParallelCoverageReportImportSensor extends ParallelCoverageReportImportSensor {
+
+    public CSharpParallelCoverageReportImportSensor(Settings settings, InputFileIndex inputFileIndex) {
+      super(COVERAGE_CONF, IT_COVERAGE_CONF, settings, inputFileIndex);
     }
 
   }
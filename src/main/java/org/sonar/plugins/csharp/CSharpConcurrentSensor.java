@@ -0,0 +1,107 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import com.google.common.base.Throwables;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.sonar.api.batch.sensor.Sensor;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.batch.sensor.SensorDescriptor;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.plugins.csharp.CSharpCodeCoverageProvider.CSharpParallelCoverageReportImportSensor;
+import org.sonar.plugins.csharp.CSharpUnitTestResultsProvider.CSharpParallelUnitTestResultsImportSensor;
+
+/**
+ * Runs the C# sensor, the coverage import and the unit test results import concurrently when {@link CSharpConfiguration#CONCURRENT_SENSORS_PROPERTY_KEY} is set.
+ * Each of them parses its reports on its own threads, and all of them save their results through a single {@link SingleWriter}.
+ */
+public class CSharpConcurrentSensor implements Sensor {
+
+  private static final Logger LOG = Loggers.get(CSharpConcurrentSensor.class);
+
+  private final CSharpConfiguration config;
+  private final CSharpSensor csharpSensor;
+  private final CSharpParallelCoverageReportImportSensor coverageSensor;
+  private final CSharpParallelUnitTestResultsImportSensor unitTestResultsSensor;
+
+  public CSharpConcurrentSensor(CSharpConfiguration config, CSharpSensor csharpSensor, CSharpParallelCoverageReportImportSensor coverageSensor,
+    CSharpParallelUnitTestResultsImportSensor unitTestResultsSensor) {
+    this.config = config;
+    this.csharpSensor = csharpSensor;
+    this.coverageSensor = coverageSensor;
+    this.unitTestResultsSensor = unitTestResultsSensor;
+  }
+
+  @Override
+  public void describe(SensorDescriptor descriptor) {
+    descriptor.name("C# Concurrent Sensors").onlyOnLanguage(CSharpPlugin.LANGUAGE_KEY);
+  }
+
+  @Override
+  public void execute(SensorContext context) {
+    if (!config.isConcurrentSensors()) {
+      return;
+    }
+    SingleWriter singleWriter = new SingleWriter();
+    SensorContext writerContext = singleWriter.wrap(context);
+
+    List<Callable<Void>> tasks = new ArrayList<>();
+    if (csharpSensor.shouldExecuteOnProject(context.fileSystem())) {
+      tasks.add(() -> {
+        csharpSensor.executeInternal(writerContext, singleWriter);
+        return null;
+      });
+    } else {
+      LOG.debug("SonarAnalyzer.Scanner cannot be launched or no C# file to analyze. Skip the C# analysis.");
+    }
+    tasks.add(() -> {
+      coverageSensor.executeInternal(writerContext);
+      return null;
+    });
+    tasks.add(() -> {
+      unitTestResultsSensor.executeInternal(writerContext);
+      return null;
+    });
+
+    LOG.info("Running " + tasks.size() + " C# sensors concurrently");
+    ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+    try {
+      List<Future<Void>> futures = executor.invokeAll(tasks);
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while running the C# sensors", e);
+    } catch (ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+}
@@ -19,6 +19,7 @@
  */
 package org.sonar.plugins.csharp;
 
+import javax.annotation.CheckForNull;
 import org.sonar.api.config.Settings;
 import org.sonarsource.dotnet.shared.plugins.AbstractConfiguration;
 
@@ -27,9 +28,23 @@ public class CSharpConfiguration extends AbstractConfiguration {
   static final String ROSLYN_REPORT_PATH_PROPERTY_KEY = "sonar.cs.roslyn.reportFilePath";
   static final String ANALYZER_PROJECT_OUT_PATH_PROPERTY_KEY = "sonar.cs.analyzer.projectOutPath";
   static final String ANALYSIS_OUTPUT_DIRECTORY_NAME = "output-cs";
+  static final String SCANNER_CACHE_DIRECTORY_NAME = "csharp-analyzer-cache";
+  static final String IMPORT_THREADS_PROPERTY_KEY = "sonar.cs.import.threads";
+  static final String PIPELINED_IMPORT_PROPERTY_KEY = "sonar.cs.import.pipelined";
+  static final String INCREMENTAL_PROPERTY_KEY = "sonar.cs.incremental";
+  static final String ANALYZER_PARALLELISM_PROPERTY_KEY = "sonar.cs.analyzer.parallelism";
+  static final String ANALYZER_TIMEOUT_PROPERTY_KEY = "sonar.cs.analyzer.timeout";
+  static final String SCANNER_CACHE_SIZE_PROPERTY_KEY = "sonar.cs.analyzer.cacheSize";
+  static final String SCANNER_CACHE_DIRECTORY_PROPERTY_KEY = "sonar.cs.analyzer.cacheDirectory";
+  static final String ANALYZER_LAUNCHER_PROPERTY_KEY = "sonar.cs.analyzer.launcher";
+  static final String ANALYZER_DAEMON_PROPERTY_KEY = "sonar.cs.analyzer.daemon";
+  static final String CONCURRENT_SENSORS_PROPERTY_KEY = "sonar.cs.sensors.concurrent";
+
+  private final Settings settings;
 
   public CSharpConfiguration(Settings settings) {
     super(settings);
+    this.settings = settings;
   }
 
   @Override
@@ -47,4 +62,44 @@ public class CSharpConfiguration extends AbstractConfiguration {
     return ANALYSIS_OUTPUT_DIRECTORY_NAME;
   }
 
+  public int importThreads() {
+    return Math.max(1, settings.getInt(IMPORT_THREADS_PROPERTY_KEY));
+  }
+
+  public boolean isPipelinedImport() {
+    return settings.getBoolean(PIPELINED_IMPORT_PROPERTY_KEY);
+  }
+
+  public boolean isIncremental() {
+    return settings.getBoolean(INCREMENTAL_PROPERTY_KEY);
+  }
+
+  public int analyzerParallelism() {
+    return Math.max(1, settings.getInt(ANALYZER_PARALLELISM_PROPERTY_KEY));
+  }
+
+  /**
+   * Timeout of each SonarAnalyzer.Scanner process in milliseconds, {@link Integer#MAX_VALUE} when there is none.
+   */
+  public int analyzerTimeoutMs() {
+    int timeoutSeconds = settings.getInt(ANALYZER_TIMEOUT_PROPERTY_KEY);
+    return timeoutSeconds <= 0 ? Integer.MAX_VALUE : (int) Math.min(Integer.MAX_VALUE, timeoutSeconds * 1000L);
+  }
+
+  /**
+   * Command through which SonarAnalyzer.Scanner is launched, null to launch it directly.
+   */
+  @CheckForNull
+  public String analyzerLauncher() {
+    return settings.getString(ANALYZER_LAUNCHER_PROPERTY_KEY);
+  }
+
+  public boolean isAnalyzerDaemon() {
+    return settings.getBoolean(ANALYZER_DAEMON_PROPERTY_KEY);
+  }
+
+  public boolean isConcurrentSensors() {
+    return settings.getBoolean(CONCURRENT_SENSORS_PROPERTY_KEY);
+  }
+
 }
@@ -24,7 +24,6 @@ import org.sonar.api.Properties;
 import org.sonar.api.Property;
 import org.sonar.api.PropertyType;
 import org.sonarsource.dotnet.shared.plugins.EncodingPerFile;
-import org.sonarsource.dotnet.shared.plugins.SonarAnalyzerScannerExtractor;
 import org.sonarsource.dotnet.shared.plugins.WrongEncodingFileFilter;
 
 @Properties({
@@ -60,18 +59,23 @@ public class CSharpPlugin implements Plugin {
       CSharp.class,
       CSharpSonarRulesDefinition.class,
       CSharpSonarWayProfile.class,
-      SonarAnalyzerScannerExtractor.class,
+      CachingSonarAnalyzerScannerExtractor.class,
+      AnalyzerDaemon.class,
       CSharpSensor.class,
+      CSharpConcurrentSensor.class,
+      InputFileIndex.class,
       CSharpConfiguration.class,
       WrongEncodingFileFilter.class,
       EncodingPerFile.class,
       SonarLintProfileExporter.class,
       SonarLintFakeProfileImporter.class,
-      RoslynProfileExporter.class);
+      RoslynProfileExporter.class,
+      ActiveRoslynRulesIndex.class);
 
     context.addExtensions(CSharpCodeCoverageProvider.extensions());
     context.addExtensions(CSharpUnitTestResultsProvider.extensions());
     context.addExtensions(CSharpMsBuildIntegrationProvider.extensions());
+    context.addExtensions(CSharpAnalysisProvider.extensions());
     context.addExtensions(RoslynProfileExporter.sonarLintRepositoryProperties());
   }
 }
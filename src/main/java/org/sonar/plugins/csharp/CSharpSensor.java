@@ -19,53 +19,66 @@
  */
 package org.sonar.plugins.csharp;
 
-import com.google.common.base.Charsets;
 import com.google.common.base.Throwables;
-import com.google.common.collect.ImmutableMultimap;
-import com.google.common.collect.Maps;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
 import java.util.Map;
-import org.apache.commons.lang.SystemUtils;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+import javax.annotation.Nullable;
 import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.InputFile.Type;
-import org.sonar.api.batch.rule.ActiveRule;
 import org.sonar.api.batch.sensor.Sensor;
 import org.sonar.api.batch.sensor.SensorContext;
 import org.sonar.api.batch.sensor.SensorDescriptor;
 import org.sonar.api.config.Settings;
 import org.sonar.api.issue.NoSonarFilter;
 import org.sonar.api.measures.FileLinesContextFactory;
-import org.sonar.api.rule.RuleKey;
-import org.sonar.api.utils.command.Command;
-import org.sonar.api.utils.command.CommandExecutor;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonarsource.dotnet.shared.plugins.AbstractSensor;
-import org.sonarsource.dotnet.shared.plugins.AnalysisInputXml;
 import org.sonarsource.dotnet.shared.plugins.EncodingPerFile;
 import org.sonarsource.dotnet.shared.plugins.SonarAnalyzerScannerExtractor;
 import org.sonarsource.dotnet.shared.sarif.SarifParserCallback;
-import org.sonarsource.dotnet.shared.sarif.SarifParserFactory;
-
-import static java.util.stream.Collectors.toList;
 
 public class CSharpSensor extends AbstractSensor implements Sensor {
 
   private static final Logger LOG = Loggers.get(CSharpSensor.class);
+  private static final long PIPELINE_POLL_INTERVAL_MS = 100;
 
   private final Settings settings;
   private final SonarAnalyzerScannerExtractor extractor;
   private final CSharpConfiguration config;
+  private final FileLinesContextFactory fileLinesContextFactory;
+  private final NoSonarFilter noSonarFilter;
+  private final EncodingPerFile encodingPerFile;
+  private final ActiveRoslynRulesIndex activeRoslynRulesIndex;
+  private final InputFileIndex inputFileIndex;
+  private final AnalyzerDaemon analyzerDaemon;
+  private SensorMetrics metrics = new SensorMetrics();
 
   public CSharpSensor(Settings settings, SonarAnalyzerScannerExtractor extractor, FileLinesContextFactory fileLinesContextFactory,
-    NoSonarFilter noSonarFilter, CSharpConfiguration config, EncodingPerFile encodingPerFile) {
+    NoSonarFilter noSonarFilter, CSharpConfiguration config, EncodingPerFile encodingPerFile, ActiveRoslynRulesIndex activeRoslynRulesIndex,
+    InputFileIndex inputFileIndex, AnalyzerDaemon analyzerDaemon) {
     super(fileLinesContextFactory, noSonarFilter, config, encodingPerFile, CSharpSonarRulesDefinition.REPOSITORY_KEY);
     this.settings = settings;
     this.extractor = extractor;
     this.config = config;
+    this.fileLinesContextFactory = fileLinesContextFactory;
+    this.noSonarFilter = noSonarFilter;
+    this.encodingPerFile = encodingPerFile;
+    this.activeRoslynRulesIndex = activeRoslynRulesIndex;
+    this.inputFileIndex = inputFileIndex;
+    this.analyzerDaemon = analyzerDaemon;
   }
 
   @Override
@@ -75,15 +88,25 @@ public class CSharpSensor extends AbstractSensor implements Sensor {
 
   @Override
   public void execute(SensorContext context) {
+    if (config.isConcurrentSensors()) {
+      LOG.debug("Executed by the concurrent sensor.");
+      return;
+    }
     if (!shouldExecuteOnProject(context.fileSystem())) {
-      LOG.debug("OS is not Windows. Skip Sensor.");
+      LOG.debug("No analysis results from MSBuild and SonarAnalyzer.Scanner cannot be launched: the OS is not Windows and "
+        + CSharpConfiguration.ANALYZER_LAUNCHER_PROPERTY_KEY + " is not set. Skip Sensor.");
       return;
     }
     executeInternal(context);
   }
 
   boolean shouldExecuteOnProject(FileSystem fs) {
-    return SystemUtils.IS_OS_WINDOWS && filesToAnalyze(fs).iterator().hasNext();
+    return (config.isReportsComingFromMSBuild() || launcher().isAvailable()) && filesToAnalyze(fs).iterator().hasNext();
+  }
+
+  AnalyzerLauncher launcher() {
+    CommandAnalyzerLauncher commandLauncher = new CommandAnalyzerLauncher(config.analyzerLauncher());
+    return config.isAnalyzerDaemon() ? analyzerDaemon.launcher(commandLauncher) : commandLauncher;
   }
 
   private static Iterable<File> filesToAnalyze(FileSystem fs) {
@@ -91,93 +114,191 @@ public class CSharpSensor extends AbstractSensor implements Sensor {
   }
 
   void executeInternal(SensorContext context) {
-    boolean requiresAnalyzerScannerExecution = !config.isReportsComingFromMSBuild();
+    executeInternal(context, null);
+  }
+
+  /**
+   * @param singleWriter when not null, the writer shared with the sensors running concurrently, through which the results are imported in parallel
+   */
+  void executeInternal(SensorContext context, @Nullable SingleWriter singleWriter) {
+    metrics = new SensorMetrics();
+    SensorMetrics.Phase phase = metrics.start("executeInternal");
+    try {
+      phase.addFiles(Iterables.size(filesToAnalyze(context.fileSystem())));
+      boolean requiresAnalyzerScannerExecution = !config.isReportsComingFromMSBuild();
 
-    LOG.info("SonarAnalyzer.Scanner needs to be executed: " + requiresAnalyzerScannerExecution);
+      LOG.info("SonarAnalyzer.Scanner needs to be executed: " + requiresAnalyzerScannerExecution);
 
-    String roslynReportPath = settings.getString(config.getRoslynJsonReportPathProperty());
-    boolean hasRoslynReportPath = roslynReportPath != null;
+      String roslynReportPath = settings.getString(config.getRoslynJsonReportPathProperty());
+      boolean hasRoslynReportPath = roslynReportPath != null;
 
-    Path protobufReportsDirectory;
-    if (requiresAnalyzerScannerExecution) {
-      // MSBuild 12 or MSBuild 14 with old scanner
-      analyze(!hasRoslynReportPath, context);
-      protobufReportsDirectory = protobufReportPathForMSBuild12(context);
-    } else {
-      protobufReportsDirectory = config.protobufReportPathFromScanner();
+      Path protobufReportsDirectory;
+      boolean imported = false;
+      if (requiresAnalyzerScannerExecution) {
+        // MSBuild 12 or MSBuild 14 with old scanner
+        protobufReportsDirectory = protobufReportPathForMSBuild12(context);
+        if (config.isIncremental()) {
+          if (config.isPipelinedImport()) {
+            LOG.warn("The pipelined import is not supported by the incremental analysis, the analysis results will be imported once the analysis is complete");
+          }
+          analyzeIncrementally(!hasRoslynReportPath, context, protobufReportsDirectory);
+        } else if (config.isPipelinedImport()) {
+          analyzeAndImport(!hasRoslynReportPath, context, protobufReportsDirectory, singleWriter);
+          imported = true;
+        } else {
+          analyze(!hasRoslynReportPath, context);
+        }
+      } else {
+        protobufReportsDirectory = config.protobufReportPathFromScanner();
+      }
+
+      if (!imported) {
+        LOG.info("Importing analysis results from " + protobufReportsDirectory.toAbsolutePath().toString());
+        if (singleWriter == null) {
+          importResults(context, protobufReportsDirectory, !hasRoslynReportPath);
+        } else {
+          importResults(context, protobufReportsDirectory, !hasRoslynReportPath, singleWriter);
+        }
+      }
+
+      if (hasRoslynReportPath) {
+        LOG.info("Importing Roslyn report");
+        importRoslynReport(roslynReportPath, context);
+      }
+    } finally {
+      phase.close();
+      metrics.write(context.fileSystem().workDir().toPath());
     }
+  }
 
-    LOG.info("Importing analysis results from " + protobufReportsDirectory.toAbsolutePath().toString());
-    importResults(context, protobufReportsDirectory, !hasRoslynReportPath);
+  private void analyzeIncrementally(boolean includeRules, SensorContext context, Path protobufReportsDirectory) {
+    boolean ignoreHeaderComments = settings.getBoolean("sonar.cs.ignoreHeaderComments");
+    String cacheKey = IncrementalAnalysis.cacheKey(RoslynProfileExporter.getAnalyzerVersion(), context.activeRules(), includeRules, ignoreHeaderComments,
+      context.fileSystem().encoding().name());
+    IncrementalAnalysis incrementalAnalysis = new IncrementalAnalysis(context.fileSystem().workDir().toPath().resolve(IncrementalAnalysis.CACHE_DIRECTORY_NAME), cacheKey);
 
-    if (hasRoslynReportPath) {
-      LOG.info("Importing Roslyn report");
-      importRoslynReport(roslynReportPath, context);
+    Set<File> changedFiles = incrementalAnalysis.changedFiles(filesToAnalyze(context.fileSystem()));
+    IncrementalAnalysis.deleteReports(protobufReportsDirectory);
+    if (changedFiles.isEmpty()) {
+      LOG.info("No changed files, skipping the execution of SonarAnalyzer.Scanner");
+    } else {
+      analyze(includeRules, FilteredSensorContext.restrictTo(context, changedFiles));
     }
+    incrementalAnalysis.replayUnchangedFiles(protobufReportsDirectory);
+    incrementalAnalysis.save(protobufReportsDirectory);
   }
 
-  void analyze(boolean includeRules, SensorContext context) {
-    if (includeRules) {
-      LOG.warn("***********************************************************************************");
-      LOG.warn("*                 Use MSBuild 14 to get the best analysis results                 *");
-      LOG.warn("* The use of MSBuild 12 or the sonar-scanner to analyze C# projects is DEPRECATED *");
-      LOG.warn("***********************************************************************************");
-
-      ImmutableMultimap<String, RuleKey> activeRoslynRulesByPartialRepoKey = RoslynProfileExporter.activeRoslynRulesByPartialRepoKey(context.activeRules()
-        .findAll()
-        .stream()
-        .map(ActiveRule::ruleKey)
-        .collect(toList()));
-
-      if (activeRoslynRulesByPartialRepoKey.keySet().size() > 1) {
-        throw new IllegalArgumentException(
-          "Custom and 3rd party Roslyn analyzers are only by MSBuild 14. Either use MSBuild 14, or disable the custom/3rd party Roslyn analyzers in your quality profile.");
+  /**
+   * Runs SonarAnalyzer.Scanner on another thread, and imports its results as soon as they are written.
+   */
+  private void analyzeAndImport(boolean includeRules, SensorContext context, Path protobufReportsDirectory, @Nullable SingleWriter singleWriter) {
+    LOG.info("Importing analysis results from " + protobufReportsDirectory.toAbsolutePath().toString() + " while SonarAnalyzer.Scanner is running");
+    IncrementalAnalysis.deleteReports(protobufReportsDirectory);
+    try (SensorMetrics.Phase phase = metrics.start("importResults")) {
+      phase.addFiles(Iterables.size(filesToAnalyze(context.fileSystem())));
+      SensorContext countingContext = SensorMetrics.countingIssues(inputFileIndex.indexed(context), phase);
+      PipelinedProtobufImporter importer = new PipelinedProtobufImporter(
+        singleWriter == null ? fileLinesContextFactory : singleWriter.wrap(fileLinesContextFactory),
+        singleWriter == null ? noSonarFilter : singleWriter.wrap(noSonarFilter),
+        CSharpSonarRulesDefinition.REPOSITORY_KEY, PIPELINE_POLL_INTERVAL_MS);
+      ExecutorService executor = Executors.newSingleThreadExecutor();
+      try {
+        Future<?> analysis = executor.submit(() -> analyze(includeRules, context));
+        importer.importWhile(analysis, countingContext, inputFileIndex.get(context), protobufReportsDirectory,
+          context.fileSystem().workDir().toPath().resolve(PipelinedProtobufImporter.CHUNKS_DIRECTORY_NAME), includeRules);
+      } finally {
+        executor.shutdownNow();
       }
     }
+  }
 
-    String analysisSettings = AnalysisInputXml.generate(true, settings.getBoolean("sonar.cs.ignoreHeaderComments"), includeRules, context,
-      CSharpSonarRulesDefinition.REPOSITORY_KEY, CSharpPlugin.LANGUAGE_KEY, context.fileSystem().encoding().name());
+  void analyze(boolean includeRules, SensorContext context) {
+    try (SensorMetrics.Phase phase = metrics.start("analyze")) {
+      if (includeRules) {
+        LOG.warn("***********************************************************************************");
+        LOG.warn("*                 Use MSBuild 14 to get the best analysis results                 *");
+        LOG.warn("* The use of MSBuild 12 or the sonar-scanner to analyze C# projects is DEPRECATED *");
+        LOG.warn("***********************************************************************************");
 
-    Path analysisInput = toolInput(context.fileSystem());
-    Path analysisOutput = protobufReportPathForMSBuild12(context);
+        if (activeRoslynRulesIndex.get(context.activeRules()).byPartialRepoKey().keySet().size() > 1) {
+          throw new IllegalArgumentException(
+            "Custom and 3rd party Roslyn analyzers are only by MSBuild 14. Either use MSBuild 14, or disable the custom/3rd party Roslyn analyzers in your quality profile.");
+        }
+      }
 
-    try {
-      Files.write(analysisInput, analysisSettings.getBytes(Charsets.UTF_8));
-    } catch (IOException e) {
-      throw Throwables.propagate(e);
-    }
+      File executableFile = extractor.executableFile(CSharpPlugin.LANGUAGE_KEY);
+      Path analysisOutput = protobufReportPathForMSBuild12(context);
+      int parallelism = config.analyzerParallelism();
+      List<File> files = Lists.newArrayList(filesToAnalyze(context.fileSystem()));
+      phase.addFiles(files.size());
+
+      if (parallelism > 1 && files.size() > 1) {
+        new ParallelAnalyzerScanner(launcher(), executableFile, parallelism, config.analyzerTimeoutMs())
+          .analyze(files, (batch, batchInput) -> writeAnalysisInput(batchInput, includeRules, FilteredSensorContext.restrictTo(context, batch)),
+            context.fileSystem().workDir().toPath(), analysisOutput);
+        return;
+      }
+
+      Path analysisInput = toolInput(context.fileSystem());
+      try {
+        writeAnalysisInput(analysisInput, includeRules, context);
+      } catch (IOException e) {
+        throw Throwables.propagate(e);
+      }
 
-    File executableFile = extractor.executableFile(CSharpPlugin.LANGUAGE_KEY);
+      try (AnalyzerLog log = new AnalyzerLog(analysisInput.resolveSibling(AnalyzerLog.LOG_FILE_NAME), "", files.size())) {
+        launcher().launch(executableFile, analysisInput, analysisOutput, config.analyzerTimeoutMs(), log.stdOut(), log.stdErr());
+        log.succeeded();
+      }
+    }
+  }
 
-    Command command = Command.create(executableFile.getAbsolutePath())
-      .addArgument(analysisInput.toAbsolutePath().toString())
-      .addArgument(analysisOutput.toAbsolutePath().toString())
-      .addArgument(CSharpPlugin.LANGUAGE_KEY);
+  private void writeAnalysisInput(Path analysisInput, boolean includeRules, SensorContext context) throws IOException {
+    AnalysisInputWriter.write(analysisInput, true, settings.getBoolean("sonar.cs.ignoreHeaderComments"), includeRules, context,
+      CSharpSonarRulesDefinition.REPOSITORY_KEY, CSharpPlugin.LANGUAGE_KEY, context.fileSystem().encoding().name());
+  }
 
-    int exitCode = CommandExecutor.create().execute(command, new LogInfoStreamConsumer(), new LogErrorStreamConsumer(), Integer.MAX_VALUE);
-    if (exitCode != 0) {
-      throw new IllegalStateException("The .NET analyzer failed with exit code: " + exitCode + " - Verify that the .NET Framework version 4.5.2 at least is installed.");
+  @Override
+  public void importResults(SensorContext context, Path protobufReportsDirectory, boolean importIssues) {
+    try (SensorMetrics.Phase phase = metrics.start("importResults")) {
+      phase.addFiles(Iterables.size(filesToAnalyze(context.fileSystem())));
+      SensorContext countingContext = SensorMetrics.countingIssues(inputFileIndex.indexed(context), phase);
+      int threads = config.importThreads();
+      if (threads > 1 && config.isReportsComingFromMSBuild()) {
+        List<Path> reportDirectories = ParallelProtobufImporter.reportDirectories(protobufReportsDirectory);
+        LOG.info("Importing " + reportDirectories.size() + " report directories using " + threads + " threads");
+        new ParallelProtobufImporter(fileLinesContextFactory, noSonarFilter, CSharpSonarRulesDefinition.REPOSITORY_KEY, threads)
+          .importResults(countingContext, reportDirectories, importIssues);
+      } else {
+        super.importResults(countingContext, protobufReportsDirectory, importIssues);
+      }
     }
   }
 
-  private static void importRoslynReport(String reportPath, final SensorContext context) {
-    ImmutableMultimap<String, RuleKey> activeRoslynRulesByPartialRepoKey = RoslynProfileExporter.activeRoslynRulesByPartialRepoKey(context.activeRules()
-      .findAll()
-      .stream()
-      .map(ActiveRule::ruleKey)
-      .collect(toList()));
-    final Map<String, String> repositoryKeyByRoslynRuleKey = Maps.newHashMap();
-    for (RuleKey activeRoslynRuleKey : activeRoslynRulesByPartialRepoKey.values()) {
-      String previousRepositoryKey = repositoryKeyByRoslynRuleKey.put(activeRoslynRuleKey.rule(), activeRoslynRuleKey.repository());
-      if (previousRepositoryKey != null) {
-        throw new IllegalArgumentException("Rule keys must be unique, but \"" + activeRoslynRuleKey.rule() +
-          "\" is defined in both the \"" + previousRepositoryKey + "\" and \"" + activeRoslynRuleKey.repository() +
-          "\" rule repositories.");
+  private void importResults(SensorContext context, Path protobufReportsDirectory, boolean importIssues, SingleWriter singleWriter) {
+    try (SensorMetrics.Phase phase = metrics.start("importResults")) {
+      phase.addFiles(Iterables.size(filesToAnalyze(context.fileSystem())));
+      SensorContext countingContext = SensorMetrics.countingIssues(inputFileIndex.indexed(context), phase);
+      Predicate<InputFile> filesToImport;
+      if (config.isReportsComingFromMSBuild()) {
+        filesToImport = f -> true;
+      } else {
+        encodingPerFile.init(protobufReportsDirectory);
+        filesToImport = encodingPerFile::encodingMatch;
       }
+      new ParallelProtobufImporter(fileLinesContextFactory, noSonarFilter, CSharpSonarRulesDefinition.REPOSITORY_KEY, config.importThreads())
+        .importResults(countingContext, ParallelProtobufImporter.reportDirectories(protobufReportsDirectory), importIssues, singleWriter, filesToImport);
     }
+  }
 
-    SarifParserCallback callback = new SarifParserCallbackImplementation(context, repositoryKeyByRoslynRuleKey);
-    SarifParserFactory.create(new File(reportPath)).parse(callback);
+  private void importRoslynReport(String reportPath, final SensorContext context) {
+    try (SensorMetrics.Phase phase = metrics.start("importRoslynReport")) {
+      phase.addFiles(Iterables.size(filesToAnalyze(context.fileSystem())));
+      Map<String, String> repositoryKeyByRoslynRuleKey = activeRoslynRulesIndex.get(context.activeRules()).repositoryKeyByRoslynRuleKey();
+      SarifParserCallback callback = new SarifParserCallbackImplementation(SensorMetrics.countingIssues(inputFileIndex.indexed(context), phase),
+        repositoryKeyByRoslynRuleKey);
+      new StreamingSarifParser(new File(reportPath)).parse(callback);
+    }
   }
 
   public final Path protobufReportPathForMSBuild12(SensorContext context) {
@@ -0,0 +1,56 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import com.google.common.collect.ImmutableList;
+import java.util.List;
+import org.sonar.api.measures.CoreMetrics;
+import org.sonar.api.measures.Metric;
+import org.sonar.api.measures.Metrics;
+
+/**
+ * Test duration metrics of the projects, saved along with the test duration hotspots report.
+ */
+public class CSharpTestMetrics implements Metrics {
+
+  public static final Metric<Long> TEST_DURATION_P50 = durationMetric("cs_test_duration_p50", "Median test duration",
+    "Median duration of the tests");
+  public static final Metric<Long> TEST_DURATION_P90 = durationMetric("cs_test_duration_p90", "90th percentile test duration",
+    "Duration under which 90% of the tests run");
+  public static final Metric<Long> TEST_DURATION_P99 = durationMetric("cs_test_duration_p99", "99th percentile test duration",
+    "Duration under which 99% of the tests run");
+  public static final Metric<Long> SLOWEST_TEST_DURATION = durationMetric("cs_slowest_test_duration", "Slowest test duration",
+    "Duration of the slowest test");
+
+  private static Metric<Long> durationMetric(String key, String name, String description) {
+    return new Metric.Builder(key, name, Metric.ValueType.MILLISEC)
+      .setDescription(description)
+      .setDirection(Metric.DIRECTION_WORST)
+      .setQualitative(false)
+      .setDomain(CoreMetrics.DOMAIN_COVERAGE)
+      .create();
+  }
+
+  @Override
+  public List<Metric> getMetrics() {
+    return ImmutableList.of(TEST_DURATION_P50, TEST_DURATION_P90, TEST_DURATION_P99, SLOWEST_TEST_DURATION);
+  }
+
+}
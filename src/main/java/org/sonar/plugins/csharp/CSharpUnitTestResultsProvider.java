@@ -21,9 +21,11 @@ package org.sonar.plugins.csharp;
 
 import com.google.common.collect.ImmutableList;
 import java.util.List;
+import org.sonar.api.PropertyType;
 import org.sonar.api.batch.bootstrap.ProjectDefinition;
 import org.sonar.api.config.PropertyDefinition;
 import org.sonar.api.config.Settings;
+import org.sonar.api.resources.Project;
 import org.sonar.api.resources.Qualifiers;
 import org.sonar.plugins.dotnet.tests.UnitTestConfiguration;
 import org.sonar.plugins.dotnet.tests.UnitTestResultsAggregator;
@@ -38,6 +40,10 @@ public class CSharpUnitTestResultsProvider {
   private static final String NUNIT_TEST_RESULTS_PROPERTY_KEY = "sonar.cs.nunit.reportsPaths";
   private static final String XUNIT_TEST_RESULTS_PROPERTY_KEY = "sonar.cs.xunit.reportsPaths";
 
+  static final String THREADS_PROPERTY_KEY = "sonar.cs.unitTests.threads";
+  static final String PER_TEST_FILE_PROPERTY_KEY = "sonar.cs.unitTests.perTestFile";
+  static final String HOTSPOTS_PROPERTY_KEY = "sonar.cs.unitTests.hotspots";
+
   private static final UnitTestConfiguration UNIT_TEST_CONF = new UnitTestConfiguration(VISUAL_STUDIO_TEST_RESULTS_PROPERTY_KEY, NUNIT_TEST_RESULTS_PROPERTY_KEY, XUNIT_TEST_RESULTS_PROPERTY_KEY);
 
   private CSharpUnitTestResultsProvider() {
@@ -47,6 +53,9 @@ public class CSharpUnitTestResultsProvider {
     return ImmutableList.of(
       CSharpUnitTestResultsAggregator.class,
       CSharpUnitTestResultsImportSensor.class,
+      CSharpParallelUnitTestResultsImportSensor.class,
+      SharedUnitTestResults.class,
+      CSharpTestMetrics.class,
       PropertyDefinition.builder(VISUAL_STUDIO_TEST_RESULTS_PROPERTY_KEY)
         .name("Visual Studio Test Reports Paths")
         .description("Example: \"report.trx\", \"report1.trx,report2.trx\" or \"C:/report.trx\"")
@@ -60,9 +69,55 @@ public class CSharpUnitTestResultsProvider {
         .category(CATEGORY)
         .subCategory(SUBCATEGORY)
         .onlyOnQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .build(),
+      PropertyDefinition.builder(XUNIT_TEST_RESULTS_PROPERTY_KEY)
+        .name("xUnit Test Reports Paths")
+        .description("Example: \"TestResult.xml\", \"TestResult1.xml,TestResult2.xml\" or \"C:/TestResult.xml\"")
+        .category(CATEGORY)
+        .subCategory(SUBCATEGORY)
+        .onlyOnQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .build(),
+      PropertyDefinition.builder(THREADS_PROPERTY_KEY)
+        .name("Test reports import threads")
+        .description("Number of threads used to parse the test reports, with parsers which skip the captured output of the tests. "
+          + "Use 1 to import them with the sensor of the .NET tests library.")
+        .defaultValue("1")
+        .category(CATEGORY)
+        .subCategory(SUBCATEGORY)
+        .onlyOnQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .type(PropertyType.INTEGER)
+        .build(),
+      PropertyDefinition.builder(PER_TEST_FILE_PROPERTY_KEY)
+        .name("Test results per test file")
+        .description("Save the number of tests and their execution time on each test file declaring them, rather than only on the project. "
+          + "The test files are those of the test projects, see sonar.cs.msbuild.testProjectPattern.")
+        .defaultValue("false")
+        .category(CATEGORY)
+        .subCategory(SUBCATEGORY)
+        .onlyOnQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .type(PropertyType.BOOLEAN)
+        .build(),
+      PropertyDefinition.builder(HOTSPOTS_PROPERTY_KEY)
+        .name("Test duration hotspots")
+        .description("Number of slowest tests to list in the test duration hotspots report, written as " + TestHotspots.REPORT_FILE_NAME
+          + " in the working directory along with the duration percentiles of each test assembly and the total time of each fixture. "
+          + "Use 0 to disable the report.")
+        .defaultValue("0")
+        .category(CATEGORY)
+        .subCategory(SUBCATEGORY)
+        .onlyOnQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .type(PropertyType.INTEGER)
         .build());
   }
 
+  /**
+   * Whether the test reports are imported by {@link ParallelUnitTestResultsImportSensor} rather than by the sensor of the .NET tests library.
+   */
+  static boolean isImportedByPlugin(Settings settings) {
+    return settings.getInt(THREADS_PROPERTY_KEY) > 1 || settings.getBoolean(PER_TEST_FILE_PROPERTY_KEY) || settings.getInt(HOTSPOTS_PROPERTY_KEY) > 0
+      || settings.getBoolean(CSharpConfiguration.CONCURRENT_SENSORS_PROPERTY_KEY);
+  }
+
   public static class CSharpUnitTestResultsAggregator extends UnitTestResultsAggregator {
 
     public CSharpUnitTestResultsAggregator(Settings settings) {
@@ -73,8 +128,24 @@ public class CSharpUnitTestResultsProvider {
 
   public static class CSharpUnitTestResultsImportSensor extends UnitTestResultsImportSensor {
 
-    public CSharpUnitTestResultsImportSensor(CSharpUnitTestResultsAggregator unitTestResultsAggregator, ProjectDefinition projectDef) {
+    private final Settings settings;
+
+    public CSharpUnitTestResultsImportSensor(CSharpUnitTestResultsAggregator unitTestResultsAggregator, ProjectDefinition projectDef, Settings settings) {
       super(unitTestResultsAggregator, projectDef);
+      this.settings = settings;
+    }
+
+    @Override
+    public boolean shouldExecuteOnProject(Project project) {
+      return !isImportedByPlugin(settings) && super.shouldExecuteOnProject(project);
+    }
+
+  }
+
+  public static class CSharpParallelUnitTestResultsImportSensor extends ParallelUnitTestResultsImportSensor {
+
+    public CSharpParallelUnitTestResultsImportSensor(Settings settings, ProjectDefinition projectDef, SharedUnitTestResults sharedResults) {
+      super(UNIT_TEST_CONF, settings, projectDef, sharedResults);
     }
 
   }
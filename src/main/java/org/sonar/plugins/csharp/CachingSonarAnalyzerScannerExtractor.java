@@ -0,0 +1,86 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.sonar.api.batch.bootstrap.ProjectReactor;
+import org.sonar.api.config.Settings;
+import org.sonar.api.utils.ZipUtils;
+import org.sonarsource.dotnet.shared.plugins.SonarAnalyzerScannerExtractor;
+
+/**
+ * Extracts SonarAnalyzer.Scanner to the user level {@link AnalyzerScannerCache} rather than to the working directory of each analysis,
+ * when the cache is enabled with {@link CSharpConfiguration#SCANNER_CACHE_SIZE_PROPERTY_KEY}.
+ * Like its parent, it is a batch level component, so it reads the settings rather than the module level {@link CSharpConfiguration}.
+ */
+public class CachingSonarAnalyzerScannerExtractor extends SonarAnalyzerScannerExtractor {
+
+  static final String SCANNER_ZIP = "/SonarAnalyzer.Scanner.zip";
+  static final String SCANNER_EXE = "SonarAnalyzer.Scanner.exe";
+
+  private final Settings settings;
+  private final ZipSource zip;
+  private AnalyzerScannerCache cache;
+  private Path entry;
+
+  public CachingSonarAnalyzerScannerExtractor(ProjectReactor reactor, Settings settings) {
+    this(reactor, settings, () -> CachingSonarAnalyzerScannerExtractor.class.getResourceAsStream(SCANNER_ZIP));
+  }
+
+  CachingSonarAnalyzerScannerExtractor(ProjectReactor reactor, Settings settings, ZipSource zip) {
+    super(reactor);
+    this.settings = settings;
+    this.zip = zip;
+  }
+
+  @FunctionalInterface
+  interface ZipSource {
+    InputStream open() throws IOException;
+  }
+
+  @Override
+  public synchronized File executableFile(String language) {
+    long cacheSize = AnalyzerScannerCache.maxSize(settings);
+    if (cacheSize <= 0) {
+      return super.executableFile(language);
+    }
+    if (entry != null && Files.isDirectory(entry)) {
+      // Each analysis of a module uses the entry, which must not be evicted by the other processes during the grace period
+      cache.touch(entry);
+    } else {
+      cache = new AnalyzerScannerCache(AnalyzerScannerCache.directory(settings), cacheSize, AnalyzerScannerCache.DEFAULT_GRACE_PERIOD_MS);
+      try (InputStream input = zip.open()) {
+        entry = cache.get(Hashes.hash(input), directory -> {
+          try (InputStream entryInput = zip.open()) {
+            ZipUtils.unzip(entryInput, directory.toFile());
+          }
+        });
+      } catch (IOException e) {
+        throw new IllegalStateException("Unable to extract SonarAnalyzer Scanner", e);
+      }
+    }
+    return entry.resolve(SCANNER_EXE).toFile();
+  }
+
+}
@@ -0,0 +1,82 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.Nullable;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.SystemUtils;
+import org.sonar.api.utils.command.Command;
+import org.sonar.api.utils.command.CommandExecutor;
+import org.sonar.api.utils.command.StreamConsumer;
+import org.sonar.api.utils.command.TimeoutException;
+
+/**
+ * Launches SonarAnalyzer.Scanner as a process: directly, which is only possible on Windows,
+ * or as an argument of a host command such as "mono", which makes it possible on any OS.
+ */
+class CommandAnalyzerLauncher implements AnalyzerLauncher {
+
+  private final List<String> hostCommand;
+
+  /**
+   * @param hostCommand the host executable followed by its arguments, separated by whitespace, or null to launch SonarAnalyzer.Scanner directly
+   */
+  CommandAnalyzerLauncher(@Nullable String hostCommand) {
+    this.hostCommand = StringUtils.isBlank(hostCommand) ? Collections.emptyList() : Arrays.asList(StringUtils.split(hostCommand));
+  }
+
+  @Override
+  public boolean isAvailable() {
+    return !hostCommand.isEmpty() || SystemUtils.IS_OS_WINDOWS;
+  }
+
+  @Override
+  public void launch(File executableFile, Path analysisInput, Path analysisOutput, int timeoutMs, StreamConsumer stdOut, StreamConsumer stdErr) {
+    Command command = command(executableFile)
+      .addArgument(analysisInput.toAbsolutePath().toString())
+      .addArgument(analysisOutput.toAbsolutePath().toString())
+      .addArgument(CSharpPlugin.LANGUAGE_KEY);
+
+    int exitCode;
+    try {
+      exitCode = CommandExecutor.create().execute(command, stdOut, stdErr, timeoutMs);
+    } catch (TimeoutException e) {
+      throw new IllegalStateException("The .NET analyzer did not complete within " + timeoutMs + " ms and was stopped", e);
+    }
+    if (exitCode != 0) {
+      throw new IllegalStateException("The .NET analyzer failed with exit code: " + exitCode + " - Verify that the .NET Framework version 4.5.2 at least is installed.");
+    }
+  }
+
+  Command command(File executableFile) {
+    if (hostCommand.isEmpty()) {
+      return Command.create(executableFile.getAbsolutePath());
+    }
+    return Command.create(hostCommand.get(0))
+      .addArguments(hostCommand.subList(1, hostCommand.size()))
+      .addArgument(executableFile.getAbsolutePath());
+  }
+
+}
@@ -0,0 +1,204 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.annotation.CheckForNull;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+/**
+ * Binary cache of the line hits of the coverage reports, so that a report which did not change since a previous analysis is not parsed again.
+ * There is one entry per report, named after the hash of its absolute path. The entry starts with the size, the last modification time
+ * and the content hash of the report it was computed from, and is only used when all of them still match.
+ * The least recently used entries are evicted when the total size of the cache exceeds its maximum size.
+ */
+class CoverageCache {
+
+  static final String CACHE_DIRECTORY_NAME = "coverage-cs";
+
+  private static final Logger LOG = Loggers.get(CoverageCache.class);
+  private static final int MAGIC = 0x43534356;
+  private static final int VERSION = 1;
+  private static final String ENTRY_EXTENSION = ".bin";
+
+  private final Path directory;
+  private final long maxSize;
+
+  CoverageCache(Path directory, long maxSize) {
+    this.directory = directory;
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * The line hits of the report, read from the cache when possible, or parsed and then written to the cache otherwise.
+   */
+  CoverageData readOrParse(ParallelCoverageAggregator.Report report) {
+    File file = report.file();
+    Path entry = directory.resolve(Hashes.hash(file.getAbsolutePath()) + ENTRY_EXTENSION);
+    long size = file.length();
+    long lastModified = file.lastModified();
+
+    if (Files.isRegularFile(entry)) {
+      CoverageData cached = read(entry, file, size, lastModified);
+      if (cached != null) {
+        LOG.debug("Coverage of the report {} read from the cache", file);
+        return cached;
+      }
+    }
+
+    CoverageData coverage = new CoverageData();
+    report.parse(coverage);
+    write(entry, size, lastModified, Hashes.hash(file.toPath()), coverage);
+    return coverage;
+  }
+
+  /**
+   * The size and last modification time of the report are checked first, so that the report is only hashed when the entry is likely valid.
+   */
+  @CheckForNull
+  private static CoverageData read(Path entry, File report, long size, long lastModified) {
+    try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(entry)))) {
+      if (input.readInt() != MAGIC || input.readInt() != VERSION || input.readLong() != size || input.readLong() != lastModified
+        || !Hashes.hash(report.toPath()).equals(input.readUTF())) {
+        return null;
+      }
+      CoverageData coverage = new CoverageData();
+      int files = input.readInt();
+      for (int i = 0; i < files; i++) {
+        int fileId = coverage.fileId(input.readUTF());
+        int lines = readVarInt(input);
+        int line = 0;
+        for (int j = 0; j < lines; j++) {
+          line += readVarInt(input);
+          coverage.addHits(fileId, line, readVarInt(input));
+        }
+      }
+      Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+      return coverage;
+    } catch (IOException e) {
+      LOG.warn("Could not read the coverage cache entry " + entry + ", the report will be parsed again", e);
+      return null;
+    }
+  }
+
+  private void write(Path entry, long size, long lastModified, String contentHash, CoverageData coverage) {
+    Path temporary = null;
+    try {
+      Files.createDirectories(directory);
+      temporary = Files.createTempFile(directory, "entry", ".tmp");
+      try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.writeLong(size);
+        output.writeLong(lastModified);
+        output.writeUTF(contentHash);
+        List<String> files = coverage.files();
+        output.writeInt(files.size());
+        for (String file : files) {
+          output.writeUTF(file);
+          int[] lines = {0};
+          coverage.forEachLineHits(file, (line, hits) -> lines[0]++);
+          writeVarInt(output, lines[0]);
+          // Lines are written as the delta to the previous line, as they come in ascending order
+          int[] previousLine = {0};
+          coverage.forEachLineHits(file, (line, hits) -> {
+            try {
+              writeVarInt(output, line - previousLine[0]);
+              writeVarInt(output, hits);
+            } catch (IOException e) {
+              throw new UncheckedIOException(e);
+            }
+            previousLine[0] = line;
+          });
+        }
+      }
+      Files.move(temporary, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException | UncheckedIOException e) {
+      LOG.warn("Could not write the coverage cache entry " + entry, e);
+      if (temporary != null && !temporary.toFile().delete()) {
+        LOG.warn("Could not delete " + temporary);
+      }
+    }
+  }
+
+  /**
+   * Deletes the least recently used entries until the total size of the cache is at most its maximum size.
+   */
+  void evict() {
+    if (!Files.isDirectory(directory)) {
+      return;
+    }
+    List<File> entries;
+    try (Stream<Path> files = Files.list(directory)) {
+      entries = files
+        .map(Path::toFile)
+        .filter(f -> f.getName().endsWith(ENTRY_EXTENSION))
+        .sorted(Comparator.comparingLong(File::lastModified).reversed())
+        .collect(Collectors.toList());
+    } catch (IOException e) {
+      LOG.warn("Could not list the coverage cache entries of " + directory, e);
+      return;
+    }
+    long totalSize = 0;
+    for (File entry : entries) {
+      totalSize += entry.length();
+      if (totalSize > maxSize && !entry.delete()) {
+        LOG.warn("Could not delete the coverage cache entry " + entry);
+      }
+    }
+  }
+
+  private static void writeVarInt(DataOutputStream output, int value) throws IOException {
+    int remaining = value;
+    while ((remaining & ~0x7F) != 0) {
+      output.writeByte((remaining & 0x7F) | 0x80);
+      remaining >>>= 7;
+    }
+    output.writeByte(remaining);
+  }
+
+  private static int readVarInt(DataInputStream input) throws IOException {
+    int value = 0;
+    for (int shift = 0; shift < 32; shift += 7) {
+      byte b = input.readByte();
+      value |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("Malformed variable length integer");
+  }
+
+}
@@ -0,0 +1,172 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Line hits of the files of one or several coverage reports, the hits of a line reported several times are summed up.
+ * Each file is interned once into an id, and its hits are stored in a primitive array indexed by line, so that no object is allocated per line.
+ * The few lines beyond {@link #MAX_DENSE_LINE} are kept in a sorted map instead, so that a single far line does not allocate a huge array,
+ * and the line numbers used by the compilers for hidden sequence points are ignored, see {@link #isHiddenLine(int)}.
+ * Not thread-safe: each thread aggregates its own instance, and the instances are merged afterwards.
+ */
+final class CoverageData {
+
+  private static final int NO_HITS = -1;
+  private static final int[] EMPTY = new int[0];
+  static final int MAX_DENSE_LINE = 1 << 16;
+  private static final int HIDDEN_LINE = 0xFEEFEE;
+  private static final int LEGACY_HIDDEN_LINE = 0xF00F00;
+
+  private final Map<String, Integer> idsByFile = new HashMap<>();
+  private final List<String> files = new ArrayList<>();
+  private final List<int[]> hitsByLine = new ArrayList<>();
+  private final Map<Integer, SortedMap<Integer, Integer>> sparseHitsByFileId = new HashMap<>();
+
+  interface LineHitsConsumer {
+    void accept(int line, int hits);
+  }
+
+  /**
+   * Id of the given file in this coverage, to be used with {@link #addHits(int, int, int)}.
+   */
+  int fileId(String file) {
+    Integer id = idsByFile.get(file);
+    if (id == null) {
+      id = files.size();
+      idsByFile.put(file, id);
+      files.add(file);
+      hitsByLine.add(EMPTY);
+    }
+    return id;
+  }
+
+  void addHits(String file, int line, int hits) {
+    addHits(fileId(file), line, hits);
+  }
+
+  void addHits(int fileId, int line, int hits) {
+    if (line < 0 || isHiddenLine(line)) {
+      return;
+    }
+    if (line >= MAX_DENSE_LINE) {
+      sparseHitsByFileId.computeIfAbsent(fileId, id -> new TreeMap<>()).merge(line, hits, Integer::sum);
+      return;
+    }
+    int[] fileHits = hitsByLine.get(fileId);
+    if (line >= fileHits.length) {
+      int previousLength = fileHits.length;
+      fileHits = Arrays.copyOf(fileHits, Math.max(line + 1, previousLength * 2));
+      Arrays.fill(fileHits, previousLength, fileHits.length, NO_HITS);
+      hitsByLine.set(fileId, fileHits);
+    }
+    fileHits[line] = fileHits[line] == NO_HITS ? hits : (fileHits[line] + hits);
+  }
+
+  /**
+   * Whether the line is one of the line numbers given by the C# compilers to the sequence points hidden from the debugger,
+   * 0xFEEFEE and 0xF00F00 for the older ones, which are not lines of the source file.
+   */
+  static boolean isHiddenLine(int line) {
+    return line == HIDDEN_LINE || line == LEGACY_HIDDEN_LINE;
+  }
+
+  /**
+   * Adds the hits of the other coverage to this one, and returns this one. The other coverage is left unchanged,
+   * so that it can be merged into several coverages.
+   */
+  CoverageData mergeWith(CoverageData other) {
+    for (int otherId = 0; otherId < other.files.size(); otherId++) {
+      int[] otherHits = other.hitsByLine.get(otherId);
+      int id = fileId(other.files.get(otherId));
+      if (hitsByLine.get(id).length == 0) {
+        hitsByLine.set(id, otherHits.clone());
+      } else {
+        for (int line = 0; line < otherHits.length; line++) {
+          if (otherHits[line] != NO_HITS) {
+            addHits(id, line, otherHits[line]);
+          }
+        }
+      }
+      SortedMap<Integer, Integer> otherSparseHits = other.sparseHitsByFileId.get(otherId);
+      if (otherSparseHits != null) {
+        otherSparseHits.forEach((line, hits) -> addHits(id, line, hits));
+      }
+    }
+    return this;
+  }
+
+  /**
+   * The files with at least one line with hits.
+   */
+  List<String> files() {
+    List<String> result = new ArrayList<>();
+    for (int id = 0; id < files.size(); id++) {
+      if (hasHits(id)) {
+        result.add(files.get(id));
+      }
+    }
+    return result;
+  }
+
+  boolean hasHits(String file) {
+    Integer id = idsByFile.get(file);
+    return id != null && hasHits(id);
+  }
+
+  private boolean hasHits(int id) {
+    return hitsByLine.get(id).length > 0 || sparseHitsByFileId.containsKey(id);
+  }
+
+  /**
+   * Calls the consumer for each line with hits of the file, in ascending line order.
+   */
+  void forEachLineHits(String file, LineHitsConsumer consumer) {
+    Integer id = idsByFile.get(file);
+    if (id == null) {
+      return;
+    }
+    int[] fileHits = hitsByLine.get(id);
+    for (int line = 0; line < fileHits.length; line++) {
+      if (fileHits[line] != NO_HITS) {
+        consumer.accept(line, fileHits[line]);
+      }
+    }
+    SortedMap<Integer, Integer> sparseHits = sparseHitsByFileId.get(id);
+    if (sparseHits != null) {
+      sparseHits.forEach(consumer::accept);
+    }
+  }
+
+  Map<Integer, Integer> hits(String file) {
+    Map<Integer, Integer> result = new LinkedHashMap<>();
+    forEachLineHits(file, result::put);
+    return result;
+  }
+
+}
@@ -0,0 +1,210 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.apache.commons.lang.StringEscapeUtils;
+
+/**
+ * Parser of the dotCover HTML reports. The report given by the user is the index of the report, and the coverage
+ * of each source file is in its own HTML file, in the "src" sub-directory of the directory named after the report.
+ * Each line of a range gets the hits of the range, its fifth value, as in {@code highlightRanges([[12,13,12,22,1],[13,13,13,23,0]])}.
+ * <p>
+ * The source file reports are memory-mapped and scanned as bytes: only the title, which holds the path of the source file, is decoded.
+ * They can be parsed concurrently by a {@link ParallelCoverageAggregator}, see {@link #sourceFileReports(File)}.
+ */
+class DotCoverReportParser implements CoverageReportParser {
+
+  private static final byte[] TITLE_START = ascii("<title>");
+  private static final byte[] TITLE_END = ascii("</title>");
+  private static final byte[] HIGHLIGHT_RANGES = ascii("highlightRanges([");
+
+  @Override
+  public void parse(File report, CoverageData coverage) {
+    for (ParallelCoverageAggregator.Report sourceFileReport : sourceFileReports(report)) {
+      sourceFileReport.parse(coverage);
+    }
+  }
+
+  /**
+   * One report per source file of the given dotCover report, to be parsed independently of each other.
+   * Source file reports are small and quick to scan, so they are not worth caching.
+   */
+  static List<ParallelCoverageAggregator.Report> sourceFileReports(File report) {
+    String reportName = report.getName();
+    int extension = reportName.lastIndexOf('.');
+    Path sourcesDirectory = report.toPath().resolveSibling(extension == -1 ? reportName : reportName.substring(0, extension)).resolve("src");
+    if (!Files.isDirectory(sourcesDirectory)) {
+      throw new IllegalArgumentException("The dotCover report \"" + report.getAbsolutePath() + "\" does not have its source files directory " + sourcesDirectory);
+    }
+    try (Stream<Path> files = Files.list(sourcesDirectory)) {
+      return files
+        .filter(p -> p.getFileName().toString().endsWith(".html"))
+        .sorted()
+        .map(p -> new ParallelCoverageAggregator.Report(p.toFile(), DotCoverReportParser::parseSourceFileReport, false))
+        .collect(Collectors.toList());
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to list the dotCover source file reports in " + sourcesDirectory, e);
+    }
+  }
+
+  static void parseSourceFileReport(File sourceFileReport, CoverageData coverage) {
+    ByteBuffer contents;
+    try (FileChannel channel = FileChannel.open(sourceFileReport.toPath(), StandardOpenOption.READ)) {
+      contents = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to read the dotCover report " + sourceFileReport, e);
+    }
+    parseSourceFileReport(sourceFileReport.toString(), contents, coverage);
+  }
+
+  static void parseSourceFileReport(String sourceFileReport, ByteBuffer contents, CoverageData coverage) {
+    int titleStart = indexOf(contents, TITLE_START, 0);
+    int titleEnd = titleStart == -1 ? -1 : indexOf(contents, TITLE_END, titleStart + TITLE_START.length);
+    if (titleEnd == -1) {
+      throw new IllegalArgumentException("The dotCover report " + sourceFileReport + " does not contain the path of its source file in its title");
+    }
+
+    int highlightRanges = indexOf(contents, HIGHLIGHT_RANGES, titleEnd);
+    if (highlightRanges == -1) {
+      return;
+    }
+    byte[] title = new byte[titleEnd - titleStart - TITLE_START.length];
+    for (int i = 0; i < title.length; i++) {
+      title[i] = contents.get(titleStart + TITLE_START.length + i);
+    }
+    int fileId = coverage.fileId(StringEscapeUtils.unescapeHtml(new String(title, StandardCharsets.UTF_8).trim()));
+
+    new RangesScanner(sourceFileReport, contents, highlightRanges + HIGHLIGHT_RANGES.length).addHits(coverage, fileId);
+  }
+
+  private static int indexOf(ByteBuffer contents, byte[] pattern, int from) {
+    int last = contents.limit() - pattern.length;
+    for (int i = from; i <= last; i++) {
+      int j = 0;
+      while (j < pattern.length && contents.get(i + j) == pattern[j]) {
+        j++;
+      }
+      if (j == pattern.length) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static byte[] ascii(String s) {
+    return s.getBytes(StandardCharsets.US_ASCII);
+  }
+
+  /**
+   * Scans ranges such as "[10,5,11,6,1],[12,1,12,3,0]]" made of the start line, start column, end line, end column and hits.
+   */
+  private static class RangesScanner {
+    private final String sourceFileReport;
+    private final ByteBuffer contents;
+    private int position;
+
+    private RangesScanner(String sourceFileReport, ByteBuffer contents, int position) {
+      this.sourceFileReport = sourceFileReport;
+      this.contents = contents;
+      this.position = position;
+    }
+
+    private void addHits(CoverageData coverage, int fileId) {
+      skipWhitespaces();
+      while (peek() == '[') {
+        position++;
+        int startLine = nextInt();
+        nextInt();
+        int endLine = nextInt();
+        nextInt();
+        int hits = nextInt();
+        expect(']');
+        for (int line = startLine; line <= endLine; line++) {
+          coverage.addHits(fileId, line, hits);
+        }
+        skipWhitespaces();
+        if (peek() == ',') {
+          position++;
+          skipWhitespaces();
+        }
+      }
+      expect(']');
+    }
+
+    private int nextInt() {
+      skipWhitespaces();
+      int value = 0;
+      int digits = 0;
+      while (position < contents.limit() && Character.isDigit(contents.get(position))) {
+        value = value * 10 + contents.get(position) - '0';
+        position++;
+        digits++;
+      }
+      if (digits == 0) {
+        throw unexpected();
+      }
+      skipWhitespaces();
+      if (peek() == ',') {
+        position++;
+      }
+      return value;
+    }
+
+    private void expect(char expected) {
+      skipWhitespaces();
+      if (next() != expected) {
+        position--;
+        throw unexpected();
+      }
+    }
+
+    private int next() {
+      int c = peek();
+      position++;
+      return c;
+    }
+
+    private int peek() {
+      return position < contents.limit() ? contents.get(position) : -1;
+    }
+
+    private void skipWhitespaces() {
+      while (position < contents.limit() && Character.isWhitespace(contents.get(position))) {
+        position++;
+      }
+    }
+
+    private IllegalArgumentException unexpected() {
+      return new IllegalArgumentException("Unexpected content at offset " + position + " in the highlighted ranges of the dotCover report " + sourceFileReport);
+    }
+  }
+
+}
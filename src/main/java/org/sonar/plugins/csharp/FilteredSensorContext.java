@@ -0,0 +1,67 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.batch.sensor.SensorContext;
+
+/**
+ * Sensor context whose file system only lists some of the files, used to generate the analysis input of a subset of the files.
+ */
+final class FilteredSensorContext {
+
+  private FilteredSensorContext() {
+  }
+
+  static SensorContext restrictTo(SensorContext context, Set<File> files) {
+    FileSystem fs = context.fileSystem();
+    FileSystem restrictedFs = (FileSystem) Proxy.newProxyInstance(FileSystem.class.getClassLoader(), new Class<?>[] {FileSystem.class}, (proxy, method, args) -> {
+      Object result = invoke(fs, method, args);
+      if ("files".equals(method.getName())) {
+        List<Object> restricted = new ArrayList<>();
+        for (Object file : (Iterable<?>) result) {
+          if (files.contains(file)) {
+            restricted.add(file);
+          }
+        }
+        return restricted;
+      }
+      return result;
+    });
+    return (SensorContext) Proxy.newProxyInstance(SensorContext.class.getClassLoader(), new Class<?>[] {SensorContext.class},
+      (proxy, method, args) -> "fileSystem".equals(method.getName()) ? restrictedFs : invoke(context, method, args));
+  }
+
+  private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+    try {
+      return method.invoke(target, args);
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    }
+  }
+
+}
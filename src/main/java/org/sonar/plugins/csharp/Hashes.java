@@ -0,0 +1,79 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-1 hashes, as lowercase hexadecimal strings, used to key and validate the caches of the plugin.
+ */
+class Hashes {
+
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  private Hashes() {
+  }
+
+  static String hash(String text) {
+    return hex(digest().digest(text.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  static String hash(Path file) {
+    try (InputStream input = Files.newInputStream(file)) {
+      return hash(input);
+    } catch (IOException e) {
+      throw new IllegalStateException("Could not compute the hash of " + file, e);
+    }
+  }
+
+  static String hash(InputStream input) throws IOException {
+    MessageDigest digest = digest();
+    byte[] buffer = new byte[8192];
+    int read;
+    while ((read = input.read(buffer)) != -1) {
+      digest.update(buffer, 0, read);
+    }
+    return hex(digest.digest());
+  }
+
+  private static MessageDigest digest() {
+    try {
+      return MessageDigest.getInstance("SHA-1");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static String hex(byte[] bytes) {
+    char[] chars = new char[bytes.length * 2];
+    for (int i = 0; i < bytes.length; i++) {
+      chars[2 * i] = HEX_DIGITS[(bytes[i] >> 4) & 0xF];
+      chars[2 * i + 1] = HEX_DIGITS[bytes[i] & 0xF];
+    }
+    return new String(chars);
+  }
+
+}
@@ -0,0 +1,244 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import com.google.protobuf.MessageLite;
+import com.google.protobuf.Parser;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+import org.sonar.api.batch.rule.ActiveRule;
+import org.sonar.api.batch.rule.ActiveRules;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonarsource.dotnet.protobuf.SonarAnalyzer.CopyPasteTokenInfo;
+import org.sonarsource.dotnet.protobuf.SonarAnalyzer.EncodingInfo;
+import org.sonarsource.dotnet.protobuf.SonarAnalyzer.FileIssues;
+import org.sonarsource.dotnet.protobuf.SonarAnalyzer.MetricsInfo;
+import org.sonarsource.dotnet.protobuf.SonarAnalyzer.SymbolReferenceInfo;
+import org.sonarsource.dotnet.protobuf.SonarAnalyzer.TokenTypeInfo;
+
+import static org.sonarsource.dotnet.shared.plugins.protobuf.ProtobufImporters.CPDTOKENS_OUTPUT_PROTOBUF_NAME;
+import static org.sonarsource.dotnet.shared.plugins.protobuf.ProtobufImporters.ENCODING_OUTPUT_PROTOBUF_NAME;
+import static org.sonarsource.dotnet.shared.plugins.protobuf.ProtobufImporters.HIGHLIGHT_OUTPUT_PROTOBUF_NAME;
+import static org.sonarsource.dotnet.shared.plugins.protobuf.ProtobufImporters.ISSUES_OUTPUT_PROTOBUF_NAME;
+import static org.sonarsource.dotnet.shared.plugins.protobuf.ProtobufImporters.METRICS_OUTPUT_PROTOBUF_NAME;
+import static org.sonarsource.dotnet.shared.plugins.protobuf.ProtobufImporters.SYMBOLREFS_OUTPUT_PROTOBUF_NAME;
+
+/**
+ * Cache of the analyzer protobuf reports, used to only run SonarAnalyzer.Scanner on the files which changed since the previous analysis.
+ * The reports of the unchanged files are replayed from the cache into the report directory, and then imported as usual.
+ * The whole cache is dropped as soon as its key, computed from the analyzer version, the active rules and the analysis settings, changes.
+ */
+class IncrementalAnalysis {
+
+  static final String CACHE_DIRECTORY_NAME = "incremental-cs";
+
+  private static final Logger LOG = Loggers.get(IncrementalAnalysis.class);
+  private static final String KEY_FILE_NAME = "key.txt";
+  private static final String INDEX_FILE_NAME = "index.txt";
+
+  private static final List<Report<?>> REPORTS = reports();
+
+  private final Path cacheDirectory;
+  private final String cacheKey;
+  private final Map<String, String> currentHashes = new TreeMap<>();
+  private final Set<String> unchangedFiles = new HashSet<>();
+
+  IncrementalAnalysis(Path cacheDirectory, String cacheKey) {
+    this.cacheDirectory = cacheDirectory;
+    this.cacheKey = cacheKey;
+  }
+
+  /**
+   * Files whose analysis results cannot be taken from the cache.
+   */
+  Set<File> changedFiles(Iterable<File> files) {
+    Map<String, String> previousHashes = isCacheValid() ? readIndex() : new HashMap<>();
+    Set<File> result = new HashSet<>();
+    for (File file : files) {
+      String path = file.getAbsolutePath();
+      String hash = Hashes.hash(file.toPath());
+      currentHashes.put(path, hash);
+      if (hash.equals(previousHashes.get(path))) {
+        unchangedFiles.add(path);
+      } else {
+        result.add(file);
+      }
+    }
+    LOG.info("Incremental analysis: " + result.size() + " changed file(s), " + unchangedFiles.size() + " unchanged file(s)");
+    return result;
+  }
+
+  /**
+   * Appends the cached reports of the unchanged files to the ones generated by the analyzer.
+   */
+  void replayUnchangedFiles(Path protobufReportsDirectory) {
+    if (unchangedFiles.isEmpty()) {
+      return;
+    }
+    try {
+      Files.createDirectories(protobufReportsDirectory);
+      for (Report<?> report : REPORTS) {
+        report.replay(cacheDirectory.resolve(report.fileName), protobufReportsDirectory.resolve(report.fileName), unchangedFiles);
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Could not replay the cached analysis results into " + protobufReportsDirectory, e);
+    }
+  }
+
+  /**
+   * Stores the reports of the current analysis, which must cover all the files given to {@link #changedFiles(Iterable)}.
+   */
+  void save(Path protobufReportsDirectory) {
+    try {
+      Files.createDirectories(cacheDirectory);
+      Files.deleteIfExists(cacheDirectory.resolve(KEY_FILE_NAME));
+      for (Report<?> report : REPORTS) {
+        Path source = protobufReportsDirectory.resolve(report.fileName);
+        Path target = cacheDirectory.resolve(report.fileName);
+        if (Files.exists(source)) {
+          Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+        } else {
+          Files.deleteIfExists(target);
+        }
+      }
+      try (Writer writer = new BufferedWriter(Files.newBufferedWriter(cacheDirectory.resolve(INDEX_FILE_NAME), StandardCharsets.UTF_8))) {
+        for (Map.Entry<String, String> entry : currentHashes.entrySet()) {
+          writer.write(entry.getValue() + "\t" + entry.getKey() + "\n");
+        }
+      }
+      // Written last, so that an interrupted save leaves an invalid cache
+      Files.write(cacheDirectory.resolve(KEY_FILE_NAME), cacheKey.getBytes(StandardCharsets.UTF_8));
+    } catch (IOException e) {
+      throw new IllegalStateException("Could not save the analysis results into the cache " + cacheDirectory, e);
+    }
+  }
+
+  static void deleteReports(Path protobufReportsDirectory) {
+    for (Report<?> report : REPORTS) {
+      try {
+        Files.deleteIfExists(protobufReportsDirectory.resolve(report.fileName));
+      } catch (IOException e) {
+        throw new IllegalStateException("Could not delete the previous analysis results from " + protobufReportsDirectory, e);
+      }
+    }
+  }
+
+  static String cacheKey(String analyzerVersion, ActiveRules activeRules, boolean includeRules, boolean ignoreHeaderComments, String encoding) {
+    StringBuilder sb = new StringBuilder();
+    sb.append(analyzerVersion).append('\n');
+    sb.append(includeRules).append('\n');
+    sb.append(ignoreHeaderComments).append('\n');
+    sb.append(encoding).append('\n');
+    List<ActiveRule> rules = new ArrayList<>(activeRules.findAll());
+    rules.sort(Comparator.comparing(activeRule -> activeRule.ruleKey().toString()));
+    for (ActiveRule activeRule : rules) {
+      sb.append(activeRule.ruleKey()).append(new TreeMap<>(activeRule.params())).append('\n');
+    }
+    return Hashes.hash(sb.toString());
+  }
+
+  private boolean isCacheValid() {
+    Path keyFile = cacheDirectory.resolve(KEY_FILE_NAME);
+    try {
+      return Files.exists(keyFile) && cacheKey.equals(new String(Files.readAllBytes(keyFile), StandardCharsets.UTF_8));
+    } catch (IOException e) {
+      LOG.warn("Could not read the incremental analysis cache key, all files will be analyzed", e);
+      return false;
+    }
+  }
+
+  private Map<String, String> readIndex() {
+    Map<String, String> result = new HashMap<>();
+    try {
+      for (String line : Files.readAllLines(cacheDirectory.resolve(INDEX_FILE_NAME), StandardCharsets.UTF_8)) {
+        int separator = line.indexOf('\t');
+        if (separator > 0) {
+          result.put(line.substring(separator + 1), line.substring(0, separator));
+        }
+      }
+    } catch (IOException e) {
+      LOG.warn("Could not read the incremental analysis cache index, all files will be analyzed", e);
+      result.clear();
+    }
+    return result;
+  }
+
+  private static List<Report<?>> reports() {
+    List<Report<?>> result = new ArrayList<>();
+    result.add(new Report<>(ENCODING_OUTPUT_PROTOBUF_NAME, EncodingInfo.parser(), EncodingInfo::getFilePath));
+    result.add(new Report<>(METRICS_OUTPUT_PROTOBUF_NAME, MetricsInfo.parser(), MetricsInfo::getFilePath));
+    result.add(new Report<>(ISSUES_OUTPUT_PROTOBUF_NAME, FileIssues.parser(), FileIssues::getFilePath));
+    result.add(new Report<>(HIGHLIGHT_OUTPUT_PROTOBUF_NAME, TokenTypeInfo.parser(), TokenTypeInfo::getFilePath));
+    result.add(new Report<>(SYMBOLREFS_OUTPUT_PROTOBUF_NAME, SymbolReferenceInfo.parser(), SymbolReferenceInfo::getFilePath));
+    result.add(new Report<>(CPDTOKENS_OUTPUT_PROTOBUF_NAME, CopyPasteTokenInfo.parser(), CopyPasteTokenInfo::getFilePath));
+    return result;
+  }
+
+  private static class Report<T extends MessageLite> {
+
+    private final String fileName;
+    private final Parser<T> parser;
+    private final Function<T, String> toFilePath;
+
+    Report(String fileName, Parser<T> parser, Function<T, String> toFilePath) {
+      this.fileName = fileName;
+      this.parser = parser;
+      this.toFilePath = toFilePath;
+    }
+
+    void replay(Path cached, Path target, Set<String> files) throws IOException {
+      if (!Files.exists(cached)) {
+        return;
+      }
+      try (InputStream input = new BufferedInputStream(Files.newInputStream(cached));
+        OutputStream output = new BufferedOutputStream(Files.newOutputStream(target, StandardOpenOption.CREATE, StandardOpenOption.APPEND))) {
+        T message;
+        while ((message = parser.parseDelimitedFrom(input)) != null) {
+          if (files.contains(new File(toFilePath.apply(message)).getAbsolutePath())) {
+            message.writeDelimitedTo(output);
+          }
+        }
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,187 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.CheckForNull;
+import org.sonar.api.batch.BatchSide;
+import org.sonar.api.batch.InstantiationStrategy;
+import org.sonar.api.batch.fs.FilePredicate;
+import org.sonar.api.batch.fs.FilePredicates;
+import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.sensor.SensorContext;
+
+/**
+ * Indexes the C# files of each module by their normalized path once per analysis, so that all the importers of the plugin
+ * resolve the paths found in the reports with a single hash lookup.
+ * Paths are compared the way Windows does: either separator is accepted, "." and ".." segments are resolved and the case is ignored,
+ * unless several files only differ by the case of their paths.
+ */
+@BatchSide
+@InstantiationStrategy(InstantiationStrategy.PER_BATCH)
+public class InputFileIndex {
+
+  private final Map<String, Index> indexByModule = new HashMap<>();
+
+  synchronized Index get(SensorContext context) {
+    return indexByModule.computeIfAbsent(context.module().key(), k -> new Index(context.fileSystem()));
+  }
+
+  /**
+   * Sensor context whose file system resolves the path predicates through the index, as used by the importers of the shared library.
+   * Only the C# files can be found that way.
+   */
+  SensorContext indexed(SensorContext context) {
+    Index index = get(context);
+    FileSystem fs = context.fileSystem();
+    FilePredicates predicates = (FilePredicates) Proxy.newProxyInstance(FilePredicates.class.getClassLoader(), new Class<?>[] {FilePredicates.class},
+      (proxy, method, args) -> {
+        if ("hasPath".equals(method.getName()) || "hasAbsolutePath".equals(method.getName())) {
+          return new PathPredicate(index, (String) args[0]);
+        }
+        return invoke(fs.predicates(), method, args);
+      });
+    FileSystem indexedFs = (FileSystem) Proxy.newProxyInstance(FileSystem.class.getClassLoader(), new Class<?>[] {FileSystem.class}, (proxy, method, args) -> {
+      if ("predicates".equals(method.getName())) {
+        return predicates;
+      }
+      if ("inputFile".equals(method.getName()) && args[0] instanceof PathPredicate) {
+        PathPredicate pathPredicate = (PathPredicate) args[0];
+        return index.inputFile(pathPredicate.path);
+      }
+      return invoke(fs, method, args);
+    });
+    return (SensorContext) Proxy.newProxyInstance(SensorContext.class.getClassLoader(), new Class<?>[] {SensorContext.class},
+      (proxy, method, args) -> "fileSystem".equals(method.getName()) ? indexedFs : invoke(context, method, args));
+  }
+
+  private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+    try {
+      return method.invoke(target, args);
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    }
+  }
+
+  static final class Index {
+
+    private final String baseDir;
+    private final Map<String, InputFile> inputFilesByPath = new HashMap<>();
+    private final Map<String, InputFile> inputFilesByFoldedPath = new HashMap<>();
+    private final Set<String> ambiguousFoldedPaths = new HashSet<>();
+
+    Index(FileSystem fs) {
+      baseDir = normalize(fs.baseDir().getAbsolutePath());
+      for (InputFile inputFile : fs.inputFiles(fs.predicates().hasLanguage(CSharpPlugin.LANGUAGE_KEY))) {
+        String path = normalize(inputFile.absolutePath());
+        inputFilesByPath.put(path, inputFile);
+        String foldedPath = fold(path);
+        if (inputFilesByFoldedPath.putIfAbsent(foldedPath, inputFile) != null) {
+          ambiguousFoldedPaths.add(foldedPath);
+        }
+      }
+    }
+
+    /**
+     * @param path absolute, or relative to the base directory of the module
+     */
+    @CheckForNull
+    InputFile inputFile(String path) {
+      String normalizedPath = normalize(path);
+      if (!isAbsolute(normalizedPath)) {
+        normalizedPath = normalize(baseDir + "/" + normalizedPath);
+      }
+      InputFile inputFile = inputFilesByPath.get(normalizedPath);
+      if (inputFile != null) {
+        return inputFile;
+      }
+      String foldedPath = fold(normalizedPath);
+      return ambiguousFoldedPaths.contains(foldedPath) ? null : inputFilesByFoldedPath.get(foldedPath);
+    }
+
+  }
+
+  private static final class PathPredicate implements FilePredicate {
+
+    private final Index index;
+    private final String path;
+
+    private PathPredicate(Index index, String path) {
+      this.index = index;
+      this.path = path;
+    }
+
+    @Override
+    public boolean apply(InputFile inputFile) {
+      return inputFile.equals(index.inputFile(path));
+    }
+
+  }
+
+  /**
+   * Forward slashes only, without "." segments, with the ".." segments resolved where possible, and without trailing slash.
+   * The prefix of absolute paths is kept: "/" on Unix, the drive letter or the "//" of UNC paths on Windows.
+   */
+  static String normalize(String path) {
+    String slashed = path.replace('\\', '/');
+    String prefix;
+    if (slashed.startsWith("//")) {
+      prefix = "//";
+    } else if (slashed.startsWith("/")) {
+      prefix = "/";
+    } else if (slashed.length() >= 3 && slashed.charAt(1) == ':' && slashed.charAt(2) == '/') {
+      prefix = slashed.substring(0, 3);
+    } else {
+      prefix = "";
+    }
+
+    List<String> segments = new ArrayList<>();
+    for (String segment : slashed.substring(prefix.length()).split("/")) {
+      if (segment.isEmpty() || ".".equals(segment)) {
+        continue;
+      }
+      if ("..".equals(segment) && !segments.isEmpty() && !"..".equals(segments.get(segments.size() - 1))) {
+        segments.remove(segments.size() - 1);
+      } else if (!"..".equals(segment) || prefix.isEmpty()) {
+        segments.add(segment);
+      }
+    }
+    return prefix + String.join("/", segments);
+  }
+
+  private static boolean isAbsolute(String normalizedPath) {
+    return normalizedPath.startsWith("/") || (normalizedPath.length() >= 3 && normalizedPath.charAt(1) == ':' && normalizedPath.charAt(2) == '/');
+  }
+
+  private static String fold(String normalizedPath) {
+    return normalizedPath.toLowerCase(Locale.ENGLISH);
+  }
+
+}
@@ -0,0 +1,52 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import java.util.HashMap;
+import java.util.Map;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Parser of the NCover 3 XML reports: the hits of each sequence point which is not excluded are added to its line.
+ */
+class NCover3ReportParser extends XmlCoverageReportParser {
+
+  @Override
+  void parse(XMLStreamReader reader, CoverageData coverage) throws XMLStreamException {
+    Map<String, Integer> fileIdsByDocumentId = new HashMap<>();
+    while (reader.hasNext()) {
+      if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+        continue;
+      }
+      String name = reader.getLocalName();
+      if ("doc".equals(name)) {
+        fileIdsByDocumentId.put(reader.getAttributeValue(null, "id"), coverage.fileId(reader.getAttributeValue(null, "url")));
+      } else if ("seqpnt".equals(name) && !"true".equals(reader.getAttributeValue(null, "ex"))) {
+        Integer fileId = fileIdsByDocumentId.get(reader.getAttributeValue(null, "doc"));
+        if (fileId != null) {
+          coverage.addHits(fileId, intAttribute(reader, "l"), intAttribute(reader, "vc"));
+        }
+      }
+    }
+  }
+
+}
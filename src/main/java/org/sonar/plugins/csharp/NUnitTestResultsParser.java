@@ -0,0 +1,96 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Parser of the NUnit 2 XML reports: the counters come from the root "test-results" element,
+ * and the execution time is the sum of the times of its top level test suites.
+ * The type of each test case is the prefix of its fully qualified name, before the name of the method.
+ */
+class NUnitTestResultsParser extends XmlUnitTestResultsParser {
+
+  @Override
+  Handler newHandler(UnitTestResultsData results) {
+    return new NUnitHandler(results);
+  }
+
+  private static class NUnitHandler implements Handler {
+    private final UnitTestResultsData results;
+    private String assembly = "";
+
+    private NUnitHandler(UnitTestResultsData results) {
+      this.results = results;
+    }
+
+    @Override
+    public void startElement(XMLStreamReader reader, int depth) {
+      String name = reader.getLocalName();
+      if (depth == 1 && "test-results".equals(name)) {
+        int total = intAttribute(reader, "total");
+        int errors = intAttribute(reader, "errors");
+        int failures = intAttribute(reader, "failures");
+        int inconclusive = intAttribute(reader, "inconclusive");
+        int ignored = intAttribute(reader, "ignored");
+        results.add(total - inconclusive, total - errors - failures - inconclusive, inconclusive + ignored, failures, errors);
+      } else if ("test-suite".equals(name)) {
+        if (depth == 2) {
+          String time = reader.getAttributeValue(null, "time");
+          if (time != null) {
+            results.addExecutionTime(secondsAttributeAsMs(time));
+          }
+        }
+        if ("Assembly".equals(reader.getAttributeValue(null, "type"))) {
+          assembly = assemblyName(reader.getAttributeValue(null, "name"));
+        }
+      } else if ("test-case".equals(name)) {
+        addTestCase(reader);
+      }
+    }
+
+    private void addTestCase(XMLStreamReader reader) {
+      String testName = requiredAttribute(reader, "name");
+      int arguments = testName.indexOf('(');
+      String methodName = arguments == -1 ? testName : testName.substring(0, arguments);
+      int typeSeparator = methodName.lastIndexOf('.');
+      if (typeSeparator == -1) {
+        return;
+      }
+      results.addTestCase(assembly, methodName.substring(0, typeSeparator), testName, outcome(reader), secondsAttributeAsMs(reader, "time"));
+    }
+  }
+
+  private static UnitTestResultsData.Outcome outcome(XMLStreamReader reader) {
+    if ("False".equalsIgnoreCase(reader.getAttributeValue(null, "executed"))) {
+      return UnitTestResultsData.Outcome.SKIPPED;
+    }
+    String result = reader.getAttributeValue(null, "result");
+    if ("Success".equals(result)) {
+      return UnitTestResultsData.Outcome.PASSED;
+    } else if ("Failure".equals(result)) {
+      return UnitTestResultsData.Outcome.FAILURE;
+    } else if ("Error".equals(result)) {
+      return UnitTestResultsData.Outcome.ERROR;
+    }
+    return UnitTestResultsData.Outcome.SKIPPED;
+  }
+
+}
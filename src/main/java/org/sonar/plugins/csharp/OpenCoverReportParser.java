@@ -0,0 +1,58 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import java.util.HashMap;
+import java.util.Map;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Parser of the OpenCover XML reports: the hits of each sequence point are added to its start line.
+ */
+class OpenCoverReportParser extends XmlCoverageReportParser {
+
+  @Override
+  void parse(XMLStreamReader reader, CoverageData coverage) throws XMLStreamException {
+    Map<String, Integer> fileIdsByUid = new HashMap<>();
+    String methodFileUid = null;
+    while (reader.hasNext()) {
+      if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+        continue;
+      }
+      String name = reader.getLocalName();
+      if ("File".equals(name)) {
+        fileIdsByUid.put(reader.getAttributeValue(null, "uid"), coverage.fileId(reader.getAttributeValue(null, "fullPath")));
+      } else if ("Method".equals(name)) {
+        methodFileUid = null;
+      } else if ("FileRef".equals(name)) {
+        methodFileUid = reader.getAttributeValue(null, "uid");
+      } else if ("SequencePoint".equals(name)) {
+        String fileUid = reader.getAttributeValue(null, "fileid");
+        Integer fileId = fileIdsByUid.get(fileUid != null ? fileUid : methodFileUid);
+        if (fileId != null) {
+          coverage.addHits(fileId, intAttribute(reader, "sl"), intAttribute(reader, "vc"));
+        }
+      }
+    }
+  }
+
+}
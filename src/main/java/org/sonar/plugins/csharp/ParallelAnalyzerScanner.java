@@ -0,0 +1,200 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import com.google.common.base.Throwables;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+/**
+ * Runs SonarAnalyzer.Scanner on several batches of files concurrently, one process per batch,
+ * and merges the protobuf reports of all the batches into a single report directory.
+ */
+class ParallelAnalyzerScanner {
+
+  static final String BATCHES_DIRECTORY_NAME = "batches-cs";
+
+  private static final Logger LOG = Loggers.get(ParallelAnalyzerScanner.class);
+
+  private final AnalyzerLauncher launcher;
+  private final File executableFile;
+  private final int parallelism;
+  private final int timeoutMs;
+
+  ParallelAnalyzerScanner(AnalyzerLauncher launcher, File executableFile, int parallelism, int timeoutMs) {
+    this.launcher = launcher;
+    this.executableFile = executableFile;
+    this.parallelism = parallelism;
+    this.timeoutMs = timeoutMs;
+  }
+
+  @FunctionalInterface
+  interface BatchInputWriter {
+    void write(Set<File> batch, Path analysisInput) throws IOException;
+  }
+
+  /**
+   * @param analysisInputWriter writes the analysis input of a batch of files
+   */
+  void analyze(List<File> files, BatchInputWriter analysisInputWriter, Path workDir, Path analysisOutput) {
+    List<Set<File>> batches = partition(files, parallelism);
+    LOG.info("Running " + batches.size() + " SonarAnalyzer.Scanner processes on " + files.size() + " files");
+
+    List<Callable<Void>> tasks = new ArrayList<>();
+    List<Path> batchOutputs = new ArrayList<>();
+    for (int i = 0; i < batches.size(); i++) {
+      Path batchDirectory = workDir.resolve(BATCHES_DIRECTORY_NAME).resolve("batch-" + i);
+      Path batchInput = batchDirectory.resolve("SonarLint.xml");
+      Path batchOutput = batchDirectory.resolve(CSharpConfiguration.ANALYSIS_OUTPUT_DIRECTORY_NAME);
+      try {
+        Files.createDirectories(batchOutput);
+        deleteProtobufReports(batchOutput);
+        analysisInputWriter.write(batches.get(i), batchInput);
+      } catch (IOException e) {
+        throw Throwables.propagate(e);
+      }
+      batchOutputs.add(batchOutput);
+      String prefix = "[batch " + i + "] ";
+      int batchFiles = batches.get(i).size();
+      tasks.add(SensorMetrics.measured(() -> {
+        try (AnalyzerLog log = new AnalyzerLog(batchDirectory.resolve(AnalyzerLog.LOG_FILE_NAME), prefix, batchFiles)) {
+          launcher.launch(executableFile, batchInput, batchOutput, timeoutMs, log.stdOut(), log.stdErr());
+          log.succeeded();
+        }
+        return null;
+      }));
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(batches.size());
+    try {
+      for (Future<Void> future : executor.invokeAll(tasks)) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for SonarAnalyzer.Scanner", e);
+    } catch (ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+
+    merge(batchOutputs, analysisOutput);
+  }
+
+  /**
+   * Splits the files into at most the given number of batches of similar total size, so that all processes take a similar time.
+   */
+  static List<Set<File>> partition(List<File> files, int maxBatches) {
+    int batchCount = Math.max(1, Math.min(maxBatches, files.size()));
+    List<Set<File>> batches = new ArrayList<>();
+    long[] batchSizes = new long[batchCount];
+    PriorityQueue<Integer> smallestBatches = new PriorityQueue<>(batchCount,
+      Comparator.<Integer>comparingLong(batch -> batchSizes[batch]).thenComparingInt(batch -> batch));
+    for (int i = 0; i < batchCount; i++) {
+      batches.add(new HashSet<>());
+      smallestBatches.add(i);
+    }
+
+    List<File> largestFirst = new ArrayList<>(files);
+    largestFirst.sort(Comparator.comparingLong(File::length).reversed().thenComparing(File::getPath));
+    for (File file : largestFirst) {
+      int batch = smallestBatches.poll();
+      batches.get(batch).add(file);
+      batchSizes[batch] += Math.max(1, file.length());
+      smallestBatches.add(batch);
+    }
+    return batches;
+  }
+
+  /**
+   * Concatenates the protobuf reports of all the batches: reports are sequences of delimited messages, one or more per file.
+   */
+  static void merge(List<Path> batchOutputs, Path analysisOutput) {
+    try {
+      Files.createDirectories(analysisOutput);
+      deleteProtobufReports(analysisOutput);
+      Set<String> reportNames = new TreeSet<>();
+      for (Path batchOutput : batchOutputs) {
+        reportNames.addAll(protobufReports(batchOutput));
+      }
+      for (String reportName : reportNames) {
+        try (OutputStream output = Files.newOutputStream(analysisOutput.resolve(reportName))) {
+          for (Path batchOutput : batchOutputs) {
+            Path report = batchOutput.resolve(reportName);
+            if (Files.exists(report)) {
+              try (InputStream input = Files.newInputStream(report)) {
+                copy(input, output);
+              }
+            }
+          }
+        }
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Could not merge the analysis results into " + analysisOutput, e);
+    }
+  }
+
+  private static void copy(InputStream input, OutputStream output) throws IOException {
+    byte[] buffer = new byte[64 * 1024];
+    int read;
+    while ((read = input.read(buffer)) != -1) {
+      output.write(buffer, 0, read);
+    }
+  }
+
+  private static List<String> protobufReports(Path directory) throws IOException {
+    List<String> result = new ArrayList<>();
+    if (Files.isDirectory(directory)) {
+      try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.pb")) {
+        for (Path report : stream) {
+          result.add(report.getFileName().toString());
+        }
+      }
+    }
+    return result;
+  }
+
+  private static void deleteProtobufReports(Path directory) throws IOException {
+    for (String report : protobufReports(directory)) {
+      Files.delete(directory.resolve(report));
+    }
+  }
+
+}
@@ -0,0 +1,197 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import com.google.common.base.Throwables;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+
+/**
+ * Aggregates the line hits of several coverage reports, parsing them concurrently when more than one thread is allowed.
+ * Each thread takes the next report to parse from a shared counter, and adds its hits to its own partial {@link CoverageData}.
+ * The partial coverages are only merged once all the reports are parsed, so that no lock is ever needed.
+ * As hits are summed up, the result is the same as the one of a serial aggregation, whatever the order in which the reports are parsed.
+ * When a {@link CoverageCache} is given, the unchanged reports are read from it instead of being parsed.
+ */
+class ParallelCoverageAggregator {
+
+  private final int threads;
+  private final CoverageCache cache;
+
+  ParallelCoverageAggregator(int threads) {
+    this(threads, null);
+  }
+
+  ParallelCoverageAggregator(int threads, @Nullable CoverageCache cache) {
+    this.threads = threads;
+    this.cache = cache;
+  }
+
+  CoverageData aggregate(List<Report> reports) {
+    return aggregateByOrigin(reports, 1)[0];
+  }
+
+  /**
+   * Aggregates the reports into one coverage per origin, from 0 to {@code origins} excluded: the hits of each report are added
+   * to the coverage of each of its {@link Report#origins()}. A report of several origins is still parsed only once.
+   */
+  CoverageData[] aggregateByOrigin(List<Report> reports, int origins) {
+    CoverageData[] coverages = aggregateReports(reports, origins);
+    if (cache != null) {
+      cache.evict();
+    }
+    return coverages;
+  }
+
+  private CoverageData[] aggregateReports(List<Report> reports, int origins) {
+    int workers = Math.min(threads, reports.size());
+    if (workers <= 1) {
+      CoverageData[] coverages = newCoverages(origins);
+      for (Report report : reports) {
+        parse(report, coverages);
+      }
+      return coverages;
+    }
+
+    AtomicInteger nextReport = new AtomicInteger();
+    List<Callable<CoverageData[]>> tasks = new ArrayList<>();
+    for (int i = 0; i < workers; i++) {
+      tasks.add(() -> {
+        CoverageData[] partialCoverages = newCoverages(origins);
+        for (int report = nextReport.getAndIncrement(); report < reports.size(); report = nextReport.getAndIncrement()) {
+          parse(reports.get(report), partialCoverages);
+        }
+        return partialCoverages;
+      });
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(workers);
+    try {
+      CoverageData[] coverages = null;
+      for (Future<CoverageData[]> future : executor.invokeAll(tasks)) {
+        CoverageData[] partialCoverages = future.get();
+        if (coverages == null) {
+          coverages = partialCoverages;
+        } else {
+          for (int origin = 0; origin < origins; origin++) {
+            coverages[origin].mergeWith(partialCoverages[origin]);
+          }
+        }
+      }
+      return coverages;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while aggregating the coverage reports", e);
+    } catch (ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static CoverageData[] newCoverages(int origins) {
+    CoverageData[] coverages = new CoverageData[origins];
+    for (int origin = 0; origin < origins; origin++) {
+      coverages[origin] = new CoverageData();
+    }
+    return coverages;
+  }
+
+  private void parse(Report report, CoverageData[] coverages) {
+    if (Integer.bitCount(report.origins) == 1) {
+      parse(report, coverages[Integer.numberOfTrailingZeros(report.origins)]);
+      return;
+    }
+    CoverageData reportCoverage = new CoverageData();
+    parse(report, reportCoverage);
+    for (int origin = 0; origin < coverages.length; origin++) {
+      if ((report.origins & (1 << origin)) != 0) {
+        coverages[origin].mergeWith(reportCoverage);
+      }
+    }
+  }
+
+  private void parse(Report report, CoverageData coverage) {
+    if (cache != null && report.cacheable) {
+      coverage.mergeWith(cache.readOrParse(report));
+    } else {
+      report.parse(coverage);
+    }
+  }
+
+  static class Report {
+    private final File file;
+    private final CoverageReportParser parser;
+    private final boolean cacheable;
+    private final int origins;
+
+    Report(File file, CoverageReportParser parser) {
+      this(file, parser, true);
+    }
+
+    /**
+     * @param cacheable false for reports which are cheaper to parse again than to read from a {@link CoverageCache}
+     */
+    Report(File file, CoverageReportParser parser, boolean cacheable) {
+      this(file, parser, cacheable, 1);
+    }
+
+    private Report(File file, CoverageReportParser parser, boolean cacheable, int origins) {
+      this.file = file;
+      this.parser = parser;
+      this.cacheable = cacheable;
+      this.origins = origins;
+    }
+
+    /**
+     * The same report, whose hits are added to the coverages of the given origins by {@link #aggregateByOrigin(List, int)}.
+     *
+     * @param origins bit set of the origins, bit {@code i} being set for the origin {@code i}
+     */
+    Report withOrigins(int origins) {
+      return new Report(file, parser, cacheable, origins);
+    }
+
+    File file() {
+      return file;
+    }
+
+    CoverageReportParser parser() {
+      return parser;
+    }
+
+    int origins() {
+      return origins;
+    }
+
+    void parse(CoverageData coverage) {
+      parser.parse(file, coverage);
+    }
+  }
+
+}
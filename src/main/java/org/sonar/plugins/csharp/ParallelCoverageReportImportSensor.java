@@ -0,0 +1,207 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.CheckForNull;
+import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.sensor.Sensor;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.batch.sensor.SensorDescriptor;
+import org.sonar.api.batch.sensor.coverage.CoverageType;
+import org.sonar.api.batch.sensor.coverage.NewCoverage;
+import org.sonar.api.config.Settings;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.plugins.dotnet.tests.CoverageConfiguration;
+
+/**
+ * Imports the unit and integration tests coverage reports using {@link ParallelCoverageAggregator}, when more than one thread is configured
+ * or when the coverage cache is enabled. Each source file report of the dotCover reports is parsed as a report on its own.
+ * In overall coverage mode, a report listed both as a unit and as an integration tests report is parsed only once,
+ * and the unit, integration and overall coverages of each file are saved together.
+ * Otherwise, the coverage reports are imported by the sensors of the .NET tests library.
+ */
+public class ParallelCoverageReportImportSensor implements Sensor {
+
+  private static final Logger LOG = Loggers.get(ParallelCoverageReportImportSensor.class);
+
+  private static final int UNIT_ORIGIN = 0;
+  private static final int IT_ORIGIN = 1;
+
+  private final CoverageConfiguration unitTestsConf;
+  private final CoverageConfiguration integrationTestsConf;
+  private final Settings settings;
+  private final InputFileIndex inputFileIndex;
+
+  public ParallelCoverageReportImportSensor(CoverageConfiguration unitTestsConf, CoverageConfiguration integrationTestsConf, Settings settings,
+    InputFileIndex inputFileIndex) {
+    this.unitTestsConf = unitTestsConf;
+    this.integrationTestsConf = integrationTestsConf;
+    this.settings = settings;
+    this.inputFileIndex = inputFileIndex;
+  }
+
+  @Override
+  public void describe(SensorDescriptor descriptor) {
+    descriptor.name("C# Parallel Coverage Report Import").onlyOnLanguage(unitTestsConf.languageKey());
+  }
+
+  @Override
+  public void execute(SensorContext context) {
+    if (settings.getBoolean(CSharpConfiguration.CONCURRENT_SENSORS_PROPERTY_KEY)) {
+      LOG.debug("Coverage reports are imported by the concurrent sensor");
+      return;
+    }
+    executeInternal(context);
+  }
+
+  void executeInternal(SensorContext context) {
+    if (!CSharpCodeCoverageProvider.isImportedByPlugin(settings)) {
+      return;
+    }
+    int threads = Math.max(1, settings.getInt(CSharpCodeCoverageProvider.THREADS_PROPERTY_KEY));
+    long cacheSize = settings.getInt(CSharpCodeCoverageProvider.CACHE_SIZE_PROPERTY_KEY) * 1024L * 1024L;
+    CoverageCache cache = cacheSize > 0 ? new CoverageCache(context.fileSystem().workDir().toPath().resolve(CoverageCache.CACHE_DIRECTORY_NAME), cacheSize) : null;
+    ParallelCoverageAggregator aggregator = new ParallelCoverageAggregator(threads, cache);
+    if (settings.getBoolean(CSharpCodeCoverageProvider.OVERALL_PROPERTY_KEY)) {
+      importOverallCoverage(context, aggregator);
+    } else {
+      importCoverage(context, aggregator, unitTestsConf, CoverageType.UNIT);
+      importCoverage(context, aggregator, integrationTestsConf, CoverageType.IT);
+    }
+  }
+
+  private void importCoverage(SensorContext context, ParallelCoverageAggregator aggregator, CoverageConfiguration conf, CoverageType type) {
+    List<ParallelCoverageAggregator.Report> reports = reports(context.fileSystem(), conf);
+    if (reports.isEmpty()) {
+      return;
+    }
+    LOG.info("Aggregating " + reports.size() + (type == CoverageType.UNIT ? " unit" : " integration") + " tests coverage reports");
+    Map<CoverageType, CoverageData> coverages = new EnumMap<>(CoverageType.class);
+    coverages.put(type, aggregator.aggregate(reports));
+    save(context, coverages, conf.languageKey(), false);
+  }
+
+  private void importOverallCoverage(SensorContext context, ParallelCoverageAggregator aggregator) {
+    Map<String, ParallelCoverageAggregator.Report> reportsByFile = new LinkedHashMap<>();
+    addOrigin(reportsByFile, reports(context.fileSystem(), unitTestsConf), UNIT_ORIGIN);
+    addOrigin(reportsByFile, reports(context.fileSystem(), integrationTestsConf), IT_ORIGIN);
+    if (reportsByFile.isEmpty()) {
+      return;
+    }
+    LOG.info("Aggregating " + reportsByFile.size() + " distinct unit and integration tests coverage reports");
+    CoverageData[] coverageByOrigin = aggregator.aggregateByOrigin(new ArrayList<>(reportsByFile.values()), 2);
+    Map<CoverageType, CoverageData> coverages = new EnumMap<>(CoverageType.class);
+    coverages.put(CoverageType.UNIT, coverageByOrigin[UNIT_ORIGIN]);
+    coverages.put(CoverageType.IT, coverageByOrigin[IT_ORIGIN]);
+    save(context, coverages, unitTestsConf.languageKey(), true);
+  }
+
+  /**
+   * The same report file, listed by several properties or with different paths, is only kept once, with all its origins.
+   */
+  private static void addOrigin(Map<String, ParallelCoverageAggregator.Report> reportsByFile, List<ParallelCoverageAggregator.Report> reports, int origin) {
+    for (ParallelCoverageAggregator.Report report : reports) {
+      String key = report.parser().getClass().getName() + ':' + report.file().getAbsoluteFile().toPath().normalize();
+      ParallelCoverageAggregator.Report previous = reportsByFile.get(key);
+      int origins = (previous == null ? 0 : previous.origins()) | (1 << origin);
+      reportsByFile.put(key, report.withOrigins(origins));
+    }
+  }
+
+  private List<ParallelCoverageAggregator.Report> reports(FileSystem fs, CoverageConfiguration conf) {
+    List<ParallelCoverageAggregator.Report> reports = new ArrayList<>();
+    addReports(reports, fs, conf.ncover3PropertyKey(), new NCover3ReportParser());
+    addReports(reports, fs, conf.openCoverPropertyKey(), new OpenCoverReportParser());
+    for (File dotCoverReport : ReportFiles.list(fs.baseDir(), settings.getString(conf.dotCoverPropertyKey()))) {
+      reports.addAll(DotCoverReportParser.sourceFileReports(dotCoverReport));
+    }
+    addReports(reports, fs, conf.visualStudioCoverageXmlPropertyKey(), new VisualStudioCoverageXmlReportParser());
+    return reports;
+  }
+
+  private void addReports(List<ParallelCoverageAggregator.Report> reports, FileSystem fs, String propertyKey, CoverageReportParser parser) {
+    ReportFiles.list(fs.baseDir(), settings.getString(propertyKey)).forEach(file -> reports.add(new ParallelCoverageAggregator.Report(file, parser)));
+  }
+
+  /**
+   * Saves the coverages of each type, and their sum as the overall coverage when requested, in a single traversal of the files.
+   * Several paths of the reports can denote the same input file, as they are not necessarily normalized: their hits are summed up before being saved.
+   */
+  private void save(SensorContext context, Map<CoverageType, CoverageData> coverages, String languageKey, boolean withOverall) {
+    InputFileIndex.Index index = inputFileIndex.get(context);
+    Map<String, InputFile> inputFilesByReportedPath = new HashMap<>();
+    Map<String, InputFile> inputFiles = new LinkedHashMap<>();
+    Map<CoverageType, CoverageData> coveragesByInputFile = new EnumMap<>(CoverageType.class);
+    CoverageData overallCoverage = new CoverageData();
+    coverages.forEach((type, coverage) -> {
+      CoverageData coverageByInputFile = new CoverageData();
+      coveragesByInputFile.put(type, coverageByInputFile);
+      for (String file : coverage.files()) {
+        InputFile inputFile = inputFilesByReportedPath.computeIfAbsent(file, path -> inputFile(index, path, languageKey));
+        if (inputFile == null) {
+          continue;
+        }
+        inputFiles.put(inputFile.absolutePath(), inputFile);
+        int fileId = coverageByInputFile.fileId(inputFile.absolutePath());
+        int overallFileId = overallCoverage.fileId(inputFile.absolutePath());
+        coverage.forEachLineHits(file, (line, hits) -> {
+          coverageByInputFile.addHits(fileId, line, hits);
+          overallCoverage.addHits(overallFileId, line, hits);
+        });
+      }
+    });
+    if (withOverall) {
+      coveragesByInputFile.put(CoverageType.OVERALL, overallCoverage);
+    }
+
+    inputFiles.forEach((path, inputFile) -> coveragesByInputFile.forEach((type, coverageByInputFile) -> {
+      if (!coverageByInputFile.hasHits(path)) {
+        return;
+      }
+      NewCoverage newCoverage = context.newCoverage().onFile(inputFile).ofType(type);
+      coverageByInputFile.forEachLineHits(path, (line, hits) -> {
+        if (line >= 1 && line <= inputFile.lines()) {
+          newCoverage.lineHits(line, hits);
+        }
+      });
+      newCoverage.save();
+    }));
+  }
+
+  @CheckForNull
+  private static InputFile inputFile(InputFileIndex.Index index, String path, String languageKey) {
+    InputFile inputFile = index.inputFile(path);
+    if (inputFile == null || !languageKey.equals(inputFile.language())) {
+      LOG.debug("Code coverage will not be imported for the following file outside of SonarQube or of another language: " + path);
+      return null;
+    }
+    return inputFile;
+  }
+
+}
@@ -0,0 +1,159 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import com.google.common.base.Throwables;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.issue.NoSonarFilter;
+import org.sonar.api.measures.FileLinesContextFactory;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonarsource.dotnet.shared.plugins.protobuf.RawProtobufImporter;
+
+import static org.sonarsource.dotnet.shared.plugins.protobuf.ProtobufImporters.CPDTOKENS_OUTPUT_PROTOBUF_NAME;
+import static org.sonarsource.dotnet.shared.plugins.protobuf.ProtobufImporters.HIGHLIGHT_OUTPUT_PROTOBUF_NAME;
+import static org.sonarsource.dotnet.shared.plugins.protobuf.ProtobufImporters.ISSUES_OUTPUT_PROTOBUF_NAME;
+import static org.sonarsource.dotnet.shared.plugins.protobuf.ProtobufImporters.METRICS_OUTPUT_PROTOBUF_NAME;
+import static org.sonarsource.dotnet.shared.plugins.protobuf.ProtobufImporters.SYMBOLREFS_OUTPUT_PROTOBUF_NAME;
+import static org.sonarsource.dotnet.shared.plugins.protobuf.ProtobufImporters.cpdTokensImporter;
+import static org.sonarsource.dotnet.shared.plugins.protobuf.ProtobufImporters.highlightImporter;
+import static org.sonarsource.dotnet.shared.plugins.protobuf.ProtobufImporters.issuesImporter;
+import static org.sonarsource.dotnet.shared.plugins.protobuf.ProtobufImporters.metricsImporter;
+import static org.sonarsource.dotnet.shared.plugins.protobuf.ProtobufImporters.symbolRefsImporter;
+
+/**
+ * Imports the protobuf reports of several report directories concurrently.
+ * Each report file of each directory is decoded on its own task, and all the results are saved through a {@link SingleWriter}.
+ * All the files are imported, as needed for reports coming from MSBuild, unless a predicate is given.
+ */
+class ParallelProtobufImporter {
+
+  private static final Logger LOG = Loggers.get(ParallelProtobufImporter.class);
+  private static final Predicate<InputFile> ALL_FILES = f -> true;
+
+  private final FileLinesContextFactory fileLinesContextFactory;
+  private final NoSonarFilter noSonarFilter;
+  private final String repositoryKey;
+  private final int threads;
+
+  ParallelProtobufImporter(FileLinesContextFactory fileLinesContextFactory, NoSonarFilter noSonarFilter, String repositoryKey, int threads) {
+    this.fileLinesContextFactory = fileLinesContextFactory;
+    this.noSonarFilter = noSonarFilter;
+    this.repositoryKey = repositoryKey;
+    this.threads = threads;
+  }
+
+  void importResults(SensorContext context, List<Path> reportDirectories, boolean importIssues) {
+    importResults(context, reportDirectories, importIssues, new SingleWriter(), ALL_FILES);
+  }
+
+  /**
+   * @param singleWriter shared with the other sensors running concurrently, if any
+   * @param filesToImport the files whose results are imported
+   */
+  void importResults(SensorContext context, List<Path> reportDirectories, boolean importIssues, SingleWriter singleWriter, Predicate<InputFile> filesToImport) {
+    SensorContext writerContext = singleWriter.wrap(context);
+    FileLinesContextFactory writerFileLinesContextFactory = singleWriter.wrap(fileLinesContextFactory);
+    NoSonarFilter writerNoSonarFilter = singleWriter.wrap(noSonarFilter);
+
+    List<Callable<Void>> tasks = new ArrayList<>();
+    for (Path reportDirectory : reportDirectories) {
+      addTask(tasks, reportDirectory, METRICS_OUTPUT_PROTOBUF_NAME,
+        () -> metricsImporter(writerContext, writerFileLinesContextFactory, writerNoSonarFilter, filesToImport));
+      if (importIssues) {
+        addTask(tasks, reportDirectory, ISSUES_OUTPUT_PROTOBUF_NAME, () -> issuesImporter(writerContext, repositoryKey, filesToImport));
+      }
+      addTask(tasks, reportDirectory, HIGHLIGHT_OUTPUT_PROTOBUF_NAME, () -> highlightImporter(writerContext, filesToImport));
+      addTask(tasks, reportDirectory, SYMBOLREFS_OUTPUT_PROTOBUF_NAME, () -> symbolRefsImporter(writerContext, filesToImport));
+      addTask(tasks, reportDirectory, CPDTOKENS_OUTPUT_PROTOBUF_NAME, () -> cpdTokensImporter(writerContext, filesToImport));
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, Math.max(1, tasks.size())));
+    try {
+      for (Future<Void> future : executor.invokeAll(tasks)) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while importing the analysis results", e);
+    } catch (ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static void addTask(List<Callable<Void>> tasks, Path reportDirectory, String fileName, Supplier<RawProtobufImporter<?>> importer) {
+    Path protobuf = reportDirectory.resolve(fileName);
+    if (!protobuf.toFile().exists()) {
+      LOG.warn("Protobuf file not found: " + protobuf);
+      return;
+    }
+    tasks.add(SensorMetrics.measured(() -> {
+      importer.get().accept(protobuf);
+      return null;
+    }));
+  }
+
+  /**
+   * The report directory itself, followed by its sub-directories containing protobuf reports, one per analyzed project.
+   */
+  static List<Path> reportDirectories(Path protobufReportsDirectory) {
+    List<Path> result = new ArrayList<>();
+    result.add(protobufReportsDirectory);
+    if (!Files.isDirectory(protobufReportsDirectory)) {
+      return result;
+    }
+    try (Stream<Path> children = Files.list(protobufReportsDirectory)) {
+      children
+        .filter(Files::isDirectory)
+        .filter(ParallelProtobufImporter::containsProtobufReports)
+        .sorted()
+        .forEach(result::add);
+    } catch (IOException e) {
+      throw new IllegalStateException("Could not list the protobuf report directories in " + protobufReportsDirectory, e);
+    }
+    return result;
+  }
+
+  private static boolean containsProtobufReports(Path directory) {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.anyMatch(p -> p.getFileName().toString().toLowerCase(Locale.ENGLISH).endsWith(".pb"));
+    } catch (IOException e) {
+      throw new IllegalStateException("Could not check for .pb files in " + directory, e);
+    }
+  }
+
+}
@@ -0,0 +1,112 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import com.google.common.base.Throwables;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Aggregates the counters of several test results reports, parsing them concurrently when more than one thread is allowed.
+ * As for {@link ParallelCoverageAggregator}, each thread takes the next report to parse from a shared counter and adds its counters
+ * to its own partial {@link UnitTestResultsData}, the partial results being merged once all the reports are parsed.
+ */
+class ParallelUnitTestResultsAggregator {
+
+  private final int threads;
+  private final int slowestTests;
+
+  ParallelUnitTestResultsAggregator(int threads) {
+    this(threads, 0);
+  }
+
+  /**
+   * @param slowestTests number of slowest tests to keep for the test duration hotspots, see {@link UnitTestResultsData#UnitTestResultsData(int)}
+   */
+  ParallelUnitTestResultsAggregator(int threads, int slowestTests) {
+    this.threads = threads;
+    this.slowestTests = slowestTests;
+  }
+
+  UnitTestResultsData aggregate(List<Report> reports) {
+    int workers = Math.min(threads, reports.size());
+    if (workers <= 1) {
+      UnitTestResultsData results = new UnitTestResultsData(slowestTests);
+      for (Report report : reports) {
+        report.parse(results);
+      }
+      return results;
+    }
+
+    AtomicInteger nextReport = new AtomicInteger();
+    List<Callable<UnitTestResultsData>> tasks = new ArrayList<>();
+    for (int i = 0; i < workers; i++) {
+      tasks.add(() -> {
+        UnitTestResultsData partialResults = new UnitTestResultsData(slowestTests);
+        for (int report = nextReport.getAndIncrement(); report < reports.size(); report = nextReport.getAndIncrement()) {
+          reports.get(report).parse(partialResults);
+        }
+        return partialResults;
+      });
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(workers);
+    try {
+      UnitTestResultsData results = new UnitTestResultsData(slowestTests);
+      for (Future<UnitTestResultsData> future : executor.invokeAll(tasks)) {
+        results.mergeWith(future.get());
+      }
+      return results;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while aggregating the test results reports", e);
+    } catch (ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  static class Report {
+    private final File file;
+    private final UnitTestResultsParser parser;
+
+    Report(File file, UnitTestResultsParser parser) {
+      this.file = file;
+      this.parser = parser;
+    }
+
+    File file() {
+      return file;
+    }
+
+    void parse(UnitTestResultsData results) {
+      parser.parse(file, results);
+    }
+  }
+
+}
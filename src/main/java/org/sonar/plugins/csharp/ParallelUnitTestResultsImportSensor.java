@@ -0,0 +1,158 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.sonar.api.batch.bootstrap.ProjectDefinition;
+import org.sonar.api.batch.fs.InputComponent;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.sensor.Sensor;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.batch.sensor.SensorDescriptor;
+import org.sonar.api.config.Settings;
+import org.sonar.api.measures.CoreMetrics;
+import org.sonar.api.measures.Metric;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.plugins.dotnet.tests.UnitTestConfiguration;
+
+/**
+ * Imports the Visual Studio, NUnit and xUnit.net test results reports using {@link ParallelUnitTestResultsAggregator} and streaming parsers,
+ * when more than one thread is configured or in per test file mode. Otherwise, the test results reports are imported by the sensor of the .NET tests library.
+ * By default, the test results are only saved as a whole on the root module. In per test file mode, the results of each test type are saved on
+ * the test file declaring it, found with a {@link TestTypeIndex} of the test files of the module: the test files are those of the projects
+ * matching sonar.cs.msbuild.testProjectPattern.
+ */
+public class ParallelUnitTestResultsImportSensor implements Sensor {
+
+  private static final Logger LOG = Loggers.get(ParallelUnitTestResultsImportSensor.class);
+
+  private final UnitTestConfiguration conf;
+  private final Settings settings;
+  private final ProjectDefinition projectDef;
+  private final SharedUnitTestResults sharedResults;
+
+  public ParallelUnitTestResultsImportSensor(UnitTestConfiguration conf, Settings settings, ProjectDefinition projectDef, SharedUnitTestResults sharedResults) {
+    this.conf = conf;
+    this.settings = settings;
+    this.projectDef = projectDef;
+    this.sharedResults = sharedResults;
+  }
+
+  @Override
+  public void describe(SensorDescriptor descriptor) {
+    descriptor.name("C# Parallel Unit Test Results Import").onlyOnLanguage(CSharpPlugin.LANGUAGE_KEY);
+  }
+
+  @Override
+  public void execute(SensorContext context) {
+    if (settings.getBoolean(CSharpConfiguration.CONCURRENT_SENSORS_PROPERTY_KEY)) {
+      LOG.debug("Test results reports are imported by the concurrent sensor");
+      return;
+    }
+    executeInternal(context);
+  }
+
+  void executeInternal(SensorContext context) {
+    boolean perTestFile = settings.getBoolean(CSharpUnitTestResultsProvider.PER_TEST_FILE_PROPERTY_KEY);
+    boolean rootModule = projectDef.getParent() == null;
+    if (!CSharpUnitTestResultsProvider.isImportedByPlugin(settings) || (!perTestFile && !rootModule)) {
+      return;
+    }
+    File baseDir = context.fileSystem().baseDir();
+    List<ParallelUnitTestResultsAggregator.Report> reports = new ArrayList<>();
+    addReports(reports, baseDir, conf.visualStudioTestResultsFilePropertyKey(), new VisualStudioTestResultsParser());
+    addReports(reports, baseDir, conf.nunitTestResultsFilePropertyKey(), new NUnitTestResultsParser());
+    addReports(reports, baseDir, conf.xunitTestResultsFilePropertyKey(), new XUnitTestResultsParser());
+    if (reports.isEmpty()) {
+      return;
+    }
+
+    int threads = Math.max(1, settings.getInt(CSharpUnitTestResultsProvider.THREADS_PROPERTY_KEY));
+    int slowestTests = Math.max(0, settings.getInt(CSharpUnitTestResultsProvider.HOTSPOTS_PROPERTY_KEY));
+    UnitTestResultsData results;
+    if (perTestFile) {
+      results = sharedResults.get(reports, threads, slowestTests);
+      saveByTestFile(context, results);
+    } else {
+      LOG.info("Aggregating " + reports.size() + " test results reports using " + threads + " threads");
+      results = new ParallelUnitTestResultsAggregator(threads, slowestTests).aggregate(reports);
+      saveOnModule(context, results);
+    }
+    TestDurations durations = results.durations();
+    if (rootModule && durations != null) {
+      TestHotspots.save(context, results, durations);
+    }
+  }
+
+  private static void saveOnModule(SensorContext context, UnitTestResultsData results) {
+    save(context, CoreMetrics.TESTS, results.tests());
+    save(context, CoreMetrics.TEST_ERRORS, results.errors());
+    save(context, CoreMetrics.TEST_FAILURES, results.failures());
+    save(context, CoreMetrics.SKIPPED_TESTS, results.skipped());
+    if (results.tests() > 0) {
+      save(context, CoreMetrics.TEST_SUCCESS_DENSITY, results.passedPercentage());
+    }
+    if (results.hasExecutionTime()) {
+      save(context, CoreMetrics.TEST_EXECUTION_TIME, results.executionTimeMs());
+    }
+  }
+
+  private void addReports(List<ParallelUnitTestResultsAggregator.Report> reports, File baseDir, String propertyKey, UnitTestResultsParser parser) {
+    ReportFiles.list(baseDir, settings.getString(propertyKey)).forEach(file -> reports.add(new ParallelUnitTestResultsAggregator.Report(file, parser)));
+  }
+
+  /**
+   * The measures of the files are aggregated on the modules by SonarQube, so none is saved on the module in this mode.
+   */
+  private static void saveByTestFile(SensorContext context, UnitTestResultsData results) {
+    TestTypeIndex index = TestTypeIndex.of(context.fileSystem(), CSharpPlugin.LANGUAGE_KEY);
+    Map<InputFile, UnitTestResultsData.TypeResults> resultsByFile = new LinkedHashMap<>();
+    results.resultsByType().forEach((typeName, typeResults) -> {
+      InputFile inputFile = index.inputFile(typeName);
+      if (inputFile != null) {
+        resultsByFile.computeIfAbsent(inputFile, k -> new UnitTestResultsData.TypeResults()).mergeWith(typeResults);
+      }
+    });
+    LOG.info("Saving the test results of " + resultsByFile.size() + " test files");
+
+    resultsByFile.forEach((inputFile, fileResults) -> {
+      save(context, inputFile, CoreMetrics.TESTS, fileResults.tests());
+      save(context, inputFile, CoreMetrics.TEST_ERRORS, fileResults.errors());
+      save(context, inputFile, CoreMetrics.TEST_FAILURES, fileResults.failures());
+      save(context, inputFile, CoreMetrics.SKIPPED_TESTS, fileResults.skipped());
+      save(context, inputFile, CoreMetrics.TEST_EXECUTION_TIME, fileResults.executionTimeMs());
+    });
+  }
+
+  static <T extends Serializable> void save(SensorContext context, Metric<T> metric, T value) {
+    save(context, context.module(), metric, value);
+  }
+
+  private static <T extends Serializable> void save(SensorContext context, InputComponent component, Metric<T> metric, T value) {
+    context.<T>newMeasure().on(component).forMetric(metric).withValue(value).save();
+  }
+
+}
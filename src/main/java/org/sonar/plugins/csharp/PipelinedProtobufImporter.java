@@ -0,0 +1,298 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import com.google.common.base.Throwables;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.WireFormat;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import javax.annotation.CheckForNull;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.issue.NoSonarFilter;
+import org.sonar.api.measures.FileLinesContextFactory;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonarsource.dotnet.protobuf.SonarAnalyzer.EncodingInfo;
+import org.sonarsource.dotnet.shared.plugins.protobuf.RawProtobufImporter;
+
+import static org.sonarsource.dotnet.shared.plugins.protobuf.ProtobufImporters.CPDTOKENS_OUTPUT_PROTOBUF_NAME;
+import static org.sonarsource.dotnet.shared.plugins.protobuf.ProtobufImporters.ENCODING_OUTPUT_PROTOBUF_NAME;
+import static org.sonarsource.dotnet.shared.plugins.protobuf.ProtobufImporters.HIGHLIGHT_OUTPUT_PROTOBUF_NAME;
+import static org.sonarsource.dotnet.shared.plugins.protobuf.ProtobufImporters.ISSUES_OUTPUT_PROTOBUF_NAME;
+import static org.sonarsource.dotnet.shared.plugins.protobuf.ProtobufImporters.METRICS_OUTPUT_PROTOBUF_NAME;
+import static org.sonarsource.dotnet.shared.plugins.protobuf.ProtobufImporters.SYMBOLREFS_OUTPUT_PROTOBUF_NAME;
+import static org.sonarsource.dotnet.shared.plugins.protobuf.ProtobufImporters.cpdTokensImporter;
+import static org.sonarsource.dotnet.shared.plugins.protobuf.ProtobufImporters.highlightImporter;
+import static org.sonarsource.dotnet.shared.plugins.protobuf.ProtobufImporters.issuesImporter;
+import static org.sonarsource.dotnet.shared.plugins.protobuf.ProtobufImporters.metricsImporter;
+import static org.sonarsource.dotnet.shared.plugins.protobuf.ProtobufImporters.symbolRefsImporter;
+
+/**
+ * Imports the protobuf reports of SonarAnalyzer.Scanner while it is still writing them.
+ * Reports are sequences of delimited messages appended file after file: at each pass, the messages completely written since the previous pass
+ * are copied to a chunk file and imported. A pass is made whenever the output directory changes, at least every poll interval, and once the analysis is done.
+ * The encoding report is read first at each pass, so that the results of a file are skipped when its encoding does not match the one of SonarQube.
+ * The messages of a file without encoding entry yet are deferred until the entry is read, or until the analysis is done,
+ * as SonarAnalyzer.Scanner may write the encoding report after the other ones.
+ */
+class PipelinedProtobufImporter {
+
+  static final String CHUNKS_DIRECTORY_NAME = "chunks-cs";
+
+  private static final Logger LOG = Loggers.get(PipelinedProtobufImporter.class);
+  private static final int FILE_PATH_FIELD_NUMBER = EncodingInfo.FILE_PATH_FIELD_NUMBER;
+  private static final byte[] NO_MESSAGES = new byte[0];
+
+  private final FileLinesContextFactory fileLinesContextFactory;
+  private final NoSonarFilter noSonarFilter;
+  private final String repositoryKey;
+  private final long pollIntervalMs;
+
+  PipelinedProtobufImporter(FileLinesContextFactory fileLinesContextFactory, NoSonarFilter noSonarFilter, String repositoryKey, long pollIntervalMs) {
+    this.fileLinesContextFactory = fileLinesContextFactory;
+    this.noSonarFilter = noSonarFilter;
+    this.repositoryKey = repositoryKey;
+    this.pollIntervalMs = pollIntervalMs;
+  }
+
+  /**
+   * Imports the reports written to the analysis output until the analysis is done, and then the remaining messages.
+   * The analysis output must not contain the reports of a previous analysis.
+   *
+   * @throws IllegalStateException if a report ends with an incomplete message once the analysis is done
+   */
+  void importWhile(Future<?> analysis, SensorContext context, InputFileIndex.Index index, Path analysisOutput, Path chunksDirectory, boolean importIssues) {
+    Map<InputFile, String> encodings = new HashMap<>();
+    Charset sonarEncoding = context.fileSystem().encoding();
+    Predicate<InputFile> encodingMatch = inputFile -> {
+      String encoding = encodings.get(inputFile);
+      if (encoding == null) {
+        return true;
+      }
+      boolean match = Charset.isSupported(encoding) && Charset.forName(encoding).equals(sonarEncoding);
+      if (!match) {
+        LOG.warn("Encoding detected by Roslyn and encoding used by SonarQube do not match for file " + inputFile.absolutePath() + ". SonarQube encoding is '"
+          + sonarEncoding + "', Roslyn encoding is '" + encoding + "'. File will be skipped.");
+      }
+      return match;
+    };
+
+    Map<String, RawProtobufImporter<?>> importers = new LinkedHashMap<>();
+    importers.put(METRICS_OUTPUT_PROTOBUF_NAME, metricsImporter(context, fileLinesContextFactory, noSonarFilter, encodingMatch));
+    if (importIssues) {
+      importers.put(ISSUES_OUTPUT_PROTOBUF_NAME, issuesImporter(context, repositoryKey, encodingMatch));
+    }
+    importers.put(HIGHLIGHT_OUTPUT_PROTOBUF_NAME, highlightImporter(context, encodingMatch));
+    importers.put(SYMBOLREFS_OUTPUT_PROTOBUF_NAME, symbolRefsImporter(context, encodingMatch));
+    importers.put(CPDTOKENS_OUTPUT_PROTOBUF_NAME, cpdTokensImporter(context, encodingMatch));
+
+    ReportTail encodingReport = new ReportTail(analysisOutput.resolve(ENCODING_OUTPUT_PROTOBUF_NAME));
+    Map<String, ReportTail> reports = new LinkedHashMap<>();
+    importers.keySet().forEach(name -> reports.put(name, new ReportTail(analysisOutput.resolve(name))));
+    Map<String, byte[]> deferredMessages = new HashMap<>();
+
+    try (WatchService watcher = FileSystems.getDefault().newWatchService()) {
+      Files.createDirectories(analysisOutput);
+      Files.createDirectories(chunksDirectory);
+      analysisOutput.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+      int passes = 0;
+      boolean done;
+      do {
+        done = analysis.isDone();
+        passes++;
+        readEncodings(encodingReport.completeMessages(), index, encodings);
+        boolean analysisDone = done;
+        Predicate<String> importable = filePath -> {
+          InputFile inputFile = filePath == null ? null : index.inputFile(filePath);
+          return analysisDone || inputFile == null || encodings.containsKey(inputFile);
+        };
+        for (Map.Entry<String, ReportTail> report : reports.entrySet()) {
+          ByteArrayOutputStream ready = new ByteArrayOutputStream();
+          ByteArrayOutputStream deferred = new ByteArrayOutputStream();
+          partition(deferredMessages.getOrDefault(report.getKey(), NO_MESSAGES), importable, ready, deferred);
+          partition(report.getValue().completeMessages(), importable, ready, deferred);
+          deferredMessages.put(report.getKey(), deferred.toByteArray());
+          byte[] chunk = ready.toByteArray();
+          if (chunk.length > 0) {
+            Path chunkFile = chunksDirectory.resolve(report.getKey());
+            Files.write(chunkFile, chunk);
+            importers.get(report.getKey()).accept(chunkFile);
+          }
+        }
+        if (!done) {
+          awaitChange(watcher);
+        }
+      } while (!done);
+      LOG.debug("Analysis results imported in " + passes + " passes");
+
+      analysis.get();
+      for (ReportTail report : reports.values()) {
+        report.checkComplete();
+      }
+      encodingReport.checkComplete();
+    } catch (IOException e) {
+      throw new IllegalStateException("Could not import the analysis results from " + analysisOutput, e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while importing the analysis results", e);
+    } catch (ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    }
+  }
+
+  private void awaitChange(WatchService watcher) throws InterruptedException {
+    WatchKey key = watcher.poll(pollIntervalMs, TimeUnit.MILLISECONDS);
+    if (key != null) {
+      key.pollEvents();
+      key.reset();
+    }
+  }
+
+  /**
+   * Splits delimited messages between the importable ones and the deferred ones, according to the path of their file, which is the first field of all the reports.
+   */
+  static void partition(byte[] messages, Predicate<String> importable, ByteArrayOutputStream ready, ByteArrayOutputStream deferred) throws IOException {
+    CodedInputStream input = CodedInputStream.newInstance(messages);
+    while (!input.isAtEnd()) {
+      int start = input.getTotalBytesRead();
+      int length = input.readRawVarint32();
+      String filePath = filePath(messages, input.getTotalBytesRead(), length);
+      input.skipRawBytes(length);
+      (importable.test(filePath) ? ready : deferred).write(messages, start, input.getTotalBytesRead() - start);
+    }
+  }
+
+  @CheckForNull
+  private static String filePath(byte[] messages, int offset, int length) throws IOException {
+    CodedInputStream message = CodedInputStream.newInstance(messages, offset, length);
+    int tag;
+    while ((tag = message.readTag()) != 0) {
+      if (WireFormat.getTagFieldNumber(tag) == FILE_PATH_FIELD_NUMBER && WireFormat.getTagWireType(tag) == WireFormat.WIRETYPE_LENGTH_DELIMITED) {
+        return message.readString();
+      }
+      message.skipField(tag);
+    }
+    return null;
+  }
+
+  private static void readEncodings(byte[] chunk, InputFileIndex.Index index, Map<InputFile, String> encodings) throws IOException {
+    try (InputStream input = new ByteArrayInputStream(chunk)) {
+      EncodingInfo message;
+      while ((message = EncodingInfo.parseDelimitedFrom(input)) != null) {
+        InputFile inputFile = index.inputFile(message.getFilePath());
+        if (inputFile != null) {
+          encodings.put(inputFile, message.getEncoding());
+        }
+      }
+    }
+  }
+
+  /**
+   * Reads the messages appended to a report since the previous read, ignoring the last one as long as it is incomplete.
+   */
+  static final class ReportTail {
+
+    private final Path path;
+    private long offset = 0;
+
+    ReportTail(Path path) {
+      this.path = path;
+    }
+
+    byte[] completeMessages() throws IOException {
+      if (!Files.exists(path)) {
+        return new byte[0];
+      }
+      byte[] bytes;
+      try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+        long available = channel.size() - offset;
+        if (available <= 0) {
+          return new byte[0];
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(Integer.MAX_VALUE - 8, available));
+        while (buffer.hasRemaining() && channel.read(buffer, offset + buffer.position()) > 0) {
+          // Read until the end of the file as of now
+        }
+        bytes = Arrays.copyOf(buffer.array(), buffer.position());
+      }
+      int end = completeMessagesEnd(bytes);
+      offset += end;
+      return end == bytes.length ? bytes : Arrays.copyOf(bytes, end);
+    }
+
+    void checkComplete() throws IOException {
+      if (Files.exists(path) && Files.size(path) > offset) {
+        throw new IllegalStateException("The analysis result " + path + " ends with an incomplete message");
+      }
+    }
+
+    /**
+     * Length of the longest prefix made of complete delimited messages: each one is a varint length followed by that many bytes.
+     */
+    static int completeMessagesEnd(byte[] bytes) {
+      int end = 0;
+      int position = 0;
+      while (position < bytes.length) {
+        long length = 0;
+        int shift = 0;
+        boolean lengthComplete = false;
+        while (position < bytes.length && shift < 64) {
+          byte b = bytes[position++];
+          length |= (long) (b & 0x7F) << shift;
+          shift += 7;
+          if ((b & 0x80) == 0) {
+            lengthComplete = true;
+            break;
+          }
+        }
+        if (!lengthComplete || length > bytes.length - position) {
+          break;
+        }
+        position += (int) length;
+        end = position;
+      }
+      return end;
+    }
+
+  }
+
+}
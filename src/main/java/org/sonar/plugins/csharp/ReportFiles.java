@@ -0,0 +1,120 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import com.google.common.base.Splitter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.annotation.Nullable;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+/**
+ * Lists the report files matching a comma-separated list of paths, relative to a base directory or absolute.
+ * The paths can contain the "*" and "?" wildcards, which do not match directory separators, and the "**" wildcard, which does.
+ */
+class ReportFiles {
+
+  private static final Logger LOG = Loggers.get(ReportFiles.class);
+  private static final Pattern WILDCARDS = Pattern.compile("[*?]");
+
+  private ReportFiles() {
+  }
+
+  static List<File> list(File baseDir, @Nullable String paths) {
+    List<File> result = new ArrayList<>();
+    if (paths == null) {
+      return result;
+    }
+    for (String path : Splitter.on(',').trimResults().omitEmptyStrings().split(paths)) {
+      List<File> files = listMatching(baseDir, path);
+      if (files.isEmpty()) {
+        LOG.warn("Could not find any report file matching \"" + path + "\"");
+      }
+      result.addAll(files);
+    }
+    return result;
+  }
+
+  private static List<File> listMatching(File baseDir, String path) {
+    String normalizedPath = path.replace('\\', '/');
+    File absolutePath = new File(normalizedPath);
+    if (!absolutePath.isAbsolute()) {
+      normalizedPath = baseDir.getAbsolutePath().replace('\\', '/') + "/" + normalizedPath;
+    }
+
+    Matcher wildcard = WILDCARDS.matcher(normalizedPath);
+    if (!wildcard.find()) {
+      File file = new File(normalizedPath);
+      return file.isFile() ? Collections.singletonList(file) : Collections.emptyList();
+    }
+
+    Path root = new File(normalizedPath.substring(0, normalizedPath.lastIndexOf('/', wildcard.start()) + 1)).toPath();
+    if (!Files.isDirectory(root)) {
+      return Collections.emptyList();
+    }
+    Pattern pattern = toRegex(normalizedPath);
+    try (Stream<Path> files = Files.walk(root)) {
+      return files
+        .filter(Files::isRegularFile)
+        .filter(p -> pattern.matcher(p.toAbsolutePath().toString().replace('\\', '/')).matches())
+        .sorted()
+        .map(Path::toFile)
+        .collect(Collectors.toList());
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to list the report files matching \"" + path + "\"", e);
+    }
+  }
+
+  private static Pattern toRegex(String path) {
+    StringBuilder regex = new StringBuilder();
+    int i = 0;
+    while (i < path.length()) {
+      char c = path.charAt(i);
+      if (path.startsWith("**/", i)) {
+        regex.append("(?:.*/)?");
+        i += 3;
+      } else if (path.startsWith("**", i)) {
+        regex.append(".*");
+        i += 2;
+      } else {
+        if (c == '*') {
+          regex.append("[^/]*");
+        } else if (c == '?') {
+          regex.append("[^/]");
+        } else {
+          regex.append(Pattern.quote(String.valueOf(c)));
+        }
+        i++;
+      }
+    }
+    return Pattern.compile(regex.toString());
+  }
+
+}
@@ -24,12 +24,16 @@ import static java.util.stream.Collectors.toList;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.StringWriter;
 import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 
 import org.sonar.api.config.PropertyDefinition;
 import org.sonar.api.config.Settings;
@@ -45,8 +49,10 @@ import org.sonar.api.server.rule.RulesDefinition.Repository;
 import org.sonar.api.server.rule.RulesDefinition.Rule;
 
 import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.google.common.base.Throwables;
-import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.Maps;
@@ -58,9 +64,13 @@ public class RoslynProfileExporter extends ProfileExporter {
   private static final String SONARANALYZER_PARTIAL_REPO_KEY = "sonaranalyzer-cs";
 
   private static final String ROSLYN_REPOSITORY_PREFIX = "roslyn.";
+  static final int MAX_RENDERED_PROFILES = 32;
 
   private final Settings settings;
   private final RulesDefinition[] rulesDefinitions;
+  private final Supplier<ImmutableListMultimap<String, String>> allRuleKeysByRepositoryKey = Suppliers.memoize(this::ruleKeysIndex);
+  private final Supplier<String> analyzerVersion = Suppliers.memoize(RoslynProfileExporter::getAnalyzerVersion);
+  final Map<String, RenderedProfile> renderedProfiles = Collections.synchronizedMap(new RenderedProfiles());
 
   public RoslynProfileExporter(Settings settings, RulesDefinition[] rulesDefinitions) {
     super("roslyn-cs", "Technical exporter for the MSBuild SonarQube Scanner");
@@ -102,7 +112,7 @@ public class RoslynProfileExporter extends ProfileExporter {
         .build());
   }
 
-  private static String getAnalyzerVersion() {
+  static String getAnalyzerVersion() {
     try {
       return new BufferedReader(new InputStreamReader(RoslynProfileExporter.class.getResourceAsStream("/static/version.txt"), StandardCharsets.UTF_8)).readLine();
     } catch (IOException e) {
@@ -112,10 +122,60 @@ public class RoslynProfileExporter extends ProfileExporter {
 
   @Override
   public void exportProfile(RulesProfile rulesProfile, Writer writer) {
-    ImmutableMultimap<String, RuleKey> activeRoslynRulesByPartialRepoKey = activeRoslynRulesByPartialRepoKey(rulesProfile.getActiveRules()
+    String fingerprint = fingerprint(rulesProfile);
+    String identity = profileIdentity(rulesProfile);
+    RenderedProfile renderedProfile;
+    // The map is only locked to look the profile up: its document is rendered outside, by the first export needing it
+    synchronized (renderedProfiles) {
+      renderedProfile = renderedProfiles.get(identity);
+      if (renderedProfile == null || !renderedProfile.fingerprint.equals(fingerprint)) {
+        renderedProfile = new RenderedProfile(fingerprint, () -> render(rulesProfile));
+        renderedProfiles.put(identity, renderedProfile);
+      }
+    }
+    try {
+      writer.write(renderedProfile.document.get());
+    } catch (IOException e) {
+      Throwables.propagate(e);
+    }
+  }
+
+  /**
+   * Fingerprint of everything the exported document depends on, which changes whenever the active rules or their parameters change,
+   * or the analyzer and the plugins providing the Roslyn rules are updated. It can be used as an entity tag by clients wanting to only download the exported profile when it changed.
+   */
+  public String fingerprint(RulesProfile rulesProfile) {
+    StringBuilder sb = new StringBuilder();
+    for (ActiveRule activeRule : rulesProfile.getActiveRules()) {
+      sb.append(activeRule.getRepositoryKey()).append(':').append(activeRule.getRuleKey()).append('\n');
+    }
+    for (ActiveRule activeRule : rulesProfile.getActiveRulesByRepository(CSharpSonarRulesDefinition.REPOSITORY_KEY)) {
+      sb.append(activeRule.getRuleKey()).append(new TreeMap<>(effectiveParameters(activeRule))).append('\n');
+    }
+    sb.append(analyzerVersion.get()).append('\n');
+    for (String partialRepoKey : activeRoslynRulesByPartialRepoKey(rulesProfile).keySet()) {
+      for (String propertyKey : repositoryPropertyKeys(partialRepoKey)) {
+        sb.append(propertyKey).append('=').append(settings.getDefaultValue(propertyKey)).append('\n');
+      }
+    }
+    return Hashes.hash(sb.toString());
+  }
+
+  private static String profileIdentity(RulesProfile rulesProfile) {
+    return rulesProfile.getLanguage() + ":" + rulesProfile.getName();
+  }
+
+  private static ImmutableMultimap<String, RuleKey> activeRoslynRulesByPartialRepoKey(RulesProfile rulesProfile) {
+    return ActiveRoslynRules.of(rulesProfile.getActiveRules()
       .stream()
       .map(r -> RuleKey.of(r.getRepositoryKey(), r.getRuleKey()))
-      .collect(toList()));
+      .collect(toList()))
+      .byPartialRepoKey();
+  }
+
+  private String render(RulesProfile rulesProfile) {
+    StringWriter writer = new StringWriter();
+    ImmutableMultimap<String, RuleKey> activeRoslynRulesByPartialRepoKey = activeRoslynRulesByPartialRepoKey(rulesProfile);
 
     appendLine(writer, "<?xml version=\"1.0\" encoding=\"utf-8\"?>");
     appendLine(writer, "<RoslynExportProfile Version=\"1.0\">");
@@ -186,6 +246,8 @@ public class RoslynProfileExporter extends ProfileExporter {
     appendLine(writer, "  </Deployment>");
 
     appendLine(writer, "</RoslynExportProfile>");
+
+    return writer.toString();
   }
 
   private static String analysisSettings(boolean includeSettings, boolean ignoreHeaderComments, boolean includeRules, RulesProfile ruleProfile) {
@@ -271,14 +333,21 @@ public class RoslynProfileExporter extends ProfileExporter {
   }
 
   private List<String> allRuleKeysByRepositoryKey(String repositoryKey) {
-    ImmutableList.Builder<String> builder = ImmutableList.builder();
+    return allRuleKeysByRepositoryKey.get().get(repositoryKey);
+  }
+
+  /**
+   * Rule definitions cannot change while the server is running: they are only evaluated once, on the first export.
+   * A plugin reload restarts the server, which creates a new exporter and therefore a new index.
+   */
+  private ImmutableListMultimap<String, String> ruleKeysIndex() {
+    ImmutableListMultimap.Builder<String, String> builder = ImmutableListMultimap.builder();
     for (RulesDefinition rulesDefinition : rulesDefinitions) {
       Context context = new Context();
       rulesDefinition.define(context);
-      Repository repo = context.repository(repositoryKey);
-      if (repo != null) {
+      for (Repository repo : context.repositories()) {
         for (Rule rule : repo.rules()) {
-          builder.add(rule.key());
+          builder.put(repo.key(), rule.key());
         }
       }
     }
@@ -289,6 +358,20 @@ public class RoslynProfileExporter extends ProfileExporter {
     return Preconditions.checkNotNull(settings.getDefaultValue(propertyKey), "The mandatory property \"" + propertyKey + "\" must be set by the Roslyn plugin.");
   }
 
+  /**
+   * Keys of the properties of a Roslyn repository embedded in the exported document.
+   */
+  private static List<String> repositoryPropertyKeys(String partialRepoKey) {
+    return Arrays.asList(
+      pluginKeyPropertyKey(partialRepoKey),
+      pluginVersionPropertyKey(partialRepoKey),
+      staticResourceNamePropertyKey(partialRepoKey),
+      analyzerIdPropertyKey(partialRepoKey),
+      ruleNamespacePropertyKey(partialRepoKey),
+      nugetPackageIdPropertyKey(partialRepoKey),
+      nugetPackageVersionPropertyKey(partialRepoKey));
+  }
+
   private static String pluginKeyPropertyKey(String partialRepoKey) {
     return partialRepoKey + ".pluginKey";
   }
@@ -334,4 +417,36 @@ public class RoslynProfileExporter extends ProfileExporter {
     sb.append(line);
     sb.append("\r\n");
   }
+
+  /**
+   * The most recently exported profiles, so that the documents of deleted or renamed profiles are eventually dropped.
+   */
+  private static class RenderedProfiles extends LinkedHashMap<String, RenderedProfile> {
+
+    private static final long serialVersionUID = 1L;
+
+    RenderedProfiles() {
+      super(16, 0.75f, true);
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, RenderedProfile> eldest) {
+      return size() > MAX_RENDERED_PROFILES;
+    }
+
+  }
+
+  private static class RenderedProfile {
+
+    private final String fingerprint;
+    // rendered once, concurrent exports of the same profile waiting for the first one
+    private final Supplier<String> document;
+
+    RenderedProfile(String fingerprint, Supplier<String> document) {
+      this.fingerprint = fingerprint;
+      this.document = Suppliers.memoize(document);
+    }
+
+  }
+
 }
@@ -0,0 +1,244 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.batch.sensor.issue.NewIssue;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+/**
+ * Wall time, CPU time, allocated bytes, file and issue counts of the phases of the sensor.
+ * The CPU time and the allocated bytes are the ones of the thread running the phase, plus the ones of the tasks the phase runs
+ * on other threads through {@link #measured(Callable)}, excluding the external analyzer processes. They are -1 when the JVM cannot measure them.
+ * The issues, CPU time and allocated bytes of a phase include the ones of the phases it contains.
+ * Phases can be started and closed from several threads, their parent then being the most recently started phase still running.
+ */
+class SensorMetrics {
+
+  static final String REPORT_FILE_NAME = "csharp-sensor-metrics.json";
+
+  private static final Logger LOG = Loggers.get(SensorMetrics.class);
+  private static final ThreadLocal<Phase> CURRENT_PHASE = new ThreadLocal<>();
+
+  private final List<Map<String, Object>> phases = Collections.synchronizedList(new ArrayList<>());
+  private final Deque<Phase> runningPhases = new ArrayDeque<>();
+
+  Phase start(String name) {
+    synchronized (runningPhases) {
+      Phase phase = new Phase(name, runningPhases.peek());
+      runningPhases.push(phase);
+      CURRENT_PHASE.set(phase);
+      return phase;
+    }
+  }
+
+  List<Map<String, Object>> phases() {
+    return phases;
+  }
+
+  void write(Path workDir) {
+    Map<String, Object> report = new LinkedHashMap<>();
+    report.put("phases", phases);
+    Gson gson = new GsonBuilder().setPrettyPrinting().create();
+    try (Writer writer = Files.newBufferedWriter(workDir.resolve(REPORT_FILE_NAME), StandardCharsets.UTF_8)) {
+      gson.toJson(report, writer);
+    } catch (IOException e) {
+      LOG.warn("Could not write the sensor metrics to " + workDir.resolve(REPORT_FILE_NAME), e);
+    }
+  }
+
+  /**
+   * Task adding its CPU time and allocated bytes to the phase running on the calling thread, to be run on another thread.
+   */
+  static <T> Callable<T> measured(Callable<T> task) {
+    Phase phase = CURRENT_PHASE.get();
+    if (phase == null) {
+      return task;
+    }
+    return () -> {
+      long startCpuTime = threadCpuTime();
+      long startAllocatedBytes = allocatedBytes();
+      try {
+        return task.call();
+      } finally {
+        phase.addWorkerUsage(threadCpuTime() - startCpuTime, allocatedBytes() - startAllocatedBytes);
+      }
+    };
+  }
+
+  /**
+   * Context counting the issues saved through it into the given phase.
+   */
+  static SensorContext countingIssues(SensorContext context, Phase phase) {
+    return proxy(SensorContext.class, context, (method, result) -> {
+      if (result instanceof NewIssue) {
+        NewIssue newIssue = (NewIssue) result;
+        return proxy(NewIssue.class, newIssue, (issueMethod, issueResult) -> {
+          if ("save".equals(issueMethod.getName())) {
+            phase.addIssues(1);
+          }
+          return issueResult;
+        });
+      }
+      return result;
+    });
+  }
+
+  private static <T> T proxy(Class<T> type, T target, ResultHandler handler) {
+    Object[] self = new Object[1];
+    self[0] = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, (proxy, method, args) -> {
+      Object result;
+      try {
+        result = method.invoke(target, args);
+      } catch (InvocationTargetException e) {
+        throw e.getCause();
+      }
+      // Keep fluent calls on the proxy
+      return result == target ? self[0] : handler.handle(method, result);
+    });
+    return type.cast(self[0]);
+  }
+
+  @FunctionalInterface
+  private interface ResultHandler {
+    Object handle(Method method, Object result);
+  }
+
+  class Phase implements AutoCloseable {
+
+    private final String name;
+    private final Phase parent;
+    private final Phase previousOnThread;
+    private final Thread thread;
+    private final long startWallTime;
+    private final long startCpuTime;
+    private final long startAllocatedBytes;
+    private final AtomicLong issues = new AtomicLong();
+    private final AtomicLong workerCpuTime = new AtomicLong();
+    private final AtomicLong workerAllocatedBytes = new AtomicLong();
+    private long files = 0;
+
+    private Phase(String name, Phase parent) {
+      this.name = name;
+      this.parent = parent;
+      this.previousOnThread = CURRENT_PHASE.get();
+      this.thread = Thread.currentThread();
+      this.startWallTime = System.nanoTime();
+      this.startCpuTime = threadCpuTime();
+      this.startAllocatedBytes = allocatedBytes();
+    }
+
+    void addFiles(long count) {
+      files += count;
+    }
+
+    void addIssues(long count) {
+      issues.addAndGet(count);
+    }
+
+    private boolean isRunningOnCurrentThread() {
+      return thread == Thread.currentThread();
+    }
+
+    private void addWorkerUsage(long cpuTime, long allocatedBytes) {
+      workerCpuTime.addAndGet(cpuTime);
+      workerAllocatedBytes.addAndGet(allocatedBytes);
+    }
+
+    @Override
+    public void close() {
+      long wallTimeMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startWallTime);
+      long threadCpuTime = threadCpuTime() - startCpuTime;
+      long threadAllocatedBytes = allocatedBytes() - startAllocatedBytes;
+      long cpuTimeMs = startCpuTime < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(threadCpuTime + workerCpuTime.get());
+      long allocated = startAllocatedBytes < 0 ? -1 : (threadAllocatedBytes + workerAllocatedBytes.get());
+      synchronized (runningPhases) {
+        runningPhases.remove(this);
+      }
+      if (CURRENT_PHASE.get() == this) {
+        CURRENT_PHASE.set(previousOnThread);
+      }
+      if (parent != null) {
+        parent.addIssues(issues.get());
+        // The parent already measures the thread of this phase when it is its own
+        if (parent.isRunningOnCurrentThread()) {
+          parent.addWorkerUsage(workerCpuTime.get(), workerAllocatedBytes.get());
+        } else {
+          parent.addWorkerUsage(threadCpuTime + workerCpuTime.get(), threadAllocatedBytes + workerAllocatedBytes.get());
+        }
+      }
+
+      Map<String, Object> metrics = new LinkedHashMap<>();
+      metrics.put("name", name);
+      metrics.put("wallTimeMs", wallTimeMs);
+      metrics.put("cpuTimeMs", cpuTimeMs);
+      metrics.put("allocatedBytes", allocated);
+      metrics.put("files", files);
+      metrics.put("issues", issues.get());
+      phases.add(metrics);
+      LOG.debug("Phase " + name + ": wall time " + wallTimeMs + " ms, CPU time " + cpuTimeMs + " ms, allocated " + allocated + " bytes, "
+        + files + " files, " + issues.get() + " issues");
+    }
+
+  }
+
+  /**
+   * CPU time consumed so far by the current thread in nanoseconds, -1 when the JVM cannot measure it.
+   */
+  private static long threadCpuTime() {
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    return threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime() : -1;
+  }
+
+  /**
+   * Bytes allocated so far by the current thread, -1 when the JVM cannot measure them.
+   */
+  static long allocatedBytes() {
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    if (threads instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()) {
+      return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+    return -1;
+  }
+
+}
@@ -0,0 +1,45 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.sonar.api.batch.BatchSide;
+import org.sonar.api.batch.InstantiationStrategy;
+
+/**
+ * Aggregates the test results reports once per analysis, and shares the results between all the modules listing the same reports,
+ * each module then saving the results of its own test files.
+ */
+@BatchSide
+@InstantiationStrategy(InstantiationStrategy.PER_BATCH)
+public class SharedUnitTestResults {
+
+  private final Map<List<String>, UnitTestResultsData> resultsByReports = new HashMap<>();
+
+  synchronized UnitTestResultsData get(List<ParallelUnitTestResultsAggregator.Report> reports, int threads, int slowestTests) {
+    List<String> key = reports.stream().map(report -> report.file().getAbsolutePath()).collect(Collectors.toList());
+    key.add(Integer.toString(slowestTests));
+    return resultsByReports.computeIfAbsent(key, k -> new ParallelUnitTestResultsAggregator(threads, slowestTests).aggregate(reports));
+  }
+
+}
@@ -0,0 +1,166 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Set;
+import javax.annotation.Nullable;
+import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.issue.NoSonarFilter;
+import org.sonar.api.measures.FileLinesContext;
+import org.sonar.api.measures.FileLinesContextFactory;
+import org.sonar.api.scan.issue.filter.FilterableIssue;
+import org.sonar.api.scan.issue.filter.IssueFilterChain;
+
+/**
+ * Wraps the scanner components used by the protobuf importers so that every call made on them,
+ * and on the builders they return, is performed while holding a single lock.
+ * Decoding of the reports can then run on several threads while the scanner only ever sees one writer.
+ */
+final class SingleWriter {
+
+  private static final String SENSOR_API_PACKAGE = "org.sonar.api.batch.sensor.";
+
+  private final Object lock = new Object();
+
+  SensorContext wrap(SensorContext context) {
+    return wrap(SensorContext.class, context);
+  }
+
+  FileLinesContextFactory wrap(FileLinesContextFactory fileLinesContextFactory) {
+    return wrap(FileLinesContextFactory.class, fileLinesContextFactory);
+  }
+
+  NoSonarFilter wrap(NoSonarFilter noSonarFilter) {
+    if (noSonarFilter instanceof SingleWriterNoSonarFilter && ((SingleWriterNoSonarFilter) noSonarFilter).writer() == this) {
+      return noSonarFilter;
+    }
+    return new SingleWriterNoSonarFilter(noSonarFilter);
+  }
+
+  /**
+   * Objects already wrapped by this writer are returned as is, so that components sharing a writer can wrap what they are given.
+   */
+  private <T> T wrap(Class<T> type, T delegate) {
+    if (Proxy.isProxyClass(delegate.getClass()) && Proxy.getInvocationHandler(delegate) instanceof LockingHandler
+      && ((LockingHandler) Proxy.getInvocationHandler(delegate)).writer() == this) {
+      return delegate;
+    }
+    return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, new LockingHandler(delegate)));
+  }
+
+  private static boolean shouldWrap(Class<?> type) {
+    return type.isInterface() && (type == FileSystem.class || type == FileLinesContext.class || type.getName().startsWith(SENSOR_API_PACKAGE));
+  }
+
+  @Nullable
+  private static Object[] unwrap(@Nullable Object[] args) {
+    if (args == null) {
+      return null;
+    }
+    Object[] result = new Object[args.length];
+    for (int i = 0; i < args.length; i++) {
+      Object arg = args[i];
+      if (arg != null && Proxy.isProxyClass(arg.getClass()) && Proxy.getInvocationHandler(arg) instanceof LockingHandler) {
+        result[i] = ((LockingHandler) Proxy.getInvocationHandler(arg)).delegate;
+      } else {
+        result[i] = arg;
+      }
+    }
+    return result;
+  }
+
+  private final class LockingHandler implements InvocationHandler {
+
+    private final Object delegate;
+
+    private LockingHandler(Object delegate) {
+      this.delegate = delegate;
+    }
+
+    private SingleWriter writer() {
+      return SingleWriter.this;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      Object result;
+      synchronized (lock) {
+        try {
+          result = method.invoke(delegate, unwrap(args));
+        } catch (InvocationTargetException e) {
+          throw e.getCause();
+        }
+      }
+      Class<?> returnType = method.getReturnType();
+      if (result != null && shouldWrap(returnType)) {
+        return wrap(castType(returnType), result);
+      }
+      return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Class<Object> castType(Class<?> type) {
+      return (Class<Object>) type;
+    }
+
+  }
+
+  private final class SingleWriterNoSonarFilter extends NoSonarFilter {
+
+    private final NoSonarFilter delegate;
+
+    private SingleWriterNoSonarFilter(NoSonarFilter delegate) {
+      this.delegate = delegate;
+    }
+
+    private SingleWriter writer() {
+      return SingleWriter.this;
+    }
+
+    @Override
+    public NoSonarFilter addComponent(String componentKey, Set<Integer> noSonarLines) {
+      synchronized (lock) {
+        delegate.addComponent(componentKey, noSonarLines);
+      }
+      return this;
+    }
+
+    @Override
+    public NoSonarFilter noSonarInFile(InputFile inputFile, Set<Integer> noSonarLines) {
+      synchronized (lock) {
+        delegate.noSonarInFile(inputFile, noSonarLines);
+      }
+      return this;
+    }
+
+    @Override
+    public boolean accept(FilterableIssue issue, IssueFilterChain chain) {
+      return delegate.accept(issue, chain);
+    }
+
+  }
+
+}
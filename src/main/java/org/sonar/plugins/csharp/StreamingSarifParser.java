@@ -0,0 +1,337 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+import javax.annotation.Nullable;
+import org.sonarsource.dotnet.shared.sarif.SarifParser;
+import org.sonarsource.dotnet.shared.sarif.SarifParserCallback;
+
+/**
+ * SARIF parser reading the report with a pull parser: each result is materialized and reported to the callback
+ * as soon as it is read, so that memory usage does not depend on the size of the report.
+ * Supports the same versions, 0.1, 0.4 and 1.0, and yields the same issues as the parsers of {@link org.sonarsource.dotnet.shared.sarif.SarifParserFactory}.
+ * The results are read in a single pass when the version, and for 0.1 and 0.4 the presence of "runLogs", are known when reaching them,
+ * otherwise they are skipped and read by a second pass over the report.
+ */
+public class StreamingSarifParser implements SarifParser {
+
+  private static final String FILE_PROTOCOL = "file:///";
+
+  private final File file;
+  private final JsonParser jsonParser = new JsonParser();
+
+  public StreamingSarifParser(File file) {
+    this.file = file;
+  }
+
+  @Override
+  public void parse(SarifParserCallback callback) {
+    try {
+      parse(() -> new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8), callback);
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to read the Roslyn SARIF report file: " + file.getAbsolutePath(), e);
+    }
+  }
+
+  @FunctionalInterface
+  interface ReaderSource {
+    Reader open() throws IOException;
+  }
+
+  void parse(ReaderSource source, SarifParserCallback callback) throws IOException {
+    String version = null;
+    boolean hasRunLogs = false;
+    Set<String> deferredSections = new HashSet<>();
+
+    try (Reader reader = source.open()) {
+      JsonReader jsonReader = new JsonReader(reader);
+      jsonReader.beginObject();
+      while (jsonReader.hasNext()) {
+        String name = jsonReader.nextName();
+        if ("version".equals(name) && jsonReader.peek() != JsonToken.NULL) {
+          version = jsonReader.nextString();
+        } else if ("runs".equals(name) && version != null) {
+          parseSection(jsonReader, name, version, callback);
+        } else if ("runLogs".equals(name) && version != null) {
+          hasRunLogs = true;
+          parseSection(jsonReader, name, version, callback);
+        } else if ("issues".equals(name) && isVersion01Or04(version) && hasRunLogs) {
+          // Ignored when there are run logs
+          jsonReader.skipValue();
+        } else {
+          // Results which cannot be interpreted yet are read again by a second pass
+          hasRunLogs |= "runLogs".equals(name);
+          if ("runs".equals(name) || "runLogs".equals(name) || "issues".equals(name)) {
+            deferredSections.add(name);
+          }
+          jsonReader.skipValue();
+        }
+      }
+      jsonReader.endObject();
+    }
+
+    if (version == null) {
+      throw new IllegalStateException(String.format("Unable to parse the Roslyn SARIF report file: %s. Unrecognized format", file.getAbsolutePath()));
+    }
+    String section = sectionToImport(version, hasRunLogs);
+    if (deferredSections.contains(section)) {
+      parseSecondPass(source, section, version, callback);
+    }
+  }
+
+  /**
+   * The only section of the report holding the results of the given version, as chosen by the parsers of the shared library.
+   */
+  private static String sectionToImport(String version, boolean hasRunLogs) {
+    if (!isVersion01Or04(version)) {
+      return "runs";
+    }
+    return hasRunLogs ? "runLogs" : "issues";
+  }
+
+  private void parseSecondPass(ReaderSource source, String section, String version, SarifParserCallback callback) throws IOException {
+    try (Reader reader = source.open()) {
+      JsonReader jsonReader = new JsonReader(reader);
+      jsonReader.beginObject();
+      while (jsonReader.hasNext()) {
+        if (section.equals(jsonReader.nextName())) {
+          parseSection(jsonReader, section, version, callback);
+        } else {
+          jsonReader.skipValue();
+        }
+      }
+      jsonReader.endObject();
+    }
+  }
+
+  private void parseSection(JsonReader jsonReader, String section, String version, SarifParserCallback callback) throws IOException {
+    if ("runs".equals(section) && !isVersion01Or04(version)) {
+      parseRuns(jsonReader, "results", result -> handleIssue10(result, callback));
+    } else if ("runLogs".equals(section) && isVersion01Or04(version)) {
+      parseRuns(jsonReader, "results", result -> handleIssue01And04(result, false, callback));
+    } else if ("issues".equals(section) && isVersion01Or04(version)) {
+      parseResults(jsonReader, result -> handleIssue01And04(result, true, callback));
+    } else {
+      jsonReader.skipValue();
+    }
+  }
+
+  private static boolean isVersion01Or04(@Nullable String version) {
+    return "0.1".equals(version) || "0.4".equals(version);
+  }
+
+  private void parseRuns(JsonReader jsonReader, String resultsName, ResultHandler handler) throws IOException {
+    if (skipNull(jsonReader)) {
+      return;
+    }
+    jsonReader.beginArray();
+    while (jsonReader.hasNext()) {
+      jsonReader.beginObject();
+      while (jsonReader.hasNext()) {
+        if (resultsName.equals(jsonReader.nextName())) {
+          parseResults(jsonReader, handler);
+        } else {
+          jsonReader.skipValue();
+        }
+      }
+      jsonReader.endObject();
+    }
+    jsonReader.endArray();
+  }
+
+  private void parseResults(JsonReader jsonReader, ResultHandler handler) throws IOException {
+    if (skipNull(jsonReader)) {
+      return;
+    }
+    jsonReader.beginArray();
+    while (jsonReader.hasNext()) {
+      handler.handle(jsonParser.parse(jsonReader).getAsJsonObject());
+    }
+    jsonReader.endArray();
+  }
+
+  private static boolean skipNull(JsonReader jsonReader) throws IOException {
+    if (jsonReader.peek() == JsonToken.NULL) {
+      jsonReader.nextNull();
+      return true;
+    }
+    return false;
+  }
+
+  @FunctionalInterface
+  private interface ResultHandler {
+    void handle(JsonObject result);
+  }
+
+  private static void handleIssue10(JsonObject resultObj, SarifParserCallback callback) {
+    if (isSuppressed10(resultObj)) {
+      return;
+    }
+
+    String ruleId = resultObj.get("ruleId").getAsString();
+    String message = resultObj.get("message").getAsString();
+
+    boolean hasLocation = false;
+    if (resultObj.has("locations")) {
+      for (JsonElement locationEl : resultObj.get("locations").getAsJsonArray()) {
+        JsonObject locationObj = locationEl.getAsJsonObject();
+        if (locationObj.has("resultFile") && handleResultFile10(ruleId, message, locationObj.get("resultFile").getAsJsonObject(), callback)) {
+          hasLocation = true;
+        }
+      }
+    }
+
+    if (!hasLocation) {
+      callback.onProjectIssue(ruleId, message);
+    }
+  }
+
+  private static boolean handleResultFile10(String ruleId, String message, JsonObject locationObj, SarifParserCallback callback) {
+    if (!locationObj.has("uri") || !locationObj.has("region")) {
+      return false;
+    }
+
+    String absolutePath = uriToAbsolutePath10(locationObj.get("uri").getAsString());
+    JsonObject region = locationObj.get("region").getAsJsonObject();
+    reportRegion(ruleId, absolutePath, message, region, false, callback);
+    return true;
+  }
+
+  private static boolean isSuppressed10(JsonObject resultObj) {
+    JsonArray suppressionStates = resultObj.getAsJsonArray("suppressionStates");
+    if (suppressionStates != null) {
+      for (JsonElement entry : suppressionStates) {
+        if ("suppressedInSource".equals(entry.getAsString())) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private static String uriToAbsolutePath10(String uri) {
+    if (!uri.startsWith(FILE_PROTOCOL)) {
+      return uri;
+    }
+    return new File(URI.create(uri)).getAbsolutePath();
+  }
+
+  private static void handleIssue01And04(JsonObject issue, boolean offsetStartAtZero, SarifParserCallback callback) {
+    if (isSuppressed01And04(issue)) {
+      return;
+    }
+
+    String ruleId = issue.get("ruleId").getAsString();
+    String message = issue.get(issue.has("shortMessage") ? "shortMessage" : "fullMessage").getAsString();
+
+    boolean hasLocation = false;
+    for (JsonElement locationElement : issue.get("locations").getAsJsonArray()) {
+      JsonObject location = locationElement.getAsJsonObject();
+      if (location.has("analysisTarget")) {
+        for (JsonElement analysisTargetElement : location.get("analysisTarget").getAsJsonArray()) {
+          hasLocation = true;
+          JsonObject analysisTarget = analysisTargetElement.getAsJsonObject();
+          String absolutePath = uriToAbsolutePath01And04(analysisTarget.get("uri").getAsString());
+          JsonObject region = analysisTarget.get("region").getAsJsonObject();
+          reportRegion(ruleId, absolutePath, message, region, offsetStartAtZero, callback);
+        }
+      }
+    }
+
+    if (!hasLocation) {
+      callback.onProjectIssue(ruleId, message);
+    }
+  }
+
+  private static boolean isSuppressed01And04(JsonObject issue) {
+    JsonElement isSuppressedInSource = issue.get("isSuppressedInSource");
+    if (isSuppressedInSource != null) {
+      return isSuppressedInSource.getAsBoolean();
+    }
+    JsonElement properties = issue.get("properties");
+    if (properties != null && properties.isJsonObject()) {
+      isSuppressedInSource = properties.getAsJsonObject().get("isSuppressedInSource");
+      if (isSuppressedInSource != null) {
+        return isSuppressedInSource.getAsBoolean();
+      }
+    }
+    return false;
+  }
+
+  private static String uriToAbsolutePath01And04(String uri) {
+    if (!uri.startsWith(FILE_PROTOCOL)) {
+      return uri;
+    }
+    return uri.substring(FILE_PROTOCOL.length()).replace('/', '\\');
+  }
+
+  private static void reportRegion(String ruleId, String absolutePath, String message, JsonObject region, boolean offsetStartAtZero, SarifParserCallback callback) {
+    int shift = offsetStartAtZero ? 1 : 0;
+    int startLine = region.get("startLine").getAsInt();
+    int startLineFixed = startLine + shift;
+
+    JsonElement startColumnOrNull = region.get("startColumn");
+    int startColumn = startColumnOrNull != null ? startColumnOrNull.getAsInt() : 1;
+    int startLineOffset = startColumn - 1 + shift;
+
+    JsonElement lengthOrNull = region.get("length");
+    if (lengthOrNull != null) {
+      callback.onIssue(ruleId, absolutePath, message, startLineFixed, startLineOffset, startLineFixed, startLineOffset + lengthOrNull.getAsInt());
+      return;
+    }
+
+    JsonElement endLineOrNull = region.get("endLine");
+    int endLine = endLineOrNull != null ? endLineOrNull.getAsInt() : startLine;
+    int endLineFixed = endLine + shift;
+
+    JsonElement endColumnOrNull = region.get("endColumn");
+    int endColumn;
+    if (endColumnOrNull != null) {
+      endColumn = endColumnOrNull.getAsInt();
+    } else if (endLineOrNull != null) {
+      endColumn = endLine == startLine ? startColumn : 1;
+    } else {
+      endColumn = startColumn;
+    }
+    int endLineOffset = endColumn - 1 + shift;
+
+    if (startColumn == endColumn && startLineFixed == endLineFixed) {
+      callback.onFileIssue(ruleId, absolutePath, message);
+    } else {
+      callback.onIssue(ruleId, absolutePath, message, startLineFixed, startLineOffset, endLineFixed, endLineOffset);
+    }
+  }
+
+}
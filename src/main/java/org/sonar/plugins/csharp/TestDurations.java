@@ -0,0 +1,167 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import javax.annotation.Nullable;
+
+/**
+ * Durations of the test cases, from which the test duration hotspots are computed: the slowest tests are kept in a min-heap bounded
+ * to the requested number of tests, so that keeping them costs O(log N) per test case whatever the number of test cases,
+ * and the durations of each assembly are stored in a primitive array for its percentiles.
+ * Not thread-safe: each thread aggregates its own instance, and the instances are merged afterwards.
+ */
+final class TestDurations {
+
+  private static final Comparator<TestDuration> FASTEST_FIRST = Comparator.comparingLong(TestDuration::durationMs).thenComparing(TestDuration::name);
+
+  private final int slowestTestsLimit;
+  private final PriorityQueue<TestDuration> slowestTests;
+  private final Map<String, Durations> durationsByAssembly = new LinkedHashMap<>();
+
+  TestDurations(int slowestTestsLimit) {
+    this.slowestTestsLimit = slowestTestsLimit;
+    this.slowestTests = new PriorityQueue<>(Math.max(1, slowestTestsLimit), FASTEST_FIRST);
+  }
+
+  void add(String assembly, String name, long durationMs) {
+    durationsByAssembly.computeIfAbsent(assembly, k -> new Durations()).add(durationMs);
+    offer(new TestDuration(assembly, name, durationMs));
+  }
+
+  private void offer(TestDuration test) {
+    if (slowestTests.size() < slowestTestsLimit) {
+      slowestTests.add(test);
+    } else if (slowestTestsLimit > 0 && FASTEST_FIRST.compare(test, slowestTests.peek()) > 0) {
+      slowestTests.poll();
+      slowestTests.add(test);
+    }
+  }
+
+  /**
+   * Adds the durations of the other instance to this one, and returns this one.
+   */
+  TestDurations mergeWith(TestDurations other) {
+    other.slowestTests.forEach(this::offer);
+    other.durationsByAssembly.forEach((assembly, durations) -> durationsByAssembly.computeIfAbsent(assembly, k -> new Durations()).addAll(durations));
+    return this;
+  }
+
+  /**
+   * The slowest tests, slowest first.
+   */
+  List<TestDuration> slowestTests() {
+    List<TestDuration> result = new ArrayList<>(slowestTests);
+    result.sort(FASTEST_FIRST.reversed());
+    return result;
+  }
+
+  List<String> assemblies() {
+    return new ArrayList<>(durationsByAssembly.keySet());
+  }
+
+  /**
+   * Duration percentiles of the tests of the given assembly, or of all the tests when the assembly is null, using the nearest-rank method.
+   *
+   * @param percentiles between 0 excluded and 100 included
+   */
+  long[] percentiles(@Nullable String assembly, double... percentiles) {
+    long[] sorted;
+    if (assembly == null) {
+      Durations all = new Durations();
+      durationsByAssembly.values().forEach(all::addAll);
+      sorted = all.sorted();
+    } else {
+      sorted = durationsByAssembly.get(assembly).sorted();
+    }
+    long[] result = new long[percentiles.length];
+    for (int i = 0; i < percentiles.length; i++) {
+      int rank = (int) Math.ceil(percentiles[i] / 100 * sorted.length);
+      result[i] = sorted.length == 0 ? 0 : sorted[Math.max(0, rank - 1)];
+    }
+    return result;
+  }
+
+  int count() {
+    int count = 0;
+    for (Durations durations : durationsByAssembly.values()) {
+      count += durations.size;
+    }
+    return count;
+  }
+
+  static final class TestDuration {
+    private final String assembly;
+    private final String name;
+    private final long durationMs;
+
+    TestDuration(String assembly, String name, long durationMs) {
+      this.assembly = assembly;
+      this.name = name;
+      this.durationMs = durationMs;
+    }
+
+    String assembly() {
+      return assembly;
+    }
+
+    String name() {
+      return name;
+    }
+
+    long durationMs() {
+      return durationMs;
+    }
+  }
+
+  private static final class Durations {
+    private long[] values = new long[16];
+    private int size;
+
+    private void add(long durationMs) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+      values[size] = durationMs;
+      size++;
+    }
+
+    private void addAll(Durations other) {
+      if (size + other.size > values.length) {
+        values = Arrays.copyOf(values, Math.max(size + other.size, values.length * 2));
+      }
+      System.arraycopy(other.values, 0, values, size, other.size);
+      size += other.size;
+    }
+
+    private long[] sorted() {
+      long[] sorted = Arrays.copyOf(values, size);
+      Arrays.sort(sorted);
+      return sorted;
+    }
+  }
+
+}
@@ -0,0 +1,111 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import com.google.gson.GsonBuilder;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+/**
+ * Test duration hotspots, to drive the sharding of the tests: the slowest tests, the duration percentiles of each test assembly
+ * and the total time of each fixture, slowest first, are written as a JSON report in the working directory,
+ * and the percentiles of all the tests are saved as {@link CSharpTestMetrics} on the project.
+ */
+class TestHotspots {
+
+  static final String REPORT_FILE_NAME = "csharp-test-hotspots.json";
+
+  private static final Logger LOG = Loggers.get(TestHotspots.class);
+  private static final double[] PERCENTILES = {50, 90, 99, 100};
+
+  private TestHotspots() {
+  }
+
+  static void save(SensorContext context, UnitTestResultsData results, TestDurations durations) {
+    Path reportFile = context.fileSystem().workDir().toPath().resolve(REPORT_FILE_NAME);
+    try (Writer writer = Files.newBufferedWriter(reportFile, StandardCharsets.UTF_8)) {
+      new GsonBuilder().setPrettyPrinting().create().toJson(report(results, durations), writer);
+    } catch (IOException e) {
+      LOG.warn("Could not write the test duration hotspots to " + reportFile, e);
+    }
+
+    if (durations.count() > 0) {
+      long[] percentiles = durations.percentiles(null, PERCENTILES);
+      ParallelUnitTestResultsImportSensor.save(context, CSharpTestMetrics.TEST_DURATION_P50, percentiles[0]);
+      ParallelUnitTestResultsImportSensor.save(context, CSharpTestMetrics.TEST_DURATION_P90, percentiles[1]);
+      ParallelUnitTestResultsImportSensor.save(context, CSharpTestMetrics.TEST_DURATION_P99, percentiles[2]);
+      ParallelUnitTestResultsImportSensor.save(context, CSharpTestMetrics.SLOWEST_TEST_DURATION, percentiles[3]);
+    }
+  }
+
+  static Map<String, Object> report(UnitTestResultsData results, TestDurations durations) {
+    Map<String, Object> report = new LinkedHashMap<>();
+    report.put("tests", durations.count());
+
+    List<Map<String, Object>> slowestTests = new ArrayList<>();
+    for (TestDurations.TestDuration test : durations.slowestTests()) {
+      Map<String, Object> slowestTest = new LinkedHashMap<>();
+      slowestTest.put("name", test.name());
+      slowestTest.put("assembly", test.assembly());
+      slowestTest.put("durationMs", test.durationMs());
+      slowestTests.add(slowestTest);
+    }
+    report.put("slowestTests", slowestTests);
+
+    List<Map<String, Object>> assemblies = new ArrayList<>();
+    for (String assembly : durations.assemblies()) {
+      long[] percentiles = durations.percentiles(assembly, PERCENTILES);
+      Map<String, Object> assemblyReport = new LinkedHashMap<>();
+      assemblyReport.put("name", assembly);
+      assemblyReport.put("p50Ms", percentiles[0]);
+      assemblyReport.put("p90Ms", percentiles[1]);
+      assemblyReport.put("p99Ms", percentiles[2]);
+      assemblyReport.put("maxMs", percentiles[3]);
+      assemblies.add(assemblyReport);
+    }
+    report.put("assemblies", assemblies);
+
+    List<Map<String, Object>> fixtures = new ArrayList<>();
+    results.resultsByType().entrySet().stream()
+      .sorted(Comparator.<Map.Entry<String, UnitTestResultsData.TypeResults>>comparingLong(entry -> entry.getValue().executionTimeMs()).reversed()
+        .thenComparing(Map.Entry::getKey))
+      .forEach(entry -> {
+        Map<String, Object> fixture = new LinkedHashMap<>();
+        fixture.put("name", entry.getKey());
+        fixture.put("tests", entry.getValue().tests());
+        fixture.put("executionTimeMs", entry.getValue().executionTimeMs());
+        fixtures.add(fixture);
+      });
+    report.put("fixtures", fixtures);
+    return report;
+  }
+
+}
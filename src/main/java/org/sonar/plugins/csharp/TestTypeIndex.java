@@ -0,0 +1,105 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.annotation.CheckForNull;
+import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+/**
+ * Index of the types declared in the test files, built by scanning each test file once for its namespace and type declarations,
+ * so that looking up the file of a test is a hash lookup. The types are indexed by fully qualified name, and by simple name when it is unique.
+ * Types are qualified with the last namespace declared before them, which is enough for the usual test files.
+ */
+class TestTypeIndex {
+
+  private static final Logger LOG = Loggers.get(TestTypeIndex.class);
+  private static final Pattern DECLARATION = Pattern.compile("\\b(namespace|class|struct)\\s+@?([\\w.]+)");
+
+  private final Map<String, InputFile> filesByQualifiedName = new HashMap<>();
+  private final Map<String, InputFile> filesBySimpleName = new HashMap<>();
+  private final Set<String> ambiguousSimpleNames = new HashSet<>();
+
+  private TestTypeIndex() {
+  }
+
+  static TestTypeIndex of(FileSystem fs, String languageKey) {
+    TestTypeIndex index = new TestTypeIndex();
+    for (InputFile inputFile : fs.inputFiles(fs.predicates().and(fs.predicates().hasType(InputFile.Type.TEST), fs.predicates().hasLanguage(languageKey)))) {
+      try {
+        index.add(inputFile, new String(Files.readAllBytes(inputFile.path()), fs.encoding()));
+      } catch (IOException e) {
+        LOG.debug("Unable to read the test file " + inputFile.absolutePath() + ", its test results will not be imported", e);
+      }
+    }
+    return index;
+  }
+
+  private void add(InputFile inputFile, String contents) {
+    String namespace = null;
+    Matcher matcher = DECLARATION.matcher(contents);
+    while (matcher.find()) {
+      String name = matcher.group(2);
+      if ("namespace".equals(matcher.group(1))) {
+        namespace = name;
+      } else {
+        filesByQualifiedName.put(namespace == null ? name : (namespace + "." + name), inputFile);
+        InputFile previous = filesBySimpleName.put(name, inputFile);
+        if (previous != null && !previous.equals(inputFile)) {
+          ambiguousSimpleNames.add(name);
+        }
+      }
+    }
+  }
+
+  /**
+   * The file declaring the type, given by its fully qualified name as in the test results reports: the nested types
+   * ("Outer+Inner") are declared in the file of their outer type, and the arity of the generic types ("Foo`1") is ignored.
+   */
+  @CheckForNull
+  InputFile inputFile(String typeName) {
+    String name = typeName;
+    int nested = name.indexOf('+');
+    if (nested != -1) {
+      name = name.substring(0, nested);
+    }
+    int arity = name.indexOf('`');
+    if (arity != -1) {
+      name = name.substring(0, arity);
+    }
+    InputFile inputFile = filesByQualifiedName.get(name);
+    if (inputFile != null) {
+      return inputFile;
+    }
+    String simpleName = name.substring(name.lastIndexOf('.') + 1);
+    return ambiguousSimpleNames.contains(simpleName) ? null : filesBySimpleName.get(simpleName);
+  }
+
+}
@@ -0,0 +1,189 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.CheckForNull;
+
+/**
+ * Counters of the tests of one or several test results reports, summed up over the reports, as a whole and by type declaring the tests.
+ * Not thread-safe: each thread aggregates its own instance, and the instances are merged afterwards.
+ */
+final class UnitTestResultsData {
+
+  private int tests;
+  private int passed;
+  private int skipped;
+  private int failures;
+  private int errors;
+  private long executionTimeMs;
+  private boolean hasExecutionTime;
+  private final Map<String, TypeResults> resultsByType = new HashMap<>();
+  private final TestDurations durations;
+
+  enum Outcome {
+    PASSED, SKIPPED, FAILURE, ERROR
+  }
+
+  UnitTestResultsData() {
+    this(0);
+  }
+
+  /**
+   * @param slowestTests number of slowest tests to keep for the test duration hotspots, which are not computed at all when 0
+   */
+  UnitTestResultsData(int slowestTests) {
+    this.durations = slowestTests > 0 ? new TestDurations(slowestTests) : null;
+  }
+
+  void add(int tests, int passed, int skipped, int failures, int errors) {
+    this.tests += tests;
+    this.passed += passed;
+    this.skipped += skipped;
+    this.failures += failures;
+    this.errors += errors;
+  }
+
+  void addExecutionTime(long executionTimeMs) {
+    this.executionTimeMs += executionTimeMs;
+    this.hasExecutionTime = true;
+  }
+
+  /**
+   * Adds a test case to the counters of the type declaring it, which are independent from the counters of the whole reports.
+   *
+   * @param assembly file name of the test assembly, empty when unknown
+   * @param testName fully qualified name of the test
+   */
+  void addTestCase(String assembly, String typeName, String testName, Outcome outcome, long durationMs) {
+    resultsByType.computeIfAbsent(typeName, k -> new TypeResults()).add(outcome, durationMs);
+    if (durations != null) {
+      durations.add(assembly, testName, durationMs);
+    }
+  }
+
+  /**
+   * Adds the counters of the other results to this one, and returns this one.
+   */
+  UnitTestResultsData mergeWith(UnitTestResultsData other) {
+    add(other.tests, other.passed, other.skipped, other.failures, other.errors);
+    if (other.hasExecutionTime) {
+      addExecutionTime(other.executionTimeMs);
+    }
+    other.resultsByType.forEach((typeName, typeResults) -> resultsByType.computeIfAbsent(typeName, k -> new TypeResults()).mergeWith(typeResults));
+    if (durations != null && other.durations != null) {
+      durations.mergeWith(other.durations);
+    }
+    return this;
+  }
+
+  Map<String, TypeResults> resultsByType() {
+    return Collections.unmodifiableMap(resultsByType);
+  }
+
+  @CheckForNull
+  TestDurations durations() {
+    return durations;
+  }
+
+  int tests() {
+    return tests;
+  }
+
+  int passed() {
+    return passed;
+  }
+
+  int skipped() {
+    return skipped;
+  }
+
+  int failures() {
+    return failures;
+  }
+
+  int errors() {
+    return errors;
+  }
+
+  double passedPercentage() {
+    return tests == 0 ? 0 : (passed * 100.0 / tests);
+  }
+
+  boolean hasExecutionTime() {
+    return hasExecutionTime;
+  }
+
+  long executionTimeMs() {
+    return executionTimeMs;
+  }
+
+  static final class TypeResults {
+    private int tests;
+    private int skipped;
+    private int failures;
+    private int errors;
+    private long executionTimeMs;
+
+    private void add(Outcome outcome, long durationMs) {
+      tests++;
+      if (outcome == Outcome.SKIPPED) {
+        skipped++;
+      } else if (outcome == Outcome.FAILURE) {
+        failures++;
+      } else if (outcome == Outcome.ERROR) {
+        errors++;
+      }
+      executionTimeMs += durationMs;
+    }
+
+    TypeResults mergeWith(TypeResults other) {
+      tests += other.tests;
+      skipped += other.skipped;
+      failures += other.failures;
+      errors += other.errors;
+      executionTimeMs += other.executionTimeMs;
+      return this;
+    }
+
+    int tests() {
+      return tests;
+    }
+
+    int skipped() {
+      return skipped;
+    }
+
+    int failures() {
+      return failures;
+    }
+
+    int errors() {
+      return errors;
+    }
+
+    long executionTimeMs() {
+      return executionTimeMs;
+    }
+  }
+
+}
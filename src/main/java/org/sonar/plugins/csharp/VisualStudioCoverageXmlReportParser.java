@@ -0,0 +1,110 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Parser of the Visual Studio coverage XML reports: each line of a covered or partially covered range gets 1 hit, and each line of an uncovered range 0.
+ * The source file ids are scoped to their module, and are declared after the ranges using them: the ranges of a module are buffered
+ * as primitive values until the end of the module. The ranges of hidden sequence points are ignored, see {@link CoverageData#isHiddenLine(int)}.
+ */
+class VisualStudioCoverageXmlReportParser extends XmlCoverageReportParser {
+
+  private static final int RANGE_SIZE = 4;
+  private static final int UNRESOLVED = -2;
+  private static final int UNKNOWN = -1;
+
+  @Override
+  void parse(XMLStreamReader reader, CoverageData coverage) throws XMLStreamException {
+    Module module = new Module();
+    while (reader.hasNext()) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        String name = reader.getLocalName();
+        if ("range".equals(name)) {
+          String covered = reader.getAttributeValue(null, "covered");
+          module.addRange(reader.getAttributeValue(null, "source_id"), intAttribute(reader, "start_line"), intAttribute(reader, "end_line"),
+            "yes".equals(covered) || "partial".equals(covered) ? 1 : 0);
+        } else if ("source_file".equals(name)) {
+          module.addSourceFile(reader.getAttributeValue(null, "id"), reader.getAttributeValue(null, "path"));
+        }
+      } else if (event == XMLStreamConstants.END_ELEMENT && "module".equals(reader.getLocalName())) {
+        module.addHits(coverage);
+        module = new Module();
+      }
+    }
+    module.addHits(coverage);
+  }
+
+  private static class Module {
+    private final Map<String, Integer> indexesBySourceId = new HashMap<>();
+    private final List<String> sourceFiles = new ArrayList<>();
+    private int[] ranges = new int[RANGE_SIZE * 64];
+    private int rangesSize;
+
+    private int sourceIndex(String sourceId) {
+      return indexesBySourceId.computeIfAbsent(sourceId, id -> {
+        sourceFiles.add(null);
+        return sourceFiles.size() - 1;
+      });
+    }
+
+    private void addSourceFile(String sourceId, String path) {
+      sourceFiles.set(sourceIndex(sourceId), path);
+    }
+
+    private void addRange(String sourceId, int startLine, int endLine, int hits) {
+      if (rangesSize + RANGE_SIZE > ranges.length) {
+        ranges = Arrays.copyOf(ranges, ranges.length * 2);
+      }
+      ranges[rangesSize++] = sourceIndex(sourceId);
+      ranges[rangesSize++] = startLine;
+      ranges[rangesSize++] = endLine;
+      ranges[rangesSize++] = hits;
+    }
+
+    private void addHits(CoverageData coverage) {
+      int[] fileIds = new int[sourceFiles.size()];
+      Arrays.fill(fileIds, UNRESOLVED);
+      for (int range = 0; range < rangesSize; range += RANGE_SIZE) {
+        int sourceIndex = ranges[range];
+        if (fileIds[sourceIndex] == UNRESOLVED) {
+          String path = sourceFiles.get(sourceIndex);
+          fileIds[sourceIndex] = path == null ? UNKNOWN : coverage.fileId(path);
+        }
+        int fileId = fileIds[sourceIndex];
+        if (fileId != UNKNOWN && !CoverageData.isHiddenLine(ranges[range + 1]) && !CoverageData.isHiddenLine(ranges[range + 2])) {
+          for (int line = ranges[range + 1]; line <= ranges[range + 2]; line++) {
+            coverage.addHits(fileId, line, ranges[range + 3]);
+          }
+        }
+      }
+    }
+  }
+
+}
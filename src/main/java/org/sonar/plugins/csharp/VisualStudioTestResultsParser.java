@@ -0,0 +1,129 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Parser of the Visual Studio TRX reports: the counters come from the "Counters" element of the result summary,
+ * and the execution time from the start and finish times of the run.
+ * The results of the tests are matched with their type through the "TestMethod" elements of the test definitions, which follow them.
+ */
+class VisualStudioTestResultsParser extends XmlUnitTestResultsParser {
+
+  @Override
+  Handler newHandler(UnitTestResultsData results) {
+    return new TrxHandler(results);
+  }
+
+  private static class TrxHandler implements Handler {
+    private final UnitTestResultsData results;
+    private final List<TestResult> testResults = new ArrayList<>();
+    private final Map<String, String> typeNamesByTestId = new HashMap<>();
+    private final Map<String, String> assembliesByTestId = new HashMap<>();
+    private String testId;
+
+    private TrxHandler(UnitTestResultsData results) {
+      this.results = results;
+    }
+
+    @Override
+    public void startElement(XMLStreamReader reader, int depth) {
+      String name = reader.getLocalName();
+      if ("Counters".equals(name)) {
+        int total = intAttribute(reader, "total");
+        int executed = intAttribute(reader, "executed");
+        results.add(total, intAttribute(reader, "passed"), total - executed, intAttribute(reader, "failed"), intAttribute(reader, "error"));
+      } else if ("Times".equals(name)) {
+        String start = reader.getAttributeValue(null, "start");
+        String finish = reader.getAttributeValue(null, "finish");
+        if (start != null && finish != null) {
+          results.addExecutionTime(Duration.between(OffsetDateTime.parse(start), OffsetDateTime.parse(finish)).toMillis());
+        }
+      } else if ("UnitTestResult".equals(name)) {
+        String duration = reader.getAttributeValue(null, "duration");
+        testResults.add(new TestResult(requiredAttribute(reader, "testId"), reader.getAttributeValue(null, "testName"), outcome(reader.getAttributeValue(null, "outcome")),
+          duration == null ? 0 : timeSpanAsMs(duration)));
+      } else if ("UnitTest".equals(name)) {
+        testId = reader.getAttributeValue(null, "id");
+        assembliesByTestId.put(testId, assemblyName(reader.getAttributeValue(null, "storage")));
+      } else if ("TestMethod".equals(name) && testId != null) {
+        String className = requiredAttribute(reader, "className");
+        int assemblySeparator = className.indexOf(',');
+        typeNamesByTestId.put(testId, assemblySeparator == -1 ? className : className.substring(0, assemblySeparator).trim());
+      }
+    }
+
+    @Override
+    public void endDocument() {
+      for (TestResult testResult : testResults) {
+        String typeName = typeNamesByTestId.get(testResult.testId);
+        if (typeName != null) {
+          String testName = testResult.testName == null ? typeName : (typeName + "." + testResult.testName);
+          results.addTestCase(assembliesByTestId.get(testResult.testId), typeName, testName, testResult.outcome, testResult.durationMs);
+        }
+      }
+    }
+  }
+
+  private static class TestResult {
+    private final String testId;
+    private final String testName;
+    private final UnitTestResultsData.Outcome outcome;
+    private final long durationMs;
+
+    private TestResult(String testId, @Nullable String testName, UnitTestResultsData.Outcome outcome, long durationMs) {
+      this.testId = testId;
+      this.testName = testName;
+      this.outcome = outcome;
+      this.durationMs = durationMs;
+    }
+  }
+
+  private static UnitTestResultsData.Outcome outcome(String outcome) {
+    if ("Passed".equals(outcome)) {
+      return UnitTestResultsData.Outcome.PASSED;
+    } else if ("Failed".equals(outcome) || "Timeout".equals(outcome) || "Aborted".equals(outcome)) {
+      return UnitTestResultsData.Outcome.FAILURE;
+    } else if ("Error".equals(outcome)) {
+      return UnitTestResultsData.Outcome.ERROR;
+    }
+    return UnitTestResultsData.Outcome.SKIPPED;
+  }
+
+  /**
+   * Milliseconds of a .NET time span such as "00:01:02.5000000".
+   */
+  static long timeSpanAsMs(String timeSpan) {
+    String[] parts = timeSpan.split(":");
+    if (parts.length != 3) {
+      throw new IllegalStateException("Invalid duration \"" + timeSpan + "\"");
+    }
+    return (Long.parseLong(parts[0]) * 3600 + Long.parseLong(parts[1]) * 60) * 1000 + secondsAttributeAsMs(parts[2]);
+  }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Parser of the xUnit.net XML reports: the counters and the execution time are summed up over the "assembly" elements,
+ * and the type of each test comes from its "type" attribute.
+ */
+class XUnitTestResultsParser extends XmlUnitTestResultsParser {
+
+  @Override
+  Handler newHandler(UnitTestResultsData results) {
+    return new XUnitHandler(results);
+  }
+
+  private static class XUnitHandler implements Handler {
+    private final UnitTestResultsData results;
+    private String assembly = "";
+
+    private XUnitHandler(UnitTestResultsData results) {
+      this.results = results;
+    }
+
+    @Override
+    public void startElement(XMLStreamReader reader, int depth) {
+      String name = reader.getLocalName();
+      if ("assembly".equals(name)) {
+        addAssembly(reader);
+      } else if ("test".equals(name)) {
+        String typeName = reader.getAttributeValue(null, "type");
+        if (typeName != null) {
+          String testName = reader.getAttributeValue(null, "name");
+          results.addTestCase(assembly, typeName, testName == null ? typeName : testName, outcome(reader.getAttributeValue(null, "result")),
+            secondsAttributeAsMs(reader, "time"));
+        }
+      }
+    }
+
+    private void addAssembly(XMLStreamReader reader) {
+      assembly = assemblyName(reader.getAttributeValue(null, "name"));
+      String errors = reader.getAttributeValue(null, "errors");
+      results.add(intAttribute(reader, "total"), intAttribute(reader, "passed"), intAttribute(reader, "skipped"), intAttribute(reader, "failed"),
+        errors == null ? 0 : Integer.parseInt(errors));
+      String time = reader.getAttributeValue(null, "time");
+      if (time != null) {
+        results.addExecutionTime(secondsAttributeAsMs(time));
+      }
+    }
+  }
+
+  private static UnitTestResultsData.Outcome outcome(String result) {
+    if ("Pass".equals(result)) {
+      return UnitTestResultsData.Outcome.PASSED;
+    } else if ("Fail".equals(result)) {
+      return UnitTestResultsData.Outcome.FAILURE;
+    }
+    return UnitTestResultsData.Outcome.SKIPPED;
+  }
+
+}
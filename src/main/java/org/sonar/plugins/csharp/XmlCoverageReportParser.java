@@ -0,0 +1,62 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Base class of the coverage report parsers reading XML reports with a pull parser, so that memory usage does not depend on the size of the report.
+ */
+abstract class XmlCoverageReportParser implements CoverageReportParser {
+
+  @Override
+  public void parse(File report, CoverageData coverage) {
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    try (InputStream stream = new FileInputStream(report)) {
+      XMLStreamReader reader = factory.createXMLStreamReader(stream);
+      try {
+        parse(reader, coverage);
+      } finally {
+        reader.close();
+      }
+    } catch (IOException | XMLStreamException e) {
+      throw new IllegalStateException("Unable to parse the coverage report " + report.getAbsolutePath(), e);
+    }
+  }
+
+  abstract void parse(XMLStreamReader reader, CoverageData coverage) throws XMLStreamException;
+
+  static int intAttribute(XMLStreamReader reader, String name) {
+    String value = reader.getAttributeValue(null, name);
+    if (value == null) {
+      throw new IllegalStateException("Missing attribute \"" + name + "\" in element \"" + reader.getLocalName() + "\" at line " + reader.getLocation().getLineNumber());
+    }
+    return Integer.parseInt(value);
+  }
+
+}
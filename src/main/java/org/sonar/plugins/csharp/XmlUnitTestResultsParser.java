@@ -0,0 +1,143 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import com.google.common.collect.ImmutableSet;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Set;
+import javax.annotation.Nullable;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Base class of the test results parsers reading XML reports with a pull parser, so that memory usage does not depend on the size of the report.
+ * The elements holding the output captured from the tests, which make up most of the size of large reports, are skipped without ever reading their text.
+ */
+abstract class XmlUnitTestResultsParser implements UnitTestResultsParser {
+
+  private static final Set<String> OUTPUT_ELEMENTS = ImmutableSet.of("Output", "output");
+
+  @Override
+  public void parse(File report, UnitTestResultsData results) {
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+    try (InputStream stream = new FileInputStream(report)) {
+      XMLStreamReader reader = factory.createXMLStreamReader(stream);
+      try {
+        parse(reader, results);
+      } finally {
+        reader.close();
+      }
+    } catch (IOException | XMLStreamException | RuntimeException e) {
+      throw new IllegalStateException("Unable to parse the test results report " + report.getAbsolutePath(), e);
+    }
+  }
+
+  private void parse(XMLStreamReader reader, UnitTestResultsData results) throws XMLStreamException {
+    Handler handler = newHandler(results);
+    int depth = 0;
+    while (reader.hasNext()) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.END_ELEMENT) {
+        depth--;
+      } else if (event == XMLStreamConstants.START_ELEMENT) {
+        if (OUTPUT_ELEMENTS.contains(reader.getLocalName())) {
+          skipElement(reader);
+        } else {
+          depth++;
+          handler.startElement(reader, depth);
+        }
+      }
+    }
+    handler.endDocument();
+  }
+
+  /**
+   * A new handler is created for each report, so that a parser can be shared by the threads parsing several reports.
+   */
+  abstract Handler newHandler(UnitTestResultsData results);
+
+  interface Handler {
+
+    /**
+     * Called for each element which is not an output element, the root element being at depth 1.
+     */
+    void startElement(XMLStreamReader reader, int depth);
+
+    default void endDocument() {
+      // nothing to do by default
+    }
+
+  }
+
+  private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+    int depth = 1;
+    while (depth > 0) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        depth++;
+      } else if (event == XMLStreamConstants.END_ELEMENT) {
+        depth--;
+      }
+    }
+  }
+
+  static int intAttribute(XMLStreamReader reader, String name) {
+    return Integer.parseInt(requiredAttribute(reader, name));
+  }
+
+  static String requiredAttribute(XMLStreamReader reader, String name) {
+    String value = reader.getAttributeValue(null, name);
+    if (value == null) {
+      throw new IllegalStateException("Missing attribute \"" + name + "\" in element \"" + reader.getLocalName() + "\" at line " + reader.getLocation().getLineNumber());
+    }
+    return value;
+  }
+
+  /**
+   * Duration in milliseconds of an attribute in seconds, such as "1.234".
+   */
+  static long secondsAttributeAsMs(String seconds) {
+    return Math.round(Double.parseDouble(seconds) * 1000);
+  }
+
+  /**
+   * File name of the test assembly from its path, empty when unknown.
+   */
+  static String assemblyName(@Nullable String path) {
+    if (path == null) {
+      return "";
+    }
+    return path.substring(Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\')) + 1);
+  }
+
+  static long secondsAttributeAsMs(XMLStreamReader reader, String name) {
+    String seconds = reader.getAttributeValue(null, name);
+    return seconds == null ? 0 : secondsAttributeAsMs(seconds);
+  }
+
+}
@@ -0,0 +1,46 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import org.junit.Test;
+import org.sonar.api.batch.rule.ActiveRules;
+import org.sonar.api.batch.rule.internal.ActiveRulesBuilder;
+import org.sonar.api.rule.RuleKey;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ActiveRoslynRulesIndexTest {
+
+  @Test
+  public void built_once_per_active_rules() {
+    ActiveRules activeRules = new ActiveRulesBuilder().create(RuleKey.of("roslyn.foo", "CA1000")).activate().build();
+    ActiveRoslynRulesIndex index = new ActiveRoslynRulesIndex();
+
+    ActiveRoslynRules rules = index.get(activeRules);
+    assertThat(rules.repositoryKeyByRoslynRuleKey()).containsEntry("CA1000", "roslyn.foo");
+    assertThat(index.get(activeRules)).isSameAs(rules);
+
+    ActiveRules otherActiveRules = new ActiveRulesBuilder().create(RuleKey.of("roslyn.bar", "CA2000")).activate().build();
+    ActiveRoslynRules otherRules = index.get(otherActiveRules);
+    assertThat(otherRules).isNotSameAs(rules);
+    assertThat(otherRules.byPartialRepoKey().keySet()).containsOnly("bar");
+  }
+
+}
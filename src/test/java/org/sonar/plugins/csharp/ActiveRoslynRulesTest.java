@@ -0,0 +1,58 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.api.rule.RuleKey;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ActiveRoslynRulesTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Test
+  public void index_roslyn_rules() {
+    RuleKey sonarAnalyzerRule = RuleKey.of(CSharpSonarRulesDefinition.REPOSITORY_KEY, "S1000");
+    RuleKey customRule = RuleKey.of("roslyn.foo", "CA1000");
+    ActiveRoslynRules rules = ActiveRoslynRules.of(ImmutableList.of(sonarAnalyzerRule, customRule, RuleKey.of("common-cs", "DuplicatedBlocks")));
+
+    assertThat(rules.byPartialRepoKey().keySet()).containsOnly("sonaranalyzer-cs", "foo");
+    assertThat(rules.repositoryKeyByRoslynRuleKey()).containsOnlyKeys("S1000", "CA1000")
+      .containsEntry("S1000", sonarAnalyzerRule.repository())
+      .containsEntry("CA1000", customRule.repository());
+  }
+
+  @Test
+  public void duplicated_rule_ids_are_only_reported_on_lookup() {
+    ActiveRoslynRules rules = ActiveRoslynRules.of(ImmutableList.of(RuleKey.of(CSharpSonarRulesDefinition.REPOSITORY_KEY, "S1000"), RuleKey.of("roslyn.foo", "S1000")));
+
+    assertThat(rules.byPartialRepoKey().size()).isEqualTo(2);
+
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("Rule keys must be unique, but \"S1000\" is defined in both the \"csharpsquid\" and \"roslyn.foo\" rule repositories.");
+    rules.repositoryKeyByRoslynRuleKey();
+  }
+
+}
@@ -0,0 +1,130 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.fs.InputFile.Type;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.batch.rule.internal.ActiveRulesBuilder;
+import org.sonar.api.batch.rule.internal.NewActiveRule;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+import org.sonar.api.rule.RuleKey;
+import org.sonarsource.dotnet.shared.plugins.AnalysisInputXml;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+public class AnalysisInputWriterTest {
+
+  private static final String REPOSITORY_KEY = CSharpSonarRulesDefinition.REPOSITORY_KEY;
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private SensorContextTester context;
+  private Path analysisInput;
+
+  @Before
+  public void prepare() throws Exception {
+    File baseDir = temp.newFolder("base & <dir>");
+    context = SensorContextTester.create(baseDir);
+    analysisInput = temp.getRoot().toPath().resolve("SonarLint.xml");
+  }
+
+  @Test
+  public void same_document_as_the_shared_library() throws Exception {
+    addFile("Program.cs", Type.MAIN);
+    addFile("It's \"quoted\".cs", Type.MAIN);
+    addFile("ProgramTest.cs", Type.TEST);
+    ActiveRulesBuilder rules = new ActiveRulesBuilder();
+    rules.create(RuleKey.of(REPOSITORY_KEY, "S1186")).activate();
+    NewActiveRule withParameters = rules.create(RuleKey.of(REPOSITORY_KEY, "S107"));
+    for (int i = 0; i < 20; i++) {
+      withParameters.setParam("param" + i, "<valeur & \"" + i + "\" été>");
+    }
+    withParameters.activate();
+    rules.create(RuleKey.of("other", "S1")).activate();
+    context.setActiveRules(rules.build());
+
+    assertSameDocument(true, true, true);
+    assertSameDocument(true, false, false);
+    assertSameDocument(false, false, true);
+  }
+
+  @Test
+  public void empty_module() throws Exception {
+    assertSameDocument(true, true, true);
+  }
+
+  @Test
+  public void existing_file_is_overwritten() throws Exception {
+    Files.write(analysisInput, new byte[100_000]);
+    assertSameDocument(true, true, true);
+  }
+
+  @Test
+  public void document_is_not_built_in_memory() throws Exception {
+    assumeTrue(SensorMetrics.allocatedBytes() >= 0);
+    for (int i = 0; i < 20_000; i++) {
+      addFile("src/some/deep/directory/of/the/module/File" + i + ".cs", Type.MAIN);
+    }
+    Path generated = temp.getRoot().toPath().resolve("generated.xml");
+    // Warms up both code paths before measuring them
+    writeLegacy(generated);
+    AnalysisInputWriter.write(analysisInput, true, false, true, context, REPOSITORY_KEY, CSharpPlugin.LANGUAGE_KEY, "UTF-8");
+
+    long start = SensorMetrics.allocatedBytes();
+    writeLegacy(generated);
+    long legacy = SensorMetrics.allocatedBytes() - start;
+    start = SensorMetrics.allocatedBytes();
+    AnalysisInputWriter.write(analysisInput, true, false, true, context, REPOSITORY_KEY, CSharpPlugin.LANGUAGE_KEY, "UTF-8");
+    long streamed = SensorMetrics.allocatedBytes() - start;
+
+    assertThat(analysisInput.toFile().length()).isGreaterThan(2_000_000L);
+    // The legacy path holds the builder, the String and the bytes of the whole document, the streaming one only the paths of the files
+    assertThat(streamed).isLessThan(legacy - 3 * analysisInput.toFile().length());
+  }
+
+  private void assertSameDocument(boolean includeSettings, boolean ignoreHeaderComments, boolean includeRules) throws Exception {
+    String expected = AnalysisInputXml.generate(includeSettings, ignoreHeaderComments, includeRules, context, REPOSITORY_KEY, CSharpPlugin.LANGUAGE_KEY, "UTF-8");
+    AnalysisInputWriter.write(analysisInput, includeSettings, ignoreHeaderComments, includeRules, context, REPOSITORY_KEY, CSharpPlugin.LANGUAGE_KEY, "UTF-8");
+
+    assertThat(Files.readAllBytes(analysisInput)).isEqualTo(expected.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private void writeLegacy(Path path) throws Exception {
+    Files.write(path, AnalysisInputXml.generate(true, false, true, context, REPOSITORY_KEY, CSharpPlugin.LANGUAGE_KEY, "UTF-8").getBytes(StandardCharsets.UTF_8));
+  }
+
+  private void addFile(String relativePath, Type type) {
+    context.fileSystem().add(new DefaultInputFile(context.module().key(), relativePath)
+      .setModuleBaseDir(context.fileSystem().baseDirPath())
+      .setLanguage(CSharpPlugin.LANGUAGE_KEY)
+      .setType(type));
+  }
+
+}
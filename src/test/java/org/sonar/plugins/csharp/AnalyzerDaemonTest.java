@@ -0,0 +1,229 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.apache.commons.lang.SystemUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.junit.Assume.assumeFalse;
+
+public class AnalyzerDaemonTest {
+
+  /**
+   * Stands for SonarAnalyzer.Scanner: run without the daemon argument, counts its runs and copies the analysis input to the analysis output.
+   * In daemon mode, counts its starts, answers the handshake with the protocol version of the "protocol" file, 1 by default, or not at all
+   * when there is a "silent" file, copies the analysis input to the analysis output, and fails, crashes or hangs when asked to by the name
+   * of the analysis input.
+   */
+  private static final String DAEMON_SCRIPT = String.join("\n",
+    "dir=$(dirname \"$0\")",
+    "if [ \"$1\" != \"--daemon\" ]; then",
+    "  echo \"$3\" >> \"$dir/runs\"",
+    "  mkdir -p \"$2\" && cp \"$1\" \"$2/input.xml\"",
+    "  exit 0",
+    "fi",
+    "echo started >> \"$dir/starts\"",
+    "tab=$(printf '\\t')",
+    "while IFS=\"$tab\" read -r request input output language; do",
+    "  case \"$request\" in",
+    "    hello)",
+    "      if [ ! -f \"$dir/silent\" ]; then",
+    "        if [ -f \"$dir/protocol\" ]; then version=$(cat \"$dir/protocol\"); else version=1; fi",
+    "        printf 'ready\\t%s\\n' \"$version\"",
+    "      fi ;;",
+    "    analyze)",
+    "      echo \"analyzing $language\"",
+    "      case \"$input\" in",
+    "        *fail*) echo \"invalid input\" >&2; printf 'done\\t3\\n' ;;",
+    "        *crash*) exit 5 ;;",
+    "        *hang*) sleep 10 ;;",
+    "        *) mkdir -p \"$output\" && cp \"$input\" \"$output/input.xml\" && printf 'done\\t0\\n' ;;",
+    "      esac ;;",
+    "    exit) echo stopped >> \"$dir/stops\"; exit 0 ;;",
+    "  esac",
+    "done",
+    "");
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private AnalyzerDaemon daemon;
+  private AnalyzerLauncher launcher;
+  private File script;
+  private List<String> out;
+  private List<String> err;
+
+  @Before
+  public void prepare() throws Exception {
+    assumeFalse(SystemUtils.IS_OS_WINDOWS);
+    script = temp.newFile("analyzer.sh");
+    Files.write(script.toPath(), DAEMON_SCRIPT.getBytes(StandardCharsets.UTF_8));
+    daemon = new AnalyzerDaemon(2_000);
+    daemon.start();
+    launcher = daemon.launcher(new CommandAnalyzerLauncher("sh"));
+    out = Collections.synchronizedList(new ArrayList<>());
+    err = Collections.synchronizedList(new ArrayList<>());
+  }
+
+  @After
+  public void stop() {
+    if (daemon != null) {
+      daemon.stop();
+    }
+  }
+
+  @Test
+  public void modules_are_analyzed_by_the_same_process() throws Exception {
+    Path firstOutput = analyze("module1", Integer.MAX_VALUE);
+    Path secondOutput = analyze("module2", Integer.MAX_VALUE);
+
+    assertThat(firstOutput.resolve("input.xml")).hasContent("<AnalysisInput>module1</AnalysisInput>");
+    assertThat(secondOutput.resolve("input.xml")).hasContent("<AnalysisInput>module2</AnalysisInput>");
+    assertThat(out).containsExactly("analyzing cs", "analyzing cs");
+    assertThat(lines("starts")).hasSize(1);
+    assertThat(launcher.isAvailable()).isTrue();
+  }
+
+  @Test
+  public void daemons_are_stopped_at_the_end_of_the_analysis() throws Exception {
+    analyze("module1", Integer.MAX_VALUE);
+
+    daemon.stop();
+
+    assertThat(lines("stops")).hasSize(1);
+    try {
+      analyze("module2", Integer.MAX_VALUE);
+      fail("Expected the daemons to be stopped");
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("The .NET analyzer daemons are already stopped");
+    }
+  }
+
+  @Test
+  public void failed_analysis_keeps_the_daemon() throws Exception {
+    try {
+      analyze("fail", Integer.MAX_VALUE);
+      fail("Expected the analysis to fail");
+    } catch (IllegalStateException e) {
+      assertThat(e.getMessage()).startsWith("The .NET analyzer failed with exit code: 3");
+    }
+
+    analyze("module1", Integer.MAX_VALUE);
+    assertThat(lines("starts")).hasSize(1);
+  }
+
+  @Test
+  public void crashed_daemon_is_replaced() throws Exception {
+    try {
+      analyze("crash", Integer.MAX_VALUE);
+      fail("Expected the analysis to fail");
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("The .NET analyzer daemon stopped with exit code 5 before completing the analysis");
+    }
+
+    Path output = analyze("module1", Integer.MAX_VALUE);
+    assertThat(output.resolve("input.xml")).exists();
+    assertThat(lines("starts")).hasSize(2);
+  }
+
+  @Test
+  public void hanging_daemon_is_stopped_and_replaced() throws Exception {
+    try {
+      analyze("hang", 500);
+      fail("Expected the analysis to time out");
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("The .NET analyzer did not complete within 500 ms and was stopped");
+    }
+
+    analyze("module1", Integer.MAX_VALUE);
+    assertThat(lines("starts")).hasSize(2);
+  }
+
+  @Test
+  public void next_job_after_a_timeout_does_not_reuse_the_stopped_daemon() throws Exception {
+    try {
+      analyze("hang", 500);
+      fail("Expected the analysis to time out");
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("The .NET analyzer did not complete within 500 ms and was stopped");
+    }
+    out.clear();
+
+    Path output = analyze("module1", Integer.MAX_VALUE);
+
+    assertThat(output.resolve("input.xml")).hasContent("<AnalysisInput>module1</AnalysisInput>");
+    assertThat(out).containsExactly("analyzing cs");
+    assertThat(lines("starts")).hasSize(2);
+  }
+
+  @Test
+  public void other_protocol_version_falls_back_to_one_process_per_module() throws Exception {
+    Files.write(temp.getRoot().toPath().resolve("protocol"), "2".getBytes(StandardCharsets.UTF_8));
+
+    Path firstOutput = analyze("module1", Integer.MAX_VALUE);
+    Path secondOutput = analyze("module2", Integer.MAX_VALUE);
+
+    assertThat(firstOutput.resolve("input.xml")).hasContent("<AnalysisInput>module1</AnalysisInput>");
+    assertThat(secondOutput.resolve("input.xml")).hasContent("<AnalysisInput>module2</AnalysisInput>");
+    assertThat(out).isEmpty();
+    // The daemon is only tried once
+    assertThat(lines("starts")).hasSize(1);
+    assertThat(lines("runs")).containsExactly("cs", "cs");
+  }
+
+  @Test
+  public void daemon_not_answering_the_handshake_falls_back_to_one_process_per_module() throws Exception {
+    Files.write(temp.getRoot().toPath().resolve("silent"), new byte[0]);
+
+    Path output = analyze("module1", Integer.MAX_VALUE);
+
+    assertThat(output.resolve("input.xml")).hasContent("<AnalysisInput>module1</AnalysisInput>");
+    assertThat(lines("starts")).hasSize(1);
+    assertThat(lines("runs")).containsExactly("cs");
+  }
+
+  private Path analyze(String module, int timeoutMs) throws Exception {
+    Path directory = temp.newFolder().toPath();
+    Path input = directory.resolve(module + ".xml");
+    Files.write(input, ("<AnalysisInput>" + module + "</AnalysisInput>").getBytes(StandardCharsets.UTF_8));
+    Path output = directory.resolve("output-cs");
+    launcher.launch(script, input, output, timeoutMs, out::add, err::add);
+    return output;
+  }
+
+  private List<String> lines(String fileName) throws Exception {
+    Path file = temp.getRoot().toPath().resolve(fileName);
+    return Files.exists(file) ? Files.readAllLines(file) : Collections.emptyList();
+  }
+
+}
@@ -0,0 +1,112 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.utils.log.LogTester;
+import org.sonar.api.utils.log.LoggerLevel;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AnalyzerLogTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Rule
+  public LogTester logTester = new LogTester();
+
+  private Path logFile;
+
+  @Before
+  public void prepare() {
+    logFile = temp.getRoot().toPath().resolve(AnalyzerLog.LOG_FILE_NAME);
+  }
+
+  @Test
+  public void output_is_written_to_the_file_and_only_summarized() throws Exception {
+    try (AnalyzerLog log = new AnalyzerLog(logFile, "", 10)) {
+      log.stdOut().consumeLine("SonarAnalyzer.Scanner starting");
+      log.stdErr().consumeLine("Something went wrong");
+      log.stdOut().consumeLine("Done");
+      log.succeeded();
+    }
+
+    assertThat(Files.readAllLines(logFile)).containsExactly("SonarAnalyzer.Scanner starting", "[stderr] Something went wrong", "Done");
+    assertThat(logTester.logs(LoggerLevel.INFO)).containsExactly("SonarAnalyzer.Scanner: 3 lines of output including 1 errors in " + logFile);
+    assertThat(logTester.logs(LoggerLevel.ERROR)).isEmpty();
+  }
+
+  @Test
+  public void last_lines_are_logged_on_failure() throws Exception {
+    try (AnalyzerLog log = new AnalyzerLog(logFile, "[batch 1] ", 10, 3, AnalyzerLog.SUMMARY_INTERVAL_MS, System::nanoTime)) {
+      for (int i = 0; i < 5; i++) {
+        log.stdOut().consumeLine("line " + i);
+      }
+      log.stdErr().consumeLine("Unhandled exception");
+    }
+
+    assertThat(Files.readAllLines(logFile)).hasSize(6);
+    assertThat(logTester.logs(LoggerLevel.ERROR)).containsExactly(
+      "[batch 1] SonarAnalyzer.Scanner did not succeed, last 3 lines of its output:",
+      "[batch 1] line 3",
+      "[batch 1] line 4",
+      "[batch 1] [stderr] Unhandled exception");
+  }
+
+  @Test
+  public void progress_and_remaining_time_are_summarized() throws Exception {
+    AtomicLong clock = new AtomicLong();
+    // Each line is written 10 seconds after the previous one
+    try (AnalyzerLog log = new AnalyzerLog(logFile, "", 4, 10, AnalyzerLog.SUMMARY_INTERVAL_MS, () -> clock.getAndAdd(TimeUnit.SECONDS.toNanos(10)))) {
+      log.stdOut().consumeLine("Analyzing C:\\src\\A.cs");
+      log.stdOut().consumeLine("Analyzing C:\\src\\B.cs");
+      log.stdOut().consumeLine("Issue found in C:\\src\\A.cs");
+      log.succeeded();
+    }
+
+    assertThat(logTester.logs(LoggerLevel.INFO)).containsExactly(
+      "SonarAnalyzer.Scanner: 1/4 files analyzed, about 30 s remaining, 1 lines of output in " + logFile,
+      "SonarAnalyzer.Scanner: 2/4 files analyzed, about 20 s remaining, 2 lines of output in " + logFile,
+      "SonarAnalyzer.Scanner: 2/4 files analyzed, about 30 s remaining, 3 lines of output in " + logFile,
+      "SonarAnalyzer.Scanner: 2/4 files analyzed, 3 lines of output in " + logFile);
+  }
+
+  @Test
+  public void process_is_not_blocked_when_the_file_cannot_be_written() throws Exception {
+    Path unwritable = temp.getRoot().toPath().resolve("missing").resolve(AnalyzerLog.LOG_FILE_NAME);
+    try (AnalyzerLog log = new AnalyzerLog(unwritable, "", 10, 2, AnalyzerLog.SUMMARY_INTERVAL_MS, System::nanoTime)) {
+      for (int i = 0; i < 50_000; i++) {
+        log.stdOut().consumeLine("line " + i);
+      }
+    }
+
+    assertThat(logTester.logs(LoggerLevel.WARN)).containsExactly("Unable to write the output of SonarAnalyzer.Scanner to " + unwritable);
+    assertThat(logTester.logs(LoggerLevel.ERROR)).contains("line 49998", "line 49999");
+  }
+
+}
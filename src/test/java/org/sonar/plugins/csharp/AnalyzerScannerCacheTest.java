@@ -0,0 +1,184 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.utils.log.LogTester;
+import org.sonar.api.utils.log.LoggerLevel;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class AnalyzerScannerCacheTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Rule
+  public LogTester logTester = new LogTester();
+
+  private Path directory;
+  private AtomicInteger extracted;
+
+  @Before
+  public void prepare() {
+    directory = temp.getRoot().toPath().resolve("cache");
+    extracted = new AtomicInteger();
+  }
+
+  @Test
+  public void entry_is_extracted_once_and_reused() throws Exception {
+    Path entry = new AnalyzerScannerCache(directory, Long.MAX_VALUE, 0).get("abc", extractor(10));
+    Path reused = new AnalyzerScannerCache(directory, Long.MAX_VALUE, 0).get("abc", extractor(10));
+
+    assertThat(extracted.get()).isEqualTo(1);
+    assertThat(reused).isEqualTo(entry).isEqualTo(directory.resolve("abc"));
+    assertThat(entry.resolve("SonarAnalyzer.Scanner.exe")).hasContent("0123456789");
+    assertThat(entry.resolve(AnalyzerScannerCache.LAST_USED_FILE_NAME)).exists();
+  }
+
+  @Test
+  public void failed_extraction_leaves_no_entry() throws Exception {
+    try {
+      new AnalyzerScannerCache(directory, Long.MAX_VALUE, 0).get("abc", target -> {
+        Files.write(target.resolve("SonarAnalyzer.Scanner.exe"), new byte[1]);
+        throw new IOException("corrupted");
+      });
+      fail("Expected the extraction to fail");
+    } catch (IllegalStateException e) {
+      assertThat(e.getCause()).hasMessage("corrupted");
+    }
+
+    assertThat(directory.toFile().list()).containsOnly(AnalyzerScannerCache.LOCK_FILE_NAME);
+    new AnalyzerScannerCache(directory, Long.MAX_VALUE, 0).get("abc", extractor(10));
+    assertThat(extracted.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void leftover_temporary_directories_are_deleted() throws Exception {
+    Files.createDirectories(directory.resolve("tmp-123"));
+
+    new AnalyzerScannerCache(directory, Long.MAX_VALUE, 0).get("abc", extractor(10));
+
+    assertThat(directory.toFile().list()).containsOnly(AnalyzerScannerCache.LOCK_FILE_NAME, "abc");
+  }
+
+  @Test
+  public void concurrent_analyses_extract_once() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Callable<Path>> tasks = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        tasks.add(() -> new AnalyzerScannerCache(directory, Long.MAX_VALUE, 0).get("abc", extractor(10)));
+      }
+      for (Future<Path> future : executor.invokeAll(tasks)) {
+        assertThat(future.get()).isEqualTo(directory.resolve("abc"));
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    assertThat(extracted.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void least_recently_used_entries_are_evicted() throws Exception {
+    new AnalyzerScannerCache(directory, 25, 0).get("old", extractor(10));
+    new AnalyzerScannerCache(directory, 25, 0).get("recent", extractor(10));
+    setLastUsed("old", 1_000_000);
+    setLastUsed("recent", 2_000_000);
+
+    new AnalyzerScannerCache(directory, 25, 0).get("new", extractor(10));
+
+    assertThat(directory.toFile().list()).containsOnly(AnalyzerScannerCache.LOCK_FILE_NAME, "recent", "new");
+  }
+
+  @Test
+  public void entry_in_use_is_never_evicted() throws Exception {
+    new AnalyzerScannerCache(directory, 5, 0).get("old", extractor(10));
+    new AnalyzerScannerCache(directory, 5, 0).get("new", extractor(10));
+
+    assertThat(directory.toFile().list()).containsOnly(AnalyzerScannerCache.LOCK_FILE_NAME, "new");
+  }
+
+  @Test
+  public void recently_used_entries_are_kept() throws Exception {
+    new AnalyzerScannerCache(directory, 5, AnalyzerScannerCache.DEFAULT_GRACE_PERIOD_MS).get("old", extractor(10));
+    new AnalyzerScannerCache(directory, 5, AnalyzerScannerCache.DEFAULT_GRACE_PERIOD_MS).get("new", extractor(10));
+
+    assertThat(directory.toFile().list()).containsOnly(AnalyzerScannerCache.LOCK_FILE_NAME, "old", "new");
+  }
+
+  @Test
+  public void entries_which_cannot_be_evicted_are_skipped() throws Exception {
+    new AnalyzerScannerCache(directory, 25, 0).get("locked", extractor(10));
+    new AnalyzerScannerCache(directory, 25, 0).get("old", extractor(10));
+    setLastUsed("locked", 1_000_000);
+    setLastUsed("old", 2_000_000);
+
+    new AnalyzerScannerCache(directory, 25, 0).get("new", target -> {
+      extractor(10).extractTo(target);
+      // Makes the eviction of the least recently used entry fail, as a running executable does on Windows
+      Files.createDirectories(directory.resolve("tmp-locked").resolve("in-use"));
+    });
+
+    assertThat(directory.toFile().list()).containsOnly(AnalyzerScannerCache.LOCK_FILE_NAME, "locked", "tmp-locked", "new");
+    assertThat(logTester.logs(LoggerLevel.WARN)).containsExactly("Unable to evict SonarAnalyzer.Scanner from the cache " + directory.resolve("locked") + ", it is skipped");
+  }
+
+  @Test
+  public void touch_marks_the_entry_as_used_now() throws Exception {
+    Path entry = new AnalyzerScannerCache(directory, Long.MAX_VALUE, 0).get("abc", extractor(10));
+    setLastUsed("abc", 1_000_000);
+    long before = System.currentTimeMillis();
+
+    new AnalyzerScannerCache(directory, Long.MAX_VALUE, 0).touch(entry);
+
+    // File systems may round the modification time down to the second
+    assertThat(entry.resolve(AnalyzerScannerCache.LAST_USED_FILE_NAME).toFile().lastModified()).isGreaterThanOrEqualTo(before - 2_000);
+  }
+
+  private AnalyzerScannerCache.Extractor extractor(int size) {
+    return target -> {
+      extracted.incrementAndGet();
+      Files.write(target.resolve("SonarAnalyzer.Scanner.exe"), "0123456789".substring(0, size).getBytes(StandardCharsets.UTF_8));
+    };
+  }
+
+  private void setLastUsed(String entry, long millis) throws IOException {
+    Files.setLastModifiedTime(directory.resolve(entry).resolve(AnalyzerScannerCache.LAST_USED_FILE_NAME), FileTime.fromMillis(millis));
+  }
+
+}
@@ -0,0 +1,70 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import com.google.common.collect.ImmutableSet;
+import org.junit.Test;
+import org.sonar.api.config.PropertyDefinition;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CSharpAnalysisProviderTest {
+
+  @Test
+  public void test() {
+    assertThat(nonProperties(CSharpAnalysisProvider.extensions())).isEmpty();
+    assertThat(propertyKeys(CSharpAnalysisProvider.extensions())).containsOnly(
+      "sonar.cs.import.threads",
+      "sonar.cs.import.pipelined",
+      "sonar.cs.incremental",
+      "sonar.cs.analyzer.parallelism",
+      "sonar.cs.analyzer.timeout",
+      "sonar.cs.analyzer.cacheSize",
+      "sonar.cs.analyzer.cacheDirectory",
+      "sonar.cs.analyzer.launcher",
+      "sonar.cs.analyzer.daemon",
+      "sonar.cs.sensors.concurrent");
+  }
+
+  private static Set<String> nonProperties(List extensions) {
+    ImmutableSet.Builder builder = ImmutableSet.builder();
+    for (Object extension : extensions) {
+      if (!(extension instanceof PropertyDefinition)) {
+        builder.add(extension);
+      }
+    }
+    return builder.build();
+  }
+
+  private static Set<String> propertyKeys(List extensions) {
+    ImmutableSet.Builder<String> builder = ImmutableSet.builder();
+    for (Object extension : extensions) {
+      if (extension instanceof PropertyDefinition) {
+        PropertyDefinition property = (PropertyDefinition) extension;
+        builder.add(property.key());
+      }
+    }
+    return builder.build();
+  }
+
+}
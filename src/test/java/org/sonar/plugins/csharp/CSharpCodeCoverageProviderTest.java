@@ -25,10 +25,13 @@ import java.util.List;
 import java.util.Set;
 import org.junit.Test;
 import org.sonar.api.config.PropertyDefinition;
+import org.sonar.api.config.Settings;
+import org.sonar.api.resources.Project;
 import org.sonar.plugins.csharp.CSharpCodeCoverageProvider.CSharpCoverageAggregator;
 import org.sonar.plugins.csharp.CSharpCodeCoverageProvider.CSharpCoverageReportImportSensor;
 import org.sonar.plugins.csharp.CSharpCodeCoverageProvider.CSharpIntegrationCoverageAggregator;
 import org.sonar.plugins.csharp.CSharpCodeCoverageProvider.CSharpIntegrationCoverageReportImportSensor;
+import org.sonar.plugins.csharp.CSharpCodeCoverageProvider.CSharpParallelCoverageReportImportSensor;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -40,12 +43,41 @@ public class CSharpCodeCoverageProviderTest {
       CSharpCoverageAggregator.class,
       CSharpIntegrationCoverageAggregator.class,
       CSharpCoverageReportImportSensor.class,
-      CSharpIntegrationCoverageReportImportSensor.class);
+      CSharpIntegrationCoverageReportImportSensor.class,
+      CSharpParallelCoverageReportImportSensor.class);
     assertThat(propertyKeys(CSharpCodeCoverageProvider.extensions())).containsOnly(
       "sonar.cs.ncover3.reportsPaths", "sonar.cs.ncover3.it.reportsPaths",
       "sonar.cs.opencover.reportsPaths", "sonar.cs.opencover.it.reportsPaths",
       "sonar.cs.dotcover.reportsPaths", "sonar.cs.dotcover.it.reportsPaths",
-      "sonar.cs.vscoveragexml.reportsPaths", "sonar.cs.vscoveragexml.it.reportsPaths");
+      "sonar.cs.vscoveragexml.reportsPaths", "sonar.cs.vscoveragexml.it.reportsPaths",
+      "sonar.cs.coverage.threads", "sonar.cs.coverage.cacheSize", "sonar.cs.coverage.overall");
+  }
+
+  @Test
+  public void library_sensors_disabled_by_plugin_import() {
+    Settings settings = new Settings();
+    Project project = new Project("foo");
+    CSharpCoverageReportImportSensor unitTestsSensor = new CSharpCoverageReportImportSensor(new CSharpCoverageAggregator(settings), settings);
+    CSharpIntegrationCoverageReportImportSensor integrationTestsSensor = new CSharpIntegrationCoverageReportImportSensor(new CSharpIntegrationCoverageAggregator(settings),
+      settings);
+    settings.setProperty("sonar.cs.opencover.reportsPaths", "report.xml");
+    settings.setProperty("sonar.cs.opencover.it.reportsPaths", "report.xml");
+    assertThat(unitTestsSensor.shouldExecuteOnProject(project)).isTrue();
+    assertThat(integrationTestsSensor.shouldExecuteOnProject(project)).isTrue();
+
+    settings.setProperty("sonar.cs.coverage.threads", "4");
+    assertThat(unitTestsSensor.shouldExecuteOnProject(project)).isFalse();
+    assertThat(integrationTestsSensor.shouldExecuteOnProject(project)).isFalse();
+
+    settings.setProperty("sonar.cs.coverage.threads", "1");
+    settings.setProperty("sonar.cs.coverage.cacheSize", "100");
+    assertThat(unitTestsSensor.shouldExecuteOnProject(project)).isFalse();
+    assertThat(integrationTestsSensor.shouldExecuteOnProject(project)).isFalse();
+
+    settings.setProperty("sonar.cs.coverage.cacheSize", "0");
+    settings.setProperty("sonar.cs.coverage.overall", "true");
+    assertThat(unitTestsSensor.shouldExecuteOnProject(project)).isFalse();
+    assertThat(integrationTestsSensor.shouldExecuteOnProject(project)).isFalse();
   }
 
   @Test
@@ -0,0 +1,125 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.stubbing.Answer;
+import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+import org.sonar.api.config.Settings;
+import org.sonar.plugins.csharp.CSharpCodeCoverageProvider.CSharpParallelCoverageReportImportSensor;
+import org.sonar.plugins.csharp.CSharpUnitTestResultsProvider.CSharpParallelUnitTestResultsImportSensor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CSharpConcurrentSensorTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  private SensorContextTester context;
+  private Settings settings;
+  private CSharpSensor csharpSensor;
+  private CSharpParallelCoverageReportImportSensor coverageSensor;
+  private CSharpParallelUnitTestResultsImportSensor unitTestResultsSensor;
+  private CSharpConcurrentSensor sensor;
+
+  @Before
+  public void prepare() throws Exception {
+    File baseDir = temp.newFolder();
+    context = SensorContextTester.create(baseDir);
+    settings = new Settings();
+    csharpSensor = mock(CSharpSensor.class);
+    coverageSensor = mock(CSharpParallelCoverageReportImportSensor.class);
+    unitTestResultsSensor = mock(CSharpParallelUnitTestResultsImportSensor.class);
+    when(csharpSensor.shouldExecuteOnProject(any(FileSystem.class))).thenReturn(true);
+    sensor = new CSharpConcurrentSensor(new CSharpConfiguration(settings), csharpSensor, coverageSensor, unitTestResultsSensor);
+  }
+
+  @Test
+  public void nothing_executed_by_default() {
+    sensor.execute(context);
+
+    verify(csharpSensor, never()).executeInternal(any(SensorContext.class), any(SingleWriter.class));
+    verify(coverageSensor, never()).executeInternal(any(SensorContext.class));
+    verify(unitTestResultsSensor, never()).executeInternal(any(SensorContext.class));
+  }
+
+  @Test
+  public void sensors_run_concurrently_through_a_single_writer() {
+    settings.setProperty(CSharpConfiguration.CONCURRENT_SENSORS_PROPERTY_KEY, "true");
+    // Each sensor waits for the other two to have started, which only completes if all three run at the same time
+    CountDownLatch started = new CountDownLatch(3);
+    Answer<Void> awaitOthers = invocation -> {
+      assertThat(invocation.getArguments()[0]).isNotSameAs(context);
+      started.countDown();
+      assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+      return null;
+    };
+    doAnswer(awaitOthers).when(csharpSensor).executeInternal(any(SensorContext.class), any(SingleWriter.class));
+    doAnswer(awaitOthers).when(coverageSensor).executeInternal(any(SensorContext.class));
+    doAnswer(awaitOthers).when(unitTestResultsSensor).executeInternal(any(SensorContext.class));
+
+    sensor.execute(context);
+
+    assertThat(started.getCount()).isZero();
+  }
+
+  @Test
+  public void csharp_sensor_skipped_when_it_should_not_execute() {
+    settings.setProperty(CSharpConfiguration.CONCURRENT_SENSORS_PROPERTY_KEY, "true");
+    when(csharpSensor.shouldExecuteOnProject(any(FileSystem.class))).thenReturn(false);
+
+    sensor.execute(context);
+
+    verify(csharpSensor, never()).executeInternal(any(SensorContext.class), any(SingleWriter.class));
+    verify(coverageSensor).executeInternal(any(SensorContext.class));
+    verify(unitTestResultsSensor).executeInternal(any(SensorContext.class));
+  }
+
+  @Test
+  public void failure_of_a_sensor_is_propagated() {
+    settings.setProperty(CSharpConfiguration.CONCURRENT_SENSORS_PROPERTY_KEY, "true");
+    doThrow(new IllegalStateException("Unable to parse the coverage report")).when(coverageSensor).executeInternal(any(SensorContext.class));
+
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Unable to parse the coverage report");
+    sensor.execute(context);
+  }
+
+}
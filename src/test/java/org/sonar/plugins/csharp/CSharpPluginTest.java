@@ -26,7 +26,6 @@ import org.sonar.api.Plugin;
 import org.sonar.api.config.PropertyDefinition;
 import org.sonar.api.utils.Version;
 import org.sonarsource.dotnet.shared.plugins.EncodingPerFile;
-import org.sonarsource.dotnet.shared.plugins.SonarAnalyzerScannerExtractor;
 import org.sonarsource.dotnet.shared.plugins.WrongEncodingFileFilter;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -45,14 +44,18 @@ public class CSharpPluginTest {
       CSharp.class,
       CSharpSonarRulesDefinition.class,
       CSharpSonarWayProfile.class,
-      SonarAnalyzerScannerExtractor.class,
+      CachingSonarAnalyzerScannerExtractor.class,
+      AnalyzerDaemon.class,
       CSharpSensor.class,
+      CSharpConcurrentSensor.class,
+      InputFileIndex.class,
       CSharpConfiguration.class,
       WrongEncodingFileFilter.class,
       EncodingPerFile.class,
       SonarLintProfileExporter.class,
       SonarLintFakeProfileImporter.class,
-      RoslynProfileExporter.class
+      RoslynProfileExporter.class,
+      ActiveRoslynRulesIndex.class
     };
 
     assertThat(nonProperties(extensions)).contains(expectedExtensions);
@@ -62,6 +65,7 @@ public class CSharpPluginTest {
         + CSharpCodeCoverageProvider.extensions().size()
         + CSharpUnitTestResultsProvider.extensions().size()
         + CSharpMsBuildIntegrationProvider.extensions().size()
+        + CSharpAnalysisProvider.extensions().size()
         + RoslynProfileExporter.sonarLintRepositoryProperties().size());
   }
 
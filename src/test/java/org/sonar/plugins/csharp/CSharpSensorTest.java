@@ -23,14 +23,19 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.Reader;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
 import java.util.Collections;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import org.apache.commons.lang.StringEscapeUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.SystemUtils;
@@ -46,6 +51,7 @@ import org.sonar.api.batch.bootstrap.ProjectDefinition;
 import org.sonar.api.batch.fs.internal.DefaultInputFile;
 import org.sonar.api.batch.fs.internal.FileMetadata;
 import org.sonar.api.batch.rule.internal.ActiveRulesBuilder;
+import org.sonar.api.batch.sensor.SensorContext;
 import org.sonar.api.batch.sensor.internal.SensorContextTester;
 import org.sonar.api.config.Settings;
 import org.sonar.api.issue.NoSonarFilter;
@@ -53,13 +59,20 @@ import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.measures.FileLinesContext;
 import org.sonar.api.measures.FileLinesContextFactory;
 import org.sonar.api.rule.RuleKey;
+import org.sonar.api.utils.command.StreamConsumer;
+import org.sonar.api.utils.log.LogTester;
+import org.sonar.api.utils.log.LoggerLevel;
 import org.sonarsource.dotnet.protobuf.SonarAnalyzer.EncodingInfo;
 import org.sonarsource.dotnet.shared.plugins.EncodingPerFile;
 import org.sonarsource.dotnet.shared.plugins.SonarAnalyzerScannerExtractor;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assume.assumeFalse;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyBoolean;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
@@ -76,6 +89,9 @@ public class CSharpSensorTest {
   @Rule
   public TemporaryFolder temp = new TemporaryFolder();
 
+  @Rule
+  public LogTester logTester = new LogTester();
+
   private CSharpSensor sensor;
   private Settings settings;
   private DefaultInputFile inputFile;
@@ -141,7 +157,8 @@ public class CSharpSensorTest {
 
     CSharpConfiguration csConfigConfiguration = new CSharpConfiguration(settings);
     sensor = new CSharpSensor(settings, extractor, fileLinesContextFactory, noSonarFilter, csConfigConfiguration,
-      new EncodingPerFile(ProjectDefinition.create().setProperty(CoreProperties.ENCODING_PROPERTY, "UTF-8"), new SonarQubeVersion(tester.getSonarQubeVersion())));
+      new EncodingPerFile(ProjectDefinition.create().setProperty(CoreProperties.ENCODING_PROPERTY, "UTF-8"), new SonarQubeVersion(tester.getSonarQubeVersion())),
+      new ActiveRoslynRulesIndex(), new InputFileIndex(), new AnalyzerDaemon());
   }
 
   @Test
@@ -202,6 +219,33 @@ public class CSharpSensorTest {
           "Rename class \"IBar\" to match camel case naming rules, consider using \"Bar\"."));
   }
 
+  @Test
+  public void sequentialImportIgnoresSubDirectories() throws Exception {
+    Path subDirectory = Files.createDirectories(workDir.resolve("output-cs").resolve("OtherProject"));
+    Files.copy(workDir.resolve("output-cs").resolve("issues.pb"), subDirectory.resolve("issues.pb"));
+
+    sensor.executeInternal(tester);
+
+    assertThat(tester.allIssues()).hasSize(5);
+  }
+
+  @Test
+  public void phaseMetricsAreWritten() throws Exception {
+    sensor.executeInternal(tester);
+
+    JsonArray phases;
+    try (Reader reader = Files.newBufferedReader(workDir.resolve(SensorMetrics.REPORT_FILE_NAME), StandardCharsets.UTF_8)) {
+      phases = new JsonParser().parse(reader).getAsJsonObject().getAsJsonArray("phases");
+    }
+    assertThat(phases).extracting(phase -> phase.getAsJsonObject().get("name").getAsString())
+      .containsExactly("analyze", "importResults", "executeInternal");
+    JsonObject importResults = phases.get(1).getAsJsonObject();
+    assertThat(importResults.get("files").getAsLong()).isEqualTo(1);
+    assertThat(importResults.get("issues").getAsLong()).isEqualTo(5);
+    assertThat(importResults.get("wallTimeMs").getAsLong()).isGreaterThanOrEqualTo(0);
+    assertThat(phases.get(2).getAsJsonObject().get("issues").getAsLong()).isEqualTo(5);
+  }
+
   @Test
   public void roslynReportIsProcessed() {
     tester.setActiveRules(new ActiveRulesBuilder()
@@ -313,6 +357,33 @@ public class CSharpSensorTest {
     verify(spy, times(1)).importResults(tester, outputDir, false);
   }
 
+  @Test
+  public void incrementalAnalysisSkipsUnchangedFiles() throws Exception {
+    settings.setProperty(CSharpConfiguration.INCREMENTAL_PROPERTY_KEY, "true");
+    CSharpSensor spy = spy(sensor);
+    doNothing().when(spy).analyze(anyBoolean(), any(SensorContext.class));
+
+    spy.executeInternal(tester);
+    spy.executeInternal(tester);
+
+    verify(spy, times(1)).analyze(anyBoolean(), any(SensorContext.class));
+    assertThat(workDir.resolve(IncrementalAnalysis.CACHE_DIRECTORY_NAME).resolve("key.txt")).exists();
+  }
+
+  @Test
+  public void incrementalAnalysisIgnoresPipelinedImport() throws Exception {
+    settings.setProperty(CSharpConfiguration.INCREMENTAL_PROPERTY_KEY, "true");
+    settings.setProperty(CSharpConfiguration.PIPELINED_IMPORT_PROPERTY_KEY, "true");
+    CSharpSensor spy = spy(sensor);
+    doNothing().when(spy).analyze(anyBoolean(), any(SensorContext.class));
+
+    spy.executeInternal(tester);
+
+    verify(spy, times(1)).analyze(anyBoolean(), any(SensorContext.class));
+    assertThat(logTester.logs(LoggerLevel.WARN))
+      .contains("The pipelined import is not supported by the incremental analysis, the analysis results will be imported once the analysis is complete");
+  }
+
   @Test
   public void noAnalysisIsExecutedOnEmptyContext() throws Exception {
     tester = SensorContextTester.create(new File("src/test/resources"));
@@ -323,6 +394,125 @@ public class CSharpSensorTest {
     verify(spy, never()).executeInternal(tester);
   }
 
+  @Test
+  public void noAnalysisIsExecutedInConcurrentMode() throws Exception {
+    settings.setProperty(CSharpConfiguration.CONCURRENT_SENSORS_PROPERTY_KEY, "true");
+
+    CSharpSensor spy = spy(sensor);
+    spy.execute(tester);
+
+    verify(spy, never()).executeInternal(tester);
+  }
+
+  @Test
+  public void resultsImportedThroughSharedWriter() {
+    SingleWriter singleWriter = new SingleWriter();
+    sensor.executeInternal(singleWriter.wrap(tester), singleWriter);
+
+    assertThat(tester.measures(tester.module().key() + ":Program.cs"))
+      .extracting("metric.key", "value")
+      .contains(Tuple.tuple(CoreMetrics.NCLOC_KEY, 41), Tuple.tuple(CoreMetrics.COMPLEXITY_KEY, 7));
+    assertThat(tester.allIssues()).isNotEmpty();
+    verify(noSonarFilter).noSonarInFile(inputFile, Collections.singleton(49));
+  }
+
+  @Test
+  public void analysisRunsOnAnyOsWithStubLauncher() throws Exception {
+    Path cannedOutput = temp.newFolder().toPath();
+    for (String report : new String[] {"issues.pb", "metrics.pb"}) {
+      Files.move(workDir.resolve("output-cs").resolve(report), cannedOutput.resolve(report));
+    }
+    CSharpSensor spy = spy(sensor);
+    doReturn(new CannedOutputLauncher(cannedOutput)).when(spy).launcher();
+
+    assertThat(spy.shouldExecuteOnProject(tester.fileSystem())).isTrue();
+    spy.executeInternal(tester);
+
+    assertThat(tester.allIssues()).hasSize(5);
+    assertThat(tester.measure(tester.module().key() + ":Program.cs", CoreMetrics.NCLOC).value()).isEqualTo(41);
+    assertThat(Files.readAllLines(workDir.resolve(AnalyzerLog.LOG_FILE_NAME))).containsExactly("Copied the canned reports");
+  }
+
+  @Test
+  public void resultsImportedWhileAnalyzerIsRunning() throws Exception {
+    settings.setProperty(CSharpConfiguration.PIPELINED_IMPORT_PROPERTY_KEY, "true");
+    Path cannedOutput = temp.newFolder().toPath();
+    for (String report : new String[] {"issues.pb", "metrics.pb"}) {
+      Files.move(workDir.resolve("output-cs").resolve(report), cannedOutput.resolve(report));
+    }
+    CSharpSensor spy = spy(sensor);
+    doReturn(new CannedOutputLauncher(cannedOutput)).when(spy).launcher();
+
+    spy.executeInternal(tester);
+
+    assertThat(tester.allIssues()).hasSize(5);
+    assertThat(tester.measure(tester.module().key() + ":Program.cs", CoreMetrics.NCLOC).value()).isEqualTo(41);
+    verify(spy, never()).importResults(any(SensorContext.class), any(Path.class), anyBoolean());
+  }
+
+  @Test
+  public void analyzerDaemonLaunchesAnalysesWhenEnabled() {
+    assertThat(sensor.launcher()).isInstanceOf(CommandAnalyzerLauncher.class);
+
+    settings.setProperty(CSharpConfiguration.ANALYZER_DAEMON_PROPERTY_KEY, "true");
+    settings.setProperty(CSharpConfiguration.ANALYZER_LAUNCHER_PROPERTY_KEY, "mono");
+    AnalyzerLauncher launcher = sensor.launcher();
+    assertThat(launcher).isNotInstanceOf(CommandAnalyzerLauncher.class);
+    assertThat(launcher.isAvailable()).isTrue();
+  }
+
+  @Test
+  public void notExecutedWithoutLauncherOutsideOfWindows() {
+    assumeFalse(SystemUtils.IS_OS_WINDOWS);
+    assertThat(sensor.shouldExecuteOnProject(tester.fileSystem())).isFalse();
+
+    settings.setProperty(CSharpConfiguration.ANALYZER_LAUNCHER_PROPERTY_KEY, "mono");
+    assertThat(sensor.shouldExecuteOnProject(tester.fileSystem())).isTrue();
+  }
+
+  @Test
+  public void reportsFromMSBuildAreImportedOnAnyOs() throws Exception {
+    Path analyzerWorkDirectory = temp.newFolder().toPath();
+    Files.createDirectories(analyzerWorkDirectory.resolve("output-cs"));
+    Files.createFile(analyzerWorkDirectory.resolve("output-cs").resolve("dummy.pb"));
+    settings.setProperty(CSharpConfiguration.ANALYZER_PROJECT_OUT_PATH_PROPERTY_KEY, analyzerWorkDirectory.toAbsolutePath().toString());
+
+    assertThat(sensor.shouldExecuteOnProject(tester.fileSystem())).isTrue();
+  }
+
+  /**
+   * Stands for SonarAnalyzer.Scanner by copying canned protobuf reports to the analysis output.
+   */
+  private static class CannedOutputLauncher implements AnalyzerLauncher {
+
+    private final Path cannedOutput;
+
+    CannedOutputLauncher(Path cannedOutput) {
+      this.cannedOutput = cannedOutput;
+    }
+
+    @Override
+    public boolean isAvailable() {
+      return true;
+    }
+
+    @Override
+    public void launch(File executableFile, Path analysisInput, Path analysisOutput, int timeoutMs, StreamConsumer stdOut, StreamConsumer stdErr) {
+      try {
+        Files.createDirectories(analysisOutput);
+        try (DirectoryStream<Path> reports = Files.newDirectoryStream(cannedOutput)) {
+          for (Path report : reports) {
+            Files.copy(report, analysisOutput.resolve(report.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+          }
+        }
+        stdOut.consumeLine("Copied the canned reports");
+      } catch (IOException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+  }
+
   private static String readFile(Path directory, String fileName) throws Exception {
     return new String(Files.readAllBytes(directory.resolve(fileName)));
   }
@@ -20,12 +20,16 @@
 package org.sonar.plugins.csharp;
 
 import org.sonar.plugins.csharp.CSharpUnitTestResultsProvider;
+import org.sonar.plugins.csharp.CSharpUnitTestResultsProvider.CSharpParallelUnitTestResultsImportSensor;
 import org.sonar.plugins.csharp.CSharpUnitTestResultsProvider.CSharpUnitTestResultsAggregator;
 import org.sonar.plugins.csharp.CSharpUnitTestResultsProvider.CSharpUnitTestResultsImportSensor;
 
 import com.google.common.collect.ImmutableSet;
 import org.junit.Test;
+import org.sonar.api.batch.bootstrap.ProjectDefinition;
 import org.sonar.api.config.PropertyDefinition;
+import org.sonar.api.config.Settings;
+import org.sonar.api.resources.Project;
 
 import java.util.List;
 import java.util.Set;
@@ -38,10 +42,32 @@ public class CSharpUnitTestResultsProviderTest {
   public void test() {
     assertThat(nonProperties(CSharpUnitTestResultsProvider.extensions())).containsOnly(
       CSharpUnitTestResultsAggregator.class,
-      CSharpUnitTestResultsImportSensor.class);
+      CSharpUnitTestResultsImportSensor.class,
+      CSharpParallelUnitTestResultsImportSensor.class,
+      SharedUnitTestResults.class,
+      CSharpTestMetrics.class);
     assertThat(propertyKeys(CSharpUnitTestResultsProvider.extensions())).containsOnly(
       "sonar.cs.vstest.reportsPaths",
-      "sonar.cs.nunit.reportsPaths");
+      "sonar.cs.nunit.reportsPaths",
+      "sonar.cs.xunit.reportsPaths",
+      "sonar.cs.unitTests.threads",
+      "sonar.cs.unitTests.perTestFile",
+      "sonar.cs.unitTests.hotspots");
+  }
+
+  @Test
+  public void library_sensor_disabled_by_plugin_import() {
+    Settings settings = new Settings();
+    Project project = new Project("foo");
+    CSharpUnitTestResultsImportSensor sensor = new CSharpUnitTestResultsImportSensor(new CSharpUnitTestResultsAggregator(settings), ProjectDefinition.create(), settings);
+    assertThat(sensor.shouldExecuteOnProject(project)).isTrue();
+
+    settings.setProperty("sonar.cs.unitTests.threads", "4");
+    assertThat(sensor.shouldExecuteOnProject(project)).isFalse();
+
+    settings.setProperty("sonar.cs.unitTests.threads", "1");
+    settings.setProperty("sonar.cs.unitTests.perTestFile", "true");
+    assertThat(sensor.shouldExecuteOnProject(project)).isFalse();
   }
 
   private static Set<Object> nonProperties(List extensions) {
@@ -0,0 +1,130 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.bootstrap.ProjectDefinition;
+import org.sonar.api.batch.bootstrap.ProjectReactor;
+import org.sonar.api.config.Settings;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CachingSonarAnalyzerScannerExtractorTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private Settings settings;
+  private ProjectReactor reactor;
+  private byte[] zip;
+  private AtomicInteger opened;
+
+  @Before
+  public void prepare() throws Exception {
+    settings = new Settings();
+    settings.setProperty(CSharpConfiguration.SCANNER_CACHE_SIZE_PROPERTY_KEY, 10);
+    settings.setProperty(CSharpConfiguration.SCANNER_CACHE_DIRECTORY_PROPERTY_KEY, temp.newFolder("cache").getAbsolutePath());
+    reactor = new ProjectReactor(ProjectDefinition.create().setWorkDir(temp.newFolder("work")));
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ZipOutputStream out = new ZipOutputStream(bytes)) {
+      out.putNextEntry(new ZipEntry(CachingSonarAnalyzerScannerExtractor.SCANNER_EXE));
+      out.write("scanner".getBytes(StandardCharsets.UTF_8));
+      out.closeEntry();
+    }
+    zip = bytes.toByteArray();
+    opened = new AtomicInteger();
+  }
+
+  @Test
+  public void scanner_is_extracted_to_the_user_cache_once() throws Exception {
+    File executable = newExtractor().executableFile("cs");
+    File reused = newExtractor().executableFile("cs");
+
+    assertThat(reused).isEqualTo(executable);
+    assertThat(executable).hasContent("scanner");
+    assertThat(executable.toPath()).startsWith(temp.getRoot().toPath().resolve("cache"));
+    // Hashed by both analyses, extracted by the first one only
+    assertThat(opened.get()).isEqualTo(3);
+  }
+
+  @Test
+  public void executable_is_memoized() throws Exception {
+    CachingSonarAnalyzerScannerExtractor extractor = newExtractor();
+    extractor.executableFile("cs");
+    extractor.executableFile("cs");
+
+    assertThat(opened.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void memoized_entry_is_marked_as_used_at_each_call() throws Exception {
+    CachingSonarAnalyzerScannerExtractor extractor = newExtractor();
+    File lastUsed = new File(extractor.executableFile("cs").getParentFile(), AnalyzerScannerCache.LAST_USED_FILE_NAME);
+    assertThat(lastUsed.setLastModified(1_000_000_000L)).isTrue();
+
+    extractor.executableFile("cs");
+
+    assertThat(lastUsed.lastModified()).isGreaterThan(1_000_000_000L);
+    assertThat(opened.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void evicted_entry_is_extracted_again() throws Exception {
+    CachingSonarAnalyzerScannerExtractor extractor = newExtractor();
+    File executable = extractor.executableFile("cs");
+    File entry = executable.getParentFile();
+    for (File file : entry.listFiles()) {
+      assertThat(file.delete()).isTrue();
+    }
+    assertThat(entry.delete()).isTrue();
+
+    assertThat(extractor.executableFile("cs")).isEqualTo(executable).hasContent("scanner");
+    assertThat(opened.get()).isEqualTo(4);
+  }
+
+  @Test
+  public void default_cache_directory_is_in_the_user_home() {
+    settings.removeProperty(CSharpConfiguration.SCANNER_CACHE_DIRECTORY_PROPERTY_KEY);
+    settings.setProperty("sonar.userHome", "/home/sonar");
+
+    assertThat(AnalyzerScannerCache.directory(settings).toString().replace('\\', '/'))
+      .isEqualTo("/home/sonar/" + CSharpConfiguration.SCANNER_CACHE_DIRECTORY_NAME);
+    assertThat(AnalyzerScannerCache.maxSize(settings)).isEqualTo(10L * 1024 * 1024);
+  }
+
+  private CachingSonarAnalyzerScannerExtractor newExtractor() {
+    return new CachingSonarAnalyzerScannerExtractor(reactor, settings, () -> {
+      opened.incrementAndGet();
+      return new ByteArrayInputStream(zip);
+    });
+  }
+
+}
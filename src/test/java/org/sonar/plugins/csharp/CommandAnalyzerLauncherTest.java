@@ -0,0 +1,96 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.apache.commons.lang.SystemUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.utils.command.Command;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assume.assumeFalse;
+
+public class CommandAnalyzerLauncherTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Test
+  public void direct_launch() {
+    File executable = new File("SonarAnalyzer.Scanner.exe");
+    Command command = new CommandAnalyzerLauncher(null).command(executable);
+
+    assertThat(command.getExecutable()).isEqualTo(executable.getAbsolutePath());
+    assertThat(command.getArguments()).isEmpty();
+    assertThat(new CommandAnalyzerLauncher(" ").isAvailable()).isEqualTo(SystemUtils.IS_OS_WINDOWS);
+  }
+
+  @Test
+  public void launch_through_host_command() {
+    File executable = new File("SonarAnalyzer.Scanner.exe");
+    CommandAnalyzerLauncher launcher = new CommandAnalyzerLauncher(" mono  --debug ");
+    Command command = launcher.command(executable);
+
+    assertThat(command.getExecutable()).isEqualTo("mono");
+    assertThat(command.getArguments()).containsExactly("--debug", executable.getAbsolutePath());
+    assertThat(launcher.isAvailable()).isTrue();
+  }
+
+  @Test
+  public void analyzer_run_by_host_writes_reports() throws Exception {
+    assumeFalse(SystemUtils.IS_OS_WINDOWS);
+    // Not executable: only runs through the host
+    File analyzer = temp.newFile("analyzer.sh");
+    Files.write(analyzer.toPath(), "mkdir -p \"$2\" && cp \"$1\" \"$2/input.xml\" && echo \"$3\" > \"$2/language.txt\"\n".getBytes(StandardCharsets.UTF_8));
+    Path input = temp.newFile("SonarLint.xml").toPath();
+    Files.write(input, "<AnalysisInput />".getBytes(StandardCharsets.UTF_8));
+    Path output = temp.getRoot().toPath().resolve("output-cs");
+
+    new CommandAnalyzerLauncher("sh").launch(analyzer, input, output, Integer.MAX_VALUE, line -> {
+    }, line -> {
+    });
+
+    assertThat(new String(Files.readAllBytes(output.resolve("input.xml")), StandardCharsets.UTF_8)).isEqualTo("<AnalysisInput />");
+    assertThat(new String(Files.readAllBytes(output.resolve("language.txt")), StandardCharsets.UTF_8).trim()).isEqualTo("cs");
+  }
+
+  @Test
+  public void failure_of_the_analyzer() throws Exception {
+    assumeFalse(SystemUtils.IS_OS_WINDOWS);
+    File analyzer = temp.newFile("failing.sh");
+    Files.write(analyzer.toPath(), "exit 4\n".getBytes(StandardCharsets.UTF_8));
+
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("The .NET analyzer failed with exit code: 4");
+    new CommandAnalyzerLauncher("sh").launch(analyzer, temp.newFile().toPath(), temp.getRoot().toPath(), Integer.MAX_VALUE, line -> {
+    }, line -> {
+    });
+  }
+
+}
@@ -0,0 +1,136 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CoverageCacheTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private Path directory;
+  private File report;
+  private AtomicInteger parsed;
+  private ParallelCoverageAggregator.Report cachedReport;
+
+  @Before
+  public void prepare() throws Exception {
+    directory = temp.getRoot().toPath().resolve(CoverageCache.CACHE_DIRECTORY_NAME);
+    report = temp.newFile("opencover.xml");
+    CoverageReportGenerator.writeOpenCover(report.toPath(), "C:/src", 20, 300, 1);
+    parsed = new AtomicInteger();
+    cachedReport = new ParallelCoverageAggregator.Report(report, (file, coverage) -> {
+      parsed.incrementAndGet();
+      new OpenCoverReportParser().parse(file, coverage);
+    });
+  }
+
+  @Test
+  public void unchanged_report_is_read_from_the_cache() {
+    CoverageData parsedCoverage = new CoverageCache(directory, Long.MAX_VALUE).readOrParse(cachedReport);
+    CoverageData cachedCoverage = new CoverageCache(directory, Long.MAX_VALUE).readOrParse(cachedReport);
+
+    assertThat(parsed.get()).isEqualTo(1);
+    assertThat(cachedCoverage.files()).isEqualTo(parsedCoverage.files()).hasSize(20);
+    for (String file : parsedCoverage.files()) {
+      assertThat(cachedCoverage.hits(file)).isEqualTo(parsedCoverage.hits(file));
+    }
+    assertThat(directory.toFile().list()).hasSize(1);
+  }
+
+  @Test
+  public void modified_report_is_parsed_again() throws Exception {
+    new CoverageCache(directory, Long.MAX_VALUE).readOrParse(cachedReport);
+
+    CoverageReportGenerator.writeOpenCover(report.toPath(), "C:/src", 20, 300, 2);
+    assertThat(report.setLastModified(report.lastModified() + 2000)).isTrue();
+    new CoverageCache(directory, Long.MAX_VALUE).readOrParse(cachedReport);
+
+    assertThat(parsed.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void report_with_same_size_and_modification_time_but_other_content_is_parsed_again() throws Exception {
+    new CoverageCache(directory, Long.MAX_VALUE).readOrParse(cachedReport);
+
+    long lastModified = report.lastModified();
+    byte[] contents = Files.readAllBytes(report.toPath());
+    int vc = new String(contents, StandardCharsets.UTF_8).indexOf("vc=\"") + 4;
+    contents[vc] = (byte) (contents[vc] == '0' ? '1' : '0');
+    Files.write(report.toPath(), contents);
+    assertThat(report.setLastModified(lastModified)).isTrue();
+
+    new CoverageCache(directory, Long.MAX_VALUE).readOrParse(cachedReport);
+
+    assertThat(parsed.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void corrupted_entry_is_ignored() throws Exception {
+    new CoverageCache(directory, Long.MAX_VALUE).readOrParse(cachedReport);
+    File entry = directory.toFile().listFiles()[0];
+    byte[] contents = Files.readAllBytes(entry.toPath());
+    Files.write(entry.toPath(), Arrays.copyOf(contents, contents.length / 2));
+
+    CoverageData coverage = new CoverageCache(directory, Long.MAX_VALUE).readOrParse(cachedReport);
+
+    assertThat(parsed.get()).isEqualTo(2);
+    assertThat(coverage.files()).hasSize(20);
+  }
+
+  @Test
+  public void least_recently_used_entries_are_evicted() throws Exception {
+    CoverageCache cache = new CoverageCache(directory, Long.MAX_VALUE);
+    File[] reports = new File[3];
+    for (int i = 0; i < reports.length; i++) {
+      reports[i] = temp.newFile("report" + i + ".xml");
+      CoverageReportGenerator.writeOpenCover(reports[i].toPath(), "C:/src", 20, 300, i);
+      cache.readOrParse(new ParallelCoverageAggregator.Report(reports[i], new OpenCoverReportParser()));
+    }
+    File[] entries = directory.toFile().listFiles();
+    assertThat(entries).hasSize(3);
+    long entrySize = entries[0].length();
+    for (File entry : entries) {
+      assertThat(entry.setLastModified(1_000_000_000_000L)).isTrue();
+    }
+    // Reading an entry makes it the most recently used one
+    cache.readOrParse(new ParallelCoverageAggregator.Report(reports[1], new OpenCoverReportParser()));
+
+    new CoverageCache(directory, entrySize + entrySize / 2).evict();
+
+    assertThat(directory.toFile().listFiles()).hasSize(1);
+    assertThat(new CoverageCache(directory, Long.MAX_VALUE).readOrParse(new ParallelCoverageAggregator.Report(reports[1], (file, coverage) -> {
+      throw new IllegalStateException("Should have been read from the cache");
+    })).files()).hasSize(20);
+  }
+
+}
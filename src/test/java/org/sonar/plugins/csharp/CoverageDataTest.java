@@ -0,0 +1,99 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+public class CoverageDataTest {
+
+  @Test
+  public void hits_are_summed_up() {
+    CoverageData coverage = new CoverageData();
+    coverage.addHits("Foo.cs", 10, 1);
+    coverage.addHits("Foo.cs", 10, 2);
+    coverage.addHits("Foo.cs", 3, 0);
+    coverage.addHits(coverage.fileId("Bar.cs"), 100, 5);
+    coverage.fileId("NoHits.cs");
+
+    assertThat(coverage.files()).containsExactly("Foo.cs", "Bar.cs");
+    assertThat(coverage.hits("Foo.cs")).containsExactly(entry(3, 0), entry(10, 3));
+    assertThat(coverage.hits("Bar.cs")).containsExactly(entry(100, 5));
+    assertThat(coverage.hits("NoHits.cs")).isEmpty();
+    assertThat(coverage.hits("Unknown.cs")).isEmpty();
+  }
+
+  @Test
+  public void merge() {
+    CoverageData coverage = new CoverageData();
+    coverage.addHits("Foo.cs", 1, 1);
+    coverage.addHits("Bar.cs", 2, 0);
+    CoverageData other = new CoverageData();
+    other.addHits("Baz.cs", 3, 1);
+    other.addHits("Bar.cs", 2, 4);
+    other.addHits("Bar.cs", 20, 0);
+
+    assertThat(coverage.mergeWith(other)).isSameAs(coverage);
+    assertThat(coverage.files()).containsExactly("Foo.cs", "Bar.cs", "Baz.cs");
+    assertThat(coverage.hits("Foo.cs")).containsExactly(entry(1, 1));
+    assertThat(coverage.hits("Bar.cs")).containsExactly(entry(2, 4), entry(20, 0));
+    assertThat(coverage.hits("Baz.cs")).containsExactly(entry(3, 1));
+
+    coverage.addHits("Baz.cs", 3, 1);
+    assertThat(other.hits("Baz.cs")).containsExactly(entry(3, 1));
+    assertThat(coverage.hasHits("Baz.cs")).isTrue();
+    assertThat(coverage.hasHits("Qux.cs")).isFalse();
+  }
+
+  @Test
+  public void hidden_lines_are_ignored() {
+    CoverageData coverage = new CoverageData();
+    coverage.addHits("Foo.cs", 0xF00F00, 1);
+    coverage.addHits("Foo.cs", 0xFEEFEE, 1);
+    coverage.addHits("Bar.cs", 0xF00F00, 1);
+    coverage.addHits("Bar.cs", 2, 1);
+
+    assertThat(coverage.files()).containsExactly("Bar.cs");
+    assertThat(coverage.hits("Foo.cs")).isEmpty();
+    assertThat(coverage.hits("Bar.cs")).containsExactly(entry(2, 1));
+  }
+
+  @Test
+  public void far_lines_do_not_grow_the_lines_array() {
+    int farLine = CoverageData.MAX_DENSE_LINE + 1_000_000;
+    CoverageData coverage = new CoverageData();
+    coverage.addHits("Foo.cs", farLine, 1);
+    coverage.addHits("Foo.cs", 3, 2);
+    coverage.addHits("Foo.cs", farLine, 1);
+    coverage.addHits("Foo.cs", CoverageData.MAX_DENSE_LINE, 0);
+    CoverageData other = new CoverageData();
+    other.addHits("Foo.cs", farLine, 3);
+    other.addHits("Bar.cs", farLine, 0);
+
+    coverage.mergeWith(other);
+    assertThat(coverage.files()).containsExactly("Foo.cs", "Bar.cs");
+    assertThat(coverage.hasHits("Bar.cs")).isTrue();
+    assertThat(coverage.hits("Foo.cs")).containsExactly(entry(3, 2), entry(CoverageData.MAX_DENSE_LINE, 0), entry(farLine, 5));
+    assertThat(coverage.hits("Bar.cs")).containsExactly(entry(farLine, 0));
+  }
+
+}
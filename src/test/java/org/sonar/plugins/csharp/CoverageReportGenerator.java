@@ -0,0 +1,125 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Generates NCover 3, OpenCover, dotCover and Visual Studio coverage reports of arbitrary size, with pseudo-random hits derived from a seed.
+ * The source files are named "File0.cs", "File1.cs" and so on, in the given source directory.
+ */
+class CoverageReportGenerator {
+
+  private CoverageReportGenerator() {
+  }
+
+  static void writeNCover3(Path report, String sourceDirectory, int files, int sequencePointsPerFile, long seed) throws IOException {
+    Random random = new Random(seed);
+    try (Writer writer = new BufferedWriter(Files.newBufferedWriter(report, StandardCharsets.UTF_8))) {
+      writer.write("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<coverage>\n  <documents>\n");
+      for (int file = 0; file < files; file++) {
+        writer.write("    <doc id=\"" + (file + 1) + "\" url=\"" + sourcePath(sourceDirectory, file) + "\" />\n");
+      }
+      writer.write("  </documents>\n  <module>\n    <method>\n");
+      for (int file = 0; file < files; file++) {
+        for (int point = 0; point < sequencePointsPerFile; point++) {
+          String excluded = random.nextInt(10) == 0 ? "true" : "false";
+          writer.write("      <seqpnt vc=\"" + random.nextInt(3) + "\" l=\"" + (1 + random.nextInt(sequencePointsPerFile)) + "\" ex=\"" + excluded
+            + "\" doc=\"" + (file + 1) + "\" />\n");
+        }
+      }
+      writer.write("    </method>\n  </module>\n</coverage>\n");
+    }
+  }
+
+  static void writeOpenCover(Path report, String sourceDirectory, int files, int sequencePointsPerFile, long seed) throws IOException {
+    Random random = new Random(seed);
+    try (Writer writer = new BufferedWriter(Files.newBufferedWriter(report, StandardCharsets.UTF_8))) {
+      writer.write("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<CoverageSession>\n  <Modules>\n    <Module>\n      <Files>\n");
+      for (int file = 0; file < files; file++) {
+        writer.write("        <File uid=\"" + (file + 1) + "\" fullPath=\"" + sourcePath(sourceDirectory, file) + "\" />\n");
+      }
+      writer.write("      </Files>\n      <Classes>\n        <Class>\n          <Methods>\n");
+      for (int file = 0; file < files; file++) {
+        writer.write("            <Method>\n              <FileRef uid=\"" + (file + 1) + "\" />\n              <SequencePoints>\n");
+        for (int point = 0; point < sequencePointsPerFile; point++) {
+          writer.write("                <SequencePoint vc=\"" + random.nextInt(3) + "\" sl=\"" + (1 + random.nextInt(sequencePointsPerFile)) + "\" />\n");
+        }
+        writer.write("              </SequencePoints>\n            </Method>\n");
+      }
+      writer.write("          </Methods>\n        </Class>\n      </Classes>\n    </Module>\n  </Modules>\n</CoverageSession>\n");
+    }
+  }
+
+  /**
+   * Writes the index of a dotCover HTML report, and the report of each source file in the "src" sub-directory of the directory named after it.
+   */
+  static void writeDotCover(Path report, String sourceDirectory, int files, int rangesPerFile, long seed) throws IOException {
+    Random random = new Random(seed);
+    Files.write(report, "<html><head><title>dotCover report</title></head></html>".getBytes(StandardCharsets.UTF_8));
+    String reportName = report.getFileName().toString();
+    Path sources = Files.createDirectories(report.resolveSibling(reportName.substring(0, reportName.lastIndexOf('.'))).resolve("src"));
+    for (int file = 0; file < files; file++) {
+      try (Writer writer = new BufferedWriter(Files.newBufferedWriter(sources.resolve(file + ".html"), StandardCharsets.UTF_8))) {
+        writer.write("<html><head><title>" + sourcePath(sourceDirectory, file) + "</title></head><body>"
+          + "<script type=\"text/javascript\">$(document).ready(function () { highlightRanges([");
+        for (int range = 0; range < rangesPerFile; range++) {
+          int startLine = 1 + random.nextInt(rangesPerFile);
+          writer.write((range == 0 ? "" : ",") + "[" + startLine + ",1," + (startLine + random.nextInt(3)) + ",2," + random.nextInt(3) + "]");
+        }
+        writer.write("]); });</script></body></html>\n");
+      }
+    }
+  }
+
+  static void writeVisualStudio(Path report, String sourceDirectory, int files, int rangesPerFile, long seed) throws IOException {
+    Random random = new Random(seed);
+    try (Writer writer = new BufferedWriter(Files.newBufferedWriter(report, StandardCharsets.UTF_8))) {
+      writer.write("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<results>\n  <modules>\n    <module>\n      <functions>\n");
+      for (int file = 0; file < files; file++) {
+        writer.write("        <function>\n          <ranges>\n");
+        for (int range = 0; range < rangesPerFile; range++) {
+          int startLine = 1 + random.nextInt(rangesPerFile);
+          String covered = random.nextBoolean() ? "yes" : "no";
+          writer.write("            <range source_id=\"" + file + "\" covered=\"" + covered + "\" start_line=\"" + startLine + "\" start_column=\"1\" end_line=\""
+            + (startLine + random.nextInt(3)) + "\" end_column=\"2\" />\n");
+        }
+        writer.write("          </ranges>\n        </function>\n");
+      }
+      writer.write("      </functions>\n      <source_files>\n");
+      for (int file = 0; file < files; file++) {
+        writer.write("        <source_file id=\"" + file + "\" path=\"" + sourcePath(sourceDirectory, file) + "\" />\n");
+      }
+      writer.write("      </source_files>\n    </module>\n  </modules>\n</results>\n");
+    }
+  }
+
+  private static String sourcePath(String sourceDirectory, int file) {
+    return sourceDirectory + File.separator + "File" + file + ".cs";
+  }
+
+}
@@ -0,0 +1,123 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+public class DotCoverReportParserTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Test
+  public void source_file_reports() throws Exception {
+    File report = temp.newFile("report.html");
+    Path sources = Files.createDirectories(temp.getRoot().toPath().resolve("report").resolve("src"));
+    Files.write(sources.resolve("1.html"), ("<html><head><title>C:\\Foo &amp; Bar.cs</title></head><body><script type=\"text/javascript\">"
+      + "$(document).ready(function () { highlightRanges([[10,5,11,6,1],[12,1,12,3,0],[20,1,20,4,2]]); });"
+      + "</script></body></html>").getBytes(StandardCharsets.UTF_8));
+    Files.write(sources.resolve("2.html"), "<html><head><title>C:\\Empty.cs</title></head></html>".getBytes(StandardCharsets.UTF_8));
+    Files.write(sources.resolve("nosource.css"), "body {}".getBytes(StandardCharsets.UTF_8));
+
+    CoverageData coverage = new CoverageData();
+    new DotCoverReportParser().parse(report, coverage);
+
+    assertThat(coverage.files()).containsOnly("C:\\Foo & Bar.cs");
+    assertThat(coverage.hits("C:\\Foo & Bar.cs")).containsOnly(entry(10, 1), entry(11, 1), entry(12, 0), entry(20, 2));
+  }
+
+  @Test
+  public void report_of_dotcover() {
+    CoverageData coverage = new CoverageData();
+    new DotCoverReportParser().parse(new File("its/projects/CoverageTest/reports/dotcover.html"), coverage);
+
+    assertThat(coverage.files()).containsOnly("cslib/class1.cs");
+    assertThat(coverage.hits("cslib/class1.cs")).containsOnly(entry(12, 1), entry(13, 0));
+  }
+
+  @Test
+  public void missing_source_files_directory() throws Exception {
+    File report = temp.newFile("report.html");
+
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("does not have its source files directory");
+    new DotCoverReportParser().parse(report, new CoverageData());
+  }
+
+  @Test
+  public void missing_title() throws Exception {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("does not contain the path of its source file in its title");
+    DotCoverReportParser.parseSourceFileReport("1.html", bytes("<html></html>"), new CoverageData());
+  }
+
+  @Test
+  public void whitespaces_in_ranges() {
+    CoverageData coverage = new CoverageData();
+    DotCoverReportParser.parseSourceFileReport("1.html", bytes("<title> Foo.cs </title>highlightRanges([ [1, 1, 2, 3, 0] ,\n[3,1,3,2,1] ]);"), coverage);
+
+    assertThat(coverage.hits("Foo.cs")).containsOnly(entry(1, 0), entry(2, 0), entry(3, 1));
+  }
+
+  @Test
+  public void invalid_ranges() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("Unexpected content at offset 41 in the highlighted ranges of the dotCover report 1.html");
+    DotCoverReportParser.parseSourceFileReport("1.html", bytes("<title>Foo.cs</title>highlightRanges([[1,x,2,3,0]]);"), new CoverageData());
+  }
+
+  @Test
+  public void source_file_reports_can_be_parsed_concurrently() throws Exception {
+    File report = temp.newFile("report.html");
+    Path sources = Files.createDirectories(temp.getRoot().toPath().resolve("report").resolve("src"));
+    for (int i = 0; i < 20; i++) {
+      Files.write(sources.resolve(i + ".html"), ("<title>C:\\File" + (i % 7) + ".cs</title>highlightRanges([[" + (i + 1) + ",1," + (i + 3) + ",1,1]]);")
+        .getBytes(StandardCharsets.UTF_8));
+    }
+
+    CoverageData serial = new CoverageData();
+    new DotCoverReportParser().parse(report, serial);
+    CoverageData parallel = new ParallelCoverageAggregator(4).aggregate(DotCoverReportParser.sourceFileReports(report));
+
+    assertThat(serial.files()).hasSize(7);
+    for (String file : serial.files()) {
+      assertThat(parallel.hits(file)).isEqualTo(serial.hits(file));
+    }
+  }
+
+  private static ByteBuffer bytes(String contents) {
+    return ByteBuffer.wrap(contents.getBytes(StandardCharsets.UTF_8));
+  }
+
+}
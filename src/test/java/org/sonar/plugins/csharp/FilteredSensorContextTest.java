@@ -0,0 +1,55 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import java.io.File;
+import java.util.Collections;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.fs.internal.DefaultFileSystem;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FilteredSensorContextTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void restrict_to() throws Exception {
+    SensorContextTester tester = SensorContextTester.create(temp.getRoot());
+    DefaultFileSystem fs = tester.fileSystem();
+    fs.setWorkDir(temp.newFolder());
+    fs.add(new DefaultInputFile(tester.module().key(), "A.cs").setLanguage(CSharpPlugin.LANGUAGE_KEY));
+    fs.add(new DefaultInputFile(tester.module().key(), "B.cs").setLanguage(CSharpPlugin.LANGUAGE_KEY));
+    File b = new File(temp.getRoot(), "B.cs").getAbsoluteFile();
+
+    SensorContext restricted = FilteredSensorContext.restrictTo(tester, Collections.singleton(b));
+    assertThat(restricted.fileSystem().files(restricted.fileSystem().predicates().all())).containsOnly(b);
+    assertThat(restricted.fileSystem().encoding()).isEqualTo(fs.encoding());
+    assertThat(restricted.fileSystem().workDir()).isEqualTo(fs.workDir());
+    assertThat(restricted.activeRules()).isSameAs(tester.activeRules());
+  }
+
+}
@@ -0,0 +1,63 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class HashesTest {
+
+  private static final String ABC_SHA1 = "a9993e364706816aba3e25717850c26c9cd0d89d";
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Test
+  public void hashes() throws Exception {
+    File file = temp.newFile();
+    Files.write(file.toPath(), "abc".getBytes(StandardCharsets.UTF_8));
+
+    assertThat(Hashes.hash("abc")).isEqualTo(ABC_SHA1);
+    assertThat(Hashes.hash(new ByteArrayInputStream("abc".getBytes(StandardCharsets.UTF_8)))).isEqualTo(ABC_SHA1);
+    assertThat(Hashes.hash(file.toPath())).isEqualTo(ABC_SHA1);
+    assertThat(Hashes.hash("")).isEqualTo("da39a3ee5e6b4b0d3255bfef95601890afd80709");
+  }
+
+  @Test
+  public void missing_file() {
+    File file = new File(temp.getRoot(), "missing");
+
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Could not compute the hash of " + file);
+    Hashes.hash(file.toPath());
+  }
+
+}
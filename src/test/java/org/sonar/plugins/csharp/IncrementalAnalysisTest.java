@@ -0,0 +1,149 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.rule.ActiveRules;
+import org.sonar.api.batch.rule.internal.ActiveRulesBuilder;
+import org.sonar.api.rule.RuleKey;
+import org.sonarsource.dotnet.protobuf.SonarAnalyzer.MetricsInfo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class IncrementalAnalysisTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private Path cacheDir;
+  private Path outputDir;
+  private File a;
+  private File b;
+
+  @Before
+  public void prepare() throws Exception {
+    cacheDir = temp.newFolder().toPath().resolve(IncrementalAnalysis.CACHE_DIRECTORY_NAME);
+    outputDir = temp.newFolder().toPath();
+    a = temp.newFile("A.cs");
+    b = temp.newFile("B.cs");
+    write(a, "class A {}");
+    write(b, "class B {}");
+  }
+
+  @Test
+  public void all_files_changed_without_cache() {
+    assertThat(new IncrementalAnalysis(cacheDir, "key").changedFiles(Arrays.asList(a, b))).containsOnly(a, b);
+  }
+
+  @Test
+  public void only_modified_files_changed() throws Exception {
+    IncrementalAnalysis first = new IncrementalAnalysis(cacheDir, "key");
+    first.changedFiles(Arrays.asList(a, b));
+    writeMetrics(outputDir, a, b);
+    first.save(outputDir);
+
+    assertThat(new IncrementalAnalysis(cacheDir, "key").changedFiles(Arrays.asList(a, b))).isEmpty();
+
+    write(b, "class B { }");
+    assertThat(new IncrementalAnalysis(cacheDir, "key").changedFiles(Arrays.asList(a, b))).containsOnly(b);
+  }
+
+  @Test
+  public void new_key_invalidates_cache() throws Exception {
+    IncrementalAnalysis first = new IncrementalAnalysis(cacheDir, "key");
+    first.changedFiles(Arrays.asList(a, b));
+    first.save(outputDir);
+
+    assertThat(new IncrementalAnalysis(cacheDir, "other").changedFiles(Arrays.asList(a, b))).containsOnly(a, b);
+  }
+
+  @Test
+  public void replay_unchanged_files() throws Exception {
+    IncrementalAnalysis first = new IncrementalAnalysis(cacheDir, "key");
+    first.changedFiles(Arrays.asList(a, b));
+    writeMetrics(outputDir, a, b);
+    first.save(outputDir);
+
+    write(b, "class B { }");
+    IncrementalAnalysis second = new IncrementalAnalysis(cacheDir, "key");
+    assertThat(second.changedFiles(Arrays.asList(a, b))).containsOnly(b);
+    IncrementalAnalysis.deleteReports(outputDir);
+    writeMetrics(outputDir, b);
+    second.replayUnchangedFiles(outputDir);
+    assertThat(readMetricsFilePaths(outputDir)).containsOnly(b.getAbsolutePath(), a.getAbsolutePath());
+    second.save(outputDir);
+
+    IncrementalAnalysis third = new IncrementalAnalysis(cacheDir, "key");
+    assertThat(third.changedFiles(Arrays.asList(a, b))).isEmpty();
+    IncrementalAnalysis.deleteReports(outputDir);
+    third.replayUnchangedFiles(outputDir);
+    assertThat(readMetricsFilePaths(outputDir)).containsOnly(a.getAbsolutePath(), b.getAbsolutePath());
+  }
+
+  @Test
+  public void cache_key() {
+    ActiveRules rules = new ActiveRulesBuilder().create(RuleKey.of("csharpsquid", "S1")).setParam("max", "10").activate().build();
+    ActiveRules otherParams = new ActiveRulesBuilder().create(RuleKey.of("csharpsquid", "S1")).setParam("max", "20").activate().build();
+
+    String key = IncrementalAnalysis.cacheKey("1.0", rules, true, false, "UTF-8");
+    assertThat(IncrementalAnalysis.cacheKey("1.0", rules, true, false, "UTF-8")).isEqualTo(key);
+    assertThat(IncrementalAnalysis.cacheKey("1.1", rules, true, false, "UTF-8")).isNotEqualTo(key);
+    assertThat(IncrementalAnalysis.cacheKey("1.0", otherParams, true, false, "UTF-8")).isNotEqualTo(key);
+    assertThat(IncrementalAnalysis.cacheKey("1.0", rules, false, false, "UTF-8")).isNotEqualTo(key);
+    assertThat(IncrementalAnalysis.cacheKey("1.0", rules, true, false, "UTF-16")).isNotEqualTo(key);
+  }
+
+  private static void write(File file, String content) throws IOException {
+    Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static void writeMetrics(Path directory, File... files) throws IOException {
+    try (OutputStream output = Files.newOutputStream(directory.resolve("metrics.pb"))) {
+      for (File file : files) {
+        MetricsInfo.newBuilder().setFilePath(file.getAbsolutePath()).build().writeDelimitedTo(output);
+      }
+    }
+  }
+
+  private static List<String> readMetricsFilePaths(Path directory) throws IOException {
+    List<String> result = new ArrayList<>();
+    try (InputStream input = Files.newInputStream(directory.resolve("metrics.pb"))) {
+      MetricsInfo message;
+      while ((message = MetricsInfo.parseDelimitedFrom(input)) != null) {
+        result.add(message.getFilePath());
+      }
+    }
+    return result;
+  }
+
+}
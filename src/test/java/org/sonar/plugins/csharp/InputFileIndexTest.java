@@ -0,0 +1,110 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import java.io.File;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class InputFileIndexTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private SensorContextTester context;
+  private String baseDir;
+
+  @Before
+  public void prepare() throws Exception {
+    File baseDirFile = temp.newFolder();
+    baseDir = baseDirFile.getAbsolutePath();
+    context = SensorContextTester.create(baseDirFile);
+  }
+
+  @Test
+  public void normalize() {
+    assertThat(InputFileIndex.normalize("C:\\src\\.\\Project\\..\\Foo.cs")).isEqualTo("C:/src/Foo.cs");
+    assertThat(InputFileIndex.normalize("/src//Project/../../../Foo.cs")).isEqualTo("/Foo.cs");
+    assertThat(InputFileIndex.normalize("\\\\server\\share\\Foo.cs")).isEqualTo("//server/share/Foo.cs");
+    assertThat(InputFileIndex.normalize("../src/Foo.cs/")).isEqualTo("../src/Foo.cs");
+  }
+
+  @Test
+  public void paths_resolved_with_windows_semantics() {
+    InputFile foo = add("Project/Foo.cs", CSharpPlugin.LANGUAGE_KEY);
+    add("Project/Bar.vb", "vbnet");
+    InputFileIndex.Index index = new InputFileIndex().get(context);
+
+    assertThat(index.inputFile(baseDir + "/Project/Foo.cs")).isSameAs(foo);
+    assertThat(index.inputFile((baseDir + "\\project\\Other\\..\\FOO.CS").toUpperCase())).isSameAs(foo);
+    assertThat(index.inputFile("Project\\Foo.cs")).isSameAs(foo);
+    assertThat(index.inputFile("Project/Missing.cs")).isNull();
+    assertThat(index.inputFile(baseDir + "/Project/Bar.vb")).isNull();
+  }
+
+  @Test
+  public void paths_differing_only_by_case() {
+    InputFile upper = add("Foo.cs", CSharpPlugin.LANGUAGE_KEY);
+    InputFile lower = add("foo.cs", CSharpPlugin.LANGUAGE_KEY);
+    InputFileIndex.Index index = new InputFileIndex().get(context);
+
+    assertThat(index.inputFile("Foo.cs")).isSameAs(upper);
+    assertThat(index.inputFile("foo.cs")).isSameAs(lower);
+    assertThat(index.inputFile("FOO.cs")).isNull();
+  }
+
+  @Test
+  public void built_once_per_module() {
+    InputFileIndex inputFileIndex = new InputFileIndex();
+
+    assertThat(inputFileIndex.get(context)).isSameAs(inputFileIndex.get(context));
+  }
+
+  @Test
+  public void indexed_context_resolves_path_predicates() {
+    InputFile foo = add("Project/Foo.cs", CSharpPlugin.LANGUAGE_KEY);
+    FileSystem fs = new InputFileIndex().indexed(context).fileSystem();
+
+    assertThat(fs.inputFile(fs.predicates().hasPath("PROJECT\\FOO.CS"))).isSameAs(foo);
+    assertThat(fs.inputFile(fs.predicates().hasAbsolutePath(baseDir + "/Project/Foo.cs"))).isSameAs(foo);
+    assertThat(fs.inputFile(fs.predicates().hasPath("Project/Missing.cs"))).isNull();
+    assertThat(fs.inputFiles(fs.predicates().and(fs.predicates().hasPath("project/foo.cs"), fs.predicates().hasLanguage(CSharpPlugin.LANGUAGE_KEY))))
+      .containsOnly(foo);
+    assertThat(fs.baseDir()).isEqualTo(context.fileSystem().baseDir());
+  }
+
+  private InputFile add(String relativePath, String language) {
+    DefaultInputFile inputFile = new DefaultInputFile(context.module().key(), relativePath)
+      .setModuleBaseDir(context.fileSystem().baseDirPath())
+      .setLanguage(language)
+      .initMetadata("class Foo {}\n");
+    context.fileSystem().add(inputFile);
+    return inputFile;
+  }
+
+}
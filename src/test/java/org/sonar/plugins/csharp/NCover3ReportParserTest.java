@@ -0,0 +1,53 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+public class NCover3ReportParserTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void sequence_points() throws Exception {
+    File report = temp.newFile();
+    Files.write(report.toPath(), ("<coverage><documents><doc id=\"1\" url=\"C:\\Foo.cs\" /></documents>"
+      + "<module><method>"
+      + "<seqpnt vc=\"2\" l=\"10\" doc=\"1\" /><seqpnt vc=\"1\" l=\"10\" doc=\"1\" /><seqpnt vc=\"0\" l=\"11\" doc=\"1\" ex=\"false\" />"
+      + "<seqpnt vc=\"0\" l=\"12\" doc=\"1\" ex=\"true\" /><seqpnt vc=\"1\" l=\"1\" doc=\"2\" />"
+      + "</method></module></coverage>").getBytes(StandardCharsets.UTF_8));
+
+    CoverageData coverage = new CoverageData();
+    new NCover3ReportParser().parse(report, coverage);
+
+    assertThat(coverage.files()).containsOnly("C:\\Foo.cs");
+    assertThat(coverage.hits("C:\\Foo.cs")).containsOnly(entry(10, 3), entry(11, 0));
+  }
+
+}
@@ -0,0 +1,66 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class NUnitTestResultsParserTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void counters_and_time_of_the_top_level_suites() throws Exception {
+    File report = temp.newFile();
+    Files.write(report.toPath(), ("<test-results total=\"20\" errors=\"1\" failures=\"3\" not-run=\"4\" inconclusive=\"2\" ignored=\"4\" skipped=\"0\" invalid=\"0\">"
+      + "<environment nunit-version=\"2.6.4\" /><culture-info current-culture=\"en-US\" />"
+      + "<test-suite type=\"Assembly\" time=\"1.250\"><results><test-suite type=\"Namespace\" time=\"1.000\">"
+      + "<results><test-case name=\"Company.FooTest.A\" executed=\"True\" result=\"Success\" time=\"0.5\" />"
+      + "<test-case name=\"Company.FooTest.B(1,&quot;a.b&quot;)\" executed=\"True\" result=\"Failure\" time=\"0.25\" />"
+      + "<test-case name=\"Company.BarTest.C\" executed=\"False\" result=\"Ignored\"><reason><message>Not yet</message></reason></test-case>"
+      + "</results></test-suite></results></test-suite>"
+      + "<test-suite type=\"Assembly\" time=\"0.125\" />"
+      + "<test-suite type=\"Assembly\" executed=\"False\" />"
+      + "</test-results>").getBytes(StandardCharsets.UTF_8));
+
+    UnitTestResultsData results = new UnitTestResultsData();
+    new NUnitTestResultsParser().parse(report, results);
+
+    assertThat(results.tests()).isEqualTo(18);
+    assertThat(results.passed()).isEqualTo(14);
+    assertThat(results.skipped()).isEqualTo(6);
+    assertThat(results.failures()).isEqualTo(3);
+    assertThat(results.errors()).isEqualTo(1);
+    assertThat(results.executionTimeMs()).isEqualTo(1375);
+    assertThat(results.resultsByType()).containsOnlyKeys("Company.FooTest", "Company.BarTest");
+    assertThat(results.resultsByType().get("Company.FooTest").tests()).isEqualTo(2);
+    assertThat(results.resultsByType().get("Company.FooTest").failures()).isEqualTo(1);
+    assertThat(results.resultsByType().get("Company.FooTest").executionTimeMs()).isEqualTo(750);
+    assertThat(results.resultsByType().get("Company.BarTest").skipped()).isEqualTo(1);
+  }
+
+}
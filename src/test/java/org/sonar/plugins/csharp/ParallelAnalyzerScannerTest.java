@@ -0,0 +1,170 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.apache.commons.lang.SystemUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.sonarsource.dotnet.protobuf.SonarAnalyzer.MetricsInfo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assume.assumeFalse;
+
+public class ParallelAnalyzerScannerTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  private static final ParallelAnalyzerScanner.BatchInputWriter FILE_LIST = (batch, analysisInput) -> {
+    StringBuilder sb = new StringBuilder();
+    for (File file : batch) {
+      sb.append("<File>").append(file.getAbsolutePath()).append("</File>\n");
+    }
+    Files.write(analysisInput, sb.toString().getBytes(StandardCharsets.UTF_8));
+  };
+
+  private Path workDir;
+  private Path analysisOutput;
+
+  @Before
+  public void prepare() throws Exception {
+    workDir = temp.newFolder().toPath();
+    analysisOutput = workDir.resolve("output-cs");
+  }
+
+  @Test
+  public void partition() throws Exception {
+    List<File> files = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      files.add(file("File" + i + ".cs", (i + 1) * 100));
+    }
+
+    List<Set<File>> batches = ParallelAnalyzerScanner.partition(files, 3);
+    assertThat(batches).hasSize(3);
+    Set<File> all = new HashSet<>();
+    long minSize = Long.MAX_VALUE;
+    long maxSize = 0;
+    for (Set<File> batch : batches) {
+      assertThat(batch).isNotEmpty();
+      all.addAll(batch);
+      long size = batch.stream().mapToLong(File::length).sum();
+      minSize = Math.min(minSize, size);
+      maxSize = Math.max(maxSize, size);
+    }
+    assertThat(batches.stream().mapToInt(Set::size).sum()).isEqualTo(files.size());
+    assertThat(all).containsOnlyElementsOf(files).hasSize(files.size());
+    assertThat(maxSize - minSize).isLessThanOrEqualTo(1000);
+
+    assertThat(ParallelAnalyzerScanner.partition(files.subList(0, 2), 4)).hasSize(2);
+    assertThat(ParallelAnalyzerScanner.partition(new ArrayList<>(), 4)).hasSize(1);
+  }
+
+  @Test
+  public void batches_are_analyzed_concurrently_and_merged() throws Exception {
+    assumeFalse(SystemUtils.IS_OS_WINDOWS);
+    List<File> files = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      File file = file("File" + i + ".cs", 10);
+      files.add(file);
+      try (OutputStream output = Files.newOutputStream(file.toPath().resolveSibling(file.getName() + ".pb"))) {
+        MetricsInfo.newBuilder().setFilePath(file.getAbsolutePath()).build().writeDelimitedTo(output);
+      }
+    }
+    // Stale report of a previous analysis
+    Files.createDirectories(analysisOutput);
+    Files.write(analysisOutput.resolve("issues.pb"), new byte[] {1, 2, 3});
+
+    // Each process waits for the three processes to be running, so the test only passes when they run concurrently
+    File analyzer = script("fake-analyzer.sh",
+      "touch \"" + workDir.toAbsolutePath() + "/running-$$\"",
+      "for i in $(seq 1 100); do",
+      "  [ $(ls \"" + workDir.toAbsolutePath() + "\" | grep -c running-) -ge 3 ] && break",
+      "  sleep 0.1",
+      "done",
+      "[ $(ls \"" + workDir.toAbsolutePath() + "\" | grep -c running-) -ge 3 ] || exit 2",
+      "mkdir -p \"$2\"",
+      "for f in $(sed -n 's:<File>\\(.*\\)</File>:\\1:p' \"$1\"); do cat \"$f.pb\" >> \"$2/metrics.pb\"; done");
+
+    new ParallelAnalyzerScanner(new CommandAnalyzerLauncher(null), analyzer, 3, Integer.MAX_VALUE).analyze(files, FILE_LIST, workDir, analysisOutput);
+
+    Set<String> analyzed = new HashSet<>();
+    try (InputStream input = Files.newInputStream(analysisOutput.resolve("metrics.pb"))) {
+      MetricsInfo message;
+      while ((message = MetricsInfo.parseDelimitedFrom(input)) != null) {
+        assertThat(analyzed.add(message.getFilePath())).isTrue();
+      }
+    }
+    assertThat(analyzed).hasSize(files.size());
+    assertThat(analysisOutput.resolve("issues.pb")).doesNotExist();
+    assertThat(workDir.resolve(ParallelAnalyzerScanner.BATCHES_DIRECTORY_NAME).resolve("batch-2").resolve("SonarLint.xml")).exists();
+  }
+
+  @Test
+  public void failure_of_one_batch_fails_the_analysis() throws Exception {
+    assumeFalse(SystemUtils.IS_OS_WINDOWS);
+    File analyzer = script("failing-analyzer.sh", "grep -q File1.cs \"$1\" && exit 3", "exit 0");
+
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("The .NET analyzer failed with exit code: 3");
+    new ParallelAnalyzerScanner(new CommandAnalyzerLauncher(null), analyzer, 2, Integer.MAX_VALUE).analyze(Arrays.asList(file("File0.cs", 10), file("File1.cs", 10)), FILE_LIST, workDir, analysisOutput);
+  }
+
+  @Test
+  public void process_exceeding_timeout_is_stopped() throws Exception {
+    assumeFalse(SystemUtils.IS_OS_WINDOWS);
+    File analyzer = script("slow-analyzer.sh", "sleep 30");
+
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("The .NET analyzer did not complete within 500 ms and was stopped");
+    new ParallelAnalyzerScanner(new CommandAnalyzerLauncher(null), analyzer, 2, 500).analyze(Arrays.asList(file("File0.cs", 10), file("File1.cs", 10)), FILE_LIST, workDir, analysisOutput);
+  }
+
+  private File file(String name, int size) throws IOException {
+    File file = new File(temp.getRoot(), name);
+    Files.write(file.toPath(), new byte[size]);
+    return file;
+  }
+
+  private File script(String name, String... lines) throws IOException {
+    File script = temp.newFile(name);
+    Files.write(script.toPath(), ("#!/bin/sh\n" + String.join("\n", lines) + "\n").getBytes(StandardCharsets.UTF_8));
+    assertThat(script.setExecutable(true)).isTrue();
+    return script;
+  }
+
+}
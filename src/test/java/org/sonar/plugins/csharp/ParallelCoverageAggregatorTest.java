@@ -0,0 +1,161 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.config.Settings;
+import org.sonar.plugins.dotnet.tests.Coverage;
+import org.sonar.plugins.dotnet.tests.CoverageAggregator;
+import org.sonar.plugins.dotnet.tests.CoverageConfiguration;
+import org.sonar.plugins.dotnet.tests.WildcardPatternFileProvider;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ParallelCoverageAggregatorTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Test
+  public void same_line_hits_as_the_tests_library_for_each_format() throws Exception {
+    assertSameLineHitsAsTheTestsLibrary("ncover3", CoverageReportGenerator::writeNCover3, new NCover3ReportParser());
+    assertSameLineHitsAsTheTestsLibrary("opencover", CoverageReportGenerator::writeOpenCover, new OpenCoverReportParser());
+    assertSameLineHitsAsTheTestsLibrary("dotcover", CoverageReportGenerator::writeDotCover, new DotCoverReportParser());
+    assertSameLineHitsAsTheTestsLibrary("vscoveragexml", CoverageReportGenerator::writeVisualStudio, new VisualStudioCoverageXmlReportParser());
+  }
+
+  /**
+   * The generated reports only follow the format as understood by the tests, so the report of the integration tests,
+   * written by dotCover itself, is also compared with the parser of the tests library.
+   */
+  @Test
+  public void same_line_hits_as_the_tests_library_for_a_real_dotcover_report() throws Exception {
+    File report = new File("its/projects/CoverageTest/reports/dotcover.html");
+    Coverage expected = new Coverage();
+    for (ParallelCoverageAggregator.Report sourceFileReport : DotCoverReportParser.sourceFileReports(report)) {
+      new org.sonar.plugins.dotnet.tests.DotCoverReportParser().parse(sourceFileReport.file(), expected);
+    }
+    assertThat(expected.files()).hasSize(1);
+
+    CoverageData coverage = new ParallelCoverageAggregator(2).aggregate(DotCoverReportParser.sourceFileReports(report));
+    assertThat(coverage.files()).hasSize(1);
+    String file = coverage.files().get(0);
+    // The tests library resolves the paths of the source files, which are relative in this report
+    assertThat(expected.hits(new File(file).getCanonicalPath())).isEqualTo(coverage.hits(file)).isNotEmpty();
+  }
+
+  private void assertSameLineHitsAsTheTestsLibrary(String format, ReportWriter writer, CoverageReportParser parser) throws Exception {
+    File reportsDirectory = temp.newFolder(format);
+    String sourceDirectory = temp.getRoot().getCanonicalPath();
+    List<ParallelCoverageAggregator.Report> reports = new ArrayList<>();
+    List<String> reportPaths = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      File report = new File(reportsDirectory, "report" + i + ("dotcover".equals(format) ? ".html" : ".xml"));
+      writer.write(report.toPath(), sourceDirectory, 5 + i, 40, i);
+      reports.add(new ParallelCoverageAggregator.Report(report, parser));
+      reportPaths.add(report.getAbsolutePath());
+    }
+
+    Settings settings = new Settings();
+    settings.setProperty(format, String.join(",", reportPaths));
+    Coverage expected = new CoverageAggregator(new CoverageConfiguration(CSharpPlugin.LANGUAGE_KEY, "ncover3", "opencover", "dotcover", "vscoveragexml"), settings)
+      .aggregate(new WildcardPatternFileProvider(new File(""), File.separator), new Coverage());
+    assertThat(expected.files()).as(format).hasSize(12);
+
+    for (int threads : new int[] {1, 2, 4, 7, 64}) {
+      CoverageData coverage = new ParallelCoverageAggregator(threads).aggregate(reports);
+      assertThat(coverage.files()).as(format + " with " + threads + " threads").containsOnlyElementsOf(expected.files()).hasSameSizeAs(expected.files());
+      for (String file : expected.files()) {
+        assertThat(coverage.hits(file)).as(file + " of " + format + " with " + threads + " threads").isEqualTo(expected.hits(file));
+      }
+    }
+  }
+
+  @FunctionalInterface
+  private interface ReportWriter {
+    void write(Path report, String sourceDirectory, int files, int itemsPerFile, long seed) throws IOException;
+  }
+
+  @Test
+  public void reports_of_several_origins_are_parsed_once() throws Exception {
+    AtomicInteger parsedReports = new AtomicInteger();
+    CoverageReportParser parser = (report, coverage) -> {
+      parsedReports.incrementAndGet();
+      new OpenCoverReportParser().parse(report, coverage);
+    };
+    List<ParallelCoverageAggregator.Report> reports = new ArrayList<>();
+    CoverageData[] expected = {new CoverageData(), new CoverageData()};
+    for (int i = 0; i < 6; i++) {
+      File report = temp.newFile();
+      CoverageReportGenerator.writeOpenCover(report.toPath(), "/src", 5, 20, i);
+      int origins = i % 3 + 1;
+      reports.add(new ParallelCoverageAggregator.Report(report, parser).withOrigins(origins));
+      for (int origin = 0; origin < 2; origin++) {
+        if ((origins & (1 << origin)) != 0) {
+          new OpenCoverReportParser().parse(report, expected[origin]);
+        }
+      }
+    }
+
+    for (int threads : new int[] {1, 4}) {
+      parsedReports.set(0);
+      CoverageData[] coverages = new ParallelCoverageAggregator(threads).aggregateByOrigin(reports, 2);
+      assertThat(parsedReports.get()).isEqualTo(6);
+      for (int origin = 0; origin < 2; origin++) {
+        assertThat(coverages[origin].files()).containsOnlyElementsOf(expected[origin].files());
+        for (String file : expected[origin].files()) {
+          assertThat(coverages[origin].hits(file)).as(file + " of origin " + origin + " with " + threads + " threads").isEqualTo(expected[origin].hits(file));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void no_reports() {
+    assertThat(new ParallelCoverageAggregator(4).aggregate(new ArrayList<>()).files()).isEmpty();
+  }
+
+  @Test
+  public void parsing_failures_are_propagated() throws Exception {
+    List<ParallelCoverageAggregator.Report> reports = new ArrayList<>();
+    File report = temp.newFile("report.xml");
+    CoverageReportGenerator.writeOpenCover(report.toPath(), "/src", 1, 1, 0);
+    reports.add(new ParallelCoverageAggregator.Report(report, new OpenCoverReportParser()));
+    File invalidReport = temp.newFile("invalid.xml");
+    reports.add(new ParallelCoverageAggregator.Report(invalidReport, new OpenCoverReportParser()));
+
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Unable to parse the coverage report " + invalidReport.getAbsolutePath());
+    new ParallelCoverageAggregator(2).aggregate(reports);
+  }
+
+}
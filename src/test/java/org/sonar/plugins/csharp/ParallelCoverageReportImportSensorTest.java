@@ -0,0 +1,166 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import java.io.File;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.batch.sensor.coverage.CoverageType;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+import org.sonar.api.config.Settings;
+import org.sonar.plugins.csharp.CSharpCodeCoverageProvider.CSharpParallelCoverageReportImportSensor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ParallelCoverageReportImportSensorTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private SensorContextTester context;
+  private Settings settings;
+
+  @Before
+  public void prepare() throws Exception {
+    File baseDir = temp.newFolder();
+    context = newContext(baseDir);
+    settings = new Settings();
+    CoverageReportGenerator.writeOpenCover(baseDir.toPath().resolve("unit1.xml"), baseDir.getAbsolutePath(), 2, 10, 1);
+    CoverageReportGenerator.writeOpenCover(baseDir.toPath().resolve("unit2.xml"), baseDir.getAbsolutePath(), 5, 10, 2);
+    CoverageReportGenerator.writeVisualStudio(baseDir.toPath().resolve("it.coveragexml"), baseDir.getAbsolutePath(), 1, 10, 3);
+    settings.setProperty("sonar.cs.opencover.reportsPaths", "unit*.xml");
+    settings.setProperty("sonar.cs.vscoveragexml.it.reportsPaths", "it.coveragexml");
+  }
+
+  @Test
+  public void nothing_imported_with_one_thread() {
+    new CSharpParallelCoverageReportImportSensor(settings, new InputFileIndex()).execute(context);
+
+    assertThat(context.lineHits(context.module().key() + ":File0.cs", CoverageType.UNIT, 1)).isNull();
+  }
+
+  @Test
+  public void unit_and_integration_tests_coverage() throws Exception {
+    settings.setProperty(CSharpCodeCoverageProvider.THREADS_PROPERTY_KEY, "2");
+    new CSharpParallelCoverageReportImportSensor(settings, new InputFileIndex()).execute(context);
+    assertCoverage();
+  }
+
+  @Test
+  public void imported_by_the_concurrent_sensor_in_concurrent_mode() throws Exception {
+    settings.setProperty(CSharpConfiguration.CONCURRENT_SENSORS_PROPERTY_KEY, "true");
+    CSharpParallelCoverageReportImportSensor sensor = new CSharpParallelCoverageReportImportSensor(settings, new InputFileIndex());
+    sensor.execute(context);
+    assertThat(context.lineHits(context.module().key() + ":File0.cs", CoverageType.UNIT, 1)).isNull();
+
+    sensor.executeInternal(context);
+    assertCoverage();
+  }
+
+  @Test
+  public void cached_coverage() throws Exception {
+    File workDir = temp.newFolder();
+    context.fileSystem().setWorkDir(workDir);
+    settings.setProperty(CSharpCodeCoverageProvider.CACHE_SIZE_PROPERTY_KEY, "10");
+    new CSharpParallelCoverageReportImportSensor(settings, new InputFileIndex()).execute(context);
+    assertThat(new File(workDir, CoverageCache.CACHE_DIRECTORY_NAME).list()).hasSize(3);
+
+    context = newContext(context.fileSystem().baseDir());
+    context.fileSystem().setWorkDir(workDir);
+    new CSharpParallelCoverageReportImportSensor(settings, new InputFileIndex()).execute(context);
+    assertCoverage();
+  }
+
+  @Test
+  public void overall_coverage() throws Exception {
+    settings.setProperty(CSharpCodeCoverageProvider.OVERALL_PROPERTY_KEY, "true");
+    new CSharpParallelCoverageReportImportSensor(settings, new InputFileIndex()).execute(context);
+    assertCoverage();
+
+    for (int i = 0; i < 3; i++) {
+      String componentKey = context.module().key() + ":File" + i + ".cs";
+      for (int line = 1; line <= 11; line++) {
+        assertThat(context.lineHits(componentKey, CoverageType.OVERALL, line))
+          .isEqualTo(sum(context.lineHits(componentKey, CoverageType.UNIT, line), context.lineHits(componentKey, CoverageType.IT, line)));
+      }
+    }
+  }
+
+  @Test
+  public void overall_coverage_of_reports_shared_by_unit_and_integration_tests() throws Exception {
+    settings.setProperty("sonar.cs.opencover.it.reportsPaths", "unit1.xml,./unit1.xml");
+    settings.setProperty("sonar.cs.vscoveragexml.it.reportsPaths", "");
+    settings.setProperty(CSharpCodeCoverageProvider.OVERALL_PROPERTY_KEY, "true");
+    new CSharpParallelCoverageReportImportSensor(settings, new InputFileIndex()).execute(context);
+
+    File baseDir = context.fileSystem().baseDir();
+    CoverageData unit1 = new CoverageData();
+    new OpenCoverReportParser().parse(new File(baseDir, "unit1.xml"), unit1);
+    for (int i = 0; i < 2; i++) {
+      String file = new File(baseDir, "File" + i + ".cs").getAbsolutePath();
+      String componentKey = context.module().key() + ":File" + i + ".cs";
+      for (int line = 1; line <= 11; line++) {
+        assertThat(context.lineHits(componentKey, CoverageType.IT, line)).isEqualTo(unit1.hits(file).get(line));
+        assertThat(context.lineHits(componentKey, CoverageType.OVERALL, line))
+          .isEqualTo(sum(context.lineHits(componentKey, CoverageType.UNIT, line), unit1.hits(file).get(line)));
+      }
+    }
+  }
+
+  private static Integer sum(Integer hits, Integer otherHits) {
+    if (hits == null || otherHits == null) {
+      return hits == null ? otherHits : hits;
+    }
+    return hits + otherHits;
+  }
+
+  private static SensorContextTester newContext(File baseDir) {
+    SensorContextTester context = SensorContextTester.create(baseDir);
+    for (int i = 0; i < 3; i++) {
+      DefaultInputFile inputFile = new DefaultInputFile(context.module().key(), "File" + i + ".cs")
+        .setLanguage(CSharpPlugin.LANGUAGE_KEY)
+        .initMetadata("class A {\n\n\n\n\n\n\n\n\n\n}\n");
+      context.fileSystem().add(inputFile);
+    }
+    return context;
+  }
+
+  private void assertCoverage() {
+    File baseDir = context.fileSystem().baseDir();
+    CoverageData unit = new CoverageData();
+    new OpenCoverReportParser().parse(new File(baseDir, "unit1.xml"), unit);
+    new OpenCoverReportParser().parse(new File(baseDir, "unit2.xml"), unit);
+    CoverageData integration = new CoverageData();
+    new VisualStudioCoverageXmlReportParser().parse(new File(baseDir, "it.coveragexml"), integration);
+    assertThat(integration.files()).hasSize(1);
+
+    for (int i = 0; i < 3; i++) {
+      String file = new File(baseDir, "File" + i + ".cs").getAbsolutePath();
+      for (int line = 1; line <= 11; line++) {
+        assertThat(context.lineHits(context.module().key() + ":File" + i + ".cs", CoverageType.UNIT, line)).isEqualTo(unit.hits(file).get(line));
+        assertThat(context.lineHits(context.module().key() + ":File" + i + ".cs", CoverageType.IT, line)).isEqualTo(integration.hits(file).get(line));
+      }
+    }
+  }
+
+}
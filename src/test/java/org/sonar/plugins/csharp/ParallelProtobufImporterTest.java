@@ -0,0 +1,265 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import com.google.protobuf.AbstractMessageLite;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.CoreProperties;
+import org.sonar.api.SonarQubeVersion;
+import org.sonar.api.batch.bootstrap.ProjectDefinition;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+import org.sonar.api.batch.sensor.issue.Issue;
+import org.sonar.api.batch.sensor.measure.Measure;
+import org.sonar.api.config.Settings;
+import org.sonar.api.issue.NoSonarFilter;
+import org.sonar.api.measures.FileLinesContext;
+import org.sonar.api.measures.FileLinesContextFactory;
+import org.sonarsource.dotnet.protobuf.SonarAnalyzer.CopyPasteTokenInfo;
+import org.sonarsource.dotnet.protobuf.SonarAnalyzer.FileIssues;
+import org.sonarsource.dotnet.protobuf.SonarAnalyzer.MetricsInfo;
+import org.sonarsource.dotnet.protobuf.SonarAnalyzer.SymbolReferenceInfo;
+import org.sonarsource.dotnet.protobuf.SonarAnalyzer.TextRange;
+import org.sonarsource.dotnet.protobuf.SonarAnalyzer.TokenType;
+import org.sonarsource.dotnet.protobuf.SonarAnalyzer.TokenTypeInfo;
+import org.sonarsource.dotnet.shared.plugins.EncodingPerFile;
+import org.sonarsource.dotnet.shared.plugins.SonarAnalyzerScannerExtractor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ParallelProtobufImporterTest {
+
+  private static final int PROJECTS = 6;
+  private static final int FILES_PER_PROJECT = 20;
+  private static final int LINES_PER_FILE = 10;
+  private static final String LINE = "public class Foo {}";
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private Path baseDir;
+  private Path analyzerWorkDir;
+  private Path reportsDir;
+  private List<String> relativePaths;
+
+  @Before
+  public void prepare() throws Exception {
+    baseDir = temp.newFolder().toPath();
+    analyzerWorkDir = temp.newFolder().toPath();
+    reportsDir = analyzerWorkDir.resolve(CSharpConfiguration.ANALYSIS_OUTPUT_DIRECTORY_NAME);
+    relativePaths = new ArrayList<>();
+
+    for (int project = 0; project < PROJECTS; project++) {
+      // The first project reports directly in the output directory, the other ones in a sub-directory each
+      Path projectReportDir = project == 0 ? reportsDir : reportsDir.resolve("Project" + project);
+      Files.createDirectories(projectReportDir);
+      List<String> projectFiles = new ArrayList<>();
+      for (int file = 0; file < FILES_PER_PROJECT; file++) {
+        String relativePath = "Project" + project + "/File" + file + ".cs";
+        Path path = baseDir.resolve(relativePath);
+        Files.createDirectories(path.getParent());
+        Files.write(path, content().getBytes(StandardCharsets.UTF_8));
+        projectFiles.add(path.toAbsolutePath().toString());
+        relativePaths.add(relativePath);
+      }
+      writeReports(projectReportDir, projectFiles);
+    }
+  }
+
+  @Test
+  public void report_directories() throws Exception {
+    Files.createDirectories(reportsDir.resolve("NoReports"));
+
+    List<Path> reportDirectories = ParallelProtobufImporter.reportDirectories(reportsDir);
+    assertThat(reportDirectories).hasSize(PROJECTS);
+    assertThat(reportDirectories.get(0)).isEqualTo(reportsDir);
+    assertThat(reportDirectories).doesNotContain(reportsDir.resolve("NoReports"));
+
+    assertThat(ParallelProtobufImporter.reportDirectories(analyzerWorkDir.resolve("missing"))).containsExactly(analyzerWorkDir.resolve("missing"));
+  }
+
+  @Test
+  public void parallel_import_matches_sequential_import() {
+    // The sequential import only reads the given directory, so each one is imported in turn
+    SensorContextTester sequential = newContext();
+    CSharpSensor sequentialSensor = newSensor(sequential, 1);
+    for (Path reportDirectory : ParallelProtobufImporter.reportDirectories(reportsDir)) {
+      sequentialSensor.importResults(sequential, reportDirectory, true);
+    }
+    SensorContextTester parallel = newContext();
+    newSensor(parallel, 4).importResults(parallel, reportsDir, true);
+
+    assertThat(sequential.allIssues()).hasSize(PROJECTS * FILES_PER_PROJECT * 2);
+    assertThat(issues(parallel)).isEqualTo(issues(sequential));
+
+    for (String relativePath : relativePaths) {
+      String componentKey = sequential.module().key() + ":" + relativePath;
+      assertThat(sequential.measures(componentKey)).isNotEmpty();
+      assertThat(measures(parallel, componentKey)).isEqualTo(measures(sequential, componentKey));
+      assertThat(parallel.highlightingTypeAt(componentKey, 1, 0)).isEqualTo(sequential.highlightingTypeAt(componentKey, 1, 0));
+      assertThat(parallel.referencesForSymbolAt(componentKey, 1, 13)).hasSameSizeAs(sequential.referencesForSymbolAt(componentKey, 1, 13));
+      assertThat(parallel.cpdTokens(componentKey)).hasSameSizeAs(sequential.cpdTokens(componentKey));
+    }
+  }
+
+  @Test
+  public void import_through_a_shared_writer_restricted_to_some_files() {
+    SensorContextTester context = newContext();
+    SingleWriter singleWriter = new SingleWriter();
+    SensorContext writerContext = singleWriter.wrap(context);
+    assertThat(singleWriter.wrap(writerContext)).isSameAs(writerContext);
+    assertThat(new SingleWriter().wrap(writerContext)).isNotSameAs(writerContext);
+
+    String excluded = relativePaths.get(0);
+    new ParallelProtobufImporter(fileLinesContextFactory(), new NoSonarFilter(), CSharpSonarRulesDefinition.REPOSITORY_KEY, 4)
+      .importResults(writerContext, ParallelProtobufImporter.reportDirectories(reportsDir), true, singleWriter, f -> !f.relativePath().equals(excluded));
+
+    assertThat(context.measures(context.module().key() + ":" + excluded)).isEmpty();
+    assertThat(context.measures(context.module().key() + ":" + relativePaths.get(1))).isNotEmpty();
+  }
+
+  private SensorContextTester newContext() {
+    SensorContextTester context = SensorContextTester.create(baseDir);
+    for (String relativePath : relativePaths) {
+      context.fileSystem().add(new DefaultInputFile(context.module().key(), relativePath)
+        .setLanguage(CSharpPlugin.LANGUAGE_KEY)
+        .initMetadata(content()));
+    }
+    return context;
+  }
+
+  private static FileLinesContextFactory fileLinesContextFactory() {
+    FileLinesContext fileLinesContext = mock(FileLinesContext.class);
+    FileLinesContextFactory fileLinesContextFactory = mock(FileLinesContextFactory.class);
+    when(fileLinesContextFactory.createFor(any(DefaultInputFile.class))).thenReturn(fileLinesContext);
+    return fileLinesContextFactory;
+  }
+
+  private CSharpSensor newSensor(SensorContextTester context, int threads) {
+    Settings settings = new Settings();
+    settings.setProperty(CSharpConfiguration.ANALYZER_PROJECT_OUT_PATH_PROPERTY_KEY, analyzerWorkDir.toAbsolutePath().toString());
+    settings.setProperty(CSharpConfiguration.IMPORT_THREADS_PROPERTY_KEY, threads);
+
+    return new CSharpSensor(settings, mock(SonarAnalyzerScannerExtractor.class), fileLinesContextFactory(), new NoSonarFilter(),
+      new CSharpConfiguration(settings),
+      new EncodingPerFile(ProjectDefinition.create().setProperty(CoreProperties.ENCODING_PROPERTY, "UTF-8"), new SonarQubeVersion(context.getSonarQubeVersion())),
+      new ActiveRoslynRulesIndex(), new InputFileIndex(), new AnalyzerDaemon());
+  }
+
+  private static Set<String> issues(SensorContextTester context) {
+    Set<String> result = new TreeSet<>();
+    for (Issue issue : context.allIssues()) {
+      result.add(issue.primaryLocation().inputComponent().key() + "|" + issue.ruleKey() + "|" + issue.primaryLocation().textRange() + "|"
+        + issue.primaryLocation().message());
+    }
+    return result;
+  }
+
+  private static Set<String> measures(SensorContextTester context, String componentKey) {
+    Set<String> result = new TreeSet<>();
+    for (Measure measure : context.measures(componentKey)) {
+      result.add(measure.metric().key() + "=" + measure.value());
+    }
+    return result;
+  }
+
+  private static String content() {
+    StringBuilder sb = new StringBuilder();
+    for (int line = 0; line < LINES_PER_FILE; line++) {
+      sb.append(LINE).append("\n");
+    }
+    return sb.toString();
+  }
+
+  private static void writeReports(Path reportDir, List<String> files) throws IOException {
+    List<MetricsInfo> metrics = new ArrayList<>();
+    List<FileIssues> issues = new ArrayList<>();
+    List<TokenTypeInfo> highlights = new ArrayList<>();
+    List<SymbolReferenceInfo> symbols = new ArrayList<>();
+    List<CopyPasteTokenInfo> cpdTokens = new ArrayList<>();
+
+    for (int i = 0; i < files.size(); i++) {
+      String file = files.get(i);
+      metrics.add(MetricsInfo.newBuilder()
+        .setFilePath(file)
+        .setClassCount(LINES_PER_FILE)
+        .setStatementCount(i)
+        .setFunctionCount(i % 3)
+        .setComplexity(i + 1)
+        .addNoSonarComment(2)
+        .addCodeLine(1)
+        .addCodeLine(3)
+        .build());
+      issues.add(FileIssues.newBuilder()
+        .setFilePath(file)
+        .addIssue(FileIssues.Issue.newBuilder().setId("S101").setMessage("Rename class " + i).setLocation(range(1, 13, 16)))
+        .addIssue(FileIssues.Issue.newBuilder().setId("S1186").setMessage("Empty class " + i).setLocation(range(1 + i % LINES_PER_FILE, 0, 6)))
+        .build());
+      highlights.add(TokenTypeInfo.newBuilder()
+        .setFilePath(file)
+        .addTokenInfo(TokenTypeInfo.TokenInfo.newBuilder().setTokenType(TokenType.KEYWORD).setTextRange(range(1, 0, 6)))
+        .build());
+      symbols.add(SymbolReferenceInfo.newBuilder()
+        .setFilePath(file)
+        .addReference(SymbolReferenceInfo.SymbolReference.newBuilder().setDeclaration(range(1, 13, 16)).addReference(range(2, 13, 16)))
+        .build());
+      cpdTokens.add(CopyPasteTokenInfo.newBuilder()
+        .setFilePath(file)
+        .addTokenInfo(CopyPasteTokenInfo.TokenInfo.newBuilder().setTokenValue("public").setTextRange(range(1, 0, 6)))
+        .addTokenInfo(CopyPasteTokenInfo.TokenInfo.newBuilder().setTokenValue("class").setTextRange(range(1, 7, 12)))
+        .build());
+    }
+
+    write(reportDir.resolve("metrics.pb"), metrics);
+    write(reportDir.resolve("issues.pb"), issues);
+    write(reportDir.resolve("token-type.pb"), highlights);
+    write(reportDir.resolve("symbol-reference.pb"), symbols);
+    write(reportDir.resolve("token-cpd.pb"), cpdTokens);
+  }
+
+  private static TextRange.Builder range(int line, int startOffset, int endOffset) {
+    return TextRange.newBuilder().setStartLine(line).setEndLine(line).setStartOffset(startOffset).setEndOffset(endOffset);
+  }
+
+  private static void write(Path path, List<? extends AbstractMessageLite> messages) throws IOException {
+    try (OutputStream output = Files.newOutputStream(path)) {
+      for (AbstractMessageLite message : messages) {
+        message.writeDelimitedTo(output);
+      }
+    }
+  }
+
+}
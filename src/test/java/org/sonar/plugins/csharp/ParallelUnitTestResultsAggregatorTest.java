@@ -0,0 +1,86 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ParallelUnitTestResultsAggregatorTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Test
+  public void parallel_aggregation_yields_the_same_counters_as_serial_aggregation() throws Exception {
+    List<ParallelUnitTestResultsAggregator.Report> reports = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      File report = temp.newFile();
+      Files.write(report.toPath(), ("<assembly total=\"" + (3 * i) + "\" passed=\"" + (2 * i) + "\" failed=\"" + i + "\" skipped=\"0\" time=\"0.5\" />")
+        .getBytes(StandardCharsets.UTF_8));
+      reports.add(new ParallelUnitTestResultsAggregator.Report(report, new XUnitTestResultsParser()));
+    }
+
+    UnitTestResultsData serial = new ParallelUnitTestResultsAggregator(1).aggregate(reports);
+    assertThat(serial.tests()).isEqualTo(570);
+    assertThat(serial.executionTimeMs()).isEqualTo(10_000);
+
+    for (int threads : new int[] {2, 7, 64}) {
+      UnitTestResultsData parallel = new ParallelUnitTestResultsAggregator(threads).aggregate(reports);
+      assertThat(parallel.tests()).isEqualTo(serial.tests());
+      assertThat(parallel.passed()).isEqualTo(serial.passed());
+      assertThat(parallel.failures()).isEqualTo(serial.failures());
+      assertThat(parallel.executionTimeMs()).isEqualTo(serial.executionTimeMs());
+    }
+  }
+
+  @Test
+  public void no_reports() {
+    UnitTestResultsData results = new ParallelUnitTestResultsAggregator(4).aggregate(new ArrayList<>());
+    assertThat(results.tests()).isZero();
+    assertThat(results.hasExecutionTime()).isFalse();
+  }
+
+  @Test
+  public void parsing_failures_are_propagated() throws Exception {
+    List<ParallelUnitTestResultsAggregator.Report> reports = new ArrayList<>();
+    File report = temp.newFile("report.xml");
+    Files.write(report.toPath(), "<assembly total=\"1\" passed=\"1\" failed=\"0\" skipped=\"0\" />".getBytes(StandardCharsets.UTF_8));
+    reports.add(new ParallelUnitTestResultsAggregator.Report(report, new XUnitTestResultsParser()));
+    File invalidReport = temp.newFile("invalid.xml");
+    reports.add(new ParallelUnitTestResultsAggregator.Report(invalidReport, new XUnitTestResultsParser()));
+
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Unable to parse the test results report " + invalidReport.getAbsolutePath());
+    new ParallelUnitTestResultsAggregator(2).aggregate(reports);
+  }
+
+}
@@ -0,0 +1,160 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.bootstrap.ProjectDefinition;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+import org.sonar.api.config.Settings;
+import org.sonar.api.measures.CoreMetrics;
+import org.sonar.plugins.csharp.CSharpUnitTestResultsProvider.CSharpParallelUnitTestResultsImportSensor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ParallelUnitTestResultsImportSensorTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private SensorContextTester context;
+  private Settings settings;
+
+  @Before
+  public void prepare() throws Exception {
+    File baseDir = temp.newFolder();
+    context = SensorContextTester.create(baseDir);
+    settings = new Settings();
+    Files.write(baseDir.toPath().resolve("results.trx"), ("<TestRun><Times start=\"2016-08-04T10:11:12+02:00\" finish=\"2016-08-04T10:11:13+02:00\" />"
+      + "<ResultSummary><Counters total=\"4\" executed=\"4\" passed=\"3\" failed=\"1\" error=\"0\" /></ResultSummary></TestRun>").getBytes(StandardCharsets.UTF_8));
+    Files.write(baseDir.toPath().resolve("nunit.xml"), ("<test-results total=\"2\" errors=\"0\" failures=\"0\" inconclusive=\"0\" ignored=\"1\">"
+      + "<test-suite time=\"0.5\" /></test-results>").getBytes(StandardCharsets.UTF_8));
+    Files.write(baseDir.toPath().resolve("xunit.xml"), "<assemblies><assembly total=\"4\" passed=\"1\" failed=\"0\" skipped=\"2\" errors=\"1\" time=\"0.25\" /></assemblies>"
+      .getBytes(StandardCharsets.UTF_8));
+    settings.setProperty("sonar.cs.vstest.reportsPaths", "results.trx");
+    settings.setProperty("sonar.cs.nunit.reportsPaths", "nunit.xml");
+    settings.setProperty("sonar.cs.xunit.reportsPaths", "xunit.xml");
+  }
+
+  @Test
+  public void nothing_imported_with_one_thread() {
+    new CSharpParallelUnitTestResultsImportSensor(settings, ProjectDefinition.create(), new SharedUnitTestResults()).execute(context);
+
+    assertThat(context.measure(context.module().key(), CoreMetrics.TESTS)).isNull();
+  }
+
+  @Test
+  public void imported_by_the_concurrent_sensor_in_concurrent_mode() {
+    settings.setProperty(CSharpConfiguration.CONCURRENT_SENSORS_PROPERTY_KEY, "true");
+    CSharpParallelUnitTestResultsImportSensor sensor = new CSharpParallelUnitTestResultsImportSensor(settings, ProjectDefinition.create(), new SharedUnitTestResults());
+    sensor.execute(context);
+    assertThat(context.measure(context.module().key(), CoreMetrics.TESTS)).isNull();
+
+    sensor.executeInternal(context);
+    assertThat(context.measure(context.module().key(), CoreMetrics.TESTS).value()).isEqualTo(10);
+  }
+
+  @Test
+  public void visual_studio_nunit_and_xunit_results() {
+    settings.setProperty(CSharpUnitTestResultsProvider.THREADS_PROPERTY_KEY, "2");
+    new CSharpParallelUnitTestResultsImportSensor(settings, ProjectDefinition.create(), new SharedUnitTestResults()).execute(context);
+
+    String moduleKey = context.module().key();
+    assertThat(context.measure(moduleKey, CoreMetrics.TESTS).value()).isEqualTo(10);
+    assertThat(context.measure(moduleKey, CoreMetrics.TEST_ERRORS).value()).isEqualTo(1);
+    assertThat(context.measure(moduleKey, CoreMetrics.TEST_FAILURES).value()).isEqualTo(1);
+    assertThat(context.measure(moduleKey, CoreMetrics.SKIPPED_TESTS).value()).isEqualTo(3);
+    assertThat(context.measure(moduleKey, CoreMetrics.TEST_SUCCESS_DENSITY).value()).isEqualTo(60.0);
+    assertThat(context.measure(moduleKey, CoreMetrics.TEST_EXECUTION_TIME).value()).isEqualTo(1750L);
+  }
+
+  @Test
+  public void nothing_imported_on_sub_modules() {
+    settings.setProperty(CSharpUnitTestResultsProvider.THREADS_PROPERTY_KEY, "2");
+    ProjectDefinition module = ProjectDefinition.create();
+    ProjectDefinition.create().addSubProject(module);
+    new CSharpParallelUnitTestResultsImportSensor(settings, module, new SharedUnitTestResults()).execute(context);
+
+    assertThat(context.measure(context.module().key(), CoreMetrics.TESTS)).isNull();
+  }
+
+  @Test
+  public void per_test_file_results_on_each_module() throws Exception {
+    Files.write(context.fileSystem().baseDir().toPath().resolve("xunit.xml"), ("<assemblies><assembly total=\"4\" passed=\"2\" failed=\"1\" skipped=\"1\" time=\"1\">"
+      + "<collection><test type=\"Company.Tests.FooTest\" result=\"Pass\" time=\"0.25\" /><test type=\"Company.Tests.FooTest+Nested\" result=\"Fail\" time=\"0.5\" />"
+      + "<test type=\"Company.Tests.BarTest\" result=\"Skip\" time=\"0\" /><test type=\"Company.Tests.UnknownTest\" result=\"Pass\" time=\"0.125\" />"
+      + "</collection></assembly></assemblies>").getBytes(StandardCharsets.UTF_8));
+    settings.setProperty("sonar.cs.vstest.reportsPaths", "");
+    settings.setProperty("sonar.cs.nunit.reportsPaths", "");
+    settings.setProperty(CSharpUnitTestResultsProvider.PER_TEST_FILE_PROPERTY_KEY, "true");
+    addTestFile("FooTest.cs", "namespace Company.Tests\n{\n  public class FooTest\n  {\n    class Nested {}\n  }\n}\n");
+    addTestFile("BarTest.cs", "namespace Company.Tests { class BarTest { } }\n");
+    ProjectDefinition module = ProjectDefinition.create();
+    ProjectDefinition.create().addSubProject(module);
+    new CSharpParallelUnitTestResultsImportSensor(settings, module, new SharedUnitTestResults()).execute(context);
+
+    String fooKey = context.module().key() + ":FooTest.cs";
+    assertThat(context.measure(fooKey, CoreMetrics.TESTS).value()).isEqualTo(2);
+    assertThat(context.measure(fooKey, CoreMetrics.TEST_FAILURES).value()).isEqualTo(1);
+    assertThat(context.measure(fooKey, CoreMetrics.SKIPPED_TESTS).value()).isEqualTo(0);
+    assertThat(context.measure(fooKey, CoreMetrics.TEST_EXECUTION_TIME).value()).isEqualTo(750L);
+    String barKey = context.module().key() + ":BarTest.cs";
+    assertThat(context.measure(barKey, CoreMetrics.TESTS).value()).isEqualTo(1);
+    assertThat(context.measure(barKey, CoreMetrics.SKIPPED_TESTS).value()).isEqualTo(1);
+    assertThat(context.measure(context.module().key(), CoreMetrics.TESTS)).isNull();
+  }
+
+  @Test
+  public void test_duration_hotspots() throws Exception {
+    File workDir = temp.newFolder();
+    context.fileSystem().setWorkDir(workDir);
+    Files.write(context.fileSystem().baseDir().toPath().resolve("xunit.xml"), ("<assemblies><assembly name=\"C:\\bin\\Foo.Tests.dll\" total=\"3\" passed=\"3\" failed=\"0\" skipped=\"0\">"
+      + "<collection><test name=\"Foo.A\" type=\"Foo\" result=\"Pass\" time=\"0.1\" /><test name=\"Foo.B\" type=\"Foo\" result=\"Pass\" time=\"0.3\" />"
+      + "<test name=\"Bar.C\" type=\"Bar\" result=\"Pass\" time=\"0.2\" /></collection></assembly></assemblies>").getBytes(StandardCharsets.UTF_8));
+    settings.setProperty("sonar.cs.vstest.reportsPaths", "");
+    settings.setProperty("sonar.cs.nunit.reportsPaths", "");
+    settings.setProperty(CSharpUnitTestResultsProvider.HOTSPOTS_PROPERTY_KEY, "2");
+    new CSharpParallelUnitTestResultsImportSensor(settings, ProjectDefinition.create(), new SharedUnitTestResults()).execute(context);
+
+    String moduleKey = context.module().key();
+    assertThat(context.measure(moduleKey, CoreMetrics.TESTS).value()).isEqualTo(3);
+    assertThat(context.measure(moduleKey, CSharpTestMetrics.TEST_DURATION_P50).value()).isEqualTo(200L);
+    assertThat(context.measure(moduleKey, CSharpTestMetrics.SLOWEST_TEST_DURATION).value()).isEqualTo(300L);
+    String report = new String(Files.readAllBytes(workDir.toPath().resolve(TestHotspots.REPORT_FILE_NAME)), StandardCharsets.UTF_8);
+    assertThat(report).contains("\"name\": \"Foo.B\"", "\"name\": \"Bar.C\"", "\"name\": \"Foo.Tests.dll\"").doesNotContain("\"name\": \"Foo.A\"");
+  }
+
+  private void addTestFile(String relativePath, String contents) throws Exception {
+    Files.write(context.fileSystem().baseDir().toPath().resolve(relativePath), contents.getBytes(StandardCharsets.UTF_8));
+    context.fileSystem().add(new DefaultInputFile(context.module().key(), relativePath)
+      .setModuleBaseDir(context.fileSystem().baseDir().toPath())
+      .setLanguage(CSharpPlugin.LANGUAGE_KEY)
+      .setType(InputFile.Type.TEST)
+      .initMetadata(contents));
+  }
+
+}
@@ -0,0 +1,322 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import com.google.protobuf.AbstractMessageLite;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+import org.sonar.api.issue.NoSonarFilter;
+import org.sonar.api.measures.CoreMetrics;
+import org.sonar.api.measures.FileLinesContext;
+import org.sonar.api.measures.FileLinesContextFactory;
+import org.sonarsource.dotnet.protobuf.SonarAnalyzer.EncodingInfo;
+import org.sonarsource.dotnet.protobuf.SonarAnalyzer.FileIssues;
+import org.sonarsource.dotnet.protobuf.SonarAnalyzer.MetricsInfo;
+import org.sonarsource.dotnet.protobuf.SonarAnalyzer.TextRange;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.sonarsource.dotnet.shared.plugins.protobuf.ProtobufImporters.ENCODING_OUTPUT_PROTOBUF_NAME;
+import static org.sonarsource.dotnet.shared.plugins.protobuf.ProtobufImporters.ISSUES_OUTPUT_PROTOBUF_NAME;
+import static org.sonarsource.dotnet.shared.plugins.protobuf.ProtobufImporters.METRICS_OUTPUT_PROTOBUF_NAME;
+
+public class PipelinedProtobufImporterTest {
+
+  private static final int FILES = 10;
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  private SensorContextTester context;
+  private Path output;
+  private List<String> imported;
+  private CountDownLatch firstFileImported;
+  private ExecutorService executor;
+
+  @Before
+  public void prepare() throws Exception {
+    Path baseDir = temp.newFolder().toPath();
+    output = temp.newFolder().toPath().resolve("output-cs");
+    context = SensorContextTester.create(baseDir);
+    for (int i = 0; i < FILES; i++) {
+      context.fileSystem().add(new DefaultInputFile(context.module().key(), "File" + i + ".cs")
+        .setModuleBaseDir(baseDir)
+        .setLanguage(CSharpPlugin.LANGUAGE_KEY)
+        .initMetadata("class Foo {}\nclass Bar {}\n"));
+    }
+    imported = Collections.synchronizedList(new ArrayList<>());
+    firstFileImported = new CountDownLatch(1);
+    executor = Executors.newSingleThreadExecutor();
+  }
+
+  @After
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void results_are_imported_while_the_analyzer_is_running() throws Exception {
+    Future<?> analysis = executor.submit(() -> {
+      for (int i = 0; i < FILES; i++) {
+        append(ENCODING_OUTPUT_PROTOBUF_NAME, encoding(i, context.fileSystem().encoding().name()));
+        append(METRICS_OUTPUT_PROTOBUF_NAME, metrics(i));
+        append(ISSUES_OUTPUT_PROTOBUF_NAME, issues(i));
+        if (i == 0) {
+          // The analysis only goes on once the results of the first file are imported, which proves that both overlap
+          assertThat(firstFileImported.await(10, TimeUnit.SECONDS)).isTrue();
+        }
+        Thread.sleep(10);
+      }
+      return null;
+    });
+
+    importWhile(analysis, true);
+
+    assertThat(imported).containsExactlyElementsOf(fileNames());
+    for (int i = 0; i < FILES; i++) {
+      assertThat(context.measure(key(i), CoreMetrics.CLASSES).value()).isEqualTo(i + 1);
+    }
+    assertThat(context.allIssues()).hasSize(FILES);
+  }
+
+  @Test
+  public void message_written_in_several_parts_is_imported_once_complete() throws Exception {
+    byte[] message = delimited(metrics(0));
+    Future<?> analysis = executor.submit(() -> {
+      Files.createDirectories(output);
+      Files.write(output.resolve(METRICS_OUTPUT_PROTOBUF_NAME), Arrays.copyOf(message, 1));
+      Thread.sleep(300);
+      Files.write(output.resolve(METRICS_OUTPUT_PROTOBUF_NAME), Arrays.copyOfRange(message, 1, message.length - 3), StandardOpenOption.APPEND);
+      Thread.sleep(300);
+      Files.write(output.resolve(METRICS_OUTPUT_PROTOBUF_NAME), Arrays.copyOfRange(message, message.length - 3, message.length), StandardOpenOption.APPEND);
+      return null;
+    });
+
+    importWhile(analysis, true);
+
+    assertThat(imported).containsExactly("File0.cs");
+    assertThat(context.measure(key(0), CoreMetrics.CLASSES).value()).isEqualTo(1);
+  }
+
+  @Test
+  public void issues_not_imported_when_not_requested() throws Exception {
+    Future<?> analysis = executor.submit(() -> {
+      append(METRICS_OUTPUT_PROTOBUF_NAME, metrics(0));
+      append(ISSUES_OUTPUT_PROTOBUF_NAME, issues(0));
+      return null;
+    });
+
+    importWhile(analysis, false);
+
+    assertThat(imported).containsExactly("File0.cs");
+    assertThat(context.allIssues()).isEmpty();
+  }
+
+  @Test
+  public void results_of_files_with_another_encoding_are_skipped() throws Exception {
+    Future<?> analysis = executor.submit(() -> {
+      append(ENCODING_OUTPUT_PROTOBUF_NAME, encoding(0, "UTF-16"));
+      append(ENCODING_OUTPUT_PROTOBUF_NAME, encoding(1, context.fileSystem().encoding().name()));
+      append(METRICS_OUTPUT_PROTOBUF_NAME, metrics(0));
+      append(METRICS_OUTPUT_PROTOBUF_NAME, metrics(1));
+      return null;
+    });
+
+    importWhile(analysis, true);
+
+    assertThat(imported).containsExactly("File1.cs");
+    assertThat(context.measure(key(0), CoreMetrics.CLASSES)).isNull();
+  }
+
+  @Test
+  public void results_are_deferred_until_the_encoding_of_their_file_is_known() throws Exception {
+    CountDownLatch metricsWritten = new CountDownLatch(1);
+    Future<?> analysis = executor.submit(() -> {
+      append(METRICS_OUTPUT_PROTOBUF_NAME, metrics(0));
+      append(METRICS_OUTPUT_PROTOBUF_NAME, metrics(1));
+      append(METRICS_OUTPUT_PROTOBUF_NAME, metrics(2));
+      append(ISSUES_OUTPUT_PROTOBUF_NAME, issues(0));
+      metricsWritten.countDown();
+      // Leaves time for several passes before the encoding report is written
+      Thread.sleep(300);
+      append(ENCODING_OUTPUT_PROTOBUF_NAME, encoding(0, "UTF-16"));
+      append(ENCODING_OUTPUT_PROTOBUF_NAME, encoding(1, context.fileSystem().encoding().name()));
+      return null;
+    });
+
+    importWhile(analysis, true);
+
+    assertThat(metricsWritten.getCount()).isZero();
+    // The file without any encoding entry is imported once the analysis is done
+    assertThat(imported).containsExactly("File1.cs", "File2.cs");
+    assertThat(context.measure(key(0), CoreMetrics.CLASSES)).isNull();
+    assertThat(context.allIssues()).isEmpty();
+  }
+
+  @Test
+  public void partition() throws Exception {
+    ByteArrayOutputStream messages = new ByteArrayOutputStream();
+    metrics(0).writeDelimitedTo(messages);
+    issues(1).writeDelimitedTo(messages);
+    MetricsInfo.newBuilder().setClassCount(3).build().writeDelimitedTo(messages);
+    ByteArrayOutputStream ready = new ByteArrayOutputStream();
+    ByteArrayOutputStream deferred = new ByteArrayOutputStream();
+
+    PipelinedProtobufImporter.partition(messages.toByteArray(), filePath -> !path(1).equals(filePath), ready, deferred);
+
+    ByteArrayOutputStream expectedReady = new ByteArrayOutputStream();
+    metrics(0).writeDelimitedTo(expectedReady);
+    MetricsInfo.newBuilder().setClassCount(3).build().writeDelimitedTo(expectedReady);
+    assertThat(ready.toByteArray()).isEqualTo(expectedReady.toByteArray());
+    assertThat(deferred.toByteArray()).isEqualTo(delimited(issues(1)));
+  }
+
+  @Test
+  public void incomplete_message_at_the_end_of_the_analysis() throws Exception {
+    byte[] message = delimited(metrics(0));
+    Future<?> analysis = executor.submit(() -> {
+      Files.createDirectories(output);
+      Files.write(output.resolve(METRICS_OUTPUT_PROTOBUF_NAME), Arrays.copyOf(message, message.length - 1));
+      return null;
+    });
+
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("ends with an incomplete message");
+    importWhile(analysis, true);
+  }
+
+  @Test
+  public void failure_of_the_analyzer() {
+    Future<?> analysis = executor.submit((Callable<Void>) () -> {
+      throw new IllegalStateException("The .NET analyzer failed with exit code: 1");
+    });
+
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("The .NET analyzer failed with exit code: 1");
+    importWhile(analysis, true);
+  }
+
+  @Test
+  public void complete_messages_end() throws Exception {
+    byte[] first = delimited(metrics(0));
+    byte[] second = delimited(metrics(1));
+    byte[] both = new byte[first.length + second.length];
+    System.arraycopy(first, 0, both, 0, first.length);
+    System.arraycopy(second, 0, both, first.length, second.length);
+
+    assertThat(PipelinedProtobufImporter.ReportTail.completeMessagesEnd(new byte[0])).isZero();
+    assertThat(PipelinedProtobufImporter.ReportTail.completeMessagesEnd(both)).isEqualTo(both.length);
+    assertThat(PipelinedProtobufImporter.ReportTail.completeMessagesEnd(Arrays.copyOf(both, both.length - 1))).isEqualTo(first.length);
+    assertThat(PipelinedProtobufImporter.ReportTail.completeMessagesEnd(Arrays.copyOf(both, first.length + 1))).isEqualTo(first.length);
+    // Length of 200 bytes, on two bytes of which only the first one is written
+    assertThat(PipelinedProtobufImporter.ReportTail.completeMessagesEnd(new byte[] {(byte) 0xC8})).isZero();
+    assertThat(PipelinedProtobufImporter.ReportTail.completeMessagesEnd(new byte[] {0})).isEqualTo(1);
+  }
+
+  private void importWhile(Future<?> analysis, boolean importIssues) {
+    FileLinesContext fileLinesContext = mock(FileLinesContext.class);
+    FileLinesContextFactory fileLinesContextFactory = mock(FileLinesContextFactory.class);
+    when(fileLinesContextFactory.createFor(any(InputFile.class))).thenAnswer(invocation -> {
+      imported.add(((InputFile) invocation.getArguments()[0]).relativePath());
+      firstFileImported.countDown();
+      return fileLinesContext;
+    });
+    new PipelinedProtobufImporter(fileLinesContextFactory, new NoSonarFilter(), CSharpSonarRulesDefinition.REPOSITORY_KEY, 50)
+      .importWhile(analysis, context, new InputFileIndex().get(context), output, temp.getRoot().toPath().resolve("chunks"), importIssues);
+  }
+
+  private void append(String report, AbstractMessageLite message) throws IOException {
+    Files.createDirectories(output);
+    try (OutputStream stream = Files.newOutputStream(output.resolve(report), StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+      message.writeDelimitedTo(stream);
+    }
+  }
+
+  private static byte[] delimited(AbstractMessageLite message) throws IOException {
+    ByteArrayOutputStream stream = new ByteArrayOutputStream();
+    message.writeDelimitedTo(stream);
+    return stream.toByteArray();
+  }
+
+  private EncodingInfo encoding(int file, String encoding) {
+    return EncodingInfo.newBuilder().setFilePath(path(file)).setEncoding(encoding).build();
+  }
+
+  private MetricsInfo metrics(int file) {
+    return MetricsInfo.newBuilder().setFilePath(path(file)).setClassCount(file + 1).build();
+  }
+
+  private FileIssues issues(int file) {
+    return FileIssues.newBuilder()
+      .setFilePath(path(file))
+      .addIssue(FileIssues.Issue.newBuilder()
+        .setId("S1186")
+        .setMessage("Issue of file " + file)
+        .setLocation(TextRange.newBuilder().setStartLine(1).setEndLine(1).setStartOffset(0).setEndOffset(5).build())
+        .build())
+      .build();
+  }
+
+  private String path(int file) {
+    return context.fileSystem().baseDir().toPath().resolve("File" + file + ".cs").toAbsolutePath().toString();
+  }
+
+  private String key(int file) {
+    return context.module().key() + ":File" + file + ".cs";
+  }
+
+  private static List<String> fileNames() {
+    List<String> result = new ArrayList<>();
+    for (int i = 0; i < FILES; i++) {
+      result.add("File" + i + ".cs");
+    }
+    return result;
+  }
+
+}
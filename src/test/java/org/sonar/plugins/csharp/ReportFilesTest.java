@@ -0,0 +1,70 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import java.io.File;
+import java.nio.file.Files;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ReportFilesTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private File baseDir;
+
+  @Before
+  public void prepare() throws Exception {
+    baseDir = temp.newFolder();
+    Files.createDirectories(baseDir.toPath().resolve("a/b"));
+    Files.createFile(baseDir.toPath().resolve("report.xml"));
+    Files.createFile(baseDir.toPath().resolve("a/report1.xml"));
+    Files.createFile(baseDir.toPath().resolve("a/b/report2.xml"));
+    Files.createFile(baseDir.toPath().resolve("a/b/other.txt"));
+  }
+
+  @Test
+  public void no_paths() {
+    assertThat(ReportFiles.list(baseDir, null)).isEmpty();
+    assertThat(ReportFiles.list(baseDir, " , ")).isEmpty();
+  }
+
+  @Test
+  public void relative_and_absolute_paths() {
+    File absolute = new File(baseDir, "a/report1.xml");
+    assertThat(ReportFiles.list(baseDir, "report.xml, " + absolute.getAbsolutePath() + ",missing.xml"))
+      .containsExactly(new File(baseDir, "report.xml"), absolute);
+  }
+
+  @Test
+  public void wildcards() {
+    assertThat(ReportFiles.list(baseDir, "a/*.xml")).containsExactly(new File(baseDir, "a/report1.xml"));
+    assertThat(ReportFiles.list(baseDir, "a/b/report?.xml")).containsExactly(new File(baseDir, "a/b/report2.xml"));
+    assertThat(ReportFiles.list(baseDir, "**/report*.xml"))
+      .containsExactly(new File(baseDir, "a/b/report2.xml"), new File(baseDir, "a/report1.xml"), new File(baseDir, "report.xml"));
+    assertThat(ReportFiles.list(baseDir, "missing/**/*.xml")).isEmpty();
+  }
+
+}
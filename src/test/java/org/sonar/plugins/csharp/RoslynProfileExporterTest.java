@@ -26,6 +26,7 @@ import com.google.common.io.Files;
 import java.io.File;
 import java.io.StringWriter;
 import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.sonar.api.config.Settings;
@@ -204,6 +205,134 @@ public class RoslynProfileExporterTest {
     assertThat(actual).isEqualTo(expected);
   }
 
+  @Test
+  public void rules_definitions_are_only_evaluated_once() {
+    Settings settings = mock(Settings.class);
+    when(settings.getDefaultValue("sonaranalyzer-cs.analyzerId")).thenReturn(SONARANALYZER_CSHARP_NAME);
+    when(settings.getDefaultValue("sonaranalyzer-cs.ruleNamespace")).thenReturn(SONARANALYZER_CSHARP_NAME);
+    when(settings.getDefaultValue("sonaranalyzer-cs.pluginKey")).thenReturn("csharp");
+    when(settings.getDefaultValue("sonaranalyzer-cs.pluginVersion")).thenReturn("1.7.0");
+    when(settings.getDefaultValue("sonaranalyzer-cs.staticResourceName")).thenReturn("SonarAnalyzer.zip");
+    when(settings.getDefaultValue("sonaranalyzer-cs.nuget.packageId")).thenReturn(SONARANALYZER_CSHARP_NAME);
+    when(settings.getDefaultValue("sonaranalyzer-cs.nuget.packageVersion")).thenReturn("1.10.0");
+
+    AtomicInteger defineCalls = new AtomicInteger();
+    RulesDefinition sonarLintRepo = context -> {
+      defineCalls.incrementAndGet();
+      RulesDefinition.NewRepository repo = context.createRepository("csharpsquid", "cs");
+      repo.createRule("InactiveRule").setName("InactiveRule").setMarkdownDescription("InactiveRule").setSeverity(Severity.MAJOR);
+      repo.createRule("ActiveRule").setName("ActiveRule").setMarkdownDescription("ActiveRule").setSeverity(Severity.MAJOR);
+      repo.done();
+    };
+
+    RulesProfile rulesProfile = mock(RulesProfile.class);
+    ActiveRule activeRule = mock(ActiveRule.class);
+    when(activeRule.getRepositoryKey()).thenReturn("csharpsquid");
+    when(activeRule.getRuleKey()).thenReturn("ActiveRule");
+    when(rulesProfile.getActiveRules()).thenReturn(ImmutableList.of(activeRule));
+
+    RoslynProfileExporter exporter = new RoslynProfileExporter(settings, new RulesDefinition[] {sonarLintRepo});
+    StringWriter first = new StringWriter();
+    exporter.exportProfile(rulesProfile, first);
+    StringWriter second = new StringWriter();
+    exporter.exportProfile(rulesProfile, second);
+
+    assertThat(defineCalls.get()).isEqualTo(1);
+    assertThat(second.toString()).isEqualTo(first.toString());
+    assertThat(first.toString())
+      .contains("<Rule Id=\"ActiveRule\" Action=\"Warning\" />")
+      .contains("<Rule Id=\"InactiveRule\" Action=\"None\" />");
+  }
+
+  @Test
+  public void exported_profile_is_rendered_again_when_fingerprint_changes() {
+    Settings settings = mock(Settings.class);
+    when(settings.getDefaultValue("sonaranalyzer-cs.analyzerId")).thenReturn(SONARANALYZER_CSHARP_NAME);
+    when(settings.getDefaultValue("sonaranalyzer-cs.ruleNamespace")).thenReturn(SONARANALYZER_CSHARP_NAME);
+    when(settings.getDefaultValue("sonaranalyzer-cs.pluginKey")).thenReturn("csharp");
+    when(settings.getDefaultValue("sonaranalyzer-cs.pluginVersion")).thenReturn("1.7.0");
+    when(settings.getDefaultValue("sonaranalyzer-cs.staticResourceName")).thenReturn("SonarAnalyzer.zip");
+    when(settings.getDefaultValue("sonaranalyzer-cs.nuget.packageId")).thenReturn(SONARANALYZER_CSHARP_NAME);
+    when(settings.getDefaultValue("sonaranalyzer-cs.nuget.packageVersion")).thenReturn("1.10.0");
+
+    ActiveRule activeRule = mock(ActiveRule.class);
+    when(activeRule.getRepositoryKey()).thenReturn("csharpsquid");
+    when(activeRule.getRuleKey()).thenReturn("S1000");
+    ActiveRuleParam param = mock(ActiveRuleParam.class);
+    when(param.getKey()).thenReturn("max");
+    when(param.getValue()).thenReturn("10");
+    when(activeRule.getActiveRuleParams()).thenReturn(ImmutableList.of(param));
+    Rule rule = mock(Rule.class);
+    when(activeRule.getRule()).thenReturn(rule);
+
+    RulesProfile rulesProfile = mock(RulesProfile.class);
+    when(rulesProfile.getName()).thenReturn("Sonar way");
+    when(rulesProfile.getLanguage()).thenReturn("cs");
+    when(rulesProfile.getActiveRules()).thenReturn(ImmutableList.of(activeRule));
+    when(rulesProfile.getActiveRulesByRepository("csharpsquid")).thenReturn(ImmutableList.of(activeRule));
+
+    RoslynProfileExporter exporter = new RoslynProfileExporter(settings, new RulesDefinition[0]);
+    String fingerprint = exporter.fingerprint(rulesProfile);
+    assertThat(exporter.fingerprint(rulesProfile)).isEqualTo(fingerprint);
+    StringWriter first = new StringWriter();
+    exporter.exportProfile(rulesProfile, first);
+    StringWriter second = new StringWriter();
+    exporter.exportProfile(rulesProfile, second);
+    assertThat(second.toString()).isEqualTo(first.toString());
+
+    when(param.getValue()).thenReturn("20");
+    assertThat(exporter.fingerprint(rulesProfile)).isNotEqualTo(fingerprint);
+    StringWriter third = new StringWriter();
+    exporter.exportProfile(rulesProfile, third);
+    assertThat(third.toString()).isNotEqualTo(first.toString());
+    assertThat(third.toString()).isEqualTo(exportWithNewExporter(settings, rulesProfile));
+  }
+
+  @Test
+  public void fingerprint_changes_with_the_embedded_plugin_properties() {
+    Settings settings = mock(Settings.class);
+    when(settings.getDefaultValue("sonaranalyzer-cs.pluginVersion")).thenReturn("1.7.0");
+    ActiveRule activeRule = mock(ActiveRule.class);
+    when(activeRule.getRepositoryKey()).thenReturn("csharpsquid");
+    when(activeRule.getRuleKey()).thenReturn("S1000");
+    Rule rule = mock(Rule.class);
+    when(activeRule.getRule()).thenReturn(rule);
+    RulesProfile rulesProfile = profile("Sonar way");
+    when(rulesProfile.getActiveRules()).thenReturn(ImmutableList.of(activeRule));
+
+    RoslynProfileExporter exporter = new RoslynProfileExporter(settings, new RulesDefinition[0]);
+    String fingerprint = exporter.fingerprint(rulesProfile);
+
+    when(settings.getDefaultValue("sonaranalyzer-cs.pluginVersion")).thenReturn("1.8.0");
+    assertThat(exporter.fingerprint(rulesProfile)).isNotEqualTo(fingerprint);
+  }
+
+  @Test
+  public void only_the_most_recently_exported_profiles_are_kept() {
+    RoslynProfileExporter exporter = new RoslynProfileExporter(mock(Settings.class), new RulesDefinition[0]);
+    RulesProfile kept = profile("Kept");
+    exporter.exportProfile(kept, new StringWriter());
+    for (int i = 0; i < RoslynProfileExporter.MAX_RENDERED_PROFILES + 10; i++) {
+      exporter.exportProfile(profile("Profile " + i), new StringWriter());
+      exporter.exportProfile(kept, new StringWriter());
+    }
+
+    assertThat(exporter.renderedProfiles).hasSize(RoslynProfileExporter.MAX_RENDERED_PROFILES).containsKey("cs:Kept").doesNotContainKey("cs:Profile 0");
+  }
+
+  private static RulesProfile profile(String name) {
+    RulesProfile rulesProfile = mock(RulesProfile.class);
+    when(rulesProfile.getName()).thenReturn(name);
+    when(rulesProfile.getLanguage()).thenReturn("cs");
+    return rulesProfile;
+  }
+
+  private static String exportWithNewExporter(Settings settings, RulesProfile rulesProfile) {
+    StringWriter writer = new StringWriter();
+    new RoslynProfileExporter(settings, new RulesDefinition[0]).exportProfile(rulesProfile, writer);
+    return writer.toString();
+  }
+
   @Test
   public void should_fail_fast_with_incomplete_plugin_metadata() {
     Rule rule = mock(Rule.class);
@@ -0,0 +1,117 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates SARIF 1.0 reports of arbitrary size, either into a file or lazily through a {@link Reader},
+ * without ever holding more than one result in memory.
+ */
+class SarifReportGenerator {
+
+  private static final String HEADER = "{\n  \"version\": \"1.0\",\n  \"runs\": [\n    {\n      \"tool\": {\"name\": \"Synthetic\"},\n      \"results\": [\n";
+  private static final String FOOTER = "\n      ]\n    }\n  ]\n}\n";
+
+  private SarifReportGenerator() {
+  }
+
+  static void write(Path path, long results) throws IOException {
+    try (Writer writer = new BufferedWriter(Files.newBufferedWriter(path, StandardCharsets.UTF_8))) {
+      writer.write(HEADER);
+      for (long i = 0; i < results; i++) {
+        if (i > 0) {
+          writer.write(",\n");
+        }
+        writer.write(result(i));
+      }
+      writer.write(FOOTER);
+    }
+  }
+
+  /**
+   * @param generated incremented each time a result is handed out to the consumer of the reader
+   */
+  static Reader reader(long results, AtomicLong generated) {
+    return new Reader() {
+      private long next = 0;
+      private String chunk = HEADER;
+      private int position = 0;
+
+      @Override
+      public int read(char[] buffer, int offset, int length) {
+        if (chunk == null) {
+          return -1;
+        }
+        int count = Math.min(length, chunk.length() - position);
+        chunk.getChars(position, position + count, buffer, offset);
+        position += count;
+        if (position == chunk.length()) {
+          nextChunk();
+        }
+        return count;
+      }
+
+      private void nextChunk() {
+        position = 0;
+        if (next < results) {
+          chunk = (next > 0 ? ",\n" : "") + result(next);
+          next++;
+          generated.incrementAndGet();
+        } else if (next == results) {
+          chunk = FOOTER;
+          next++;
+        } else {
+          chunk = null;
+        }
+      }
+
+      @Override
+      public void close() {
+        chunk = null;
+      }
+    };
+  }
+
+  static String result(long i) {
+    return "        {\n" +
+      "          \"ruleId\": \"S" + (100 + i % 50) + "\",\n" +
+      "          \"level\": \"warning\",\n" +
+      "          \"message\": \"Synthetic issue number " + i + " with a message long enough to look like a real one.\",\n" +
+      "          \"locations\": [\n" +
+      "            {\n" +
+      "              \"resultFile\": {\n" +
+      "                \"uri\": \"C:\\\\Synthetic\\\\File" + (i % 1000) + ".cs\",\n" +
+      "                \"region\": {\"startLine\": " + (1 + i % 500) + ", \"startColumn\": 5, \"endLine\": " + (1 + i % 500) + ", \"endColumn\": 17}\n" +
+      "              }\n" +
+      "            }\n" +
+      "          ],\n" +
+      "          \"properties\": {\"warningLevel\": 1}\n" +
+      "        }";
+  }
+
+}
@@ -0,0 +1,166 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+import org.sonar.api.batch.sensor.issue.NewIssue;
+import org.sonar.api.rule.RuleKey;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+public class SensorMetricsTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void nested_phases() throws Exception {
+    SensorMetrics metrics = new SensorMetrics();
+    try (SensorMetrics.Phase outer = metrics.start("outer")) {
+      outer.addFiles(3);
+      try (SensorMetrics.Phase inner = metrics.start("inner")) {
+        inner.addFiles(2);
+        inner.addIssues(4);
+      }
+      outer.addIssues(1);
+    }
+
+    assertThat(metrics.phases()).extracting(phase -> phase.get("name")).containsExactly("inner", "outer");
+    Map<String, Object> inner = metrics.phases().get(0);
+    assertThat(inner.get("files")).isEqualTo(2L);
+    assertThat(inner.get("issues")).isEqualTo(4L);
+    assertThat((Long) inner.get("wallTimeMs")).isGreaterThanOrEqualTo(0);
+    assertThat((Long) inner.get("cpuTimeMs")).isGreaterThanOrEqualTo(0);
+    assertThat(inner).containsKey("allocatedBytes");
+    Map<String, Object> outer = metrics.phases().get(1);
+    assertThat(outer.get("files")).isEqualTo(3L);
+    assertThat(outer.get("issues")).isEqualTo(5L);
+  }
+
+  @Test
+  public void allocated_bytes() {
+    SensorMetrics metrics = new SensorMetrics();
+    byte[][] garbage = new byte[100][];
+    try (SensorMetrics.Phase phase = metrics.start("allocating")) {
+      for (int i = 0; i < garbage.length; i++) {
+        garbage[i] = new byte[10_000];
+      }
+    }
+    long allocated = (Long) metrics.phases().get(0).get("allocatedBytes");
+    assertThat(allocated == -1 || allocated >= 1_000_000).isTrue();
+  }
+
+  @Test
+  public void tasks_run_on_other_threads_are_measured() throws Exception {
+    assumeTrue(SensorMetrics.allocatedBytes() >= 0);
+    SensorMetrics metrics = new SensorMetrics();
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try (SensorMetrics.Phase outer = metrics.start("outer")) {
+      try (SensorMetrics.Phase inner = metrics.start("inner")) {
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+          tasks.add(SensorMetrics.measured(() -> new byte[1_000_000].length));
+        }
+        for (Future<Integer> future : executor.invokeAll(tasks)) {
+          future.get();
+        }
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    assertThat((Long) metrics.phases().get(0).get("allocatedBytes")).isGreaterThanOrEqualTo(2_000_000L);
+    assertThat((Long) metrics.phases().get(1).get("allocatedBytes")).isGreaterThanOrEqualTo(2_000_000L);
+  }
+
+  @Test
+  public void phases_of_other_threads_are_included_in_their_parent() throws Exception {
+    assumeTrue(SensorMetrics.allocatedBytes() >= 0);
+    SensorMetrics metrics = new SensorMetrics();
+    try (SensorMetrics.Phase outer = metrics.start("outer")) {
+      Thread thread = new Thread(() -> {
+        try (SensorMetrics.Phase inner = metrics.start("inner")) {
+          assertThat(new byte[1_000_000]).hasSize(1_000_000);
+        }
+      });
+      thread.start();
+      thread.join();
+    }
+
+    assertThat(metrics.phases()).extracting(phase -> phase.get("name")).containsExactly("inner", "outer");
+    assertThat((Long) metrics.phases().get(1).get("allocatedBytes")).isGreaterThanOrEqualTo(1_000_000L);
+  }
+
+  @Test
+  public void tasks_are_not_measured_outside_of_phases() throws Exception {
+    Callable<String> task = () -> "result";
+    assertThat(SensorMetrics.measured(task)).isSameAs(task);
+  }
+
+  @Test
+  public void counting_issues() throws Exception {
+    SensorContextTester context = SensorContextTester.create(temp.getRoot());
+    DefaultInputFile inputFile = new DefaultInputFile(context.module().key(), "A.cs").setLanguage(CSharpPlugin.LANGUAGE_KEY).initMetadata("class A {}\n");
+    context.fileSystem().add(inputFile);
+    SensorMetrics metrics = new SensorMetrics();
+
+    try (SensorMetrics.Phase phase = metrics.start("import")) {
+      SensorContext counting = SensorMetrics.countingIssues(context, phase);
+      for (int i = 0; i < 3; i++) {
+        NewIssue issue = counting.newIssue().forRule(RuleKey.of("csharpsquid", "S100"));
+        issue.at(issue.newLocation().on(inputFile).message("Issue " + i)).save();
+      }
+      assertThat(counting.fileSystem()).isSameAs(context.fileSystem());
+    }
+
+    assertThat(context.allIssues()).hasSize(3);
+    assertThat(metrics.phases().get(0).get("issues")).isEqualTo(3L);
+  }
+
+  @Test
+  public void write() throws Exception {
+    SensorMetrics metrics = new SensorMetrics();
+    try (SensorMetrics.Phase phase = metrics.start("analyze")) {
+      phase.addFiles(1);
+    }
+    Path workDir = temp.newFolder().toPath();
+    metrics.write(workDir);
+
+    String json = new String(Files.readAllBytes(workDir.resolve(SensorMetrics.REPORT_FILE_NAME)), StandardCharsets.UTF_8);
+    assertThat(json).contains("\"phases\"").contains("\"name\": \"analyze\"").contains("\"files\": 1");
+  }
+
+}
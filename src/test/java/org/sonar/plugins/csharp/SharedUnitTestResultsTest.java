@@ -0,0 +1,59 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SharedUnitTestResultsTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void reports_aggregated_once() throws Exception {
+    File report = temp.newFile();
+    Files.write(report.toPath(), "<assembly total=\"3\" passed=\"3\" failed=\"0\" skipped=\"0\" />".getBytes(StandardCharsets.UTF_8));
+    AtomicInteger parsedReports = new AtomicInteger();
+    UnitTestResultsParser parser = (file, results) -> {
+      parsedReports.incrementAndGet();
+      new XUnitTestResultsParser().parse(file, results);
+    };
+    List<ParallelUnitTestResultsAggregator.Report> reports = Collections.singletonList(new ParallelUnitTestResultsAggregator.Report(report, parser));
+
+    SharedUnitTestResults sharedResults = new SharedUnitTestResults();
+    UnitTestResultsData results = sharedResults.get(reports, 1, 0);
+    assertThat(results.tests()).isEqualTo(3);
+    assertThat(sharedResults.get(reports, 1, 0)).isSameAs(results);
+    assertThat(parsedReports.get()).isEqualTo(1);
+
+    assertThat(sharedResults.get(Collections.emptyList(), 1, 0).tests()).isZero();
+  }
+
+}
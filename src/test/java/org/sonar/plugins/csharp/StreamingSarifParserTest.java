@@ -0,0 +1,215 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import java.io.File;
+import java.io.StringReader;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.sonarsource.dotnet.shared.sarif.SarifParserCallback;
+import org.sonarsource.dotnet.shared.sarif.SarifParserFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StreamingSarifParserTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void same_issues_as_sarif_parser_factory() {
+    File[] reports = new File("src/test/resources/SarifParserTest").listFiles();
+    assertThat(reports).isNotEmpty();
+    for (File report : reports) {
+      RecordingCallback expected = new RecordingCallback();
+      SarifParserFactory.create(report).parse(expected);
+
+      RecordingCallback actual = new RecordingCallback();
+      new StreamingSarifParser(report).parse(actual);
+
+      assertThat(actual.calls).as(report.getName()).isEqualTo(expected.calls);
+    }
+  }
+
+  @Test
+  public void roslyn_report() {
+    RecordingCallback callback = new RecordingCallback();
+    new StreamingSarifParser(new File("src/test/resources/CSharpSensorTest/roslyn-report.json")).parse(callback);
+    assertThat(callback.calls).contains(
+      "onIssue [parameters_key] Program.cs Short messages should be used first in Roslyn reports 19 9 20 11",
+      "onProjectIssue [parameters_key] This is an assembly level Roslyn issue with no location");
+  }
+
+  @Test
+  public void version_after_results() throws Exception {
+    RecordingCallback callback = new RecordingCallback();
+    new StreamingSarifParser(new File("dummy.json")).parse(
+      () -> new StringReader("{\"runs\": [{\"results\": [{\"ruleId\": \"S1\", \"message\": \"msg\"}]}], \"version\": \"1.0\"}"), callback);
+    assertThat(callback.calls).containsExactly("onProjectIssue S1 msg");
+  }
+
+  @Test
+  public void sections_before_the_version_are_read_as_the_shared_library_does() throws Exception {
+    String issue01 = "{\"ruleId\": \"S1\", \"shortMessage\": \"from issues\", \"locations\": []}";
+    String issue04 = "{\"ruleId\": \"S2\", \"shortMessage\": \"from runLogs\", \"locations\": []}";
+    String issue10 = "{\"ruleId\": \"S3\", \"message\": \"from runs\"}";
+    // Each report followed by the number of issues it holds
+    Object[][] reports = {
+      {"{\"runs\": [{\"results\": [" + issue10 + "]}], \"version\": \"0.4\"}", 0},
+      {"{\"runLogs\": [{\"results\": [" + issue04 + "]}], \"version\": \"0.4\"}", 1},
+      {"{\"runLogs\": [{\"results\": [" + issue04 + "]}], \"version\": \"1.0\"}", 0},
+      {"{\"version\": \"0.4\", \"issues\": [" + issue01 + "], \"runLogs\": [{\"results\": [" + issue04 + "]}]}", 1},
+      {"{\"issues\": [" + issue01 + "], \"runLogs\": [{\"results\": [" + issue04 + "]}], \"version\": \"0.4\"}", 1},
+      {"{\"issues\": [" + issue01 + "], \"version\": \"0.1\"}", 1},
+      {"{\"version\": \"0.1\", \"issues\": [" + issue01 + "]}", 1},
+      {"{\"issues\": [" + issue01 + "], \"runs\": [{\"results\": [" + issue10 + "]}], \"version\": \"1.0\"}", 1}
+    };
+    for (Object[] report : reports) {
+      String json = (String) report[0];
+      File file = temp.newFile();
+      java.nio.file.Files.write(file.toPath(), json.getBytes("UTF-8"));
+      RecordingCallback expected = new RecordingCallback();
+      SarifParserFactory.create(file).parse(expected);
+
+      RecordingCallback actual = new RecordingCallback();
+      new StreamingSarifParser(file).parse(actual);
+
+      assertThat(actual.calls).as(json).isEqualTo(expected.calls).hasSize((Integer) report[1]);
+    }
+  }
+
+  @Test
+  public void single_pass_when_the_version_comes_first() throws Exception {
+    AtomicInteger opened = new AtomicInteger();
+    RecordingCallback callback = new RecordingCallback();
+    new StreamingSarifParser(new File("dummy.json")).parse(() -> {
+      opened.incrementAndGet();
+      return new StringReader("{\"version\": \"1.0\", \"runs\": [{\"results\": [{\"ruleId\": \"S1\", \"message\": \"msg\"}]}]}");
+    }, callback);
+
+    assertThat(callback.calls).containsExactly("onProjectIssue S1 msg");
+    assertThat(opened.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void null_results() throws Exception {
+    RecordingCallback callback = new RecordingCallback();
+    new StreamingSarifParser(new File("dummy.json")).parse(() -> new StringReader("{\"version\": \"1.0\", \"runs\": [{\"results\": null}]}"), callback);
+    assertThat(callback.calls).isEmpty();
+  }
+
+  @Test
+  public void unrecognized_format() throws Exception {
+    Path report = temp.newFile("no_version.json").toPath();
+    java.nio.file.Files.write(report, "{\"runs\": []}".getBytes("UTF-8"));
+
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Unrecognized format");
+    new StreamingSarifParser(report.toFile()).parse(new RecordingCallback());
+  }
+
+  @Test
+  public void missing_file() {
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Unable to read the Roslyn SARIF report file");
+    new StreamingSarifParser(new File("src/test/resources/SarifParserTest/missing.json")).parse(new RecordingCallback());
+  }
+
+  @Test
+  public void generated_report_file() throws Exception {
+    Path report = temp.newFile("generated.json").toPath();
+    SarifReportGenerator.write(report, 1000);
+
+    CountingCallback callback = new CountingCallback(new AtomicLong());
+    new StreamingSarifParser(report.toFile()).parse(callback);
+    assertThat(callback.issues).isEqualTo(1000);
+  }
+
+  @Test
+  public void issues_are_reported_while_reading() throws Exception {
+    AtomicLong generated = new AtomicLong();
+    CountingCallback callback = new CountingCallback(generated);
+    new StreamingSarifParser(new File("generated.json")).parse(() -> SarifReportGenerator.reader(50_000, generated), callback);
+
+    assertThat(callback.issues).isEqualTo(50_000);
+    // Only the results buffered by the pull parser can be read ahead of the callback
+    assertThat(callback.maxLag).isLessThan(10);
+  }
+
+  private static class RecordingCallback implements SarifParserCallback {
+
+    private final List<String> calls = new ArrayList<>();
+
+    @Override
+    public void onProjectIssue(String ruleId, String message) {
+      calls.add("onProjectIssue " + ruleId + " " + message);
+    }
+
+    @Override
+    public void onFileIssue(String ruleId, String absolutePath, String message) {
+      calls.add("onFileIssue " + ruleId + " " + absolutePath + " " + message);
+    }
+
+    @Override
+    public void onIssue(String ruleId, String absolutePath, String message, int startLine, int startLineOffset, int endLine, int endLineOffset) {
+      calls.add("onIssue " + ruleId + " " + absolutePath + " " + message + " " + startLine + " " + startLineOffset + " " + endLine + " " + endLineOffset);
+    }
+
+  }
+
+  private static class CountingCallback implements SarifParserCallback {
+
+    private final AtomicLong generated;
+    long issues = 0;
+    long maxLag = 0;
+
+    private CountingCallback(AtomicLong generated) {
+      this.generated = generated;
+    }
+
+    @Override
+    public void onProjectIssue(String ruleId, String message) {
+      throw new IllegalStateException("Unexpected project issue");
+    }
+
+    @Override
+    public void onFileIssue(String ruleId, String absolutePath, String message) {
+      throw new IllegalStateException("Unexpected file issue");
+    }
+
+    @Override
+    public void onIssue(String ruleId, String absolutePath, String message, int startLine, int startLineOffset, int endLine, int endLineOffset) {
+      issues++;
+      maxLag = Math.max(maxLag, generated.get() - issues);
+    }
+
+  }
+
+}
@@ -0,0 +1,75 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import java.util.Random;
+import java.util.stream.Collectors;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestDurationsTest {
+
+  @Test
+  public void slowest_tests_and_percentiles() {
+    TestDurations durations = new TestDurations(3);
+    for (int i = 1; i <= 100; i++) {
+      durations.add(i % 2 == 0 ? "Even.dll" : "Odd.dll", "Test" + i, i);
+    }
+
+    assertThat(durations.count()).isEqualTo(100);
+    assertThat(durations.slowestTests().stream().map(TestDurations.TestDuration::name).collect(Collectors.toList())).containsExactly("Test100", "Test99", "Test98");
+    assertThat(durations.slowestTests().get(1).assembly()).isEqualTo("Odd.dll");
+    assertThat(durations.assemblies()).containsExactly("Odd.dll", "Even.dll");
+    assertThat(durations.percentiles(null, 50, 90, 99, 100)).containsExactly(50, 90, 99, 100);
+    assertThat(durations.percentiles("Even.dll", 50, 100)).containsExactly(50, 100);
+    assertThat(durations.percentiles("Odd.dll", 1)).containsExactly(1);
+  }
+
+  @Test
+  public void merge_yields_the_same_hotspots_as_a_single_instance() {
+    Random random = new Random(42);
+    TestDurations single = new TestDurations(10);
+    TestDurations[] partials = {new TestDurations(10), new TestDurations(10), new TestDurations(10)};
+    for (int i = 0; i < 1_000_000; i++) {
+      String assembly = "Assembly" + (i % 7) + ".dll";
+      long duration = random.nextInt(60_000);
+      single.add(assembly, "Test" + i, duration);
+      partials[i % 3].add(assembly, "Test" + i, duration);
+    }
+    TestDurations merged = partials[0].mergeWith(partials[1]).mergeWith(partials[2]);
+
+    assertThat(merged.count()).isEqualTo(1_000_000);
+    assertThat(merged.slowestTests()).hasSize(10);
+    assertThat(merged.slowestTests().stream().map(TestDurations.TestDuration::name).collect(Collectors.toList()))
+      .isEqualTo(single.slowestTests().stream().map(TestDurations.TestDuration::name).collect(Collectors.toList()));
+    for (String assembly : single.assemblies()) {
+      assertThat(merged.percentiles(assembly, 50, 90, 99)).isEqualTo(single.percentiles(assembly, 50, 90, 99));
+    }
+  }
+
+  @Test
+  public void no_tests() {
+    TestDurations durations = new TestDurations(5);
+    assertThat(durations.slowestTests()).isEmpty();
+    assertThat(durations.percentiles(null, 50)).containsExactly(0);
+  }
+
+}
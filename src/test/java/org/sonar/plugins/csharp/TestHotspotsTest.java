@@ -0,0 +1,53 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestHotspotsTest {
+
+  @Test
+  public void report() {
+    UnitTestResultsData results = new UnitTestResultsData(2);
+    results.addTestCase("Foo.Tests.dll", "Company.FooTest", "Company.FooTest.A", UnitTestResultsData.Outcome.PASSED, 100);
+    results.addTestCase("Foo.Tests.dll", "Company.FooTest", "Company.FooTest.B", UnitTestResultsData.Outcome.PASSED, 400);
+    results.addTestCase("Bar.Tests.dll", "Company.BarTest", "Company.BarTest.C", UnitTestResultsData.Outcome.FAILURE, 300);
+    results.addTestCase("Bar.Tests.dll", "Company.BazTest", "Company.BazTest.D", UnitTestResultsData.Outcome.PASSED, 600);
+
+    Map<String, Object> report = TestHotspots.report(results, results.durations());
+
+    assertThat(report.get("tests")).isEqualTo(4);
+    List<Map<String, Object>> slowestTests = (List<Map<String, Object>>) report.get("slowestTests");
+    assertThat(slowestTests).hasSize(2);
+    assertThat(slowestTests.get(0)).containsEntry("name", "Company.BazTest.D").containsEntry("assembly", "Bar.Tests.dll").containsEntry("durationMs", 600L);
+    assertThat(slowestTests.get(1)).containsEntry("name", "Company.FooTest.B");
+    List<Map<String, Object>> assemblies = (List<Map<String, Object>>) report.get("assemblies");
+    assertThat(assemblies).hasSize(2);
+    assertThat(assemblies.get(0)).containsEntry("name", "Foo.Tests.dll").containsEntry("p50Ms", 100L).containsEntry("maxMs", 400L);
+    List<Map<String, Object>> fixtures = (List<Map<String, Object>>) report.get("fixtures");
+    assertThat(fixtures).extracting(fixture -> fixture.get("name")).containsExactly("Company.BazTest", "Company.FooTest", "Company.BarTest");
+    assertThat(fixtures.get(1)).containsEntry("tests", 2).containsEntry("executionTimeMs", 500L);
+  }
+
+}
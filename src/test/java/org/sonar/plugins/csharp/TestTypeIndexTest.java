@@ -0,0 +1,72 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.DefaultFileSystem;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestTypeIndexTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void types_by_qualified_and_simple_name() throws Exception {
+    File baseDir = temp.newFolder();
+    DefaultFileSystem fs = new DefaultFileSystem(baseDir.toPath());
+    DefaultInputFile foo = addFile(fs, "FooTest.cs", InputFile.Type.TEST,
+      "using System;\nnamespace Company.Tests\n{\n  public class FooTest\n  {\n    private struct Helper {}\n  }\n\n  class Generic<T> {}\n}\n");
+    DefaultInputFile bar = addFile(fs, "BarTest.cs", InputFile.Type.TEST, "namespace Company.Tests.Bar { class BarTest {} class Helper {} }\n");
+    addFile(fs, "Other.cs", InputFile.Type.TEST, "namespace Company.Other { class Helper {} }\n");
+    addFile(fs, "Main.cs", InputFile.Type.MAIN, "namespace Company { class Main {} }\n");
+
+    TestTypeIndex index = TestTypeIndex.of(fs, CSharpPlugin.LANGUAGE_KEY);
+
+    assertThat(index.inputFile("Company.Tests.FooTest")).isEqualTo(foo);
+    assertThat(index.inputFile("Company.Tests.FooTest+Nested")).isEqualTo(foo);
+    assertThat(index.inputFile("Company.Tests.Generic`1")).isEqualTo(foo);
+    assertThat(index.inputFile("Company.Tests.Bar.BarTest")).isEqualTo(bar);
+    assertThat(index.inputFile("Other.Namespace.BarTest")).isEqualTo(bar);
+    assertThat(index.inputFile("Company.Tests.Bar.Helper")).isEqualTo(bar);
+    assertThat(index.inputFile("Unknown.Helper")).isNull();
+    assertThat(index.inputFile("Company.Main")).isNull();
+  }
+
+  private static DefaultInputFile addFile(DefaultFileSystem fs, String relativePath, InputFile.Type type, String contents) throws Exception {
+    Files.write(fs.baseDirPath().resolve(relativePath), contents.getBytes(StandardCharsets.UTF_8));
+    DefaultInputFile inputFile = new DefaultInputFile("module", relativePath)
+      .setModuleBaseDir(fs.baseDirPath())
+      .setLanguage(CSharpPlugin.LANGUAGE_KEY)
+      .setType(type)
+      .initMetadata(contents);
+    fs.add(inputFile);
+    return inputFile;
+  }
+
+}
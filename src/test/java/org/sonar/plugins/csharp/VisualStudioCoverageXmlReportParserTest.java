@@ -0,0 +1,89 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+public class VisualStudioCoverageXmlReportParserTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Test
+  public void ranges_of_each_module() throws Exception {
+    File report = temp.newFile();
+    Files.write(report.toPath(), ("<results><modules>"
+      + "<module><functions><function><ranges>"
+      + "<range source_id=\"0\" covered=\"yes\" start_line=\"10\" end_line=\"12\" /><range source_id=\"0\" covered=\"no\" start_line=\"12\" end_line=\"13\" />"
+      + "<range source_id=\"0\" covered=\"partial\" start_line=\"20\" end_line=\"20\" />"
+      + "</ranges></function></functions><source_files><source_file id=\"0\" path=\"C:\\Foo.cs\" /></source_files></module>"
+      + "<module><functions><function><ranges>"
+      + "<range source_id=\"0\" covered=\"yes\" start_line=\"1\" end_line=\"1\" />"
+      + "</ranges></function></functions><source_files><source_file id=\"0\" path=\"C:\\Bar.cs\" /></source_files></module>"
+      + "</modules></results>").getBytes(StandardCharsets.UTF_8));
+
+    CoverageData coverage = new CoverageData();
+    new VisualStudioCoverageXmlReportParser().parse(report, coverage);
+
+    assertThat(coverage.files()).containsOnly("C:\\Foo.cs", "C:\\Bar.cs");
+    assertThat(coverage.hits("C:\\Foo.cs")).containsOnly(entry(10, 1), entry(11, 1), entry(12, 1), entry(13, 0), entry(20, 1));
+    assertThat(coverage.hits("C:\\Bar.cs")).containsOnly(entry(1, 1));
+  }
+
+  @Test
+  public void hidden_ranges_are_ignored() throws Exception {
+    File report = temp.newFile();
+    Files.write(report.toPath(), ("<results><modules><module><functions><function><ranges>"
+      + "<range source_id=\"0\" covered=\"yes\" start_line=\"15732480\" end_line=\"15732480\" />"
+      + "<range source_id=\"0\" covered=\"no\" start_line=\"1\" end_line=\"16707566\" />"
+      + "<range source_id=\"0\" covered=\"yes\" start_line=\"5\" end_line=\"6\" />"
+      + "</ranges></function></functions><source_files><source_file id=\"0\" path=\"C:\\Foo.cs\" /></source_files></module>"
+      + "</modules></results>").getBytes(StandardCharsets.UTF_8));
+
+    CoverageData coverage = new CoverageData();
+    new VisualStudioCoverageXmlReportParser().parse(report, coverage);
+
+    assertThat(coverage.hits("C:\\Foo.cs")).containsExactly(entry(5, 1), entry(6, 1));
+  }
+
+  @Test
+  public void missing_line() throws Exception {
+    File report = temp.newFile();
+    Files.write(report.toPath(), "<results><modules><module><functions><function><ranges><range source_id=\"0\" covered=\"yes\" end_line=\"1\" />"
+      .getBytes(StandardCharsets.UTF_8));
+
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Missing attribute \"start_line\" in element \"range\" at line 1");
+    new VisualStudioCoverageXmlReportParser().parse(report, new CoverageData());
+  }
+
+}
@@ -0,0 +1,110 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class VisualStudioTestResultsParserTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Test
+  public void counters_and_times() throws Exception {
+    File report = temp.newFile();
+    Files.write(report.toPath(), ("<TestRun xmlns=\"http://microsoft.com/schemas/VisualStudio/TeamTest/2010\">"
+      + "<Times creation=\"2016-08-04T10:11:00.0000000+02:00\" start=\"2016-08-04T10:11:12.5000000+02:00\" finish=\"2016-08-04T10:11:15.7500000+02:00\" />"
+      + "<Results><UnitTestResult testId=\"1\" outcome=\"Passed\"><Output><StdOut>Counters <![CDATA[<Counters total=\"1000\" />]]></StdOut>"
+      + "<ErrorInfo><Counters total=\"100\" executed=\"100\" passed=\"100\" failed=\"0\" error=\"0\" /></ErrorInfo></Output></UnitTestResult></Results>"
+      + "<ResultSummary outcome=\"Failed\"><Counters total=\"12\" executed=\"10\" passed=\"7\" failed=\"2\" error=\"1\" timeout=\"0\" />"
+      + "<Output><StdOut>" + repeat("x", 100_000) + "</StdOut></Output></ResultSummary></TestRun>").getBytes(StandardCharsets.UTF_8));
+
+    UnitTestResultsData results = new UnitTestResultsData();
+    new VisualStudioTestResultsParser().parse(report, results);
+
+    assertThat(results.tests()).isEqualTo(12);
+    assertThat(results.passed()).isEqualTo(7);
+    assertThat(results.skipped()).isEqualTo(2);
+    assertThat(results.failures()).isEqualTo(2);
+    assertThat(results.errors()).isEqualTo(1);
+    assertThat(results.executionTimeMs()).isEqualTo(3250);
+  }
+
+  @Test
+  public void results_by_type() throws Exception {
+    File report = temp.newFile();
+    Files.write(report.toPath(), ("<TestRun><Results>"
+      + "<UnitTestResult testId=\"1\" outcome=\"Passed\" duration=\"00:00:01.5000000\" />"
+      + "<UnitTestResult testId=\"2\" outcome=\"Failed\" duration=\"00:01:00.0010000\" />"
+      + "<UnitTestResult testId=\"3\" outcome=\"NotExecuted\" />"
+      + "<UnitTestResult testId=\"4\" outcome=\"Error\" duration=\"00:00:00.25\" />"
+      + "<UnitTestResult testId=\"5\" outcome=\"Passed\" duration=\"00:00:01\" />"
+      + "</Results><TestDefinitions>"
+      + "<UnitTest id=\"1\" name=\"A\"><TestMethod className=\"Company.FooTest, Company.Tests, Version=1.0.0.0\" name=\"A\" /></UnitTest>"
+      + "<UnitTest id=\"2\" name=\"B\"><TestMethod className=\"Company.FooTest, Company.Tests, Version=1.0.0.0\" name=\"B\" /></UnitTest>"
+      + "<UnitTest id=\"3\" name=\"C\"><TestMethod className=\"Company.BarTest\" name=\"C\" /></UnitTest>"
+      + "<UnitTest id=\"4\" name=\"D\"><TestMethod className=\"Company.BarTest\" name=\"D\" /></UnitTest>"
+      + "</TestDefinitions></TestRun>").getBytes(StandardCharsets.UTF_8));
+
+    UnitTestResultsData results = new UnitTestResultsData();
+    new VisualStudioTestResultsParser().parse(report, results);
+
+    assertThat(results.resultsByType()).containsOnlyKeys("Company.FooTest", "Company.BarTest");
+    UnitTestResultsData.TypeResults foo = results.resultsByType().get("Company.FooTest");
+    assertThat(foo.tests()).isEqualTo(2);
+    assertThat(foo.failures()).isEqualTo(1);
+    assertThat(foo.executionTimeMs()).isEqualTo(61_501);
+    UnitTestResultsData.TypeResults bar = results.resultsByType().get("Company.BarTest");
+    assertThat(bar.tests()).isEqualTo(2);
+    assertThat(bar.skipped()).isEqualTo(1);
+    assertThat(bar.errors()).isEqualTo(1);
+    assertThat(bar.executionTimeMs()).isEqualTo(250);
+  }
+
+  @Test
+  public void missing_counter() throws Exception {
+    File report = temp.newFile();
+    Files.write(report.toPath(), "<TestRun><ResultSummary><Counters total=\"12\" /></ResultSummary></TestRun>".getBytes(StandardCharsets.UTF_8));
+
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Unable to parse the test results report " + report.getAbsolutePath());
+    new VisualStudioTestResultsParser().parse(report, new UnitTestResultsData());
+  }
+
+  static String repeat(String s, int times) {
+    StringBuilder sb = new StringBuilder(s.length() * times);
+    for (int i = 0; i < times; i++) {
+      sb.append(s);
+    }
+    return sb.toString();
+  }
+
+}
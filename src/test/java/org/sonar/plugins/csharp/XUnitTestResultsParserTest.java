@@ -0,0 +1,74 @@
+/*
+ * SonarQube C# Plugin
+ * Copyright (C) 2014-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.csharp;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class XUnitTestResultsParserTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void counters_and_times_of_the_assemblies() throws Exception {
+    File report = temp.newFile();
+    Files.write(report.toPath(), ("<assemblies>"
+      + "<assembly name=\"Foo.Tests.dll\" total=\"10\" passed=\"6\" failed=\"2\" skipped=\"1\" errors=\"1\" time=\"2.500\">"
+      + "<collection><test name=\"Company.FooTest.A\" type=\"Company.FooTest\" result=\"Skip\" time=\"0\" />"
+      + "<test name=\"Company.FooTest.B\" type=\"Company.FooTest\" result=\"Pass\" time=\"0.1\"><output>" + VisualStudioTestResultsParserTest.repeat("<assembly total=\"1\"/>", 1000)
+      + "</output></test></collection></assembly>"
+      + "<assembly name=\"Bar.Tests.dll\" total=\"3\" passed=\"3\" failed=\"0\" skipped=\"0\" time=\"0.25\" />"
+      + "</assemblies>").getBytes(StandardCharsets.UTF_8));
+
+    UnitTestResultsData results = new UnitTestResultsData();
+    new XUnitTestResultsParser().parse(report, results);
+
+    assertThat(results.tests()).isEqualTo(13);
+    assertThat(results.passed()).isEqualTo(9);
+    assertThat(results.skipped()).isEqualTo(1);
+    assertThat(results.failures()).isEqualTo(2);
+    assertThat(results.errors()).isEqualTo(1);
+    assertThat(results.executionTimeMs()).isEqualTo(2750);
+    assertThat(results.resultsByType()).containsOnlyKeys("Company.FooTest");
+    assertThat(results.resultsByType().get("Company.FooTest").tests()).isEqualTo(2);
+    assertThat(results.resultsByType().get("Company.FooTest").skipped()).isEqualTo(1);
+    assertThat(results.resultsByType().get("Company.FooTest").executionTimeMs()).isEqualTo(100);
+  }
+
+  @Test
+  public void no_execution_time() throws Exception {
+    File report = temp.newFile();
+    Files.write(report.toPath(), "<assembly total=\"1\" passed=\"1\" failed=\"0\" skipped=\"0\" />".getBytes(StandardCharsets.UTF_8));
+
+    UnitTestResultsData results = new UnitTestResultsData();
+    new XUnitTestResultsParser().parse(report, results);
+
+    assertThat(results.tests()).isEqualTo(1);
+    assertThat(results.hasExecutionTime()).isFalse();
+  }
+
+}